@@ -0,0 +1,13 @@
+package dev.jacklucas.notes_api;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class NotesApiReactiveApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(NotesApiReactiveApplication.class, args);
+	}
+
+}
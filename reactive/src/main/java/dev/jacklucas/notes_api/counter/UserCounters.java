@@ -0,0 +1,42 @@
+package dev.jacklucas.notes_api.counter;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/*
+ * Reads the per-user counts that triggers keep in user_counters (see V7), so a page's totalElements costs one
+ * primary-key lookup instead of a count over the user's rows.
+ * A user without a counter row is counted the slow way; the triggers create the row on the user's first write.
+ */
+@Component
+public class UserCounters {
+
+    private final DatabaseClient db;
+
+    public UserCounters(DatabaseClient db) {
+        this.db = db;
+    }
+
+    // All of the user's notes, archived or not.
+    public Mono<Long> notes(String userId) {
+        return read("notes", "select count(*) from notes where user_id = :userId", userId);
+    }
+
+    public Mono<Long> tags(String userId) {
+        return read("tags", "select count(*) from tags where user_id = :userId", userId);
+    }
+
+    /* HELPERS */
+
+    private Mono<Long> read(String column, String fallback, String userId) {
+        return db.sql("select %s from user_counters where user_id = :userId".formatted(column))
+                .bind("userId", userId)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .switchIfEmpty(Mono.defer(() -> db.sql(fallback)
+                        .bind("userId", userId)
+                        .map(row -> row.get(0, Long.class))
+                        .one()));
+    }
+}
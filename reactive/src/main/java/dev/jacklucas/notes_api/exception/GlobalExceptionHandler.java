@@ -0,0 +1,82 @@
+package dev.jacklucas.notes_api.exception;
+
+import dev.jacklucas.notes_api.note.NoteNotFound;
+import dev.jacklucas.notes_api.paging.InvalidSort;
+import dev.jacklucas.notes_api.tag.TagNotFound;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.time.Instant;
+import java.util.List;
+
+// The servlet app's error bodies, for the exceptions WebFlux raises in place of the servlet ones.
+@Slf4j
+@RestControllerAdvice
+public class GlobalExceptionHandler {
+
+    // (400) Handle field level errors.
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<ExceptionResponse> handleValidationExceptions(
+            WebExchangeBindException ex,
+            ServerWebExchange exchange
+    ) {
+        // Iterate over the field errors and transform them into our leaner field error item.
+        var fieldErrors = ex.getBindingResult().getFieldErrors().stream()
+                .map((f) -> new ExceptionResponse.FieldErrorItem(f.getField(), f.getDefaultMessage()))
+                .toList();
+
+        return respond(HttpStatus.BAD_REQUEST, "Validation failed.", exchange, fieldErrors);
+    }
+
+    // (400) Handle malformed JSON, and path or query values of the wrong type.
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<ExceptionResponse> handleMalformedInput(
+            ServerWebInputException ex,
+            ServerWebExchange exchange
+    ) {
+        var parameter = ex.getMethodParameter();
+        var body = parameter == null || parameter.hasParameterAnnotation(RequestBody.class);
+        return respond(HttpStatus.BAD_REQUEST, body ? "Malformed JSON." : ex.getReason(), exchange, null);
+    }
+
+    // (400) Handle sorting by a field that cannot be sorted on.
+    @ExceptionHandler(InvalidSort.class)
+    public ResponseEntity<ExceptionResponse> handleInvalidSort(InvalidSort ex, ServerWebExchange exchange) {
+        return respond(HttpStatus.BAD_REQUEST, ex.getMessage(), exchange, null);
+    }
+
+    // Handle 404.
+    @ExceptionHandler({NoteNotFound.class, TagNotFound.class})
+    public ResponseEntity<ExceptionResponse> handleNotFound(RuntimeException ex, ServerWebExchange exchange) {
+        return respond(HttpStatus.NOT_FOUND, ex.getMessage(), exchange, null);
+    }
+
+    /* HELPERS */
+
+    // Builds the response body, logs the error and returns a response.
+    private static ResponseEntity<ExceptionResponse> respond(
+            HttpStatus status,
+            String message,
+            ServerWebExchange exchange,
+            List<ExceptionResponse.FieldErrorItem> fieldErrors
+    ) {
+        var exceptionResponse = new ExceptionResponse(
+                status.value(),
+                status.getReasonPhrase(),
+                message,
+                exchange.getRequest().getPath().value(),
+                Instant.now(),
+                fieldErrors
+        );
+
+        log.warn(exceptionResponse.toString());
+        return ResponseEntity.status(status).body(exceptionResponse);
+    }
+}
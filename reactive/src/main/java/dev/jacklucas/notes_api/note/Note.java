@@ -0,0 +1,41 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.tag.Tag;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * A row of notes and its tags, as NoteRepository reads them. Not an entity: every write is an explicit statement.
+ * Same getters as the servlet app's Note, so the shared ReadNoteResponse maps either.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Note {
+
+    private UUID id;
+
+    private String userId;
+
+    private String title;
+
+    private String content;
+
+    private boolean archived;
+
+    // Latest recorded revision. New notes start at 1; notes from before revisions existed have 0.
+    private int revision;
+
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    @Builder.Default
+    private Set<Tag> tags = new HashSet<>();
+}
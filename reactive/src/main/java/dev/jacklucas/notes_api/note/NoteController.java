@@ -0,0 +1,208 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.counter.UserCounters;
+import dev.jacklucas.notes_api.note.dto.CreateNoteRequest;
+import dev.jacklucas.notes_api.note.dto.PatchNoteRequest;
+import dev.jacklucas.notes_api.note.dto.PutNoteRequest;
+import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+import dev.jacklucas.notes_api.paging.Paging;
+import dev.jacklucas.notes_api.revision.RevisionRecorder;
+import dev.jacklucas.notes_api.tag.TagRepository;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/notes")
+public class NoteController {
+
+    private final NoteRepository noteRepository;
+    private final TagRepository tagRepository;
+    private final RevisionRecorder revisionRecorder;
+    private final UserCounters counters;
+
+    public NoteController(
+            NoteRepository noteRepository,
+            TagRepository tagRepository,
+            RevisionRecorder revisionRecorder,
+            UserCounters counters
+    ) {
+        this.noteRepository = noteRepository;
+        this.tagRepository = tagRepository;
+        this.revisionRecorder = revisionRecorder;
+        this.counters = counters;
+    }
+
+    // Route handles creating new notes.
+    @Transactional
+    @PostMapping
+    public Mono<ResponseEntity<ReadNoteResponse>> createNote(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestBody @Valid CreateNoteRequest request
+    ) {
+        // Get user.
+        final String userId = jwt.getSubject();
+
+        // Save the note, link its tags and record its first revision, then return it.
+        return noteRepository.insert(userId, request.title(), request.content())
+                .flatMap(note -> writeTags(note, request.tags())
+                        .then(revisionRecorder.recordCreated(note))
+                        .thenReturn(note))
+                .map(note -> ResponseEntity.status(HttpStatus.CREATED).body(ReadNoteResponse.from(note)));
+    }
+
+    // Route handles getting paginated list of notes.
+    @Transactional(readOnly = true)
+    @GetMapping
+    public Mono<Page<ReadNoteResponse>> listNotes(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestParam(required = false) String tag,
+            @PageableDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        final String userId = jwt.getSubject();
+
+        var param = (tag == null || tag.trim().isEmpty()) ? null : tag.trim();
+
+        // The total is only looked up when the page itself does not tell it.
+        return noteRepository.findByUserId(userId, param, pageable)
+                .map(ReadNoteResponse::from)
+                .collectList()
+                .flatMap(notes -> Paging.page(notes, pageable, () -> param == null
+                        ? counters.notes(userId)
+                        : noteRepository.countByTag(userId, param)));
+    }
+
+    // Route handles getting note by ID.
+    @Transactional(readOnly = true)
+    @GetMapping("/{id}")
+    public Mono<ReadNoteResponse> getNoteById(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id
+    ) {
+        final String ownerId = jwt.getSubject();
+
+        return noteRepository.findByIdAndUserId(id, ownerId)
+                .switchIfEmpty(Mono.error(() -> new NoteNotFound(id)))
+                .map(ReadNoteResponse::from);
+    }
+
+    // Route handles updating a Note by ID.
+    @Transactional
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<ReadNoteResponse>> updateNote(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id,
+            @RequestBody @Valid PutNoteRequest request
+    ) {
+        log.info("PUT /api/notes/{}", id);
+
+        final String userId = jwt.getSubject();
+
+        // Get the note that we want to update, then update the values and the tags.
+        return noteRepository.findForUpdateByIdAndUserId(id, userId)
+                .switchIfEmpty(Mono.error(() -> new NoteNotFound(id)))
+                .flatMap(note -> {
+                    var before = RevisionRecorder.State.of(note);
+                    note.setTitle(request.title().trim());
+                    note.setContent(request.content().trim());
+                    note.setArchived(request.archived());
+                    return save(before, note, request.tags() == null ? List.of() : request.tags());
+                })
+                .map(note -> ResponseEntity.status(HttpStatus.OK).body(ReadNoteResponse.from(note)));
+    }
+
+    @Transactional
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<ReadNoteResponse>> patchNote(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id,
+            @RequestBody @Valid PatchNoteRequest request) {
+        log.info("PATCH /api/notes/{}", id);
+
+        final String userId = jwt.getSubject();
+
+        // Get the note that we want to patch, then update the values that are present.
+        return noteRepository.findForUpdateByIdAndUserId(id, userId)
+                .switchIfEmpty(Mono.error(() -> new NoteNotFound(id)))
+                .flatMap(note -> {
+                    var before = RevisionRecorder.State.of(note);
+                    request.title().ifPresent(note::setTitle);
+                    request.content().ifPresent(note::setContent);
+                    request.archived().ifPresent(note::setArchived);
+                    return save(before, note, request.tags().orElse(null));
+                })
+                .map(note -> ResponseEntity.status(HttpStatus.OK).body(ReadNoteResponse.from(note)));
+    }
+
+    // Route handles deleting a note by ID.
+    @Transactional
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteNoteById(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id
+    ) {
+        log.info("DELETE /api/notes/{}", id);
+
+        final String userId = jwt.getSubject();
+
+        return noteRepository.delete(userId, id)
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.error(new NoteNotFound(id))
+                        : Mono.just(ResponseEntity.noContent().<Void>build()));
+    }
+
+    /* HELPERS */
+
+    /*
+     * Writes a changed note with its revision, and replaces its tags when `tags` is not null.
+     * Returns the note as stored, with its tags.
+     */
+    private Mono<Note> save(RevisionRecorder.State before, Note note, List<String> tags) {
+        var changed = !RevisionRecorder.State.of(note).equals(before);
+        var written = revisionRecorder.recordChange(before, note)
+                .then(changed ? noteRepository.update(note) : Mono.just(note));
+
+        return written.flatMap(saved -> writeTags(saved, tags)
+                .then(tags == null
+                        ? noteRepository.findByIdAndUserId(saved.getId(), saved.getUserId())
+                        : Mono.just(saved)));
+    }
+
+    // Resolves the tag names and links them as the note's only tags, setting them on the note too.
+    private Mono<Void> writeTags(Note note, List<String> tags) {
+        if (tags == null) {
+            return Mono.empty();
+        }
+        return tagRepository.resolve(note.getUserId(), normalize(tags))
+                .collectList()
+                .flatMap(resolved -> {
+                    note.setTags(new HashSet<>(resolved));
+                    return noteRepository.setTags(note.getUserId(), note.getId(), resolved);
+                });
+    }
+
+    // Removes blank values and trims whitespace.
+    private static Set<String> normalize(List<String> tags) {
+        Set<String> normalizedTags = new HashSet<>();
+        for (String t : tags) {
+            if (t != null && !t.isBlank()) {
+                normalizedTags.add(t.trim());
+            }
+        }
+        return normalizedTags;
+    }
+
+}
@@ -0,0 +1,178 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.paging.Paging;
+import dev.jacklucas.notes_api.tag.Tag;
+import dev.jacklucas.notes_api.tag.TagRepository;
+import io.r2dbc.spi.Readable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.*;
+
+/*
+ * The notes table and its tag links over R2DBC. Every statement filters on user_id, so Postgres only ever touches
+ * the user's partition; notes are keyed by (user_id, id), which Spring Data R2DBC entities cannot map, hence plain SQL.
+ * Notes are read with their tags: one query for the rows and one for the tags of all of them.
+ */
+@Repository
+public class NoteRepository {
+
+    static final String COLUMNS = "n.id, n.user_id, n.title, n.content, n.archived, n.revision, n.created_at, n.updated_at";
+    static final Map<String, String> SORTS = Map.of(
+            "id", "n.id",
+            "title", "n.title",
+            "content", "n.content",
+            "archived", "n.archived",
+            "revision", "n.revision",
+            "createdAt", "n.created_at",
+            "updatedAt", "n.updated_at");
+    static final String HAS_TAG = " and exists (select 1 from note_tags nt join tags t"
+            + " on t.user_id = nt.user_id and t.id = nt.tag_id"
+            + " where nt.user_id = :userId and nt.note_id = n.id and t.name = :tag)";
+
+    private final DatabaseClient db;
+
+    public NoteRepository(DatabaseClient db) {
+        this.db = db;
+    }
+
+    // One page of the user's notes, optionally only those with the tag, without a count query.
+    public Flux<Note> findByUserId(String userId, String tag, Pageable pageable) {
+        var sql = "select " + COLUMNS + " from notes n where n.user_id = :userId"
+                + (tag == null ? "" : HAS_TAG) + Paging.clause(pageable, SORTS);
+        var spec = db.sql(sql).bind("userId", userId);
+        if (tag != null) {
+            spec = spec.bind("tag", tag);
+        }
+        return spec.map(NoteRepository::note).all()
+                .collectList()
+                .flatMapMany(notes -> withTags(userId, notes));
+    }
+
+    // The user's notes with the tag; counted only when the page cannot tell.
+    public Mono<Long> countByTag(String userId, String tag) {
+        return db.sql("select count(*) from notes n where n.user_id = :userId" + HAS_TAG)
+                .bind("userId", userId)
+                .bind("tag", tag)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    public Mono<Note> findByIdAndUserId(UUID id, String userId) {
+        return findRow(id, userId, "")
+                .flatMap(note -> withTags(userId, List.of(note)).next());
+    }
+
+    // The row alone, locked until the transaction ends, for a read-modify-write.
+    public Mono<Note> findForUpdateByIdAndUserId(UUID id, String userId) {
+        return findRow(id, userId, " for update");
+    }
+
+    // A new note at revision 1, without tags.
+    public Mono<Note> insert(String userId, String title, String content) {
+        return db.sql("""
+                        insert into notes as n (user_id, title, content, archived, revision)
+                        values (:userId, :title, :content, false, 1)
+                        returning\s""" + COLUMNS)
+                .bind("userId", userId)
+                .bind("title", title)
+                .bind("content", content)
+                .map(NoteRepository::note)
+                .one();
+    }
+
+    // Writes the note's fields and revision and bumps updated_at. Tags are left alone.
+    public Mono<Note> update(Note note) {
+        var spec = db.sql("""
+                        update notes n
+                        set title = :title, content = :content, archived = :archived, revision = :revision,
+                            updated_at = now()
+                        where n.user_id = :userId and n.id = :id
+                        returning\s""" + COLUMNS)
+                .bind("userId", note.getUserId())
+                .bind("id", note.getId())
+                .bind("title", note.getTitle())
+                .bind("archived", note.isArchived())
+                .bind("revision", note.getRevision());
+        spec = note.getContent() == null ? spec.bindNull("content", String.class) : spec.bind("content", note.getContent());
+        return spec.map(NoteRepository::note).one();
+    }
+
+    // Makes the tags the note's only tags: drops the other links and adds the missing ones, in one statement.
+    public Mono<Void> setTags(String userId, UUID noteId, Collection<Tag> tags) {
+        var ids = tags.stream().map(t -> t.getId().toString()).distinct().toArray(String[]::new);
+        return db.sql("""
+                        with dropped as (
+                            delete from note_tags
+                            where user_id = :userId and note_id = :noteId and tag_id <> all(cast(:tagIds as uuid[]))
+                        )
+                        insert into note_tags (user_id, note_id, tag_id)
+                        select :userId, :noteId, unnest(cast(:tagIds as uuid[]))
+                        on conflict do nothing
+                        """)
+                .bind("userId", userId)
+                .bind("noteId", noteId)
+                .bind("tagIds", ids)
+                .then();
+    }
+
+    // Deletes the note; its tag links and revisions go with it through their foreign keys.
+    public Mono<Long> delete(String userId, UUID id) {
+        return db.sql("delete from notes where user_id = :userId and id = :id")
+                .bind("userId", userId)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /* HELPERS */
+
+    private Mono<Note> findRow(UUID id, String userId, String suffix) {
+        return db.sql("select " + COLUMNS + " from notes n where n.user_id = :userId and n.id = :id" + suffix)
+                .bind("userId", userId)
+                .bind("id", id)
+                .map(NoteRepository::note)
+                .one();
+    }
+
+    // Fills in the tags of all the notes with one query, keeping the notes' order.
+    private Flux<Note> withTags(String userId, List<Note> notes) {
+        if (notes.isEmpty()) {
+            return Flux.empty();
+        }
+        Map<UUID, Note> byId = new HashMap<>();
+        for (var note : notes) {
+            byId.put(note.getId(), note);
+        }
+        return db.sql("""
+                        select nt.note_id, t.id, t.user_id, t.name, t.created_at
+                        from note_tags nt join tags t on t.user_id = nt.user_id and t.id = nt.tag_id
+                        where nt.user_id = :userId and t.user_id = :userId and nt.note_id = any(cast(:ids as uuid[]))
+                        """)
+                .bind("userId", userId)
+                .bind("ids", byId.keySet().stream().map(UUID::toString).toArray(String[]::new))
+                .map((row, meta) -> {
+                    byId.get(row.get("note_id", UUID.class)).getTags().add(TagRepository.tag(row));
+                    return true;
+                })
+                .all()
+                .thenMany(Flux.fromIterable(notes));
+    }
+
+    static Note note(Readable row) {
+        return Note.builder()
+                .id(row.get("id", UUID.class))
+                .userId(row.get("user_id", String.class))
+                .title(row.get("title", String.class))
+                .content(row.get("content", String.class))
+                .archived(Boolean.TRUE.equals(row.get("archived", Boolean.class)))
+                .revision(row.get("revision", Integer.class))
+                .createdAt(row.get("created_at", Instant.class))
+                .updatedAt(row.get("updated_at", Instant.class))
+                .build();
+    }
+}
@@ -0,0 +1,11 @@
+package dev.jacklucas.notes_api.paging;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidSort extends RuntimeException {
+    public InvalidSort(String property) {
+        super("Cannot sort by (%s).".formatted(property));
+    }
+}
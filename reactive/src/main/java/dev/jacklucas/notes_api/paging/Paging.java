@@ -0,0 +1,53 @@
+package dev.jacklucas.notes_api.paging;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/*
+ * Pageable to SQL for the hand-written queries, and back to a Page.
+ * Sort properties are the JSON field names the servlet app sorts by; each maps to a column, and anything else is
+ * refused rather than spliced into the query.
+ */
+public final class Paging {
+
+    private Paging() {
+    }
+
+    // The order by, limit and offset of one page. Ties keep the table's order, as with JPA.
+    public static String clause(Pageable pageable, Map<String, String> columns) {
+        var sql = new StringBuilder();
+        for (var order : pageable.getSort()) {
+            var column = columns.get(order.getProperty());
+            if (column == null) {
+                throw new InvalidSort(order.getProperty());
+            }
+            sql.append(sql.isEmpty() ? " order by " : ", ")
+                    .append(order.isIgnoreCase() ? "lower(" + column + ")" : column)
+                    .append(order.isAscending() ? " asc" : " desc");
+        }
+        if (pageable.isPaged()) {
+            sql.append(" limit ").append(pageable.getPageSize()).append(" offset ").append(pageable.getOffset());
+        }
+        return sql.toString();
+    }
+
+    // Like PageableExecutionUtils.getPage: the total is only looked up when the page itself does not tell it.
+    public static <T> Mono<Page<T>> page(List<T> content, Pageable pageable, Supplier<Mono<Long>> total) {
+        if (pageable.isUnpaged() || pageable.getOffset() == 0) {
+            if (pageable.isUnpaged() || pageable.getPageSize() > content.size()) {
+                return Mono.just(new PageImpl<>(content, pageable, content.size()));
+            }
+            return total.get().map(t -> new PageImpl<>(content, pageable, t));
+        }
+        if (!content.isEmpty() && pageable.getPageSize() > content.size()) {
+            return Mono.just(new PageImpl<>(content, pageable, pageable.getOffset() + content.size()));
+        }
+        return total.get().map(t -> new PageImpl<>(content, pageable, t));
+    }
+}
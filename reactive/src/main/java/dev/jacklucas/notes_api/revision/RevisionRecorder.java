@@ -0,0 +1,72 @@
+package dev.jacklucas.notes_api.revision;
+
+import dev.jacklucas.notes_api.note.Note;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/*
+ * Records note writes as revisions, inside the caller's transaction.
+ * Every revision written here is a snapshot. The servlet app's reader rebuilds a revision from the nearest snapshot
+ * before it, so histories stay readable there whichever app wrote them; they just take more space than deltas.
+ */
+@Component
+public class RevisionRecorder {
+
+    // The tracked fields of a note, captured before a write.
+    public record State(String title, String content, boolean archived) {
+        public static State of(Note note) {
+            return new State(note.getTitle(), note.getContent(), note.isArchived());
+        }
+    }
+
+    private final DatabaseClient db;
+
+    public RevisionRecorder(DatabaseClient db) {
+        this.db = db;
+    }
+
+    // Records a newly created note as its first revision.
+    public Mono<Void> recordCreated(Note note) {
+        return snapshot(note.getUserId(), note.getId(), note.getRevision(), State.of(note));
+    }
+
+    // Records the change from `before` to the note's current state, and bumps the note's revision.
+    public Mono<Void> recordChange(State before, Note note) {
+        var after = State.of(note);
+        if (after.equals(before)) {
+            return Mono.empty();
+        }
+
+        // History for notes from before revisions existed starts with the state they had.
+        var legacy = Mono.<Void>empty();
+        if (note.getRevision() == 0) {
+            legacy = snapshot(note.getUserId(), note.getId(), 1, before);
+            note.setRevision(1);
+        }
+
+        int revision = note.getRevision() + 1;
+        note.setRevision(revision);
+        return legacy.then(snapshot(note.getUserId(), note.getId(), revision, after));
+    }
+
+    /* HELPERS */
+
+    private Mono<Void> snapshot(String userId, UUID noteId, int revision, State state) {
+        var spec = db.sql("""
+                        insert into note_revisions (user_id, note_id, revision, snapshot, title, archived, content,
+                                                    content_length)
+                        values (:userId, :noteId, :revision, true, :title, :archived, :content, :length)
+                        """)
+                .bind("userId", userId)
+                .bind("noteId", noteId)
+                .bind("revision", revision)
+                .bind("title", state.title())
+                .bind("archived", state.archived())
+                .bind("length", state.content() == null ? 0 : state.content().length());
+        spec = state.content() == null ? spec.bindNull("content", String.class) : spec.bind("content", state.content());
+        return spec.then();
+    }
+}
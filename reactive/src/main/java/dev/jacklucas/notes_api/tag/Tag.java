@@ -0,0 +1,23 @@
+package dev.jacklucas.notes_api.tag;
+
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// A row of tags. Same getters as the servlet app's Tag, so the shared ReadTagResponse maps either.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Tag {
+
+    private UUID id;
+
+    private String userId;
+
+    private String name;
+
+    private Instant createdAt;
+}
@@ -0,0 +1,174 @@
+package dev.jacklucas.notes_api.tag;
+
+import dev.jacklucas.notes_api.counter.UserCounters;
+import dev.jacklucas.notes_api.paging.Paging;
+import dev.jacklucas.notes_api.tag.dto.CreateTagRequest;
+import dev.jacklucas.notes_api.tag.dto.PutTagRequest;
+import dev.jacklucas.notes_api.tag.dto.ReadTagResponse;
+import dev.jacklucas.notes_api.tag.dto.TagSuggestionResponse;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+import java.util.UUID;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/tags")
+public class TagController {
+
+    private final TagRepository tagRepository;
+    private final UserCounters counters;
+
+    public TagController(TagRepository tagRepository, UserCounters counters) {
+        this.tagRepository = tagRepository;
+        this.counters = counters;
+    }
+
+    @Transactional
+    @PostMapping
+    public Mono<ResponseEntity<ReadTagResponse>> createTag(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestBody @Valid CreateTagRequest request
+    ) {
+        // Trim the tag name.
+        String userId = jwt.getSubject();
+        var tagName = request.name().trim();
+
+        // Case that the tag exists; otherwise, build the tag and save it.
+        return tagRepository.findByNameAndUserId(tagName, userId)
+                .map(existing -> ResponseEntity.status(HttpStatus.CONFLICT).body(ReadTagResponse.from(existing)))
+                .switchIfEmpty(Mono.defer(() -> tagRepository.insert(userId, tagName)
+                        .map(saved -> ResponseEntity.status(HttpStatus.CREATED).body(ReadTagResponse.from(saved)))));
+    }
+
+    @Transactional(readOnly = true)
+    @GetMapping
+    public Mono<Page<ReadTagResponse>> listTags(
+            @AuthenticationPrincipal Jwt jwt,
+            Pageable pageable
+    ) {
+        String userId = jwt.getSubject();
+
+        // The total is only looked up when the page itself does not tell it.
+        return tagRepository.findByUserId(userId, pageable)
+                .map(ReadTagResponse::from)
+                .collectList()
+                .flatMap(tags -> Paging.page(tags, pageable, () -> counters.tags(userId)));
+    }
+
+    // Route handles autocomplete: the user's tags starting with the prefix, ignoring case, most used first.
+    @Transactional(readOnly = true)
+    @GetMapping("/suggest")
+    public Flux<TagSuggestionResponse> suggestTags(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        final String userId = jwt.getSubject();
+
+        // Escape LIKE wildcards so the prefix only ever matches literally.
+        var escaped = prefix.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+
+        return tagRepository.suggest(userId, escaped + "%", Math.clamp(limit, 1, 50));
+    }
+
+    @Transactional(readOnly = true)
+    @GetMapping("/{id}")
+    public Mono<ReadTagResponse> getTagById(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id
+    ) {
+        final String userId = jwt.getSubject();
+
+        return tagRepository.findByIdAndUserId(id, userId)
+                .switchIfEmpty(Mono.error(() -> new TagNotFound(id)))
+                .map(ReadTagResponse::from);
+    }
+
+    @Transactional
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<ReadTagResponse>> updateTag(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id,
+            @RequestBody @Valid PutTagRequest request
+    ) {
+        log.info("PUT /api/tags/{} -> '{}'", id, request.name());
+
+        final String userId = jwt.getSubject();
+        var trimmedName = request.name().trim();
+
+        // Find the tag that we want to update.
+        return tagRepository.findByIdAndUserId(id, userId)
+                .switchIfEmpty(Mono.error(() -> new TagNotFound(id)))
+                .flatMap(existingTag -> {
+                    // Case that the new name and existing name are equal.
+                    if (existingTag.getName().equals(trimmedName))
+                        return Mono.just(ResponseEntity.status(HttpStatus.OK).body(ReadTagResponse.from(existingTag)));
+
+                    // Case that the new name already exists in the DB; otherwise rename the tag.
+                    return tagRepository.findByNameAndUserId(trimmedName, userId)
+                            .map(clash -> ResponseEntity.status(HttpStatus.CONFLICT).body(ReadTagResponse.from(existingTag)))
+                            .switchIfEmpty(Mono.defer(() -> tagRepository.rename(userId, id, trimmedName)
+                                    .map(renamed -> ResponseEntity.status(HttpStatus.OK).body(ReadTagResponse.from(renamed)))));
+                });
+    }
+
+    @Transactional
+    @PostMapping("/{id}/merge-into/{targetId}")
+    public Mono<ResponseEntity<ReadTagResponse>> mergeTag(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id,
+            @PathVariable UUID targetId
+    ) {
+        log.info("POST /api/tags/{}/merge-into/{}", id, targetId);
+
+        final String userId = jwt.getSubject();
+
+        // Both tags must belong to the user.
+        var source = tagRepository.findByIdAndUserId(id, userId)
+                .switchIfEmpty(Mono.error(() -> new TagNotFound(id)));
+        var target = tagRepository.findByIdAndUserId(targetId, userId)
+                .switchIfEmpty(Mono.error(() -> new TagNotFound(targetId)));
+
+        return source.then(target).flatMap(t -> {
+            // Case that the tag is merged into itself.
+            if (id.equals(targetId))
+                return Mono.just(ResponseEntity.status(HttpStatus.OK).body(ReadTagResponse.from(t)));
+
+            // Relink the notes and drop the source tag without loading any notes.
+            return tagRepository.mergeInto(userId, id, targetId)
+                    .doOnNext(notesTouched -> log.info("Merged tag {} into {} across {} notes", id, targetId, notesTouched))
+                    .thenReturn(ResponseEntity.status(HttpStatus.OK).body(ReadTagResponse.from(t)));
+        });
+    }
+
+    @Transactional
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteTagById(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id
+    ) {
+        log.info("DELETE /api/tags/{}", id);
+
+        final String userId = jwt.getSubject();
+
+        return tagRepository.delete(userId, id)
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.error(new TagNotFound(id))
+                        : Mono.just(ResponseEntity.noContent().<Void>build()));
+    }
+}
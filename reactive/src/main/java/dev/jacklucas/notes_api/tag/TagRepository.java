@@ -0,0 +1,164 @@
+package dev.jacklucas.notes_api.tag;
+
+import dev.jacklucas.notes_api.paging.Paging;
+import dev.jacklucas.notes_api.tag.dto.TagSuggestionResponse;
+import io.r2dbc.spi.Readable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+ * The tags table over R2DBC. Every statement filters on user_id, so Postgres only ever touches the user's partition;
+ * tags are keyed by (user_id, id), which Spring Data R2DBC entities cannot map, hence plain SQL.
+ */
+@Repository
+public class TagRepository {
+
+    static final String COLUMNS = "t.id, t.user_id, t.name, t.created_at";
+    static final Map<String, String> SORTS = Map.of("id", "t.id", "name", "t.name", "createdAt", "t.created_at");
+
+    private final DatabaseClient db;
+
+    public TagRepository(DatabaseClient db) {
+        this.db = db;
+    }
+
+    // One page of the user's tags without a count query; the total comes from UserCounters.
+    public Flux<Tag> findByUserId(String userId, Pageable pageable) {
+        return db.sql("select " + COLUMNS + " from tags t where t.user_id = :userId" + Paging.clause(pageable, SORTS))
+                .bind("userId", userId)
+                .map(TagRepository::tag)
+                .all();
+    }
+
+    public Mono<Tag> findByIdAndUserId(UUID id, String userId) {
+        return db.sql("select " + COLUMNS + " from tags t where t.user_id = :userId and t.id = :id")
+                .bind("userId", userId)
+                .bind("id", id)
+                .map(TagRepository::tag)
+                .one();
+    }
+
+    public Mono<Tag> findByNameAndUserId(String name, String userId) {
+        return db.sql("select " + COLUMNS + " from tags t where t.user_id = :userId and t.name = :name limit 1")
+                .bind("userId", userId)
+                .bind("name", name)
+                .map(TagRepository::tag)
+                .one();
+    }
+
+    public Mono<Tag> insert(String userId, String name) {
+        return db.sql("insert into tags as t (user_id, name) values (:userId, :name) returning " + COLUMNS)
+                .bind("userId", userId)
+                .bind("name", name)
+                .map(TagRepository::tag)
+                .one();
+    }
+
+    public Mono<Tag> rename(String userId, UUID id, String name) {
+        return db.sql("update tags t set name = :name where t.user_id = :userId and t.id = :id returning " + COLUMNS)
+                .bind("userId", userId)
+                .bind("id", id)
+                .bind("name", name)
+                .map(TagRepository::tag)
+                .one();
+    }
+
+    // Unlinks the tag from its notes too, through the note_tags foreign key.
+    public Mono<Long> delete(String userId, UUID id) {
+        return db.sql("delete from tags where user_id = :userId and id = :id")
+                .bind("userId", userId)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // The user's tags with these names, creating the missing ones, in one statement.
+    public Flux<Tag> resolve(String userId, Collection<String> names) {
+        if (names.isEmpty()) {
+            return Flux.empty();
+        }
+        return db.sql("""
+                        with names as (
+                            select distinct unnest(cast(:names as text[])) as name
+                        ), existing as (
+                            select %1$s from tags t where t.user_id = :userId and t.name in (select name from names)
+                        ), created as (
+                            insert into tags as t (user_id, name)
+                            select :userId, n.name from names n where n.name not in (select name from existing)
+                            returning %1$s
+                        )
+                        select * from existing
+                        union all
+                        select * from created
+                        """.formatted(COLUMNS))
+                .bind("userId", userId)
+                .bind("names", names.toArray(String[]::new))
+                .map(TagRepository::tag)
+                .all();
+    }
+
+    // Tags whose lowercased name matches the LIKE pattern, most used first. Uses idx_tags_owner_lower_name and the
+    // trigger-kept uses column (V11).
+    public Flux<TagSuggestionResponse> suggest(String userId, String pattern, int limit) {
+        return db.sql("""
+                        select t.id, t.name, t.uses
+                        from tags t
+                        where t.user_id = :userId and lower(t.name) like :pattern escape '\\'
+                        order by t.uses desc, lower(t.name)
+                        limit :limit
+                        """)
+                .bind("userId", userId)
+                .bind("pattern", pattern)
+                .bind("limit", limit)
+                .map(row -> new TagSuggestionResponse(row.get("id", UUID.class), row.get("name", String.class),
+                        row.get("uses", Long.class)))
+                .all();
+    }
+
+    /*
+     * Moves every note from the source tag to the target and deletes the source, in one statement.
+     * Notes that already had both tags keep a single link. Returns how many notes were touched.
+     */
+    public Mono<Long> mergeInto(String userId, UUID sourceId, UUID targetId) {
+        return db.sql("""
+                        with moved as (
+                            delete from note_tags where user_id = :userId and tag_id = :sourceId
+                            returning note_id
+                        ), linked as (
+                            insert into note_tags (user_id, note_id, tag_id)
+                            select :userId, note_id, :targetId from moved
+                            on conflict do nothing
+                        ), touched as (
+                            update notes set updated_at = now()
+                            where user_id = :userId and id in (select note_id from moved)
+                            returning id
+                        ), dropped as (
+                            delete from tags where user_id = :userId and id = :sourceId
+                        )
+                        select count(*) from touched
+                        """)
+                .bind("userId", userId)
+                .bind("sourceId", sourceId)
+                .bind("targetId", targetId)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    // Maps a row with the COLUMNS of a tag. NoteRepository reads the tags of notes with it too.
+    public static Tag tag(Readable row) {
+        return Tag.builder()
+                .id(row.get("id", UUID.class))
+                .userId(row.get("user_id", String.class))
+                .name(row.get("name", String.class))
+                .createdAt(row.get("created_at", Instant.class))
+                .build();
+    }
+}
@@ -0,0 +1,236 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockJwt;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+@Import(EmbeddedPostgresTestConfig.class)
+class NoteControllerIT {
+
+    @Autowired
+    WebTestClient web;
+    @Autowired
+    DatabaseClient db;
+
+    private String user;
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresTestConfig.properties(registry);
+    }
+
+    @BeforeEach
+    void newUser() {
+        user = "reactive-" + UUID.randomUUID();
+    }
+
+    private WebTestClient as(String subject) {
+        return web.mutateWith(mockJwt().jwt(j -> j.subject(subject)));
+    }
+
+    private JsonNode createNote(String subject, String title, List<String> tags) {
+        return as(subject).post().uri("/api/notes")
+                .bodyValue(Map.of("title", title, "content", "Body of " + title, "tags", tags))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+    }
+
+    private static TreeSet<String> tags(JsonNode note) {
+        var tags = new TreeSet<String>();
+        note.get("tags").forEach(t -> tags.add(t.asText()));
+        return tags;
+    }
+
+    private long count(String sql, Object... args) {
+        var spec = db.sql(sql);
+        for (int i = 0; i < args.length; i++) {
+            spec = spec.bind(i, args[i]);
+        }
+        return spec.map(row -> row.get(0, Long.class)).one().block();
+    }
+
+    @Test
+    @DisplayName("Creates a note with its tags and first revision, and reads it back")
+    void createAndGet() {
+        var created = createNote(user, "First", List.of(" work ", "home", "work", " "));
+
+        assertThat(created.get("title").asText()).isEqualTo("First");
+        assertThat(created.get("archived").asBoolean()).isFalse();
+        assertThat(created.get("revision").asInt()).isEqualTo(1);
+        assertThat(tags(created)).containsExactly("home", "work");
+
+        var id = created.get("id").asText();
+        var read = as(user).get().uri("/api/notes/{id}", id)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+        assertThat(read.get("content").asText()).isEqualTo("Body of First");
+        assertThat(tags(read)).containsExactly("home", "work");
+        assertThat(count("select count(*) from note_revisions where user_id = $1 and note_id = $2 and revision = 1",
+                user, UUID.fromString(id))).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Lists a user's notes newest first, filtered by tag, with totals")
+    void list() {
+        for (int i = 0; i < 5; i++) {
+            createNote(user, "Note " + i, i % 2 == 0 ? List.of("even") : List.of());
+        }
+        createNote("reactive-other-" + UUID.randomUUID(), "Theirs", List.of("even"));
+
+        var page = as(user).get().uri("/api/notes?size=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+        assertThat(page.get("totalElements").asLong()).isEqualTo(5);
+        assertThat(page.get("totalPages").asInt()).isEqualTo(3);
+        assertThat(page.get("content").get(0).get("title").asText()).isEqualTo("Note 4");
+
+        var even = as(user).get().uri("/api/notes?tag= even &sort=title,asc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+        assertThat(even.get("totalElements").asLong()).isEqualTo(3);
+        assertThat(even.get("content").get(0).get("title").asText()).isEqualTo("Note 0");
+        assertThat(tags(even.get("content").get(0))).containsExactly("even");
+    }
+
+    @Test
+    @DisplayName("Refuses sorting by a field notes do not have")
+    void invalidSort() {
+        as(user).get().uri("/api/notes?sort=userId")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.message").isEqualTo("Cannot sort by (userId).");
+    }
+
+    @Test
+    @DisplayName("PUT replaces fields and tags and records a revision")
+    void put() {
+        var id = createNote(user, "Before", List.of("old")).get("id").asText();
+
+        var updated = as(user).put().uri("/api/notes/{id}", id)
+                .bodyValue(Map.of("title", " After ", "content", " New body ", "tags", List.of("new"), "archived", true))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+
+        assertThat(updated.get("title").asText()).isEqualTo("After");
+        assertThat(updated.get("content").asText()).isEqualTo("New body");
+        assertThat(updated.get("archived").asBoolean()).isTrue();
+        assertThat(updated.get("revision").asInt()).isEqualTo(2);
+        assertThat(tags(updated)).containsExactly("new");
+        assertThat(count("select count(*) from note_revisions where user_id = $1 and note_id = $2",
+                user, UUID.fromString(id))).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("PATCH changes only the fields present and skips revisions for tag-only changes")
+    void patch() {
+        var id = createNote(user, "Title", List.of("keep")).get("id").asText();
+
+        var tagged = as(user).patch().uri("/api/notes/{id}", id)
+                .bodyValue(Map.of("tags", List.of("keep", "added")))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+        assertThat(tagged.get("revision").asInt()).isEqualTo(1);
+        assertThat(tags(tagged)).containsExactly("added", "keep");
+
+        var archived = as(user).patch().uri("/api/notes/{id}", id)
+                .bodyValue(Map.of("archived", true))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+        assertThat(archived.get("title").asText()).isEqualTo("Title");
+        assertThat(archived.get("archived").asBoolean()).isTrue();
+        assertThat(archived.get("revision").asInt()).isEqualTo(2);
+        assertThat(tags(archived)).containsExactly("added", "keep");
+
+        as(user).patch().uri("/api/notes/{id}", id)
+                .bodyValue(Map.of("title", "  "))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.fieldErrors[0].name").isEqualTo("title");
+    }
+
+    @Test
+    @DisplayName("Starts the history of a note from before revisions with its old state")
+    void legacyNote() {
+        var id = UUID.fromString(createNote(user, "Legacy", List.of()).get("id").asText());
+        db.sql("delete from note_revisions where user_id = $1 and note_id = $2").bind(0, user).bind(1, id)
+                .then().block();
+        db.sql("update notes set revision = 0 where user_id = $1 and id = $2").bind(0, user).bind(1, id)
+                .then().block();
+
+        var patched = as(user).patch().uri("/api/notes/{id}", id)
+                .bodyValue(Map.of("content", "Changed"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+
+        assertThat(patched.get("revision").asInt()).isEqualTo(2);
+        assertThat(count("select count(*) from note_revisions where user_id = $1 and note_id = $2 and revision = 1"
+                + " and content = 'Body of Legacy'", user, id)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deletes a note, and answers 404 for notes of other users")
+    void deleteAndNotFound() {
+        var id = createNote(user, "Doomed", List.of("x")).get("id").asText();
+        var other = "reactive-other-" + UUID.randomUUID();
+
+        as(other).get().uri("/api/notes/{id}", id).exchange().expectStatus().isNotFound();
+        as(other).delete().uri("/api/notes/{id}", id).exchange().expectStatus().isNotFound();
+
+        as(user).delete().uri("/api/notes/{id}", id).exchange().expectStatus().isNoContent();
+        as(user).get().uri("/api/notes/{id}", id)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Note (%s) not found.".formatted(id))
+                .jsonPath("$.path").isEqualTo("/api/notes/" + id);
+    }
+
+    @Test
+    @DisplayName("Rejects invalid and malformed bodies with the servlet app's error shape")
+    void errors() {
+        as(user).post().uri("/api/notes")
+                .bodyValue(Map.of("content", ""))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Validation failed.")
+                .jsonPath("$.fieldErrors[0].name").isEqualTo("title");
+
+        as(user).post().uri("/api/notes")
+                .header("Content-Type", "application/json")
+                .bodyValue("{not json")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.message").isEqualTo("Malformed JSON.");
+
+        web.get().uri("/api/notes").exchange().expectStatus().isUnauthorized();
+    }
+}
@@ -0,0 +1,55 @@
+package dev.jacklucas.notes_api.support;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+ * Backs a full application context with an embedded Postgres, reached over R2DBC by the app and JDBC by Flyway.
+ * The server is started once per JVM and shared by every context, so tests isolate their data by user.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class EmbeddedPostgresTestConfig {
+
+    private static EmbeddedPostgres postgres;
+
+    public static synchronized EmbeddedPostgres postgres() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to start embedded Postgres.", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException ignored) {
+                }
+            }));
+        }
+        return postgres;
+    }
+
+    // Points R2DBC and Flyway at the server. Test classes call this from a @DynamicPropertySource method.
+    public static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> "r2dbc:postgresql://localhost:%d/postgres".formatted(postgres().getPort()));
+        registry.add("spring.r2dbc.username", () -> "postgres");
+        registry.add("spring.r2dbc.password", () -> "postgres");
+        registry.add("spring.flyway.url", () -> postgres().getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.flyway.user", () -> "postgres");
+        registry.add("spring.flyway.password", () -> "postgres");
+    }
+
+    // Requests authenticate with the mockJwt() configurer, so real tokens are never decoded.
+    @Bean
+    public ReactiveJwtDecoder jwtDecoder() {
+        return token -> Mono.error(new BadJwtException("Tokens are not decoded in tests."));
+    }
+}
@@ -0,0 +1,158 @@
+package dev.jacklucas.notes_api.tag;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockJwt;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+@Import(EmbeddedPostgresTestConfig.class)
+class TagControllerIT {
+
+    @Autowired
+    WebTestClient web;
+
+    private String user;
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresTestConfig.properties(registry);
+    }
+
+    @BeforeEach
+    void newUser() {
+        user = "reactive-tags-" + UUID.randomUUID();
+    }
+
+    private WebTestClient as(String subject) {
+        return web.mutateWith(mockJwt().jwt(j -> j.subject(subject)));
+    }
+
+    private JsonNode createTag(String name) {
+        return as(user).post().uri("/api/tags")
+                .bodyValue(Map.of("name", name))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+    }
+
+    private String createNote(List<String> tags) {
+        return as(user).post().uri("/api/notes")
+                .bodyValue(Map.of("title", "Note", "content", "", "tags", tags))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(JsonNode.class).returnResult().getResponseBody().get("id").asText();
+    }
+
+    private List<String> tagsOf(String noteId) {
+        var note = as(user).get().uri("/api/notes/{id}", noteId)
+                .exchange()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+        var tags = new ArrayList<String>();
+        note.get("tags").forEach(t -> tags.add(t.asText()));
+        return tags;
+    }
+
+    @Test
+    @DisplayName("Creates, lists, reads, renames and deletes tags")
+    void crud() {
+        var work = createTag(" work ");
+        assertThat(work.get("name").asText()).isEqualTo("work");
+        var home = createTag("home");
+
+        // Creating an existing name answers 409 with the existing tag.
+        as(user).post().uri("/api/tags")
+                .bodyValue(Map.of("name", "work"))
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody().jsonPath("$.id").isEqualTo(work.get("id").asText());
+
+        as(user).get().uri("/api/tags?sort=name")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.totalElements").isEqualTo(2)
+                .jsonPath("$.content[0].name").isEqualTo("home");
+
+        // Renaming onto another tag's name is a conflict; renaming to a free name works.
+        as(user).put().uri("/api/tags/{id}", work.get("id").asText())
+                .bodyValue(Map.of("name", "home"))
+                .exchange()
+                .expectStatus().isEqualTo(409);
+        as(user).put().uri("/api/tags/{id}", work.get("id").asText())
+                .bodyValue(Map.of("name", "office"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.name").isEqualTo("office");
+
+        as(user).delete().uri("/api/tags/{id}", home.get("id").asText()).exchange().expectStatus().isNoContent();
+        as(user).get().uri("/api/tags/{id}", home.get("id").asText()).exchange().expectStatus().isNotFound();
+        as("reactive-other-" + UUID.randomUUID()).get().uri("/api/tags/{id}", work.get("id").asText())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Suggests tags by prefix, most used first, matching wildcards literally")
+    void suggest() {
+        createNote(List.of("Project", "progress"));
+        createNote(List.of("progress"));
+        createNote(List.of("pro_x", "other"));
+
+        as(user).get().uri("/api/tags/suggest?prefix=PRO")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].name").isEqualTo("progress")
+                .jsonPath("$[0].uses").isEqualTo(2);
+
+        as(user).get().uri("/api/tags/suggest?prefix=pro_&limit=0")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].name").isEqualTo("pro_x");
+    }
+
+    @Test
+    @DisplayName("Merges a tag into another, keeping one link on notes that had both")
+    void merge() {
+        var both = createNote(List.of("old", "new"));
+        var oldOnly = createNote(List.of("old"));
+        var tags = as(user).get().uri("/api/tags?sort=name")
+                .exchange()
+                .expectBody(JsonNode.class).returnResult().getResponseBody().get("content");
+        var newId = tags.get(0).get("id").asText();
+        var oldId = tags.get(1).get("id").asText();
+
+        as(user).post().uri("/api/tags/{id}/merge-into/{targetId}", oldId, newId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.name").isEqualTo("new");
+
+        assertThat(tagsOf(both)).containsExactly("new");
+        assertThat(tagsOf(oldOnly)).containsExactly("new");
+        as(user).get().uri("/api/tags/{id}", oldId).exchange().expectStatus().isNotFound();
+        as(user).post().uri("/api/tags/{id}/merge-into/{targetId}", oldId, newId)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
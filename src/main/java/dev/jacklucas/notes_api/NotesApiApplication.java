@@ -1,9 +1,12 @@
 package dev.jacklucas.notes_api;
 
+import dev.jacklucas.notes_api.config.NotesRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(NotesRuntimeHints.class)
 public class NotesApiApplication {
 
 	public static void main(String[] args) {
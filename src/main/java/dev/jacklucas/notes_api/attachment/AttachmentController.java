@@ -0,0 +1,271 @@
+package dev.jacklucas.notes_api.attachment;
+
+import dev.jacklucas.notes_api.attachment.dto.AttachmentResponse;
+import dev.jacklucas.notes_api.note.NoteNotFound;
+import dev.jacklucas.notes_api.note.NoteRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * Files attached to a note. Uploads are the raw request body, streamed into ContentStore; downloads come straight from
+ * the stored file with ETag and single-range support. Neither holds a database connection while bytes are moving.
+ */
+@RestController
+@RequestMapping("/api/notes/{noteId}/attachments")
+public class AttachmentController {
+
+    // Tomcat's sendfile hand-off: set these request attributes and the connector copies the file to the socket itself.
+    static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Below this, copying is cheaper than setting up sendfile; Tomcat's DefaultServlet uses the same cut-off.
+    static final long SENDFILE_MIN_BYTES = 48 * 1024;
+    // Types a browser may show in place. Anything else, SVG and HTML included, can run script and is downloaded.
+    static final Set<String> INLINE_TYPES = Set.of("image/png", "image/jpeg", "image/gif", "image/webp",
+            "application/pdf");
+
+    private final NoteAttachmentRepository attachmentRepository;
+    private final NoteRepository noteRepository;
+    private final ContentStore store;
+    private final long maxBytes;
+
+    public AttachmentController(
+            NoteAttachmentRepository attachmentRepository,
+            NoteRepository noteRepository,
+            ContentStore store,
+            @Value("${notes.attachments.max-size:25MB}") DataSize maxSize
+    ) {
+        this.attachmentRepository = attachmentRepository;
+        this.noteRepository = noteRepository;
+        this.store = store;
+        this.maxBytes = maxSize.toBytes();
+    }
+
+    // Route handles uploading an attachment. The body is the file itself; its Content-Type is kept for downloads.
+    @PostMapping
+    public ResponseEntity<AttachmentResponse> uploadAttachment(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID noteId,
+            @RequestParam @NotBlank @Size(max = 255) String filename,
+            HttpServletRequest request
+    ) throws IOException {
+        final String userId = jwt.getSubject();
+
+        // Refuse before reading anything when the client says up front that it is too big.
+        if (request.getContentLengthLong() > maxBytes) {
+            throw new AttachmentTooLarge(maxBytes);
+        }
+        if (!noteRepository.existsByIdAndUserId(noteId, userId)) {
+            throw new NoteNotFound(noteId);
+        }
+
+        var blob = store.write(request.getInputStream(), maxBytes);
+        var attachment = NoteAttachment.builder()
+                .userId(userId)
+                .noteId(noteId)
+                .filename(baseName(filename))
+                .contentType(contentType(request.getContentType()))
+                .size(blob.size())
+                .sha256(blob.sha256())
+                .build();
+
+        // The note may have been deleted while the upload ran; the stored file is then left for the sweeper.
+        try {
+            var saved = attachmentRepository.save(attachment);
+            return ResponseEntity.status(HttpStatus.CREATED).body(AttachmentResponse.from(saved));
+        } catch (DataIntegrityViolationException e) {
+            throw new NoteNotFound(noteId);
+        }
+    }
+
+    // Route handles listing a note's attachments, oldest first.
+    @Transactional(readOnly = true)
+    @GetMapping
+    public List<AttachmentResponse> listAttachments(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID noteId
+    ) {
+        final String userId = jwt.getSubject();
+
+        var attachments = attachmentRepository.findByUserIdAndNoteIdOrderByCreatedAt(userId, noteId);
+
+        // Only check the note itself when there is nothing to show.
+        if (attachments.isEmpty() && !noteRepository.existsByIdAndUserId(noteId, userId)) {
+            throw new NoteNotFound(noteId);
+        }
+
+        return attachments.stream().map(AttachmentResponse::from).toList();
+    }
+
+    // Route handles downloading an attachment, whole or one byte range of it.
+    @GetMapping("/{id}")
+    public void downloadAttachment(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID noteId,
+            @PathVariable UUID id,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        final String userId = jwt.getSubject();
+
+        var attachment = attachmentRepository.findByIdAndUserIdAndNoteId(id, userId, noteId)
+                .orElseThrow(() -> new AttachmentNotFound(noteId, id));
+
+        // The bytes behind an attachment never change, so their hash is a strong validator.
+        var etag = "\"" + attachment.getSha256() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentType(attachment.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition(attachment).toString());
+
+        var file = store.path(attachment.getSha256());
+        long size = attachment.getSize();
+        var range = requestedRange(request, etag);
+        if (range == null) {
+            send(file, 0, size, request, response);
+            return;
+        }
+
+        long start = range.getRangeStart(size);
+        long end = range.getRangeEnd(size);
+        if (start >= size || end < start) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            response.setContentLength(0);
+            return;
+        }
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes %d-%d/%d".formatted(start, end, size));
+        send(file, start, end - start + 1, request, response);
+    }
+
+    // Route handles deleting an attachment. The stored file goes once nothing else points at it (AttachmentSweeper).
+    @Transactional
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteAttachment(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID noteId,
+            @PathVariable UUID id
+    ) {
+        final String userId = jwt.getSubject();
+
+        var attachment = attachmentRepository.findByIdAndUserIdAndNoteId(id, userId, noteId)
+                .orElseThrow(() -> new AttachmentNotFound(noteId, id));
+
+        attachmentRepository.delete(attachment);
+        return ResponseEntity.noContent().build();
+    }
+
+    /* HELPERS */
+
+    /*
+     * The one range to serve, or null for the whole file: when there is no Range header, when If-Range names other
+     * content, when the header does not parse, or when it asks for several ranges. Serving the whole file is always
+     * a valid answer to a range request; multipart/byteranges responses are not worth it for attachments.
+     */
+    private static HttpRange requestedRange(HttpServletRequest request, String etag) {
+        var header = request.getHeader(HttpHeaders.RANGE);
+        var ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (header == null || (ifRange != null && !ifRange.equals(etag))) {
+            return null;
+        }
+        try {
+            var ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.getFirst() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Copies length bytes from start without passing them through the heap. Under Tomcat, larger files are handed to
+     * the connector's sendfile, which moves them from the page cache to the socket in the kernel. Otherwise
+     * FileChannel.transferTo copies straight into the response.
+     */
+    private static void send(Path file, long start, long length, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(length);
+        if (length >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var out = Channels.newChannel(response.getOutputStream());
+            long sent = 0;
+            while (sent < length) {
+                long n = channel.transferTo(start + sent, length - sent, out);
+                if (n <= 0) {
+                    throw new EOFException("Stored file %s is shorter than its %d bytes.".formatted(file, length));
+                }
+                sent += n;
+            }
+        }
+    }
+
+    // Common images and PDFs open in the browser; anything else downloads.
+    private static ContentDisposition disposition(NoteAttachment attachment) {
+        var type = MediaType.parseMediaType(attachment.getContentType());
+        var builder = INLINE_TYPES.contains(type.getType() + "/" + type.getSubtype())
+                ? ContentDisposition.inline()
+                : ContentDisposition.attachment();
+        var name = attachment.getFilename();
+        // Plain ASCII names go as is; others also get the RFC 5987 form, which browsers prefer.
+        return StandardCharsets.US_ASCII.newEncoder().canEncode(name)
+                ? builder.filename(name).build()
+                : builder.filename(name, StandardCharsets.UTF_8).build();
+    }
+
+    // Drops any directory part a client sent along with the name.
+    private static String baseName(String filename) {
+        var name = filename.substring(Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1).trim();
+        return name.isEmpty() ? "attachment" : name;
+    }
+
+    private static String contentType(String header) {
+        if (header == null) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        try {
+            return MediaType.parseMediaType(header).toString();
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+    }
+}
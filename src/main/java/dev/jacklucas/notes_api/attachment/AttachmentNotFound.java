@@ -0,0 +1,13 @@
+package dev.jacklucas.notes_api.attachment;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class AttachmentNotFound extends RuntimeException {
+    public AttachmentNotFound(UUID noteId, UUID id) {
+        super("Attachment (%s) of note (%s) not found.".formatted(id, noteId));
+    }
+}
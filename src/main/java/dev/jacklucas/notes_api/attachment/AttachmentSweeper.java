@@ -0,0 +1,74 @@
+package dev.jacklucas.notes_api.attachment;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Deletes stored files that no attachment points at any more: their attachments were deleted, their notes were, or
+ * the upload failed after the file was written. Files are shared, so a file only goes once no row on any database
+ * (the single one, or every shard) names it.
+ * Only files untouched for the grace period are considered. Uploads touch the file before inserting their row, and
+ * ContentStore checks the touch again after moving the file aside, so a file being attached again right now is never
+ * taken.
+ */
+@Slf4j
+public class AttachmentSweeper {
+
+    private final ContentStore store;
+    private final List<JdbcTemplate> databases;
+    private final Duration grace;
+    private final Counter deleted;
+
+    public AttachmentSweeper(ContentStore store, Map<String, DataSource> databases, Duration grace,
+                             MeterRegistry meterRegistry) {
+        this.store = store;
+        this.databases = databases.values().stream().map(JdbcTemplate::new).toList();
+        this.grace = grace;
+        this.deleted = meterRegistry.counter("notes.attachments.swept");
+    }
+
+    // Returns how many stored files were deleted.
+    @Scheduled(fixedDelayString = "${notes.attachments.sweep.interval:1h}",
+            initialDelayString = "${notes.attachments.sweep.interval:1h}")
+    public int sweep() {
+        var cutoff = Instant.now().minus(grace);
+        int swept = 0;
+        try {
+            for (var sha256 : store.writtenBefore(cutoff)) {
+                if (!referenced(sha256) && store.deleteIfWrittenBefore(sha256, cutoff)) {
+                    swept++;
+                }
+            }
+            int partials = store.deletePartialsBefore(cutoff);
+            if (swept > 0 || partials > 0) {
+                log.info("Deleted {} unreferenced attachment file(s) and {} partial upload(s)", swept, partials);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not sweep attachment files", e);
+        }
+        deleted.increment(swept);
+        return swept;
+    }
+
+    /* HELPERS */
+
+    private boolean referenced(String sha256) {
+        for (var jdbc : databases) {
+            if (Boolean.TRUE.equals(jdbc.queryForObject(
+                    "select exists (select 1 from note_attachments where sha256 = ?)", Boolean.class, sha256))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,37 @@
+package dev.jacklucas.notes_api.attachment;
+
+import dev.jacklucas.notes_api.datasource.ShardDataSources;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/*
+ * On unless notes.attachments.sweep.enabled=false.
+ * With sharding every shard is asked through its own pool; the routing DataSource only reaches one at a time.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "notes.attachments.sweep.enabled", havingValue = "true", matchIfMissing = true)
+public class AttachmentSweeperConfig {
+
+    @Bean
+    public AttachmentSweeper attachmentSweeper(
+            ContentStore store,
+            DataSource dataSource,
+            ObjectProvider<ShardDataSources> shards,
+            MeterRegistry meterRegistry,
+            @Value("${notes.attachments.sweep.grace:1h}") Duration grace
+    ) {
+        var sharded = shards.getIfAvailable();
+        var databases = sharded == null ? Map.of("default", dataSource) : sharded.all();
+        return new AttachmentSweeper(store, databases, grace, meterRegistry);
+    }
+}
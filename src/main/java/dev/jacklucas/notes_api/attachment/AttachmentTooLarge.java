@@ -0,0 +1,11 @@
+package dev.jacklucas.notes_api.attachment;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class AttachmentTooLarge extends RuntimeException {
+    public AttachmentTooLarge(long maxBytes) {
+        super("Attachments are limited to %d bytes.".formatted(maxBytes));
+    }
+}
@@ -0,0 +1,172 @@
+package dev.jacklucas.notes_api.attachment;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/*
+ * Content-addressed file store: each file is kept once, at blobs/<first two hex digits>/<SHA-256>.
+ * Writes stream through a small buffer into tmp/ while hashing, then rename into place, so a file is either complete
+ * under its name or not there at all, and the heap never holds more than one buffer of it.
+ * Writing content that is already stored drops the copy and bumps the stored file's modification time, which is what
+ * AttachmentSweeper goes by before deleting files nothing points at.
+ * Every instance serving attachments must see the same directory.
+ */
+@Component
+public class ContentStore {
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public record Blob(String sha256, long size) {
+    }
+
+    private final Path blobs;
+    private final Path tmp;
+
+    public ContentStore(@Value("${notes.attachments.directory:data/attachments}") Path directory) {
+        this.blobs = directory.resolve("blobs");
+        this.tmp = directory.resolve("tmp");
+    }
+
+    // Stores everything the stream holds. Throws AttachmentTooLarge, keeping nothing, once it passes maxBytes.
+    public Blob write(InputStream in, long maxBytes) throws IOException {
+        Files.createDirectories(tmp);
+        var partial = tmp.resolve(UUID.randomUUID().toString());
+        var digest = sha256();
+        long size = 0;
+        try {
+            try (var out = Files.newOutputStream(partial)) {
+                var buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    size += n;
+                    if (size > maxBytes) {
+                        throw new AttachmentTooLarge(maxBytes);
+                    }
+                    digest.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                }
+            }
+
+            var blob = new Blob(HexFormat.of().formatHex(digest.digest()), size);
+            var target = path(blob.sha256());
+            if (!touch(target)) {
+                Files.createDirectories(target.getParent());
+                Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return blob;
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    public Path path(String sha256) {
+        if (!SHA256.matcher(sha256).matches()) {
+            throw new IllegalArgumentException("Not a SHA-256: " + sha256);
+        }
+        return blobs.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    // Hashes of stored files last written before the cutoff.
+    public List<String> writtenBefore(Instant cutoff) throws IOException {
+        if (!Files.isDirectory(blobs)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.walk(blobs, 2)) {
+            return files.filter(f -> SHA256.matcher(f.getFileName().toString()).matches())
+                    .filter(f -> modifiedBefore(f, cutoff))
+                    .map(f -> f.getFileName().toString())
+                    .toList();
+        }
+    }
+
+    /*
+     * Deletes a stored file unless it was written again after the cutoff. An upload of the same content may touch it
+     * at any moment, so the file is first renamed out of place: touches after that miss it and store a new copy. A
+     * touch that landed between the check and the rename shows in the renamed file's modification time, and the file
+     * is put back.
+     */
+    public boolean deleteIfWrittenBefore(String sha256, Instant cutoff) throws IOException {
+        var file = path(sha256);
+        if (!modifiedBefore(file, cutoff)) {
+            return false;
+        }
+        Files.createDirectories(tmp);
+        var doomed = tmp.resolve(UUID.randomUUID().toString());
+        try {
+            Files.move(file, doomed, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (modifiedBefore(doomed, cutoff)) {
+            Files.delete(doomed);
+            return true;
+        }
+        // Same content as any copy an upload stored meanwhile, so replacing that is harmless.
+        Files.move(doomed, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return false;
+    }
+
+    // Removes partial files left behind by writes that never finished, e.g. when the process died mid-upload.
+    public int deletePartialsBefore(Instant cutoff) throws IOException {
+        if (!Files.isDirectory(tmp)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(tmp)) {
+            for (var file : files.filter(f -> modifiedBefore(f, cutoff)).toList()) {
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /* HELPERS */
+
+    // Marks an already stored file as just written. False when there is no such file.
+    private static boolean touch(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static boolean modifiedBefore(Path file, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package dev.jacklucas.notes_api.attachment;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface NoteAttachmentRepository extends JpaRepository<NoteAttachment, UUID> {
+    // Oldest first. Uses idx_note_attachments_note.
+    List<NoteAttachment> findByUserIdAndNoteIdOrderByCreatedAt(String userId, UUID noteId);
+
+    Optional<NoteAttachment> findByIdAndUserIdAndNoteId(UUID id, String userId, UUID noteId);
+}
@@ -0,0 +1,25 @@
+package dev.jacklucas.notes_api.attachment.dto;
+
+import dev.jacklucas.notes_api.attachment.NoteAttachment;
+
+public record AttachmentResponse(
+        String id,
+        String noteId,
+        String filename,
+        String contentType,
+        long size,
+        String sha256,
+        String createdAt
+) {
+    public static AttachmentResponse from(NoteAttachment a) {
+        return new AttachmentResponse(
+                a.getId().toString(),
+                a.getNoteId().toString(),
+                a.getFilename(),
+                a.getContentType(),
+                a.getSize(),
+                a.getSha256(),
+                a.getCreatedAt().toString()
+        );
+    }
+}
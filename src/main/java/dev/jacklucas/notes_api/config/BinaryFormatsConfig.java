@@ -0,0 +1,30 @@
+package dev.jacklucas.notes_api.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/*
+ * CBOR (application/cbor) and Smile (application/x-jackson-smile) next to JSON, chosen by the Accept header.
+ * Both mappers come from Boot's Jackson2ObjectMapperBuilder, so they carry the same settings and modules as the JSON
+ * one and every DTO has one schema in all three formats. Spring MVC would register these converters by itself, but
+ * with plain mappers that know nothing of the application's Jackson configuration.
+ * JSON stays first, so requests without an Accept header, or with one that takes anything, still get JSON.
+ */
+@Configuration
+public class BinaryFormatsConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
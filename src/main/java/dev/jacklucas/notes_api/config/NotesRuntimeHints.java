@@ -0,0 +1,76 @@
+package dev.jacklucas.notes_api.config;
+
+import dev.jacklucas.notes_api.attachment.NoteAttachment;
+import dev.jacklucas.notes_api.attachment.dto.AttachmentResponse;
+import dev.jacklucas.notes_api.exception.ExceptionResponse;
+import dev.jacklucas.notes_api.id.UuidV7;
+import dev.jacklucas.notes_api.note.Note;
+import dev.jacklucas.notes_api.note.NoteTag;
+import dev.jacklucas.notes_api.note.NoteTagName;
+import dev.jacklucas.notes_api.note.dto.*;
+import dev.jacklucas.notes_api.related.dto.RelatedNoteResponse;
+import dev.jacklucas.notes_api.related.dto.SuggestedTagResponse;
+import dev.jacklucas.notes_api.revision.NoteRevision;
+import dev.jacklucas.notes_api.revision.dto.ReadRevisionResponse;
+import dev.jacklucas.notes_api.revision.dto.RevisionSummaryResponse;
+import dev.jacklucas.notes_api.tag.Tag;
+import dev.jacklucas.notes_api.tag.dto.*;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.List;
+
+/*
+ * Reflection a native image cannot discover by itself.
+ * Spring's AOT pass already covers controller signatures and JPA entity scanning. These are the rest: types built by
+ * reflection from query results, Jackson binding for every DTO (including ones only reached through other DTOs), the
+ * entities with their Lombok builders for Hibernate's reflective field access, and the Flyway migrations.
+ */
+public class NotesRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final List<Class<?>> ENTITIES = List.of(
+            Note.class, Note.NoteBuilder.class,
+            Tag.class, Tag.TagBuilder.class,
+            NoteTag.class, NoteTag.Key.class,
+            NoteRevision.class, NoteRevision.NoteRevisionBuilder.class,
+            NoteAttachment.class, NoteAttachment.NoteAttachmentBuilder.class
+    );
+
+    static final List<Class<?>> DTOS = List.of(
+            CreateNoteRequest.class, PutNoteRequest.class, PatchNoteRequest.class, ReadNoteResponse.class,
+            ContentEdit.class, EditNoteContentRequest.class, EditNoteContentResponse.class,
+            BatchGetNotesRequest.class, BatchGetNotesResponse.class, BatchGetNotesResponse.Result.class,
+            BulkTagRequest.class, BulkTagRequest.Filter.class, BulkTagResponse.class,
+            RelatedNoteResponse.class, SuggestedTagResponse.class,
+            CreateTagRequest.class, PutTagRequest.class, ReadTagResponse.class, TagSuggestionResponse.class,
+            ReadRevisionResponse.class, RevisionSummaryResponse.class,
+            AttachmentResponse.class,
+            ExceptionResponse.class, ExceptionResponse.FieldErrorItem.class
+    );
+
+    // Instantiated by Hibernate or Spring Data from query rows: `select new ...` and DTO projections.
+    static final List<Class<?>> QUERY_RESULTS = List.of(
+            TagSuggestionResponse.class, RevisionSummaryResponse.class, NoteTagName.class
+    );
+
+    private final BindingReflectionHintsRegistrar bindings = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (var type : ENTITIES) {
+            hints.reflection().registerType(type, MemberCategory.values());
+        }
+        // Instantiated by Hibernate from @UuidGenerator(algorithm = UuidV7.class).
+        hints.reflection().registerType(UuidV7.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+        bindings.registerReflectionHints(hints.reflection(), DTOS.toArray(Class<?>[]::new));
+
+        for (var type : QUERY_RESULTS) {
+            hints.reflection().registerType(type, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+        }
+
+        hints.resources().registerPattern("db/migration/*.sql");
+    }
+}
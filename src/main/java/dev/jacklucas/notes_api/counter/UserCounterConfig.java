@@ -0,0 +1,35 @@
+package dev.jacklucas.notes_api.counter;
+
+import dev.jacklucas.notes_api.datasource.ShardDataSources;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/*
+ * On unless notes.counters.reconcile.enabled=false.
+ * With sharding each shard is reconciled through its own pool; the routing DataSource only reaches one at a time.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "notes.counters.reconcile.enabled", havingValue = "true", matchIfMissing = true)
+public class UserCounterConfig {
+
+    @Bean
+    public UserCounterReconciler userCounterReconciler(
+            DataSource dataSource,
+            ObjectProvider<ShardDataSources> shards,
+            MeterRegistry meterRegistry,
+            @Value("${notes.counters.reconcile.batch-size:500}") int batchSize
+    ) {
+        var sharded = shards.getIfAvailable();
+        var databases = sharded == null ? Map.of("default", dataSource) : sharded.all();
+        return new UserCounterReconciler(databases, batchSize, meterRegistry);
+    }
+}
@@ -0,0 +1,129 @@
+package dev.jacklucas.notes_api.counter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/*
+ * Recounts every user's rows now and then and repairs counters that drifted, e.g. after rows were changed with the
+ * triggers disabled or restored from a dump: the user's row in user_counters, and the uses of each of their tags.
+ * Each user is checked in two short transactions, one holding their user_counters row's lock and one their tags'
+ * locks, so triggers for that user wait and nothing that commits meanwhile is lost. Writes take those locks in an
+ * order that depends on the statement (a new note locks the counter row before its tags), so holding both at once
+ * could deadlock with one; holding one at a time cannot.
+ * Runs against each database separately: the single one, or every shard.
+ */
+@Slf4j
+public class UserCounterReconciler {
+
+    record Counts(long notes, long archivedNotes, long tags) {
+    }
+
+    // One database: its own template and transactions, independent of request routing.
+    private record Database(String name, JdbcTemplate jdbc, TransactionTemplate tx) {
+    }
+
+    private final Map<String, DataSource> databases;
+    private final int batchSize;
+    private final Counter repaired;
+
+    public UserCounterReconciler(Map<String, DataSource> databases, int batchSize, MeterRegistry meterRegistry) {
+        this.databases = databases;
+        this.batchSize = batchSize;
+        this.repaired = meterRegistry.counter("notes.counters.repaired");
+    }
+
+    // Returns how many users' counters were repaired.
+    @Scheduled(fixedDelayString = "${notes.counters.reconcile.interval:1h}",
+            initialDelayString = "${notes.counters.reconcile.interval:1h}")
+    public int reconcile() {
+        int fixed = 0;
+        for (var entry : databases.entrySet()) {
+            var ds = entry.getValue();
+            var db = new Database(entry.getKey(), new JdbcTemplate(ds),
+                    new TransactionTemplate(new DataSourceTransactionManager(ds)));
+            try {
+                fixed += reconcile(db);
+            } catch (RuntimeException e) {
+                log.warn("Could not reconcile user counters on {}", db.name(), e);
+            }
+        }
+        return fixed;
+    }
+
+    /* HELPERS */
+
+    private int reconcile(Database db) {
+        int fixed = 0;
+        var after = "";
+        while (true) {
+            var users = db.jdbc().queryForList("""
+                    select user_id from user_counters where user_id > ? order by user_id limit ?
+                    """, String.class, after, batchSize);
+            for (var userId : users) {
+                boolean counters = Boolean.TRUE.equals(db.tx().execute(status -> reconcileCounters(db.jdbc(), userId)));
+                boolean tagUses = Boolean.TRUE.equals(db.tx().execute(status -> reconcileTagUses(db.jdbc(), userId)));
+                if (counters || tagUses) {
+                    fixed++;
+                }
+            }
+            if (users.size() < batchSize) {
+                return fixed;
+            }
+            after = users.getLast();
+        }
+    }
+
+    private boolean reconcileCounters(JdbcTemplate jdbc, String userId) {
+        // Lock first: counting afterwards sees every write that updated the row before us.
+        var stored = jdbc.query("""
+                select notes, archived_notes, tags from user_counters where user_id = ? for update
+                """, (rs, i) -> new Counts(rs.getLong(1), rs.getLong(2), rs.getLong(3)), userId);
+        if (stored.isEmpty()) {
+            return false;
+        }
+
+        var actual = jdbc.queryForObject("""
+                select (select count(*) from notes where user_id = ?),
+                       (select count(*) from notes where user_id = ? and archived),
+                       (select count(*) from tags where user_id = ?)
+                """, (rs, i) -> new Counts(rs.getLong(1), rs.getLong(2), rs.getLong(3)), userId, userId, userId);
+        if (actual.equals(stored.getFirst())) {
+            return false;
+        }
+
+        jdbc.update("update user_counters set notes = ?, archived_notes = ?, tags = ? where user_id = ?",
+                actual.notes(), actual.archivedNotes(), actual.tags(), userId);
+        repaired.increment();
+        log.warn("Repaired counters for user {}: {} -> {}", userId, stored.getFirst(), actual);
+        return true;
+    }
+
+    private boolean reconcileTagUses(JdbcTemplate jdbc, String userId) {
+        // In the same order as the note_tags triggers lock them, then count. The counter row is not held here.
+        jdbc.query("select 1 from tags where user_id = ? order by id for update", rs -> {
+        }, userId);
+        int fixed = jdbc.update("""
+                update tags t
+                set uses = c.uses
+                from (select t.id, count(nt.tag_id) as uses
+                      from tags t left join note_tags nt on nt.user_id = t.user_id and nt.tag_id = t.id
+                      where t.user_id = ?
+                      group by t.id) c
+                where t.user_id = ? and t.id = c.id and t.uses <> c.uses
+                """, userId, userId);
+        if (fixed == 0) {
+            return false;
+        }
+        repaired.increment();
+        log.warn("Repaired the uses of {} tags for user {}", fixed, userId);
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+package dev.jacklucas.notes_api.counter;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/*
+ * Reads the per-user counts that triggers keep in user_counters (see V7), so a page's totalElements costs one
+ * primary-key lookup instead of a count over the user's rows.
+ * A user without a counter row is counted the slow way; the triggers create the row on the user's first write.
+ */
+@Component
+public class UserCounters {
+
+    private final JdbcTemplate jdbc;
+
+    public UserCounters(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // All of the user's notes, archived or not.
+    public long notes(String userId) {
+        return read("notes", "select count(*) from notes where user_id = ?", userId);
+    }
+
+    public long archivedNotes(String userId) {
+        return read("archived_notes", "select count(*) from notes where user_id = ? and archived", userId);
+    }
+
+    public long tags(String userId) {
+        return read("tags", "select count(*) from tags where user_id = ?", userId);
+    }
+
+    /* HELPERS */
+
+    private long read(String column, String fallback, String userId) {
+        var counted = jdbc.queryForList("select %s from user_counters where user_id = ?".formatted(column),
+                Long.class, userId);
+        return counted.isEmpty() ? jdbc.queryForObject(fallback, Long.class, userId) : counted.getFirst();
+    }
+}
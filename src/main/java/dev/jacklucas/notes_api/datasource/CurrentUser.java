@@ -0,0 +1,48 @@
+package dev.jacklucas.notes_api.datasource;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.function.Supplier;
+
+/*
+ * The user whose data the current thread is touching, as seen by the routing data sources.
+ * Request threads get it from the JWT; background work that writes on a user's behalf sets it explicitly.
+ */
+public final class CurrentUser {
+
+    private static final ThreadLocal<String> OVERRIDE = new ThreadLocal<>();
+
+    private CurrentUser() {
+    }
+
+    public static String id() {
+        var override = OVERRIDE.get();
+        if (override != null) {
+            return override;
+        }
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth == null ? null : auth.getName();
+    }
+
+    public static <T> T callAs(String userId, Supplier<T> work) {
+        var previous = OVERRIDE.get();
+        OVERRIDE.set(userId);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                OVERRIDE.remove();
+            } else {
+                OVERRIDE.set(previous);
+            }
+        }
+    }
+
+    public static void runAs(String userId, Runnable work) {
+        callAs(userId, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
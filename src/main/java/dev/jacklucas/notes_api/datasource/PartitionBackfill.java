@@ -0,0 +1,129 @@
+package dev.jacklucas.notes_api.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+/*
+ * Copies existing rows into the partitioned shadow tables created by V2, one small transaction at a time.
+ * New writes are already mirrored by triggers, so this only has to walk the rows that existed before V2.
+ * Source rows are locked FOR SHARE per batch so a concurrent delete cannot leave a copied row behind.
+ */
+@Slf4j
+public class PartitionBackfill {
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+
+    public PartitionBackfill(DataSource dataSource, int batchSize) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.batchSize = batchSize;
+    }
+
+    public void run() {
+        // The shadow tables are gone once V3 has run.
+        if (jdbc.queryForObject("select to_regclass('partition_backfill') is null", Boolean.class)) {
+            log.info("Partitioned tables are already swapped in, nothing to backfill.");
+            return;
+        }
+
+        // Parents first: the note_tags copy joins against the already copied notes and tags.
+        backfillById("tags", """
+                insert into tags_p (id, user_id, name, created_at)
+                select id, user_id, name, created_at from tags
+                where id > ? and id <= ? for share
+                on conflict do nothing
+                """);
+        backfillById("notes", """
+                insert into notes_p (id, user_id, title, content, archived, created_at, updated_at)
+                select id, user_id, title, content, archived, created_at, updated_at from notes
+                where id > ? and id <= ? for share
+                on conflict do nothing
+                """);
+        backfillNoteTags();
+    }
+
+    private void backfillById(String table, String copyBatch) {
+        if (completed(table)) {
+            return;
+        }
+
+        var cursor = new UUID(0, 0);
+        long copied = 0;
+        while (true) {
+            var from = cursor;
+            // Upper bound of the next batch; uuid has no max() aggregate.
+            var ids = jdbc.queryForList(
+                    "select id from (select id from %s where id > ? order by id limit ?) b order by id desc limit 1".formatted(table),
+                    UUID.class, from, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            var to = ids.get(0);
+            copied += tx.execute(status -> jdbc.update(copyBatch, from, to));
+            cursor = to;
+        }
+
+        markCompleted(table, copied);
+    }
+
+    private void backfillNoteTags() {
+        if (completed("note_tags")) {
+            return;
+        }
+
+        // Keyset over the (note_id, tag_id) primary key.
+        UUID lastNote = new UUID(0, 0);
+        UUID lastTag = new UUID(0, 0);
+        long copied = 0;
+        while (true) {
+            var rows = jdbc.queryForList("""
+                            select note_id, tag_id from note_tags
+                            where (note_id, tag_id) > (?, ?)
+                            order by note_id, tag_id limit ?
+                            """,
+                    lastNote, lastTag, batchSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            var fromNote = lastNote;
+            var fromTag = lastTag;
+            var last = rows.get(rows.size() - 1);
+            var toNote = (UUID) last.get("note_id");
+            var toTag = (UUID) last.get("tag_id");
+            copied += tx.execute(status -> jdbc.update("""
+                    insert into note_tags_p (user_id, note_id, tag_id)
+                    select n.user_id, nt.note_id, nt.tag_id
+                    from note_tags nt join notes n on n.id = nt.note_id
+                    where (nt.note_id, nt.tag_id) > (?, ?) and (nt.note_id, nt.tag_id) <= (?, ?)
+                    for share of nt
+                    on conflict do nothing
+                    """, fromNote, fromTag, toNote, toTag));
+            lastNote = toNote;
+            lastTag = toTag;
+        }
+
+        markCompleted("note_tags", copied);
+    }
+
+    private boolean completed(String table) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "select exists (select 1 from partition_backfill where table_name = ? and completed_at is not null)",
+                Boolean.class, table));
+    }
+
+    private void markCompleted(String table, long copied) {
+        jdbc.update("""
+                insert into partition_backfill (table_name, completed_at) values (?, now())
+                on conflict (table_name) do update set completed_at = now()
+                """, table);
+        log.info("Backfilled {} rows into {}_p.", copied, table);
+    }
+}
@@ -0,0 +1,63 @@
+package dev.jacklucas.notes_api.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/*
+ * One-shot backfill between the V2 and V3 partitioning migrations, run next to the previous release's live nodes.
+ * It is a separate application rather than a mode of the API: this release's entities map columns added after V3,
+ * so JPA cannot start against a V2 schema. It starts only the datasource (or shards) and Flyway, migrates to V2,
+ * copies the existing rows and exits:
+ * java -cp notes-api.jar -Dloader.main=dev.jacklucas.notes_api.datasource.PartitionBackfillApplication \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher
+ * Not a @Configuration, so the API's component scan never picks it up.
+ */
+@Slf4j
+@ImportAutoConfiguration({DataSourceAutoConfiguration.class, FlywayAutoConfiguration.class})
+@Import(ShardingConfig.class)
+public class PartitionBackfillApplication {
+
+    public static void main(String[] args) {
+        System.exit(SpringApplication.exit(run(args)));
+    }
+
+    // Runs the backfill and returns the context once it is done, for the caller to close.
+    static ConfigurableApplicationContext run(String... args) {
+        return new SpringApplicationBuilder(PartitionBackfillApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.flyway.target=2")
+                .run(args);
+    }
+
+    @Bean
+    public ApplicationRunner partitionBackfillRunner(
+            DataSource dataSource,
+            ObjectProvider<ShardDataSources> shards,
+            @Value("${notes.partitioning.batch-size:5000}") int batchSize
+    ) {
+        return args -> {
+            // Every shard has its own copy of the tables.
+            Map<String, DataSource> targets = shards.getIfAvailable() != null
+                    ? shards.getIfAvailable().all()
+                    : Map.of("primary", dataSource);
+            for (var target : targets.entrySet()) {
+                log.info("Backfilling partitioned tables on {}.", target.getKey());
+                new PartitionBackfill(target.getValue(), batchSize).run();
+            }
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package dev.jacklucas.notes_api.datasource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Remembers when each user last committed a write, so their next reads can skip replicas that may lag behind.
+ */
+public class ReadYourWritesTracker {
+
+    private final long windowNanos;
+    private final Map<String, Long> lastWrite = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    public void recordWrite(String userId) {
+        if (windowNanos > 0) {
+            lastWrite.put(userId, System.nanoTime());
+        }
+    }
+
+    public boolean isSticky(String userId) {
+        Long at = lastWrite.get(userId);
+        return at != null && System.nanoTime() - at < windowNanos;
+    }
+
+    // Drops users whose window has passed so the map only holds recent writers.
+    public void purgeExpired() {
+        long now = System.nanoTime();
+        lastWrite.values().removeIf(at -> now - at >= windowNanos);
+    }
+}
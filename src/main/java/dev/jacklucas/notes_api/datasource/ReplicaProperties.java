@@ -0,0 +1,22 @@
+package dev.jacklucas.notes_api.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/*
+ * Read replicas sitting behind the primary configured under spring.datasource.
+ * Routing is only switched on when at least one replica is listed.
+ */
+@ConfigurationProperties("notes.datasource")
+public record ReplicaProperties(
+        List<Replica> replicas,
+        // How long a user's reads stay on the primary after they write. Zero turns stickiness off.
+        @DefaultValue("5s") Duration readYourWritesWindow,
+        @DefaultValue("10") int replicaPoolSize
+) {
+    public record Replica(String url, String username, String password) {
+    }
+}
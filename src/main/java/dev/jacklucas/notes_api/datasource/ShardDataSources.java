@@ -0,0 +1,48 @@
+package dev.jacklucas.notes_api.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * One connection pool per shard, in configuration order.
+ */
+public class ShardDataSources implements DisposableBean {
+
+    private final Map<String, DataSource> shards = new LinkedHashMap<>();
+
+    public ShardDataSources(ShardProperties properties) {
+        for (var shard : properties.shards()) {
+            var pool = new HikariDataSource();
+            pool.setPoolName("shard-" + shard.name());
+            pool.setJdbcUrl(shard.url());
+            pool.setUsername(shard.username());
+            pool.setPassword(shard.password());
+            pool.setMaximumPoolSize(properties.poolSize());
+            if (shards.put(shard.name(), pool) != null) {
+                throw new IllegalStateException("Duplicate shard name '%s'.".formatted(shard.name()));
+            }
+        }
+    }
+
+    public Map<String, DataSource> all() {
+        return Collections.unmodifiableMap(shards);
+    }
+
+    public String firstName() {
+        return shards.keySet().iterator().next();
+    }
+
+    public DataSource first() {
+        return shards.get(firstName());
+    }
+
+    @Override
+    public void destroy() {
+        shards.values().forEach(ds -> ((HikariDataSource) ds).close());
+    }
+}
@@ -0,0 +1,60 @@
+package dev.jacklucas.notes_api.datasource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Users pinned to a shard other than their hashed one, plus users in the middle of a move.
+ * Lives in the first shard and is cached per node for a short TTL.
+ */
+public class ShardDirectory {
+
+    public record Entry(String shard, boolean moving) {
+    }
+
+    private record Cached(Optional<Entry> entry, long expiresAt) {
+    }
+
+    private static final int MAX_CACHED = 100_000;
+
+    private final JdbcTemplate jdbc;
+    private final long ttlNanos;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    public ShardDirectory(DataSource directoryShard, Duration ttl) {
+        this.jdbc = new JdbcTemplate(directoryShard);
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public Optional<Entry> find(String userId) {
+        long now = System.nanoTime();
+        var cached = cache.get(userId);
+        if (cached != null && now < cached.expiresAt()) {
+            return cached.entry();
+        }
+
+        var entry = jdbc.query("select shard, moving from shard_directory where user_id = ?",
+                rs -> rs.next() ? Optional.of(new Entry(rs.getString(1), rs.getBoolean(2))) : Optional.<Entry>empty(),
+                userId);
+
+        // Crude bound: the map only holds users seen within the TTL worth of traffic.
+        if (cache.size() >= MAX_CACHED) {
+            cache.clear();
+        }
+        cache.put(userId, new Cached(entry, now + ttlNanos));
+        return entry;
+    }
+
+    public void assign(String userId, String shard, boolean moving) {
+        jdbc.update("""
+                insert into shard_directory (user_id, shard, moving, updated_at) values (?, ?, ?, now())
+                on conflict (user_id) do update set shard = excluded.shard, moving = excluded.moving, updated_at = now()
+                """, userId, shard, moving);
+        cache.remove(userId);
+    }
+}
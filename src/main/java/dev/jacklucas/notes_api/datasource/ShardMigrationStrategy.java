@@ -0,0 +1,47 @@
+package dev.jacklucas.notes_api.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/*
+ * Runs the regular migrations against every shard, then the directory migrations against the first one.
+ * Boot still orders this before JPA starts, so ddl-auto validation sees migrated shards.
+ */
+@Slf4j
+public class ShardMigrationStrategy implements FlywayMigrationStrategy {
+
+    private final Map<String, DataSource> shards;
+    private final DataSource directoryShard;
+
+    public ShardMigrationStrategy(Map<String, DataSource> shards, DataSource directoryShard) {
+        this.shards = shards;
+        this.directoryShard = directoryShard;
+    }
+
+    @Override
+    public void migrate(Flyway flyway) {
+        for (var shard : shards.entrySet()) {
+            var result = Flyway.configure()
+                    .configuration(flyway.getConfiguration())
+                    .dataSource(shard.getValue())
+                    .load()
+                    .migrate();
+            log.info("Shard {} migrated to {}.", shard.getKey(), result.targetSchemaVersion);
+        }
+
+        // The directory keeps its own history table so it can share a schema with the notes tables.
+        Flyway.configure()
+                .configuration(flyway.getConfiguration())
+                .dataSource(directoryShard)
+                .locations("classpath:db/shard-directory")
+                .table("flyway_shard_directory_history")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+}
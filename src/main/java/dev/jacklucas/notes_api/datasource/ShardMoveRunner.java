@@ -0,0 +1,31 @@
+package dev.jacklucas.notes_api.datasource;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+/*
+ * One-shot entry point for the shard mover, run as a separate process next to the live nodes:
+ * java -jar notes-api.jar --spring.main.web-application-type=none --notes.sharding.move.user=<id> --notes.sharding.move.to=<shard>
+ */
+public class ShardMoveRunner implements ApplicationRunner {
+
+    private final ShardMover mover;
+    private final ApplicationContext context;
+    private final String userId;
+    private final String targetShard;
+
+    public ShardMoveRunner(ShardMover mover, ApplicationContext context, String userId, String targetShard) {
+        this.mover = mover;
+        this.context = context;
+        this.userId = userId;
+        this.targetShard = targetShard;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        mover.moveUser(userId, targetShard);
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
@@ -0,0 +1,190 @@
+package dev.jacklucas.notes_api.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Moves one user's rows to another shard while the app keeps serving.
+ *
+ * 1. Mark the user as moving, so nodes that look them up send their writes a 503.
+ * 2. Take the user's move lock on the source. This waits for write transactions already running there, and refuses
+ *    later ones from nodes whose directory cache has not caught up (ShardRoutingDataSource).
+ * 3. Copy the rows to the target in one transaction, replacing leftovers from any earlier failed attempt.
+ * 4. Point the directory at the target. Reads and writes resume there.
+ * 5. Wait out the cache while still holding the lock, so no write can land on the source, then delete the rows there.
+ * The lock is keyed by a hash of the user id; another user sharing the hash waits out the move too.
+ */
+@Slf4j
+public class ShardMover {
+
+    // Tables holding a user's rows, parents first. New tables that belong to a user need an entry here.
+    // user_counters is left out, and so is tags.uses: the count triggers rebuild them on the target as the rows are
+    // copied. note_attachments only points at files in the shared ContentStore directory, so moving its rows is enough.
+    record UserTable(String name, String ownedBy, Set<String> counted) {
+        UserTable(String name, String ownedBy) {
+            this(name, ownedBy, Set.of());
+        }
+    }
+
+    static final List<UserTable> TABLES = List.of(
+            new UserTable("tags", "user_id = ?", Set.of("uses")),
+            new UserTable("notes", "user_id = ?"),
+            new UserTable("note_tags", "user_id = ?"),
+            new UserTable("note_revisions", "user_id = ?"),
+            new UserTable("note_attachments", "user_id = ?")
+    );
+
+    // The advisory lock key for a user's move lock, taken shared by writes and exclusively by a move.
+    static final String LOCK_KEY = "hashtextextended(?, 0)";
+
+    private static final int BATCH_SIZE = 500;
+
+    private final Map<String, DataSource> shards;
+    private final ShardResolver resolver;
+    private final ShardDirectory directory;
+    private final Duration cacheTtl;
+
+    public ShardMover(Map<String, DataSource> shards, ShardResolver resolver, ShardDirectory directory, Duration cacheTtl) {
+        this.shards = shards;
+        this.resolver = resolver;
+        this.directory = directory;
+        this.cacheTtl = cacheTtl;
+    }
+
+    public void moveUser(String userId, String targetShard) throws SQLException, InterruptedException {
+        var target = shards.get(targetShard);
+        if (target == null) {
+            throw new IllegalArgumentException("Unknown shard '%s'.".formatted(targetShard));
+        }
+
+        var current = resolver.resolve(userId);
+        if (current.moving()) {
+            throw new IllegalStateException("User (%s) is already being moved.".formatted(userId));
+        }
+        var sourceShard = current.shard();
+        if (sourceShard.equals(targetShard)) {
+            log.info("User {} is already on shard {}.", userId, targetShard);
+            return;
+        }
+        var source = shards.get(sourceShard);
+
+        log.info("Moving user {} from shard {} to {}.", userId, sourceShard, targetShard);
+        directory.assign(userId, sourceShard, true);
+        boolean repointed = false;
+        try (var lock = source.getConnection()) {
+            moveLock(lock, userId, "pg_advisory_lock");
+            try {
+                int rows = copy(userId, source, target);
+                directory.assign(userId, targetShard, false);
+                repointed = true;
+                log.info("Copied {} rows for user {}; directory now points at {}.", rows, userId, targetShard);
+
+                waitForCaches();
+                inTransaction(lock, () -> deleteRows(lock, userId));
+            } finally {
+                // Session-level, so it would outlive the move on the pooled connection.
+                moveLock(lock, userId, "pg_advisory_unlock");
+            }
+        } catch (SQLException | InterruptedException | RuntimeException e) {
+            if (!repointed) {
+                directory.assign(userId, sourceShard, false);
+            }
+            throw e;
+        }
+        log.info("Removed user {} from shard {}.", userId, sourceShard);
+    }
+
+    private int copy(String userId, DataSource source, DataSource target) throws SQLException {
+        try (var from = source.getConnection(); var to = target.getConnection()) {
+            from.setReadOnly(true);
+            int[] copied = {0};
+            inTransaction(to, () -> {
+                deleteRows(to, userId);
+                for (UserTable table : TABLES) {
+                    copied[0] += copyTable(from, to, table, userId);
+                }
+            });
+            return copied[0];
+        }
+    }
+
+    private int copyTable(Connection from, Connection to, UserTable table, String userId) throws SQLException {
+        try (var select = from.prepareStatement("select * from %s where %s".formatted(table.name(), table.ownedBy()))) {
+            select.setString(1, userId);
+            select.setFetchSize(BATCH_SIZE);
+            try (var rs = select.executeQuery()) {
+                var meta = rs.getMetaData();
+                List<String> columns = new ArrayList<>();
+                List<Integer> indexes = new ArrayList<>();
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    if (!table.counted().contains(meta.getColumnName(i))) {
+                        columns.add(meta.getColumnName(i));
+                        indexes.add(i);
+                    }
+                }
+                var insert = "insert into %s (%s) values (%s)".formatted(
+                        table.name(), String.join(", ", columns), String.join(", ", columns.stream().map(c -> "?").toList()));
+
+                int rows = 0;
+                try (var ps = to.prepareStatement(insert)) {
+                    while (rs.next()) {
+                        for (int i = 0; i < indexes.size(); i++) {
+                            ps.setObject(i + 1, rs.getObject(indexes.get(i)));
+                        }
+                        ps.addBatch();
+                        if (++rows % BATCH_SIZE == 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                    ps.executeBatch();
+                }
+                return rows;
+            }
+        }
+    }
+
+    private static void moveLock(Connection connection, String userId, String function) throws SQLException {
+        try (var ps = connection.prepareStatement("select %s(%s)".formatted(function, LOCK_KEY))) {
+            ps.setString(1, userId);
+            ps.execute();
+        }
+    }
+
+    private void deleteRows(Connection connection, String userId) throws SQLException {
+        for (UserTable table : TABLES.reversed()) {
+            try (var ps = connection.prepareStatement("delete from %s where %s".formatted(table.name(), table.ownedBy()))) {
+                ps.setString(1, userId);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private void waitForCaches() throws InterruptedException {
+        Thread.sleep(cacheTtl.toMillis() + 100);
+    }
+
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+
+    private static void inTransaction(Connection connection, SqlWork work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            work.run();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package dev.jacklucas.notes_api.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/*
+ * The databases users are spread across. The first shard also holds the shard directory.
+ * Sharding is only switched on when at least one shard is listed.
+ */
+@ConfigurationProperties("notes.sharding")
+public record ShardProperties(
+        List<Shard> shards,
+        // How long a node trusts its cached directory entries; the shard mover waits this long between steps.
+        @DefaultValue("2s") Duration directoryCacheTtl,
+        @DefaultValue("10") int poolSize
+) {
+    public record Shard(String name, String url, String username, String password) {
+    }
+}
@@ -0,0 +1,30 @@
+package dev.jacklucas.notes_api.datasource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/*
+ * Maps a user to a shard: the directory entry if there is one, otherwise a stable hash of the user id.
+ * Adding shards changes the hash for most users, so pin existing users in the directory before growing the list.
+ */
+public class ShardResolver {
+
+    private final List<String> shards;
+    private final ShardDirectory directory;
+
+    public ShardResolver(List<String> shards, ShardDirectory directory) {
+        this.shards = List.copyOf(shards);
+        this.directory = directory;
+    }
+
+    public ShardDirectory.Entry resolve(String userId) {
+        return directory.find(userId).orElseGet(() -> new ShardDirectory.Entry(hashed(userId), false));
+    }
+
+    public String hashed(String userId) {
+        var crc = new CRC32();
+        crc.update(userId.getBytes(StandardCharsets.UTF_8));
+        return shards.get((int) (crc.getValue() % shards.size()));
+    }
+}
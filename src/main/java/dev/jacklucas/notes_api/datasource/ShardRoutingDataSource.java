@@ -0,0 +1,97 @@
+package dev.jacklucas.notes_api.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Sends each connection to the shard that owns the current user.
+ * Work without a user (migrations, startup checks) lands on the first shard.
+ * Must sit behind a LazyConnectionDataSourceProxy so writes to a user mid-move can be told apart from reads.
+ * Directory lookups are cached, so a node may still send a user's writes to the old shard for a moment. Every write
+ * connection therefore takes the user's shared move lock on its shard (see ShardMover) for the length of its
+ * transaction, and is refused while a move holds the lock or once the directory names another shard.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ShardResolver resolver;
+
+    public ShardRoutingDataSource(Map<String, DataSource> shards, String defaultShard, ShardResolver resolver) {
+        this.resolver = resolver;
+        setTargetDataSources(new HashMap<>(shards));
+        setDefaultTargetDataSource(shards.get(defaultShard));
+        afterPropertiesSet();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        var shard = (String) determineCurrentLookupKey();
+        if (shard == null) {
+            return getResolvedDefaultDataSource().getConnection();
+        }
+        var connection = getResolvedDataSources().get(shard).getConnection();
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return connection;
+        }
+        try {
+            guardWrites(connection, CurrentUser.id(), shard);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        var userId = CurrentUser.id();
+        if (userId == null) {
+            return null;
+        }
+
+        var entry = resolver.resolve(userId);
+
+        // Reads keep going from the source shard during a move; writes wait until it is done.
+        if (entry.moving() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            throw new UserMoving(userId);
+        }
+        return entry.shard();
+    }
+
+    /* HELPERS */
+
+    /*
+     * Holds the user's move lock, shared, until the transaction ends; a move waits for it before copying. Outside a
+     * transaction the lock only lasts for this check. Once the lock is held, a move either has not begun, so the write
+     * is copied, or has finished, so the directory is checked again: by then every cached entry that named this shard
+     * has expired.
+     */
+    private void guardWrites(Connection connection, String userId, String shard) throws SQLException {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // The transaction has not begun on this connection yet; LazyConnectionDataSourceProxy would do this next.
+            connection.setAutoCommit(false);
+        }
+        try (var ps = connection.prepareStatement(
+                "select pg_try_advisory_xact_lock_shared(" + ShardMover.LOCK_KEY + ")")) {
+            ps.setString(1, userId);
+            try (var rs = ps.executeQuery()) {
+                rs.next();
+                if (!rs.getBoolean(1)) {
+                    throw new UserMoving(userId);
+                }
+            }
+        }
+        var entry = resolver.resolve(userId);
+        if (entry.moving() || !entry.shard().equals(shard)) {
+            throw new UserMoving(userId);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package dev.jacklucas.notes_api.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+
+/*
+ * Replaces the auto-configured DataSource with per-user shard routing when notes.sharding.shards is set.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(ShardProperties.class)
+@ConditionalOnProperty(name = "notes.sharding.shards[0].url")
+public class ShardingConfig {
+
+    public ShardingConfig(Environment environment) {
+        if (environment.containsProperty("notes.datasource.replicas[0].url")) {
+            throw new IllegalStateException("notes.sharding and notes.datasource.replicas cannot be combined yet.");
+        }
+    }
+
+    @Bean
+    public ShardDataSources shardDataSources(ShardProperties properties) {
+        return new ShardDataSources(properties);
+    }
+
+    @Bean
+    public ShardDirectory shardDirectory(ShardDataSources shards, ShardProperties properties) {
+        return new ShardDirectory(shards.first(), properties.directoryCacheTtl());
+    }
+
+    @Bean
+    public ShardResolver shardResolver(ShardDataSources shards, ShardDirectory directory) {
+        return new ShardResolver(new ArrayList<>(shards.all().keySet()), directory);
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(ShardDataSources shards, ShardResolver resolver) {
+        return new ShardRoutingDataSource(shards.all(), shards.firstName(), resolver);
+    }
+
+    // Defers picking a shard until the first statement, by which point the transaction's read-only flag is set.
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource routing) {
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    public FlywayMigrationStrategy shardMigrationStrategy(ShardDataSources shards) {
+        return new ShardMigrationStrategy(shards.all(), shards.first());
+    }
+
+    @Bean
+    public ShardMover shardMover(ShardDataSources shards, ShardResolver resolver, ShardDirectory directory, ShardProperties properties) {
+        return new ShardMover(shards.all(), resolver, directory, properties.directoryCacheTtl());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "notes.sharding.move.user")
+    public ShardMoveRunner shardMoveRunner(
+            ShardMover mover,
+            ApplicationContext context,
+            @Value("${notes.sharding.move.user}") String userId,
+            @Value("${notes.sharding.move.to}") String targetShard
+    ) {
+        return new ShardMoveRunner(mover, context, userId, targetShard);
+    }
+}
@@ -0,0 +1,11 @@
+package dev.jacklucas.notes_api.datasource;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class UserMoving extends RuntimeException {
+    public UserMoving(String userId) {
+        super("User (%s) is being moved between shards, retry shortly.".formatted(userId));
+    }
+}
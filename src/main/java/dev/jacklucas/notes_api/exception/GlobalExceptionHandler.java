@@ -1,6 +1,12 @@
 package dev.jacklucas.notes_api.exception;
 
+import dev.jacklucas.notes_api.attachment.AttachmentNotFound;
+import dev.jacklucas.notes_api.attachment.AttachmentTooLarge;
+import dev.jacklucas.notes_api.datasource.UserMoving;
+import dev.jacklucas.notes_api.note.InvalidContentEdit;
 import dev.jacklucas.notes_api.note.NoteNotFound;
+import dev.jacklucas.notes_api.note.NoteRevisionConflict;
+import dev.jacklucas.notes_api.revision.RevisionNotFound;
 import dev.jacklucas.notes_api.tag.TagNotFound;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
@@ -70,8 +76,29 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(status).body(exceptionResponse);
     }
 
+    // (400) Handle content edits that do not fit the note.
+    @ExceptionHandler(InvalidContentEdit.class)
+    public ResponseEntity<ExceptionResponse> handleInvalidEdit(InvalidContentEdit ex, HttpServletRequest request) {
+        // Set the status.
+        var status = HttpStatus.BAD_REQUEST;
+
+        // Build the response body.
+        var exceptionResponse = new ExceptionResponse(
+                status.value(),
+                status.getReasonPhrase(),
+                ex.getMessage(),
+                request.getRequestURI(),
+                Instant.now(),
+                null
+        );
+
+        // Log the error and return a response.
+        log.warn(exceptionResponse.toString());
+        return ResponseEntity.status(status).body(exceptionResponse);
+    }
+
     // Handle 404.
-    @ExceptionHandler({NoteNotFound.class, TagNotFound.class})
+    @ExceptionHandler({NoteNotFound.class, TagNotFound.class, RevisionNotFound.class, AttachmentNotFound.class})
     public ResponseEntity<ExceptionResponse> handleNotFound(RuntimeException ex, HttpServletRequest request) {
         // Set the status.
         var status = HttpStatus.NOT_FOUND;
@@ -90,4 +117,67 @@ public class GlobalExceptionHandler {
         log.warn(exceptionResponse.toString());
         return ResponseEntity.status(status).body(exceptionResponse);
     }
+
+    // (409) Handle edits made against a revision that is no longer current.
+    @ExceptionHandler(NoteRevisionConflict.class)
+    public ResponseEntity<ExceptionResponse> handleConflict(NoteRevisionConflict ex, HttpServletRequest request) {
+        // Set the status.
+        var status = HttpStatus.CONFLICT;
+
+        // Build the response body.
+        var exceptionResponse = new ExceptionResponse(
+                status.value(),
+                status.getReasonPhrase(),
+                ex.getMessage(),
+                request.getRequestURI(),
+                Instant.now(),
+                null
+        );
+
+        // Log the error and return a response.
+        log.warn(exceptionResponse.toString());
+        return ResponseEntity.status(status).body(exceptionResponse);
+    }
+
+    // (413) Handle attachments over the size limit.
+    @ExceptionHandler(AttachmentTooLarge.class)
+    public ResponseEntity<ExceptionResponse> handleTooLarge(AttachmentTooLarge ex, HttpServletRequest request) {
+        // Set the status.
+        var status = HttpStatus.PAYLOAD_TOO_LARGE;
+
+        // Build the response body.
+        var exceptionResponse = new ExceptionResponse(
+                status.value(),
+                status.getReasonPhrase(),
+                ex.getMessage(),
+                request.getRequestURI(),
+                Instant.now(),
+                null
+        );
+
+        // Log the error and return a response.
+        log.warn(exceptionResponse.toString());
+        return ResponseEntity.status(status).body(exceptionResponse);
+    }
+
+    // (503) Handle writes for a user who is being moved between shards.
+    @ExceptionHandler(UserMoving.class)
+    public ResponseEntity<ExceptionResponse> handleUserMoving(UserMoving ex, HttpServletRequest request) {
+        // Set the status.
+        var status = HttpStatus.SERVICE_UNAVAILABLE;
+
+        // Build the response body.
+        var exceptionResponse = new ExceptionResponse(
+                status.value(),
+                status.getReasonPhrase(),
+                ex.getMessage(),
+                request.getRequestURI(),
+                Instant.now(),
+                null
+        );
+
+        // Log the error and return a response that tells the client when to retry.
+        log.warn(exceptionResponse.toString());
+        return ResponseEntity.status(status).header("Retry-After", "5").body(exceptionResponse);
+    }
 }
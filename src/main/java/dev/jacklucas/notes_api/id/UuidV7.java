@@ -0,0 +1,58 @@
+package dev.jacklucas.notes_api.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/*
+ * Time-ordered UUIDs (RFC 9562 version 7): 48 bits of Unix milliseconds, then a 12-bit sequence, then 62 random bits.
+ * Ids made later sort higher, so new rows land at the right-hand edge of the primary key and id indexes instead of on
+ * a random leaf page.
+ * Within a millisecond the sequence counts up from a random start, so ids from one JVM are strictly increasing. When
+ * it runs out, or the clock steps back, the timestamp borrows from the next millisecond rather than going backwards.
+ * Used by the entities through @UuidGenerator(algorithm = UuidV7.class), or next() where Note assigns its own id; SQL
+ * inserts get uuid_generate_v7() (V8).
+ */
+public class UuidV7 implements UuidValueGenerator {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int SEQUENCE_MAX = 0xFFF;
+
+    private static final Object LOCK = new Object();
+    private static long lastMillis;
+    private static int sequence;
+
+    public static UUID next() {
+        long millis;
+        int seq;
+        synchronized (LOCK) {
+            long now = System.currentTimeMillis();
+            if (now > lastMillis) {
+                lastMillis = now;
+                // Start in the lower half so a busy millisecond still has room to count up.
+                sequence = RANDOM.nextInt(SEQUENCE_MAX / 2);
+            } else if (++sequence > SEQUENCE_MAX) {
+                lastMillis++;
+                sequence = 0;
+            }
+            millis = lastMillis;
+            seq = sequence;
+        }
+
+        long msb = (millis << 16) | 0x7000L | seq;
+        long lsb = (RANDOM.nextLong() & 0x3FFF_FFFF_FFFF_FFFFL) | 0x8000_0000_0000_0000L;
+        return new UUID(msb, lsb);
+    }
+
+    // The Unix time in milliseconds a version 7 id was made at.
+    public static long millis(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return next();
+    }
+}
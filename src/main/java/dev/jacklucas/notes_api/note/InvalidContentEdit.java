@@ -0,0 +1,11 @@
+package dev.jacklucas.notes_api.note;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidContentEdit extends RuntimeException {
+    public InvalidContentEdit(int index, int offset, int delete, int length) {
+        super("Edit %s (offset %s, delete %s) is outside the content (%s characters).".formatted(index, offset, delete, length));
+    }
+}
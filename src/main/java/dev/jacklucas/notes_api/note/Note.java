@@ -1,5 +1,6 @@
 package dev.jacklucas.notes_api.note;
 
+import dev.jacklucas.notes_api.id.UuidV7;
 import dev.jacklucas.notes_api.tag.Tag;
 import jakarta.persistence.*;
 
@@ -7,8 +8,10 @@ import static jakarta.persistence.CascadeType.*;
 
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
+import org.hibernate.annotations.PartitionKey;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
@@ -23,11 +26,14 @@ import java.util.UUID;
 @Builder
 public class Note {
 
+    // Assigned in onCreate rather than by @UuidGenerator: tags are keyed by (userId, id) below, and Hibernate would run
+    // the generator a second time for that key.
     @Id
-    @GeneratedValue
     private UUID id;
 
+    // Added to every update and delete, so they touch one partition.
     @NotBlank
+    @PartitionKey
     @Column(nullable = false)
     private String userId;
 
@@ -40,28 +46,46 @@ public class Note {
 
     private boolean archived;
 
+    // Latest recorded revision. New notes start at 1; notes from before revisions existed have 0.
+    @Builder.Default
+    @Column(nullable = false)
+    private int revision = 1;
+
     @Column(nullable = false)
     private Instant createdAt;
 
     @Column(nullable = false)
     private Instant updatedAt;
 
+    // Postgres keeps microseconds; truncating here makes a saved note read back exactly as it was returned.
     @PrePersist
     void onCreate() {
-        var now = Instant.now();
+        if (id == null) {
+            id = UuidV7.next();
+        }
+        var now = Instant.now().truncatedTo(ChronoUnit.MICROS);
         createdAt = now;
         updatedAt = now;
     }
 
     @PreUpdate
     void onUpdate() {
-        updatedAt = Instant.now();
+        updatedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
     }
 
+    /*
+     * note_tags is partitioned by user_id, so links are keyed by the note's (user_id, id): inserts fill user_id in, and
+     * deletes filter on it and touch one partition.
+     * Loading this collection joins tags by id alone, across every partition; read tag names through
+     * NoteRepository.findTagNames instead unless they are already in memory.
+     */
     @ManyToMany(fetch = FetchType.LAZY, cascade = {PERSIST, MERGE})
     @JoinTable(
             name = "note_tags",
-            joinColumns = @JoinColumn(name = "note_id"),
+            joinColumns = {
+                    @JoinColumn(name = "user_id", referencedColumnName = "userId"),
+                    @JoinColumn(name = "note_id", referencedColumnName = "id")
+            },
             inverseJoinColumns = @JoinColumn(name = "tag_id")
     )
     private Set<Tag> tags = new HashSet<>();
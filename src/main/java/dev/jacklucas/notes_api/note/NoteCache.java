@@ -0,0 +1,209 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * GET /api/notes/{id} responses on this instance, keyed by owner and note id, within a byte budget.
+ * Writes here replace the entry after they commit; every write, wherever it comes from, invalidates it through
+ * NotesChangeFeed.
+ * Entries are stamped with generations (everything, the owner, the note's stripe) taken before the database read.
+ * An invalidation bumps them, so a read that raced a write is never stored or served. A write-through is stamped
+ * inside the write's transaction and stored under the generations its own invalidations lead to, so one that lands
+ * after a newer write by a peer is never served either.
+ * The cache is suspended while peers' invalidations cannot be received.
+ */
+public class NoteCache {
+
+    public record Stamp(String userId, UUID noteId, long epoch, long userGeneration, long noteGeneration) {
+    }
+
+    private record Key(String userId, UUID noteId) {
+    }
+
+    private record Entry(ReadNoteResponse note, Stamp stamp, long bytes) {
+    }
+
+    // Users and notes share generations by stripe, so memory stays fixed; a collision only costs a miss.
+    private static final int STRIPES = 4096;
+    // How often a write made here bumps its note's stripe itself: as it commits (onNotesChanged), so this instance
+    // never serves what it just overwrote, and again when its own notification arrives. Writes that leave a NoteSaved
+    // send that notification themselves too, so it arrives even when they changed nothing.
+    private static final int OWN_BUMPS = 2;
+
+    private final long maxBytes;
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLongArray userGenerations = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray noteGenerations = new AtomicLongArray(STRIPES);
+    // The updatedAt of the newest write-through per stripe, so a late write-through cannot replace a newer one.
+    private final long[] writtenAt = new long[STRIPES];
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private volatile boolean suspended = true;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public NoteCache(long maxBytes, MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes;
+        this.hits = meterRegistry.counter("notes.note-cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("notes.note-cache.requests", "result", "miss");
+        Gauge.builder("notes.note-cache.bytes", this, NoteCache::bytes).register(meterRegistry);
+    }
+
+    // Take before reading the note from the database.
+    public Stamp stamp(String userId, UUID noteId) {
+        return new Stamp(userId, noteId, epoch.get(), userGenerations.get(stripe(userId)),
+                noteGenerations.get(stripe(noteId)));
+    }
+
+    public synchronized ReadNoteResponse get(Stamp stamp) {
+        var key = new Key(stamp.userId(), stamp.noteId());
+        var entry = entries.get(key);
+        if (entry != null && !entry.stamp().equals(stamp)) {
+            // A write-through waiting for its own notification stays, but is not served yet.
+            if (!ahead(entry.stamp(), stamp)) {
+                entries.remove(key);
+                bytes -= entry.bytes();
+            }
+            entry = null;
+        }
+        (entry == null ? misses : hits).increment();
+        return entry == null ? null : entry.note();
+    }
+
+    public synchronized void put(Stamp stamp, ReadNoteResponse note) {
+        // Suspended, or something was written since the stamp was taken.
+        if (suspended || !stamp.equals(stamp(stamp.userId(), stamp.noteId()))) {
+            return;
+        }
+        store(stamp, note);
+    }
+
+    // A null noteId invalidates all of the user's notes.
+    public void invalidate(String userId, UUID noteId) {
+        if (noteId == null) {
+            userGenerations.incrementAndGet(stripe(userId));
+        } else {
+            noteGenerations.incrementAndGet(stripe(noteId));
+        }
+    }
+
+    // Stops serving and storing until resumed, for as long as peers' invalidations may be missed.
+    public synchronized void suspend() {
+        suspended = true;
+        epoch.incrementAndGet();
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized void resume() {
+        epoch.incrementAndGet();
+        suspended = false;
+    }
+
+    public boolean suspended() {
+        return suspended;
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    // Runs after the write commits, or right away when there is no transaction, as for writes heard through the feed.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNotesChanged(NotesChanged event) {
+        invalidate(event.userId(), event.noteId());
+    }
+
+    // Suspended until the feed hears every database, and again whenever it stops.
+    @EventListener
+    public void onFeedStatus(NotesFeedStatus status) {
+        if (status.live()) {
+            resume();
+        } else {
+            suspend();
+        }
+    }
+
+    // Published after NotesChanged by the same write, so it runs after the invalidation.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNoteSaved(NoteSaved event) {
+        if (event.stamp() == null) {
+            return;
+        }
+        var noteId = UUID.fromString(event.note().id());
+        var updatedAt = Instant.parse(event.note().updatedAt());
+        long micros = updatedAt.getEpochSecond() * 1_000_000 + updatedAt.getNano() / 1_000;
+        synchronized (this) {
+            int stripe = stripe(noteId);
+            if (micros < writtenAt[stripe]) {
+                return;
+            }
+            writtenAt[stripe] = micros;
+
+            // Only the write's own bumps may have happened since its stamp; any other means newer data. Its own
+            // notification arrives before a later write's, since Postgres delivers them in commit order.
+            var taken = event.stamp();
+            var expected = new Stamp(taken.userId(), taken.noteId(), taken.epoch(), taken.userGeneration(),
+                    taken.noteGeneration() + OWN_BUMPS);
+            var current = stamp(taken.userId(), taken.noteId());
+            if (!suspended && (expected.equals(current) || ahead(expected, current))) {
+                store(expected, event.note());
+            }
+        }
+    }
+
+    /* HELPERS */
+
+    private static int stripe(UUID noteId) {
+        return (noteId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    private static int stripe(String userId) {
+        return (userId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    // The same generations, except for a note generation that has not caught up yet.
+    private static boolean ahead(Stamp stamp, Stamp current) {
+        return stamp.epoch() == current.epoch() && stamp.userGeneration() == current.userGeneration()
+                && stamp.noteGeneration() > current.noteGeneration();
+    }
+
+    private void store(Stamp stamp, ReadNoteResponse note) {
+        // One note that would take most of the budget is not worth evicting everything else for.
+        long size = size(note);
+        if (size > maxBytes / 4) {
+            return;
+        }
+
+        var previous = entries.put(new Key(stamp.userId(), stamp.noteId()), new Entry(note, stamp, size));
+        bytes += size - (previous == null ? 0 : previous.bytes());
+
+        // Evict least recently used entries until back under budget.
+        var it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().bytes();
+            it.remove();
+        }
+    }
+
+    // Rough heap size: the strings as UTF-16 plus a fixed overhead per entry and per tag.
+    private static long size(ReadNoteResponse note) {
+        long chars = note.title().length() + (note.content() == null ? 0 : note.content().length());
+        for (String tag : note.tags()) {
+            chars += tag.length() + 24;
+        }
+        return 256 + chars * 2;
+    }
+}
@@ -0,0 +1,33 @@
+package dev.jacklucas.notes_api.note;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.unit.DataSize;
+
+/*
+ * Opt-in with notes.note-cache.enabled=true. Unlike the list cache, instances invalidate each other through
+ * NotesChangeFeed, so writes may land on any of them.
+ */
+@Configuration
+@ConditionalOnProperty(name = "notes.note-cache.enabled", havingValue = "true")
+public class NoteCacheConfig {
+
+    // A miss read from a lagging replica could be cached after the peer's invalidation has already arrived.
+    public NoteCacheConfig(Environment environment) {
+        if (environment.containsProperty("notes.datasource.replicas[0].url")) {
+            throw new IllegalStateException("notes.note-cache and notes.datasource.replicas cannot be combined yet.");
+        }
+    }
+
+    @Bean
+    public NoteCache noteCache(
+            @Value("${notes.note-cache.max-size:64MB}") DataSize maxSize,
+            MeterRegistry meterRegistry
+    ) {
+        return new NoteCache(maxSize.toBytes(), meterRegistry);
+    }
+}
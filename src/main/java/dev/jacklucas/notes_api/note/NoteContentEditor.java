@@ -0,0 +1,93 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.note.dto.EditNoteContentRequest;
+import dev.jacklucas.notes_api.note.dto.EditNoteContentResponse;
+import dev.jacklucas.notes_api.revision.RevisionRecorder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Applies insert/delete edits to a note's content inside the database, so neither the request nor the server holds
+ * the whole note. The row is locked and its revision checked against the client's base, the edits are validated
+ * against the content length alone, and a single UPDATE splices them in with nested overlay() calls.
+ * Offsets count Unicode code points, which is what Postgres string functions count.
+ * Callers run this inside a transaction.
+ */
+@Component
+public class NoteContentEditor {
+
+    private final JdbcTemplate jdbc;
+    private final RevisionRecorder revisionRecorder;
+
+    public NoteContentEditor(JdbcTemplate jdbc, RevisionRecorder revisionRecorder) {
+        this.jdbc = jdbc;
+        this.revisionRecorder = revisionRecorder;
+    }
+
+    public EditNoteContentResponse apply(String userId, UUID id, EditNoteContentRequest request) {
+        // Lock the row and read only what the edits are checked against.
+        var current = jdbc.query("""
+                select revision, char_length(coalesce(content, '')) from notes
+                where user_id = ? and id = ?
+                for update
+                """, (rs, i) -> new int[]{rs.getInt(1), rs.getInt(2)}, userId, id);
+        if (current.isEmpty()) {
+            throw new NoteNotFound(id);
+        }
+
+        int revision = current.getFirst()[0];
+        int length = current.getFirst()[1];
+        if (revision != request.baseRevision()) {
+            throw new NoteRevisionConflict(id, revision, request.baseRevision());
+        }
+
+        // Track the span that changed, in the coordinates of the content after each edit.
+        int from = Integer.MAX_VALUE;
+        int to = 0;
+        List<Object> args = new ArrayList<>();
+        var content = new StringBuilder("coalesce(content, '')");
+        for (int i = 0; i < request.edits().size(); i++) {
+            var edit = request.edits().get(i);
+            if ((long) edit.offset() + edit.delete() > length) {
+                throw new InvalidContentEdit(i, edit.offset(), edit.delete(), length);
+            }
+
+            int inserted = edit.insertLength();
+            to = from == Integer.MAX_VALUE
+                    ? edit.offset() + inserted
+                    : Math.max(to, edit.offset() + edit.delete()) - edit.delete() + inserted;
+            from = Math.min(from, edit.offset());
+            length += inserted - edit.delete();
+
+            content.insert(0, "overlay(").append(" placing ? from ? for ?)");
+            args.add(edit.insert() == null ? "" : edit.insert());
+            args.add(edit.offset() + 1);
+            args.add(edit.delete());
+        }
+
+        // History for notes from before revisions existed starts with the state they had.
+        if (revision == 0) {
+            revisionRecorder.recordLegacySnapshot(userId, id);
+            revision = 1;
+        }
+
+        int next = revision + 1;
+        args.add(next);
+        args.add(userId);
+        args.add(id);
+        var updatedAt = jdbc.queryForObject("""
+                update notes set content = %s, revision = ?, updated_at = now()
+                where user_id = ? and id = ?
+                returning updated_at
+                """.formatted(content), Timestamp.class, args.toArray());
+
+        revisionRecorder.recordEdit(userId, id, next, from, length - to);
+
+        return new EditNoteContentResponse(id.toString(), next, length, updatedAt.toInstant().toString());
+    }
+}
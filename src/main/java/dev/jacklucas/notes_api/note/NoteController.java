@@ -1,25 +1,41 @@
 package dev.jacklucas.notes_api.note;
 
+import dev.jacklucas.notes_api.counter.UserCounters;
+import dev.jacklucas.notes_api.note.dto.BatchGetNotesRequest;
+import dev.jacklucas.notes_api.note.dto.BatchGetNotesResponse;
+import dev.jacklucas.notes_api.note.dto.BulkTagRequest;
+import dev.jacklucas.notes_api.note.dto.BulkTagResponse;
 import dev.jacklucas.notes_api.note.dto.CreateNoteRequest;
+import dev.jacklucas.notes_api.note.dto.EditNoteContentRequest;
+import dev.jacklucas.notes_api.note.dto.EditNoteContentResponse;
 import dev.jacklucas.notes_api.note.dto.PatchNoteRequest;
 import dev.jacklucas.notes_api.note.dto.PutNoteRequest;
 import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+import dev.jacklucas.notes_api.revision.RevisionRecorder;
 import dev.jacklucas.notes_api.tag.Tag;
 import dev.jacklucas.notes_api.tag.TagRepository;
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.transaction.Transactional;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
 import java.util.*;
 
 @Slf4j
@@ -29,13 +45,44 @@ public class NoteController {
 
     private final NoteRepository noteRepository;
     private final TagRepository tagRepository;
-
-    public NoteController(NoteRepository noteRepository, TagRepository tagRepository) {
+    private final RevisionRecorder revisionRecorder;
+    private final NoteContentEditor contentEditor;
+    private final NoteTagger tagger;
+    private final UserCounters counters;
+    private final ApplicationEventPublisher events;
+    // Null unless notes.list-fast-path.enabled is set.
+    private final NoteListFastPath fastPath;
+    // Null unless notes.patch-coalescing.enabled is set.
+    private final PatchCoalescer coalescer;
+    // Null unless notes.note-cache.enabled is set.
+    private final NoteCache noteCache;
+
+    public NoteController(
+            NoteRepository noteRepository,
+            TagRepository tagRepository,
+            RevisionRecorder revisionRecorder,
+            NoteContentEditor contentEditor,
+            NoteTagger tagger,
+            UserCounters counters,
+            ApplicationEventPublisher events,
+            ObjectProvider<NoteListFastPath> fastPath,
+            ObjectProvider<PatchCoalescer> coalescer,
+            ObjectProvider<NoteCache> noteCache
+    ) {
         this.noteRepository = noteRepository;
         this.tagRepository = tagRepository;
+        this.revisionRecorder = revisionRecorder;
+        this.contentEditor = contentEditor;
+        this.tagger = tagger;
+        this.counters = counters;
+        this.events = events;
+        this.fastPath = fastPath.getIfAvailable();
+        this.coalescer = coalescer.getIfAvailable();
+        this.noteCache = noteCache.getIfAvailable();
     }
 
     // Route handles creating new notes.
+    @Transactional
     @PostMapping
     public ResponseEntity<ReadNoteResponse> createNote(
             @AuthenticationPrincipal Jwt jwt,
@@ -54,30 +101,52 @@ public class NoteController {
 
         note.setTags(resolveTags(request.tags(), userId));
 
-        // Return the note.
+        // Save the note and its first revision, then return it.
         var saved = noteRepository.save(note);
-        return ResponseEntity.status(HttpStatus.CREATED).body(ReadNoteResponse.from(saved));
+        revisionRecorder.recordCreated(saved);
+        var response = response(userId, saved);
+        events.publishEvent(new NotesChanged(userId, saved.getId()));
+        events.publishEvent(noteSaved(userId, response));
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
     // Route handles getting paginated list of notes.
+    @Transactional(readOnly = true)
     @GetMapping
     public Page<ReadNoteResponse> listNotes(
             @AuthenticationPrincipal Jwt jwt,
             @RequestParam(required = false) String tag,
-            @PageableDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable
-    ) {
+            @PageableDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException, HttpMediaTypeNotAcceptableException {
         final String userId = jwt.getSubject();
 
         var param = (tag == null) ? null : tag.trim();
 
+        // Stream straight from JDBC into the response; returning null tells Spring it is already written.
+        // A format it cannot write leaves the request to the converters.
+        var format = (fastPath != null && fastPath.supports(pageable))
+                ? fastPath.negotiate(new ServletWebRequest(request))
+                : null;
+        if (format != null) {
+            response.setContentType(format.toString());
+            fastPath.write(userId, (param == null || param.isEmpty()) ? null : param, pageable, format,
+                    response.getOutputStream());
+            return null;
+        }
+
         if (param != null && !param.isEmpty()) {
-            return noteRepository.findByUserIdAndTags_Name(userId, param, pageable).map(ReadNoteResponse::from);
+            return responses(userId, noteRepository.findByUserIdAndTags_Name(userId, param, pageable));
         }
 
-        return noteRepository.findByUserId(userId, pageable).map(ReadNoteResponse::from);
+        // The total is only looked up when the page itself does not tell it.
+        var notes = noteRepository.findByUserId(userId, pageable);
+        return responses(userId, PageableExecutionUtils.getPage(notes, pageable, () -> counters.notes(userId)));
     }
 
     // Route handles getting note by ID.
+    @Transactional(readOnly = true)
     @GetMapping("/{id}")
     public ReadNoteResponse getNoteById(
             @AuthenticationPrincipal Jwt jwt,
@@ -85,11 +154,88 @@ public class NoteController {
     ) {
         final String ownerId = jwt.getSubject();
 
-        var note = noteRepository.findById(id)
-                .filter(n -> n.getUserId().equals(ownerId))
-                .orElseThrow(() -> new NoteNotFound(id));
+        // Stamp before reading, so a read that races a write is not cached.
+        var stamp = noteCache == null ? null : noteCache.stamp(ownerId, id);
+        var response = stamp == null ? null : noteCache.get(stamp);
+        if (response == null) {
+            var note = noteRepository.findByIdAndUserId(id, ownerId)
+                    .orElseThrow(() -> new NoteNotFound(id));
+            response = response(ownerId, note);
+            if (stamp != null) {
+                noteCache.put(stamp, response);
+            }
+        }
+
+        // Show content this instance has acknowledged but not written yet.
+        return coalescer == null ? response : coalescer.overlay(response, ownerId);
+    }
+
+    // Route handles getting many notes by ID: one query for the notes, one for their tags.
+    @Transactional(readOnly = true)
+    @PostMapping("/batch-get")
+    public BatchGetNotesResponse batchGetNotes(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestBody @Valid BatchGetNotesRequest request
+    ) {
+        final String ownerId = jwt.getSubject();
+
+        var ids = new LinkedHashSet<>(request.ids());
+        Map<UUID, Note> notes = new HashMap<>();
+        for (var note : noteRepository.findByUserIdAndIdIn(ownerId, ids)) {
+            notes.put(note.getId(), note);
+        }
+
+        var tags = tagNames(ownerId, notes.keySet());
+
+        // Answer in request order, repeating duplicates.
+        List<BatchGetNotesResponse.Result> results = new ArrayList<>(request.ids().size());
+        for (var id : request.ids()) {
+            var note = notes.get(id);
+            if (note == null) {
+                results.add(BatchGetNotesResponse.Result.notFound(id.toString()));
+                continue;
+            }
+            var response = ReadNoteResponse.from(note, tags.getOrDefault(id, List.of()));
+            results.add(BatchGetNotesResponse.Result.found(
+                    coalescer == null ? response : coalescer.overlay(response, ownerId)));
+        }
+        return new BatchGetNotesResponse(results);
+    }
+
+    // Route handles adding tags to many notes at once, picked by id or by filter. No note is loaded.
+    @Transactional
+    @PostMapping("/bulk-tag")
+    public BulkTagResponse bulkTagNotes(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestBody @Valid BulkTagRequest request
+    ) {
+        final String userId = jwt.getSubject();
 
-        return ReadNoteResponse.from(note);
+        var response = tagger.tag(userId, request);
+        log.info("Tagged {} of {} notes with {}", response.updated(), response.matched(), request.tags());
+
+        if (response.updated() > 0) {
+            events.publishEvent(new NotesChanged(userId));
+        }
+        return response;
+    }
+
+    // Route handles removing tags from many notes at once, picked by id or by filter. No note is loaded.
+    @Transactional
+    @PostMapping("/bulk-untag")
+    public BulkTagResponse bulkUntagNotes(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestBody @Valid BulkTagRequest request
+    ) {
+        final String userId = jwt.getSubject();
+
+        var response = tagger.untag(userId, request);
+        log.info("Untagged {} of {} notes from {}", response.updated(), response.matched(), request.tags());
+
+        if (response.updated() > 0) {
+            events.publishEvent(new NotesChanged(userId));
+        }
+        return response;
     }
 
     // Route handles updating a Note by ID.
@@ -105,23 +251,28 @@ public class NoteController {
         final String userId = jwt.getSubject();
 
         // Get the note that we want to update.
-        var note = noteRepository.findById(id)
-                .filter(n -> n.getUserId().equals(userId))
+        var note = noteRepository.findForUpdateByIdAndUserId(id, userId)
                 .orElseThrow(() -> new NoteNotFound(id));
+        var before = RevisionRecorder.State.of(note);
+        takePending(note);
 
         // Update the values.
         note.setTitle(request.title().trim());
         note.setContent(request.content().trim());
         note.setArchived(request.archived());
-        note.setTags(resolveTags(request.tags(), userId));
 
         // Handle the tags.
         var resolvedTags = resolveTags(request.tags(), userId);
         note.setTags(resolvedTags);
+        revisionRecorder.recordChange(before, note);
 
-        // Save the note and return it.
+        // Save the note and return it. Flushing runs @PreUpdate, so the response and cache get the new updatedAt.
         var saved = noteRepository.save(note);
-        return ResponseEntity.status(HttpStatus.OK).body(ReadNoteResponse.from(saved));
+        noteRepository.flush();
+        var response = response(userId, saved);
+        events.publishEvent(new NotesChanged(userId, id));
+        events.publishEvent(noteSaved(userId, response));
+        return ResponseEntity.status(HttpStatus.OK).body(response);
     }
 
     @Transactional
@@ -134,20 +285,54 @@ public class NoteController {
 
         final String userId = jwt.getSubject();
 
+        // Autosaves that only change content are buffered and written once the note goes quiet.
+        if (coalescer != null && isContentOnly(request)) {
+            var buffered = coalescer.patchContent(userId, id, request.content().get());
+            if (buffered != null) {
+                return ResponseEntity.status(HttpStatus.OK).body(buffered);
+            }
+        }
+
         // Get the note that we want to patch.
-        var note = noteRepository.findById(id)
-                .filter(n -> n.getUserId().equals(userId))
+        var note = noteRepository.findForUpdateByIdAndUserId(id, userId)
                 .orElseThrow(() -> new NoteNotFound(id));
+        var before = RevisionRecorder.State.of(note);
+        takePending(note);
 
         // Update the values.
         request.title().ifPresent(note::setTitle);
         request.content().ifPresent(note::setContent);
         request.archived().ifPresent(note::setArchived);
         request.tags().ifPresent(tags -> note.setTags(resolveTags(tags, userId)));
+        revisionRecorder.recordChange(before, note);
 
-        // Save the note and return a good response.
+        // Save the note and return a good response, flushed for the new updatedAt as in PUT.
         var savedNote = noteRepository.save(note);
-        return ResponseEntity.status(HttpStatus.OK).body(ReadNoteResponse.from(savedNote));
+        noteRepository.flush();
+        var response = response(userId, savedNote);
+        events.publishEvent(new NotesChanged(userId, id));
+        events.publishEvent(noteSaved(userId, response));
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
+    // Route handles small edits to large notes: only the edits travel, and they are applied in the database.
+    @Transactional
+    @PatchMapping("/{id}/content")
+    public EditNoteContentResponse editNoteContent(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id,
+            @RequestBody @Valid EditNoteContentRequest request
+    ) {
+        final String userId = jwt.getSubject();
+
+        // Buffered autosaves go first; they bump the revision, so edits based on the old one are refused.
+        if (coalescer != null) {
+            coalescer.flush(id, userId);
+        }
+
+        var response = contentEditor.apply(userId, id, request);
+        events.publishEvent(new NotesChanged(userId, id));
+        return response;
     }
 
     // Route handles deleting a note by ID.
@@ -160,16 +345,71 @@ public class NoteController {
 
         final String userId = jwt.getSubject();
 
-        var note = noteRepository.findById(id)
-                .filter(n -> n.getUserId().equals(userId))
+        var note = noteRepository.findByIdAndUserId(id, userId)
                 .orElseThrow(() -> new NoteNotFound(id));
 
+        if (coalescer != null) {
+            coalescer.discard(id, userId);
+        }
         noteRepository.delete(note);
+        events.publishEvent(new NotesChanged(userId, id));
         return ResponseEntity.noContent().build();
     }
 
     /* HELPERS */
 
+    // Stamped here, inside the write's transaction, so the write-through can tell which invalidations came after it.
+    private NoteSaved noteSaved(String userId, ReadNoteResponse response) {
+        if (noteCache == null) {
+            return new NoteSaved(userId, response, null);
+        }
+        var noteId = UUID.fromString(response.id());
+        // The write-through counts on the write's own notification, but a write that changed nothing (PATCH {}, an
+        // identical PUT) fires no trigger. Postgres delivers identical payloads from one transaction once, so this
+        // adds nothing when the triggers did fire.
+        noteRepository.notifyNotesCache(noteId + "|" + userId);
+        return new NoteSaved(userId, response, noteCache.stamp(userId, noteId));
+    }
+
+    // Folds content buffered by an earlier autosave into this write, so it is neither lost nor replayed on top.
+    private void takePending(Note note) {
+        if (coalescer != null) {
+            coalescer.applyPending(note);
+        }
+    }
+
+    // The note's tags come from memory when they are loaded, otherwise from findTagNames, which stays on one partition.
+    private ReadNoteResponse response(String userId, Note note) {
+        if (Hibernate.isInitialized(note.getTags())) {
+            return ReadNoteResponse.from(note);
+        }
+        return ReadNoteResponse.from(note, tagNames(userId, List.of(note.getId())).getOrDefault(note.getId(), List.of()));
+    }
+
+    // A page of notes with all of their tags from one query.
+    private Page<ReadNoteResponse> responses(String userId, Page<Note> notes) {
+        var tags = tagNames(userId, notes.map(Note::getId).getContent());
+        return notes.map(n -> ReadNoteResponse.from(n, tags.getOrDefault(n.getId(), List.of())));
+    }
+
+    // Tag names by note id, for notes of the user's.
+    private Map<UUID, List<String>> tagNames(String userId, Collection<UUID> noteIds) {
+        Map<UUID, List<String>> tags = new HashMap<>();
+        if (!noteIds.isEmpty()) {
+            for (var tag : noteRepository.findTagNames(userId, noteIds)) {
+                tags.computeIfAbsent(tag.noteId(), k -> new ArrayList<>()).add(tag.name());
+            }
+        }
+        return tags;
+    }
+
+    private static boolean isContentOnly(PatchNoteRequest request) {
+        return request.content().isPresent()
+                && request.title().isEmpty()
+                && request.tags().isEmpty()
+                && request.archived().isEmpty();
+    }
+
     /*
      * Takes a list of tag names and returns the corresponding Tag entities.
      * Creates new Tag records if they don't already exist.
@@ -191,15 +431,24 @@ public class NoteController {
             }
         }
 
-        // Find or create each tag.
-        Set<Tag> resolvedTags = new HashSet<>();
+        // Find the existing tags in one query.
+        Set<Tag> resolvedTags = new HashSet<>(tagRepository.findByUserIdAndNameIn(userId, normalizedTags));
+
+        // Build the missing tags and save them together so the inserts are batched.
+        Set<String> existingNames = new HashSet<>();
+        for (Tag t : resolvedTags) {
+            existingNames.add(t.getName());
+        }
+
+        List<Tag> newTags = new ArrayList<>();
         for (String name : normalizedTags) {
-            // Add the existing tag or build, save, and return a new tag.
-            resolvedTags.add(tagRepository.findByNameAndUserId(name, userId)
-                    .orElseGet(() -> {
-                        var newTag = Tag.builder().name(name).userId(userId).build();
-                        return tagRepository.save(newTag);
-                    }));
+            if (!existingNames.contains(name)) {
+                newTags.add(Tag.builder().name(name).userId(userId).build());
+            }
+        }
+
+        if (!newTags.isEmpty()) {
+            resolvedTags.addAll(tagRepository.saveAll(newTags));
         }
 
         return resolvedTags;
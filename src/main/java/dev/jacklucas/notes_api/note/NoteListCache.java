@@ -0,0 +1,119 @@
+package dev.jacklucas.notes_api.note;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Serialized GET /api/notes responses, keyed by user, query, and the user's generation.
+ * A write bumps the user's generation after it commits, so older entries stop matching and age out of the LRU.
+ * Users share generations by stripe, so memory stays fixed however many users write; a collision only costs a miss.
+ * Callers must take the key before reading from the database: a read that races a write is then stored under the
+ * old generation, where nobody looks for it.
+ * Peers' writes only reach the generations through NotesChangeFeed, so the cache is suspended and emptied while the
+ * feed is down. Keys also carry an epoch, so a read that began before the feed went down is not stored after it
+ * comes back.
+ */
+public class NoteListCache {
+
+    public record Key(String userId, long epoch, long generation, String query) {
+    }
+
+    public record Entry(byte[] body, String contentType) {
+    }
+
+    private static final int STRIPES = 4096;
+
+    private final long maxBytes;
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private volatile boolean suspended = true;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public NoteListCache(long maxBytes, MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes;
+        this.hits = meterRegistry.counter("notes.list-cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("notes.list-cache.requests", "result", "miss");
+        Gauge.builder("notes.list-cache.bytes", this, NoteListCache::bytes).register(meterRegistry);
+    }
+
+    public Key key(String userId, String query) {
+        return new Key(userId, epoch.get(), generations.get(stripe(userId)), query);
+    }
+
+    public synchronized Entry get(Key key) {
+        var entry = suspended ? null : entries.get(key);
+        (entry == null ? misses : hits).increment();
+        return entry;
+    }
+
+    public synchronized void put(Key key, Entry entry) {
+        // One response that would take most of the budget is not worth evicting everything else for.
+        if (suspended || key.epoch() != epoch.get() || entry.body().length > maxBytes / 4) {
+            return;
+        }
+
+        var previous = entries.put(key, entry);
+        bytes += entry.body().length - (previous == null ? 0 : previous.body().length);
+
+        // Evict least recently used entries until back under budget.
+        var it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().body().length;
+            it.remove();
+        }
+    }
+
+    // Stops serving and storing until resumed, for as long as peers' writes may be missed.
+    public synchronized void suspend() {
+        suspended = true;
+        epoch.incrementAndGet();
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized void resume() {
+        epoch.incrementAndGet();
+        suspended = false;
+    }
+
+    public boolean suspended() {
+        return suspended;
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    // Runs after the write commits, or right away when there is no transaction.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNotesChanged(NotesChanged event) {
+        generations.incrementAndGet(stripe(event.userId()));
+    }
+
+    // Suspended until the feed hears every database, and again whenever it stops.
+    @EventListener
+    public void onFeedStatus(NotesFeedStatus status) {
+        if (status.live()) {
+            resume();
+        } else {
+            suspend();
+        }
+    }
+
+    /* HELPERS */
+
+    private static int stripe(String userId) {
+        return (userId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+}
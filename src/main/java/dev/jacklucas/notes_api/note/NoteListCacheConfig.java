@@ -0,0 +1,31 @@
+package dev.jacklucas.notes_api.note;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/*
+ * Opt-in with notes.list-cache.enabled=true.
+ * Generations live in memory; peers' writes bump them through NotesChangeFeed, and the cache is suspended while the
+ * feed is down.
+ */
+@Configuration
+@ConditionalOnProperty(name = "notes.list-cache.enabled", havingValue = "true")
+public class NoteListCacheConfig {
+
+    @Bean
+    public NoteListCache noteListCache(
+            @Value("${notes.list-cache.max-size:64MB}") DataSize maxSize,
+            MeterRegistry meterRegistry
+    ) {
+        return new NoteListCache(maxSize.toBytes(), meterRegistry);
+    }
+
+    @Bean
+    public NoteListCacheFilter noteListCacheFilter(NoteListCache noteListCache) {
+        return new NoteListCacheFilter(noteListCache);
+    }
+}
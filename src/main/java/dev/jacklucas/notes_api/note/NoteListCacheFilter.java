@@ -0,0 +1,68 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.datasource.CurrentUser;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.TreeMap;
+
+/*
+ * Serves GET /api/notes from NoteListCache. Runs after Spring Security, so the user is known.
+ * A hit writes the stored bytes and never reaches the controller, JPA, or Jackson.
+ */
+public class NoteListCacheFilter extends OncePerRequestFilter {
+
+    private final NoteListCache cache;
+
+    public NoteListCacheFilter(NoteListCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod())
+                || !request.getRequestURI().equals(request.getContextPath() + "/api/notes");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        var userId = CurrentUser.id();
+        if (userId == null || cache.suspended()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // Taken before the controller reads anything; see NoteListCache.
+        var key = cache.key(userId, query(request));
+
+        var cached = cache.get(key);
+        if (cached != null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(cached.contentType());
+            response.setContentLength(cached.body().length);
+            response.getOutputStream().write(cached.body());
+            return;
+        }
+
+        var wrapper = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, wrapper);
+        if (wrapper.getStatus() == HttpServletResponse.SC_OK) {
+            cache.put(key, new NoteListCache.Entry(wrapper.getContentAsByteArray(), wrapper.getContentType()));
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    // Parameters in a fixed order, plus Accept since it picks the response format.
+    private static String query(HttpServletRequest request) {
+        var params = new TreeMap<String, String>();
+        request.getParameterMap().forEach((name, values) -> params.put(name, String.join(",", values)));
+        return params + " " + request.getHeader(HttpHeaders.ACCEPT);
+    }
+}
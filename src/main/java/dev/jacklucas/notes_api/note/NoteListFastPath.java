@@ -0,0 +1,242 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import dev.jacklucas.notes_api.counter.UserCounters;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/*
+ * Opt-in alternative to the JPA listing (notes.list-fast-path.enabled=true).
+ * One statement fetches the page and each note's tag names (array_agg), and rows are written to the response as they
+ * are read. The total comes from UserCounters, or for a tag filter from count(*) over () in the same statement. Nothing is hydrated: no entities, no persistence context, no DTOs.
+ * The JSON matches what Jackson writes for Page<ReadNoteResponse>; NoteListFastPathIT checks that. The one
+ * difference is that title and content are copied as the driver's UTF-8 bytes without decoding them to Strings, so
+ * characters outside the BMP come out as raw UTF-8 rather than as escaped surrogate pairs. Both are the same JSON.
+ * CBOR and Smile are written by the same code through their own generators, picked from the Accept header.
+ */
+public class NoteListFastPath {
+
+    // Sortable properties of ReadNoteResponse and their columns. Anything else goes through JPA.
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "n.id",
+            "title", "n.title",
+            "content", "n.content",
+            "createdAt", "n.created_at",
+            "updatedAt", "n.updated_at",
+            "archived", "n.archived"
+    );
+
+    private final JdbcTemplate jdbc;
+    private final UserCounters counters;
+    // Formats it can write, in order of preference when the client takes several equally.
+    private final Map<MediaType, JsonFactory> formats;
+    private final ContentNegotiationManager negotiation;
+
+    public NoteListFastPath(JdbcTemplate jdbc, UserCounters counters, Map<MediaType, JsonFactory> formats,
+                            ContentNegotiationManager negotiation) {
+        this.jdbc = jdbc;
+        this.counters = counters;
+        this.formats = formats;
+        this.negotiation = negotiation;
+    }
+
+    public boolean supports(Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return false;
+        }
+        for (Sort.Order order : pageable.getSort()) {
+            if (!SORT_COLUMNS.containsKey(order.getProperty()) || order.isIgnoreCase()
+                    || order.getNullHandling() != Sort.NullHandling.NATIVE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The format to answer in, or null when the client takes none of them and the regular path should answer.
+    public MediaType negotiate(NativeWebRequest request) throws HttpMediaTypeNotAcceptableException {
+        var accepted = new ArrayList<>(negotiation.resolveMediaTypes(request));
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType type : accepted) {
+            for (MediaType format : formats.keySet()) {
+                if (type.isCompatibleWith(format)) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Writes one page of the user's notes, optionally only those with the named tag, in a negotiated format.
+    public void write(String userId, String tag, Pageable pageable, MediaType format, OutputStream out)
+            throws IOException {
+        List<Object> args = new ArrayList<>(6);
+        var sql = new StringBuilder("""
+                select n.id, n.title, n.content, n.created_at, n.updated_at, n.archived, n.revision,
+                       (select array_agg(t.name)
+                        from note_tags nt join tags t on t.user_id = nt.user_id and t.id = nt.tag_id
+                        where nt.user_id = ? and nt.note_id = n.id) as tags
+                """);
+        // A tag has no counter; counting its notes alongside the page still saves a second statement.
+        if (tag != null) {
+            sql.append(", count(*) over () as total\n");
+        }
+        sql.append("""
+                from notes n
+                where n.user_id = ?
+                """);
+        args.add(userId);
+        args.add(userId);
+        if (tag != null) {
+            sql.append("""
+                    and n.id in (select nt.note_id
+                                 from note_tags nt join tags t on t.user_id = nt.user_id and t.id = nt.tag_id
+                                 where nt.user_id = ? and t.user_id = ? and t.name = ?)
+                    """);
+            args.add(userId);
+            args.add(userId);
+            args.add(tag);
+        }
+        if (pageable.getSort().isSorted()) {
+            sql.append("order by ");
+            for (Sort.Order order : pageable.getSort()) {
+                sql.append(SORT_COLUMNS.get(order.getProperty())).append(order.isAscending() ? " asc, " : " desc, ");
+            }
+            sql.setLength(sql.length() - 2);
+        }
+        sql.append(" limit ? offset ?");
+        args.add(pageable.getPageSize());
+        args.add(pageable.getOffset());
+
+        try (JsonGenerator json = formats.get(format).createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("content");
+
+            var page = new long[]{0, -1}; // rows written, total
+            jdbc.query(sql.toString(), rs -> {
+                try {
+                    if (tag != null && page[1] < 0) {
+                        page[1] = rs.getLong(9);
+                    }
+                    writeNote(json, rs);
+                    page[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, args.toArray());
+
+            json.writeEndArray();
+
+            // An empty page has no row to carry a tag's total; past the end, count separately like Spring Data does.
+            LongSupplier count = tag == null ? () -> counters.notes(userId)
+                    : page[1] >= 0 ? () -> page[1]
+                    : () -> count(userId, tag);
+            writePage(json, pageable, (int) page[0], total(pageable, (int) page[0], count));
+            json.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /* HELPERS */
+
+    private void writeNote(JsonGenerator json, ResultSet rs) throws SQLException, IOException {
+        json.writeStartObject();
+        json.writeStringField("id", rs.getString(1));
+        writeUtf8Field(json, "title", rs.getBytes(2));
+        writeUtf8Field(json, "content", rs.getBytes(3));
+        json.writeStringField("createdAt", rs.getObject(4, OffsetDateTime.class).toInstant().toString());
+        json.writeStringField("updatedAt", rs.getObject(5, OffsetDateTime.class).toInstant().toString());
+        json.writeBooleanField("archived", rs.getBoolean(6));
+        json.writeArrayFieldStart("tags");
+        var tags = rs.getArray(8);
+        if (tags != null) {
+            for (Object name : (Object[]) tags.getArray()) {
+                json.writeString((String) name);
+            }
+        }
+        json.writeEndArray();
+        json.writeNumberField("revision", rs.getInt(7));
+        json.writeEndObject();
+    }
+
+    // Title and content are the bulk of a page; copying their bytes skips decoding and re-encoding them.
+    private void writeUtf8Field(JsonGenerator json, String name, byte[] utf8) throws IOException {
+        json.writeFieldName(name);
+        if (utf8 == null) {
+            json.writeNull();
+        } else {
+            json.writeUTF8String(utf8, 0, utf8.length);
+        }
+    }
+
+    // The rest of PageImpl's properties. Jackson's order for them comes from reflection and is not fixed.
+    private void writePage(JsonGenerator json, Pageable pageable, int numberOfElements, long total) throws IOException {
+        int size = pageable.getPageSize();
+        int number = pageable.getPageNumber();
+        int totalPages = (int) ((total + size - 1) / size);
+
+        json.writeObjectFieldStart("pageable");
+        json.writeNumberField("pageNumber", number);
+        json.writeNumberField("pageSize", size);
+        writeSort(json, pageable.getSort());
+        json.writeNumberField("offset", pageable.getOffset());
+        json.writeBooleanField("paged", true);
+        json.writeBooleanField("unpaged", false);
+        json.writeEndObject();
+
+        json.writeNumberField("totalPages", totalPages);
+        json.writeNumberField("totalElements", total);
+        json.writeBooleanField("last", number + 1 >= totalPages);
+        json.writeNumberField("size", size);
+        json.writeNumberField("number", number);
+        writeSort(json, pageable.getSort());
+        json.writeBooleanField("first", number == 0);
+        json.writeNumberField("numberOfElements", numberOfElements);
+        json.writeBooleanField("empty", numberOfElements == 0);
+    }
+
+    private void writeSort(JsonGenerator json, Sort sort) throws IOException {
+        json.writeObjectFieldStart("sort");
+        json.writeBooleanField("empty", sort.isEmpty());
+        json.writeBooleanField("sorted", sort.isSorted());
+        json.writeBooleanField("unsorted", sort.isUnsorted());
+        json.writeEndObject();
+    }
+
+    // The same shortcuts as Spring Data's PageableExecutionUtils: a page that is not full tells the total by itself.
+    private static long total(Pageable pageable, int numberOfElements, LongSupplier count) {
+        if (pageable.getOffset() == 0) {
+            return numberOfElements < pageable.getPageSize() ? numberOfElements : count.getAsLong();
+        }
+        if (numberOfElements != 0 && numberOfElements < pageable.getPageSize()) {
+            return pageable.getOffset() + numberOfElements;
+        }
+        return count.getAsLong();
+    }
+
+    private long count(String userId, String tag) {
+        return jdbc.queryForObject("""
+                select count(*) from note_tags nt join tags t on t.user_id = nt.user_id and t.id = nt.tag_id
+                where nt.user_id = ? and t.user_id = ? and t.name = ?
+                """, Long.class, userId, userId, tag);
+    }
+}
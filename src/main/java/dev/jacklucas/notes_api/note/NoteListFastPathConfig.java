@@ -0,0 +1,40 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.counter.UserCounters;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.accept.ContentNegotiationManager;
+
+import java.util.LinkedHashMap;
+
+/*
+ * Opt-in with notes.list-fast-path.enabled=true.
+ */
+@Configuration
+@ConditionalOnProperty(name = "notes.list-fast-path.enabled", havingValue = "true")
+public class NoteListFastPathConfig {
+
+    @Bean
+    public NoteListFastPath noteListFastPath(
+            JdbcTemplate jdbcTemplate,
+            UserCounters counters,
+            ObjectMapper objectMapper,
+            MappingJackson2CborHttpMessageConverter cbor,
+            MappingJackson2SmileHttpMessageConverter smile,
+            ContentNegotiationManager contentNegotiationManager
+    ) {
+        // JSON first, as for the converters.
+        var formats = new LinkedHashMap<MediaType, JsonFactory>();
+        formats.put(MediaType.APPLICATION_JSON, objectMapper.getFactory());
+        formats.put(MediaType.APPLICATION_CBOR, cbor.getObjectMapper().getFactory());
+        formats.put(new MediaType("application", "x-jackson-smile"), smile.getObjectMapper().getFactory());
+        return new NoteListFastPath(jdbcTemplate, counters, formats, contentNegotiationManager);
+    }
+}
@@ -1,13 +1,54 @@
 package dev.jacklucas.notes_api.note;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+/*
+ * Every query filters on user_id, the partition key of notes, tags, and note_tags, so each one touches a single partition.
+ */
 public interface NoteRepository extends JpaRepository<Note, UUID> {
-    Page<Note> findByUserId(String userId, Pageable pageable);
+    // One page of the user's notes without a count query; the total comes from UserCounters.
+    List<Note> findByUserId(String userId, Pageable pageable);
 
-    Page<Note> findByUserIdAndTags_Name(String userId, String name, Pageable pageable);
+    Optional<Note> findByIdAndUserId(UUID id, String userId);
+
+    // The user's notes among the ids, in no particular order. Ids that are missing or not theirs are skipped.
+    List<Note> findByUserIdAndIdIn(String userId, Collection<UUID> ids);
+
+    // Tag names for many notes in one query, so their lazy tag collections never need loading.
+    @Query("""
+            select new dev.jacklucas.notes_api.note.NoteTagName(nt.noteId, t.name)
+            from NoteTag nt join Tag t on t.userId = nt.userId and t.id = nt.tagId
+            where nt.userId = :userId and nt.noteId in :noteIds
+            """)
+    List<NoteTagName> findTagNames(@Param("userId") String userId, @Param("noteIds") Collection<UUID> noteIds);
+
+    boolean existsByIdAndUserId(UUID id, String userId);
+
+    // Sends a notes_cache notification from the current transaction, delivered if it commits (see V12).
+    @Query(value = "select 1 from pg_notify('notes_cache', :payload)", nativeQuery = true)
+    int notifyNotesCache(@Param("payload") String payload);
+
+    // Locks the row so concurrent writes to one note get consecutive revision numbers.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Note> findForUpdateByIdAndUserId(UUID id, String userId);
+
+    @Query("""
+            select n from Note n
+            where n.userId = :userId
+              and n.id in (select nt.noteId from NoteTag nt, Tag t
+                           where nt.userId = :userId and t.userId = :userId
+                             and t.id = nt.tagId and t.name = :name)
+            """)
+    Page<Note> findByUserIdAndTags_Name(@Param("userId") String userId, @Param("name") String name, Pageable pageable);
 }
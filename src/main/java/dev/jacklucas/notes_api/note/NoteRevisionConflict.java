@@ -0,0 +1,13 @@
+package dev.jacklucas.notes_api.note;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class NoteRevisionConflict extends RuntimeException {
+    public NoteRevisionConflict(UUID id, int revision, int baseRevision) {
+        super("Note (%s) is at revision %s, not %s.".formatted(id, revision, baseRevision));
+    }
+}
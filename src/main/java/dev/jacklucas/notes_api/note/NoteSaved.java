@@ -0,0 +1,10 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+
+/*
+ * Published by writes that leave a note's full state at hand (create, PUT, PATCH), after their NotesChanged.
+ * The stamp is the note cache's, taken before the write committed, or null when the cache is off.
+ */
+public record NoteSaved(String userId, ReadNoteResponse note, NoteCache.Stamp stamp) {
+}
@@ -0,0 +1,42 @@
+package dev.jacklucas.notes_api.note;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/*
+ * Read-only view of the note_tags join table, so queries can filter it by user_id and prune to one partition.
+ * Links are still written through Note.tags.
+ */
+@Entity
+@Immutable
+@Table(name = "note_tags")
+@IdClass(NoteTag.Key.class)
+@Getter
+@NoArgsConstructor
+public class NoteTag {
+
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+
+    @Id
+    @Column(name = "note_id")
+    private UUID noteId;
+
+    @Id
+    @Column(name = "tag_id")
+    private UUID tagId;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String userId;
+        private UUID noteId;
+        private UUID tagId;
+    }
+}
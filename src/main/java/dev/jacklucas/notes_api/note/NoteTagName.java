@@ -0,0 +1,7 @@
+package dev.jacklucas.notes_api.note;
+
+import java.util.UUID;
+
+// A tag name on a note, as read by NoteRepository.findTagNames.
+public record NoteTagName(UUID noteId, String name) {
+}
@@ -0,0 +1,143 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.note.dto.BulkTagRequest;
+import dev.jacklucas.notes_api.note.dto.BulkTagResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Adds tags to, or removes them from, many notes at once without loading any of them. Notes are picked by id or by
+ * filter, and each operation is a single statement over note_tags scoped by user_id, like a tag merge. Tagging first
+ * creates missing tags in a statement of its own.
+ * Notes whose tags change get a new updated_at. Their revision stays, since revisions do not track tags.
+ * Callers run this inside a transaction.
+ */
+@Component
+public class NoteTagger {
+
+    private final JdbcTemplate jdbc;
+
+    public NoteTagger(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /*
+     * Links the tags to every picked note, creating tags the user does not have yet. A tag created by a concurrent
+     * call is only visible to statements that start after it commits, so the tags are created first, skipping names
+     * that exist (idx_tags_owner_name is unique), and then read back by the linking statement.
+     */
+    public BulkTagResponse tag(String userId, BulkTagRequest request) {
+        var names = names(request.tags());
+
+        List<Object> args = new ArrayList<>();
+        var sql = new StringBuilder("with selected as (");
+        selection(sql, args, userId, request);
+        sql.append("""
+                )
+                insert into tags (user_id, name)
+                select ?, n.name from unnest(cast(? as text[])) n(name)
+                where exists (select 1 from selected)
+                on conflict (user_id, name) do nothing
+                """);
+        args.add(userId);
+        args.add(names);
+        jdbc.update(sql.toString(), args.toArray());
+
+        args = new ArrayList<>();
+        sql = new StringBuilder("with selected as (");
+        selection(sql, args, userId, request);
+        sql.append("""
+                ), applied as (
+                    select t.id from tags t where t.user_id = ? and t.name = any(cast(? as text[]))
+                ), linked as (
+                    insert into note_tags (user_id, note_id, tag_id)
+                    select ?, s.id, a.id from selected s cross join applied a
+                    on conflict do nothing
+                    returning note_id
+                ), touched as (
+                    update notes set updated_at = now()
+                    where user_id = ? and id in (select note_id from linked)
+                    returning id
+                )
+                select (select count(*) from selected), (select count(*) from touched)
+                """);
+        args.add(userId);
+        args.add(names);
+        args.add(userId);
+        args.add(userId);
+        return run(sql, args);
+    }
+
+    // Unlinks the tags from every picked note. The tags themselves stay, as when a PATCH drops them.
+    public BulkTagResponse untag(String userId, BulkTagRequest request) {
+        List<Object> args = new ArrayList<>();
+        var sql = new StringBuilder("with selected as (");
+        selection(sql, args, userId, request);
+        sql.append("""
+                ), unlinked as (
+                    delete from note_tags nt using tags t
+                    where nt.user_id = ? and t.user_id = ? and t.id = nt.tag_id
+                      and t.name = any(cast(? as text[]))
+                      and nt.note_id in (select id from selected)
+                    returning nt.note_id
+                ), touched as (
+                    update notes set updated_at = now()
+                    where user_id = ? and id in (select note_id from unlinked)
+                    returning id
+                )
+                select (select count(*) from selected), (select count(*) from touched)
+                """);
+        args.add(userId);
+        args.add(userId);
+        args.add(names(request.tags()));
+        args.add(userId);
+        return run(sql, args);
+    }
+
+    /* HELPERS */
+
+    // The ids of the picked notes, always within the user's own.
+    private static void selection(StringBuilder sql, List<Object> args, String userId, BulkTagRequest request) {
+        sql.append("select id from notes where user_id = ?");
+        args.add(userId);
+        if (request.ids() != null) {
+            sql.append(" and id = any(cast(? as uuid[]))");
+            args.add(request.ids().stream().map(UUID::toString).toArray(String[]::new));
+            return;
+        }
+
+        var filter = request.filter();
+        if (filter.archived() != null) {
+            sql.append(" and archived = ?");
+            args.add(filter.archived());
+        }
+        var tag = filter.tag() == null ? "" : filter.tag().trim();
+        if (!tag.isEmpty()) {
+            sql.append(" and id in (select nt.note_id")
+                    .append(" from note_tags nt join tags t on t.user_id = nt.user_id and t.id = nt.tag_id")
+                    .append(" where nt.user_id = ? and t.user_id = ? and t.name = ?)");
+            args.add(userId);
+            args.add(userId);
+            args.add(tag);
+        }
+    }
+
+    // Trimmed like the tags of a note write.
+    private static String[] names(List<String> tags) {
+        var names = new LinkedHashSet<String>();
+        for (String t : tags) {
+            names.add(t.trim());
+        }
+        return names.toArray(String[]::new);
+    }
+
+    private BulkTagResponse run(StringBuilder sql, List<Object> args) {
+        return jdbc.queryForObject(sql.toString(),
+                (rs, i) -> new BulkTagResponse(rs.getLong(1), rs.getLong(2)), args.toArray());
+    }
+}
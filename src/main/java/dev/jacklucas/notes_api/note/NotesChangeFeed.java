@@ -0,0 +1,154 @@
+package dev.jacklucas.notes_api.note;
+
+import lombok.extern.slf4j.Slf4j;
+import dev.jacklucas.notes_api.datasource.CurrentUser;
+import org.postgresql.PGConnection;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Tells this instance about every committed write to notes and tags, wherever it was made, through Postgres
+ * LISTEN/NOTIFY. Triggers on notes, tags and note_tags (V12) notify from inside every writing transaction, whoever the
+ * writer is, so Postgres delivers it only once the write commits, and never for a rollback. Each instance holds one
+ * connection per database listening on the channel and republishes what arrives as NotesChanged, as the user it names,
+ * its own writes included; the in-memory caches and indexes already listen for that event.
+ * Notifications sent while a listening connection is down are lost, so NotesFeedStatus tells listeners when the feed
+ * stops and starts hearing every database.
+ */
+@Slf4j
+public class NotesChangeFeed implements SmartLifecycle {
+
+    static final String CHANNEL = "notes_cache";
+
+    private static final Duration POLL = Duration.ofMillis(500);
+    private static final Duration RETRY = Duration.ofSeconds(1);
+
+    private final ApplicationEventPublisher events;
+    private final Map<String, DataSource> databases;
+
+    private final Set<String> down = ConcurrentHashMap.newKeySet();
+    private final List<Thread> listeners = new ArrayList<>();
+    private volatile boolean running;
+
+    // Writes land in one of the databases, by shard; every one of them is listened to.
+    public NotesChangeFeed(ApplicationEventPublisher events, Map<String, DataSource> databases) {
+        this.events = events;
+        this.databases = databases;
+    }
+
+    // Waits until every database has been listened to once, so the feed is live by the time the app takes requests.
+    @Override
+    public void start() {
+        running = true;
+        down.addAll(databases.keySet());
+        var attempted = new CountDownLatch(databases.size());
+        databases.forEach((name, dataSource) -> listeners.add(Thread.ofPlatform()
+                .name("notes-change-feed-" + name)
+                .daemon()
+                .start(() -> listen(name, dataSource, attempted))));
+        try {
+            if (!attempted.await(10, TimeUnit.SECONDS)) {
+                log.warn("The notes change feed stays down until every database can be listened to.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (var listener : listeners) {
+            try {
+                listener.join(POLL.multipliedBy(4).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        listeners.clear();
+        events.publishEvent(new NotesFeedStatus(false));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /* HELPERS */
+
+    private void listen(String name, DataSource dataSource, CountDownLatch attempted) {
+        while (running) {
+            try (var connection = dataSource.getConnection()) {
+                try (var statement = connection.createStatement()) {
+                    statement.execute("listen " + CHANNEL);
+                }
+                var pg = connection.unwrap(PGConnection.class);
+                up(name);
+                attempted.countDown();
+
+                try {
+                    while (running) {
+                        var notifications = pg.getNotifications((int) POLL.toMillis());
+                        if (notifications != null) {
+                            for (var notification : notifications) {
+                                apply(notification.getParameter());
+                            }
+                        }
+                    }
+                } finally {
+                    // The connection goes back to the pool; it must not keep collecting notifications there.
+                    try (var statement = connection.createStatement()) {
+                        statement.execute("unlisten *");
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                down(name, e);
+                attempted.countDown();
+                try {
+                    Thread.sleep(RETRY);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // noteId|userId, with an empty noteId for writes that may touch several of the user's notes.
+    // Published as the user, so listeners that read the database reach the user's shard.
+    private void apply(String payload) {
+        var parts = payload.split("\\|", 2);
+        if (parts.length < 2) {
+            return;
+        }
+        var userId = parts[1];
+        var noteId = parts[0].isEmpty() ? null : UUID.fromString(parts[0]);
+        CurrentUser.runAs(userId, () -> events.publishEvent(new NotesChanged(userId, noteId)));
+    }
+
+    private synchronized void up(String name) {
+        down.remove(name);
+        if (down.isEmpty()) {
+            events.publishEvent(new NotesFeedStatus(true));
+        }
+    }
+
+    private synchronized void down(String name, Exception e) {
+        if (running) {
+            log.warn("Lost the notes change feed on {}; caches stop trusting it until it is back.", name, e);
+        }
+        down.add(name);
+        events.publishEvent(new NotesFeedStatus(false));
+    }
+}
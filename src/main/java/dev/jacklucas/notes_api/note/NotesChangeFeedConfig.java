@@ -0,0 +1,28 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.datasource.ShardDataSources;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/*
+ * Always on: the related-notes index relies on it, and so does the note cache when enabled.
+ */
+@Configuration
+public class NotesChangeFeedConfig {
+
+    @Bean
+    public NotesChangeFeed notesChangeFeed(
+            ApplicationEventPublisher events,
+            DataSource dataSource,
+            ObjectProvider<ShardDataSources> shards
+    ) {
+        var sharded = shards.getIfAvailable();
+        var databases = sharded == null ? Map.of("primary", dataSource) : sharded.all();
+        return new NotesChangeFeed(events, databases);
+    }
+}
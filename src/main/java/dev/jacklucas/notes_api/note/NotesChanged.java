@@ -0,0 +1,14 @@
+package dev.jacklucas.notes_api.note;
+
+import java.util.UUID;
+
+/*
+ * Published by every write that can change what a user's note listing returns, including tag writes.
+ * Writes to a single note name it; a null noteId means any of the user's notes or tags may have changed.
+ */
+public record NotesChanged(String userId, UUID noteId) {
+
+    public NotesChanged(String userId) {
+        this(userId, null);
+    }
+}
@@ -0,0 +1,8 @@
+package dev.jacklucas.notes_api.note;
+
+/*
+ * Published by NotesChangeFeed when it starts or stops hearing every database. While it is not live, writes made
+ * elsewhere may go unheard, so whatever relies on the feed must stop trusting what it holds.
+ */
+public record NotesFeedStatus(boolean live) {
+}
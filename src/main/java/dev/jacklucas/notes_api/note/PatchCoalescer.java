@@ -0,0 +1,321 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.datasource.CurrentUser;
+import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+import dev.jacklucas.notes_api.revision.RevisionRecorder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Buffers content-only PATCHes per note and writes the latest content once the note goes quiet.
+ * A burst of autosaves becomes one locked read, one UPDATE and one revision instead of one of each per call.
+ *
+ * Durability: a buffered PATCH is acknowledged before it reaches the database. It is written once no PATCH for the
+ * note has arrived for `debounce`, and never later than `maxDelay` after the oldest unwritten one. A crash can lose
+ * up to `maxDelay` of acknowledged edits per note; a graceful shutdown writes everything first. When the buffer
+ * holds more than `maxBytes` of content, further PATCHes are written through instead of buffered.
+ *
+ * Every other write to a note on this instance takes its buffered content first, while holding the note's row lock.
+ * The flusher takes entries under the same lock, and drops them if the note's revision has moved since the burst
+ * began: a write made elsewhere (another instance, the reactive module, SQL) got in first, and the buffered edit is
+ * older than it. So an older buffered edit never lands on top of a newer write; a dropped one is counted as a conflict.
+ * Its PATCHes were already acknowledged, so the owner's next write to the note here is refused with
+ * NoteRevisionConflict, once, and the client learns to read the note again. A write that finds the content overtaken
+ * itself is refused right away.
+ */
+@Slf4j
+public class PatchCoalescer implements DisposableBean {
+
+    // The latest buffered content for one note, and the response fields that a content PATCH leaves unchanged.
+    record Pending(String userId, ReadNoteResponse base, String content, Instant first, Instant last, int patches) {
+        Pending next(String content, Instant now) {
+            return new Pending(userId, base, content, first, now, patches + 1);
+        }
+
+        long bytes() {
+            return content == null ? 0 : 2L * content.length();
+        }
+    }
+
+    private final NoteRepository noteRepository;
+    private final RevisionRecorder revisionRecorder;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+    private final Duration debounce;
+    private final Duration maxDelay;
+    private final long maxBytes;
+
+    // Content dropped by the flusher, kept until the owner's next write to the note is refused for it.
+    private record Lost(String userId, int revision, int baseRevision, Instant at) {
+    }
+
+    // Past this, nobody is likely to write the note again from the session that lost the edit.
+    private static final Duration LOST_KEPT = Duration.ofHours(1);
+
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<UUID, Lost> lost = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    private final Counter buffered;
+    private final Counter writtenThrough;
+    private final Counter flushed;
+    private final Counter failed;
+    private final Counter conflicts;
+
+    public PatchCoalescer(
+            NoteRepository noteRepository,
+            RevisionRecorder revisionRecorder,
+            ApplicationEventPublisher events,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            Duration debounce,
+            Duration maxDelay,
+            long maxBytes
+    ) {
+        this.noteRepository = noteRepository;
+        this.revisionRecorder = revisionRecorder;
+        this.events = events;
+        this.tx = new TransactionTemplate(transactionManager);
+        // A flush must not roll back with a caller's transaction: the buffered entry is gone by then.
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.debounce = debounce;
+        this.maxDelay = maxDelay.compareTo(debounce) < 0 ? debounce : maxDelay;
+        this.maxBytes = maxBytes;
+
+        this.buffered = meterRegistry.counter("notes.patch-coalescing.patches", "result", "buffered");
+        this.writtenThrough = meterRegistry.counter("notes.patch-coalescing.patches", "result", "written-through");
+        this.flushed = meterRegistry.counter("notes.patch-coalescing.flushes", "result", "ok");
+        this.failed = meterRegistry.counter("notes.patch-coalescing.flushes", "result", "failed");
+        this.conflicts = meterRegistry.counter("notes.patch-coalescing.flushes", "result", "conflict");
+        Gauge.builder("notes.patch-coalescing.pending", pending, Map::size).register(meterRegistry);
+
+        // Check a few times per debounce window so a quiet note is written close to its deadline.
+        long tick = Math.max(10, debounce.toMillis() / 4);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "patch-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushDue, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Buffers new content for the caller's note and returns the response the PATCH would have produced.
+     * Returns null when the PATCH must be written through: the buffer is full or shutting down.
+     * Must run inside a transaction; the first PATCH of a burst reads the note to check ownership.
+     */
+    public ReadNoteResponse patchContent(String userId, UUID id, String content) {
+        refuseIfLost(id, userId);
+        if (closed || bytes.get() >= maxBytes) {
+            writtenThrough.increment();
+            return null;
+        }
+
+        var now = Instant.now();
+        while (true) {
+            var current = pending.get(id);
+            if (current != null && current.userId().equals(userId)) {
+                var next = current.next(content, now);
+                if (pending.replace(id, current, next)) {
+                    bytes.addAndGet(next.bytes() - current.bytes());
+                    buffered.increment();
+                    return withContent(next);
+                }
+                continue;
+            }
+
+            // Nothing buffered for this note yet; load it outside the map so other notes are not held up.
+            var note = noteRepository.findByIdAndUserId(id, userId).orElseThrow(() -> new NoteNotFound(id));
+            var base = ReadNoteResponse.from(note, noteRepository.findTagNames(userId, List.of(id)).stream()
+                    .map(NoteTagName::name)
+                    .toList());
+            var created = new Pending(userId, base, content, now, now, 1);
+            if (pending.putIfAbsent(id, created) == null) {
+                bytes.addAndGet(created.bytes());
+                buffered.increment();
+                return withContent(created);
+            }
+        }
+    }
+
+    /*
+     * Moves the note's buffered content, if any, onto the entity. Callers hold the note's row lock and are about to
+     * save it, so the buffered edit is written together with theirs. Content that a write made elsewhere has
+     * overtaken is dropped instead, and the caller's write refused with NoteRevisionConflict.
+     */
+    public void applyPending(Note note) {
+        refuseIfLost(note.getId(), note.getUserId());
+        var taken = take(note.getId(), note.getUserId());
+        if (taken == null) {
+            return;
+        }
+        if (!current(note, taken)) {
+            throw new NoteRevisionConflict(note.getId(), note.getRevision(), taken.base().revision());
+        }
+        note.setContent(taken.content());
+    }
+
+    /*
+     * Writes the note's buffered content now, if the caller owns it. For writes that work on the stored row directly
+     * and never see the entity. The write commits on its own, so call this before locking the row.
+     */
+    public void flush(UUID id, String userId) {
+        refuseIfLost(id, userId);
+        var current = pending.get(id);
+        if (current != null && current.userId().equals(userId)) {
+            flush(id);
+        }
+    }
+
+    // Drops the note's buffered content, and any conflict still to be reported for it. For deletes.
+    public void discard(UUID id, String userId) {
+        take(id, userId);
+        lost.computeIfPresent(id, (key, l) -> l.userId().equals(userId) ? null : l);
+    }
+
+    // The response with buffered content laid over it, for reads served by this instance.
+    public ReadNoteResponse overlay(ReadNoteResponse response, String userId) {
+        var current = pending.get(UUID.fromString(response.id()));
+        if (current == null || !current.userId().equals(userId)) {
+            return response;
+        }
+        return new ReadNoteResponse(response.id(), response.title(), current.content(), response.createdAt(),
+                current.last().toString(), response.archived(), response.tags(), response.revision());
+    }
+
+    // Writes every buffered note now.
+    public void flushAll() {
+        for (var id : new ArrayList<>(pending.keySet())) {
+            flush(id);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // The web server has stopped taking requests by now; anything that still slips in is written through.
+        closed = true;
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        log.info("Flushing {} buffered note(s) before shutdown", pending.size());
+        flushAll();
+    }
+
+    /* HELPERS */
+
+    private void flushDue() {
+        var now = Instant.now();
+        for (var entry : pending.entrySet()) {
+            var p = entry.getValue();
+            boolean quiet = !p.last().plus(debounce).isAfter(now);
+            boolean overdue = !p.first().plus(maxDelay).isAfter(now);
+            if (quiet || overdue) {
+                flush(entry.getKey());
+            }
+        }
+        lost.values().removeIf(l -> !l.at().plus(LOST_KEPT).isAfter(now));
+    }
+
+    // Refuses the owner's write once for content the flusher dropped.
+    private void refuseIfLost(UUID id, String userId) {
+        var l = lost.get(id);
+        if (l != null && l.userId().equals(userId) && lost.remove(id, l)) {
+            throw new NoteRevisionConflict(id, l.revision(), l.baseRevision());
+        }
+    }
+
+    private void flush(UUID id) {
+        var seen = pending.get(id);
+        if (seen == null) {
+            return;
+        }
+
+        var userId = seen.userId();
+        var taken = new AtomicReference<Pending>();
+        var dropped = new AtomicBoolean();
+        try {
+            CurrentUser.runAs(userId, () -> tx.executeWithoutResult(status -> {
+                // Lock first, then take whatever is newest: a write that got the lock before us has already taken it.
+                var note = noteRepository.findForUpdateByIdAndUserId(id, userId).orElse(null);
+                taken.set(take(id, userId));
+                if (note == null || taken.get() == null) {
+                    return;
+                }
+                if (!current(note, taken.get())) {
+                    lost.put(id, new Lost(userId, note.getRevision(), taken.get().base().revision(), Instant.now()));
+                    dropped.set(true);
+                    return;
+                }
+
+                var before = RevisionRecorder.State.of(note);
+                note.setContent(taken.get().content());
+                revisionRecorder.recordChange(before, note);
+                noteRepository.save(note);
+                events.publishEvent(new NotesChanged(userId, id));
+            }));
+            if (!dropped.get()) {
+                flushed.increment();
+            }
+        } catch (RuntimeException e) {
+            // Put it back unless a newer PATCH has arrived since; the next tick tries again.
+            var lost = taken.get();
+            if (lost != null && pending.putIfAbsent(id, lost) == null) {
+                bytes.addAndGet(lost.bytes());
+            }
+            failed.increment();
+            log.warn("Could not flush buffered content for note {}", id, e);
+        }
+    }
+
+    // Whether the locked note is still at the revision the burst began from. Counts and logs the conflict if not.
+    private boolean current(Note note, Pending p) {
+        if (note.getRevision() == p.base().revision()) {
+            return true;
+        }
+        conflicts.increment();
+        log.warn("Dropped buffered content for note {}: it is at revision {}, the burst began at {}",
+                note.getId(), note.getRevision(), p.base().revision());
+        return false;
+    }
+
+    private Pending take(UUID id, String userId) {
+        while (true) {
+            var current = pending.get(id);
+            if (current == null || !current.userId().equals(userId)) {
+                return null;
+            }
+            if (pending.remove(id, current)) {
+                bytes.addAndGet(-current.bytes());
+                return current;
+            }
+        }
+    }
+
+    private static ReadNoteResponse withContent(Pending p) {
+        var base = p.base();
+        return new ReadNoteResponse(base.id(), base.title(), p.content(), base.createdAt(), p.last().toString(),
+                base.archived(), base.tags(), base.revision());
+    }
+}
@@ -0,0 +1,37 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.revision.RevisionRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/*
+ * Opt-in with notes.patch-coalescing.enabled=true.
+ * Buffered content lives in memory, so every PATCH for a note must land on the instance that buffers it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "notes.patch-coalescing.enabled", havingValue = "true")
+public class PatchCoalescingConfig {
+
+    @Bean
+    public PatchCoalescer patchCoalescer(
+            NoteRepository noteRepository,
+            RevisionRecorder revisionRecorder,
+            ApplicationEventPublisher events,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${notes.patch-coalescing.debounce:2s}") Duration debounce,
+            @Value("${notes.patch-coalescing.max-delay:10s}") Duration maxDelay,
+            @Value("${notes.patch-coalescing.max-size:32MB}") DataSize maxSize
+    ) {
+        return new PatchCoalescer(noteRepository, revisionRecorder, events, transactionManager, meterRegistry,
+                debounce, maxDelay, maxSize.toBytes());
+    }
+}
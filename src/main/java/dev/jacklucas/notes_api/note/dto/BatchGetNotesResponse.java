@@ -0,0 +1,26 @@
+package dev.jacklucas.notes_api.note.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+// One result per requested id, in request order.
+public record BatchGetNotesResponse(
+        List<Result> results
+) {
+    // A missing note and someone else's note both read as not_found, as GET /api/notes/{id} answers 404 for both.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Result(
+            String id,
+            String status,
+            ReadNoteResponse note
+    ) {
+        public static Result found(ReadNoteResponse note) {
+            return new Result(note.id(), "found", note);
+        }
+
+        public static Result notFound(String id) {
+            return new Result(id, "not_found", null);
+        }
+    }
+}
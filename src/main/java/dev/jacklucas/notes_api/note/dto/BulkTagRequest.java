@@ -0,0 +1,25 @@
+package dev.jacklucas.notes_api.note.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.UUID;
+
+public record BulkTagRequest(
+        @Size(max = 1000) List<@NotNull UUID> ids,
+        Filter filter,
+        @NotEmpty @Size(max = 50) List<@NotBlank String> tags
+) {
+    // Picks notes by what they are rather than by id. An empty filter picks all of the user's notes.
+    public record Filter(String tag, Boolean archived) {
+    }
+
+    @AssertTrue(message = "Give either ids or a filter.")
+    public boolean isSelectionValid() {
+        return (ids == null) != (filter == null);
+    }
+}
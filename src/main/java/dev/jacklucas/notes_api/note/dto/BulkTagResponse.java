@@ -0,0 +1,5 @@
+package dev.jacklucas.notes_api.note.dto;
+
+// matched: the user's notes the ids or filter picked. updated: those whose tags changed.
+public record BulkTagResponse(long matched, long updated) {
+}
@@ -0,0 +1,14 @@
+package dev.jacklucas.notes_api.note.dto;
+
+import jakarta.validation.constraints.PositiveOrZero;
+
+// Deletes `delete` characters at `offset`, then inserts `insert` there. Counts are in Unicode code points.
+public record ContentEdit(
+        @PositiveOrZero int offset,
+        @PositiveOrZero int delete,
+        String insert
+) {
+    public int insertLength() {
+        return insert == null ? 0 : insert.codePointCount(0, insert.length());
+    }
+}
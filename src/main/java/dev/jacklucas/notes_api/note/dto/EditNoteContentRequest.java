@@ -0,0 +1,15 @@
+package dev.jacklucas.notes_api.note.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+// Edits apply in order, each against the content the previous one left.
+public record EditNoteContentRequest(
+        @NotNull Integer baseRevision,
+        @NotEmpty @Size(max = 100) List<@NotNull @Valid ContentEdit> edits
+) {
+}
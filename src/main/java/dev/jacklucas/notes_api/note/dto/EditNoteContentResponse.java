@@ -0,0 +1,10 @@
+package dev.jacklucas.notes_api.note.dto;
+
+// The note after the edits, without its content. `contentLength` counts code points, like edit offsets.
+public record EditNoteContentResponse(
+        String id,
+        int revision,
+        int contentLength,
+        String updatedAt
+) {
+}
@@ -1,15 +1,16 @@
 package dev.jacklucas.notes_api.note.dto;
 
-import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 
 import java.util.List;
 import java.util.Optional;
 
+// Absent fields are left alone. Constraints apply to the contained value only, which an empty Optional unwraps to
+// null, so they must accept null; @NotBlank/@NotNull here would make every field mandatory.
 public record PatchNoteRequest(
-        Optional<@NotBlank String> title,
-        Optional<@NotNull String> content,
+        Optional<@Pattern(regexp = "(?s).*\\S.*", message = "must not be blank") String> title,
+        Optional<String> content,
         Optional<List<String>> tags,
-        Optional<@NotNull Boolean> archived
+        Optional<Boolean> archived
 ) {
 }
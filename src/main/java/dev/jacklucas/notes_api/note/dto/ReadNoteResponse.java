@@ -12,10 +12,15 @@ public record ReadNoteResponse(
         String createdAt,
         String updatedAt,
         boolean archived,
-        List<String> tags
+        List<String> tags,
+        int revision
 ) {
     public static ReadNoteResponse from(Note n) {
-        var tagNames = n.getTags().stream().map(Tag::getName).toList();
+        return from(n, n.getTags().stream().map(Tag::getName).toList());
+    }
+
+    // For callers that loaded the tag names themselves.
+    public static ReadNoteResponse from(Note n, List<String> tagNames) {
         return new ReadNoteResponse(
                 n.getId().toString(),
                 n.getTitle(),
@@ -23,7 +28,8 @@ public record ReadNoteResponse(
                 n.getCreatedAt().toString(),
                 n.getUpdatedAt().toString(),
                 n.isArchived(),
-                tagNames
+                tagNames,
+                n.getRevision()
         );
     }
 }
\ No newline at end of file
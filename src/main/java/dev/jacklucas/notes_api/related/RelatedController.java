@@ -0,0 +1,47 @@
+package dev.jacklucas.notes_api.related;
+
+import dev.jacklucas.notes_api.related.dto.RelatedNoteResponse;
+import dev.jacklucas.notes_api.related.dto.SuggestedTagResponse;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Answers from the in-memory RelatedIndex rather than joining note_tags per request.
+ * No transaction on purpose: an index built from a lagging replica would be kept, so the rare loads go to the primary.
+ */
+@RestController
+public class RelatedController {
+
+    private final RelatedIndex relatedIndex;
+
+    public RelatedController(RelatedIndex relatedIndex) {
+        this.relatedIndex = relatedIndex;
+    }
+
+    // Route handles the notes that share the most telling tags with a note, best first.
+    @GetMapping("/api/notes/{id}/related")
+    public List<RelatedNoteResponse> relatedNotes(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return relatedIndex.related(jwt.getSubject(), id, Math.clamp(limit, 1, 50));
+    }
+
+    // Route handles tags to offer while editing a note: those most often seen with the note's tags.
+    @GetMapping("/api/tags/suggest-for")
+    public List<SuggestedTagResponse> suggestTagsFor(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestParam UUID noteId,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return relatedIndex.suggest(jwt.getSubject(), noteId, Math.clamp(limit, 1, 50));
+    }
+}
@@ -0,0 +1,325 @@
+package dev.jacklucas.notes_api.related;
+
+import dev.jacklucas.notes_api.note.NoteNotFound;
+import dev.jacklucas.notes_api.note.NotesChanged;
+import dev.jacklucas.notes_api.note.NotesFeedStatus;
+import dev.jacklucas.notes_api.related.dto.RelatedNoteResponse;
+import dev.jacklucas.notes_api.related.dto.SuggestedTagResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.sql.Array;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * A UserTagIndex per user, built from note_tags on the user's first lookup and kept within a byte budget, least
+ * recently used users evicted first. Each index holds at most the user's newest notes.related.max-notes-per-user
+ * notes; older ones are still answered for, with their tags read from the database.
+ * After a write to a single note commits, the note is marked stale in its user's index, without a query, and the
+ * user's next lookup reads the stale notes' tags back in one statement. A write made here is heard twice, as it
+ * commits and again through NotesChangeFeed, and is still read back once. Writes that may touch many notes or tags
+ * (bulk tagging, tag renames, merges, deletes) drop the user's index instead, as does a pile-up of stale notes.
+ * Writes on other instances, or by other writers, arrive through NotesChangeFeed. While the feed is not live, no index
+ * is kept.
+ */
+@Slf4j
+@Component
+public class RelatedIndex {
+
+    private static final class Entry {
+        final UserTagIndex index;
+        // Notes written since they were last read into the index.
+        final Set<UUID> stale = ConcurrentHashMap.newKeySet();
+        long bytes;
+
+        Entry(UserTagIndex index) {
+            this.index = index;
+            this.bytes = index.bytes();
+        }
+    }
+
+    // Users share generations and refresh locks by stripe, so memory stays fixed; a collision only costs a rebuild.
+    private static final int STRIPES = 1024;
+    // Past this many stale notes a user's index is rebuilt rather than read back note by note.
+    private static final int MAX_STALE = 1000;
+
+    private final JdbcTemplate jdbc;
+    private final long maxBytes;
+    private final int maxNotesPerUser;
+
+    // Bumped by every write, so an index built while a write commits is not kept. The epoch moves with the feed.
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final Object[] refreshLocks = new Object[STRIPES];
+    private final AtomicLong epoch = new AtomicLong();
+    private volatile boolean live;
+    private final LinkedHashMap<String, Entry> users = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer builds;
+    private final Timer lookups;
+
+    public RelatedIndex(
+            JdbcTemplate jdbc,
+            MeterRegistry meterRegistry,
+            @Value("${notes.related.max-size:64MB}") DataSize maxSize,
+            @Value("${notes.related.max-notes-per-user:50000}") int maxNotesPerUser
+    ) {
+        this.jdbc = jdbc;
+        this.maxBytes = maxSize.toBytes();
+        this.maxNotesPerUser = Math.max(1, maxNotesPerUser);
+        Arrays.setAll(refreshLocks, i -> new Object());
+        this.hits = meterRegistry.counter("notes.related.index", "result", "hit");
+        this.misses = meterRegistry.counter("notes.related.index", "result", "miss");
+        this.builds = Timer.builder("notes.related.build")
+                .description("Time spent loading a user's notes and tags into a related-notes index")
+                .register(meterRegistry);
+        this.lookups = Timer.builder("notes.related.lookup")
+                .description("Time spent scoring related notes or suggested tags in a built index")
+                .register(meterRegistry);
+        Gauge.builder("notes.related.bytes", this, RelatedIndex::bytes).register(meterRegistry);
+    }
+
+    public List<RelatedNoteResponse> related(String userId, UUID noteId, int limit) {
+        var index = index(userId);
+        var tags = tagsOf(index, userId, noteId);
+        return lookups.record(() -> index.related(noteId, tags, limit));
+    }
+
+    public List<SuggestedTagResponse> suggest(String userId, UUID noteId, int limit) {
+        var index = index(userId);
+        var tags = tagsOf(index, userId, noteId);
+        return lookups.record(() -> index.suggest(tags, limit));
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    // Runs after the write commits, or right away when there is no transaction, as for writes heard through the feed.
+    // Only marks the index: the feed's thread also delivers the note cache's invalidations, so it must not wait on a query.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNotesChanged(NotesChanged event) {
+        var userId = event.userId();
+        generations.incrementAndGet(stripe(userId));
+
+        synchronized (this) {
+            var entry = users.get(userId);
+            if (entry == null) {
+                return;
+            }
+            if (event.noteId() == null) {
+                drop(userId);
+            } else if (entry.stale.add(event.noteId()) && entry.stale.size() > MAX_STALE) {
+                drop(userId);
+            }
+        }
+    }
+
+    // Indexes may have missed writes while the feed was down, and builds that overlap it may too.
+    @EventListener
+    public synchronized void onFeedStatus(NotesFeedStatus status) {
+        epoch.incrementAndGet();
+        live = status.live();
+        if (!live) {
+            users.clear();
+            bytes = 0;
+        }
+    }
+
+    /* HELPERS */
+
+    private record NoteTags(long createdAt, Map<UUID, String> tags) {
+    }
+
+    private static int stripe(String userId) {
+        return (userId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    private UserTagIndex index(String userId) {
+        Entry entry;
+        synchronized (this) {
+            entry = users.get(userId);
+        }
+        if (entry != null) {
+            hits.increment();
+            refresh(userId, entry);
+            return entry.index;
+        }
+
+        misses.increment();
+        int stripe = stripe(userId);
+        long epochBefore = epoch.get();
+        long before = generations.get(stripe);
+        var index = builds.record(() -> build(userId));
+
+        // Serve it either way, but only keep it if the feed is live and no write committed while it was loading.
+        synchronized (this) {
+            if (live && epoch.get() == epochBefore && generations.get(stripe) == before) {
+                var previous = users.put(userId, new Entry(index));
+                bytes += index.bytes() - (previous == null ? 0 : previous.bytes);
+                trim();
+            }
+        }
+        return index;
+    }
+
+    // Two statements: the user's tags, then their newest notes with the ids of each note's tags.
+    private UserTagIndex build(String userId) {
+        var index = new UserTagIndex(maxNotesPerUser);
+        var tagSlots = new HashMap<UUID, Integer>();
+        jdbc.query("select id, name from tags where user_id = ?", rs -> {
+            var id = rs.getObject(1, UUID.class);
+            tagSlots.put(id, index.tag(id, rs.getString(2)));
+        }, userId);
+
+        jdbc.query("""
+                with picked as (
+                    select id, created_at from notes where user_id = ? order by created_at desc, id desc limit ?
+                )
+                select p.id, %s, array_agg(nt.tag_id) filter (where nt.tag_id is not null)
+                from picked p left join note_tags nt on nt.user_id = ? and nt.note_id = p.id
+                group by p.id, p.created_at
+                """.formatted(micros("p.created_at")), rs -> {
+            var tagIds = uuids(rs.getArray(3));
+            int[] slots = new int[tagIds.length];
+            int found = 0;
+            for (UUID tagId : tagIds) {
+                // A tag created since the first statement; a write is committing, so the index is not kept anyway.
+                var slot = tagSlots.get(tagId);
+                if (slot != null) {
+                    slots[found++] = slot;
+                }
+            }
+            slots = Arrays.copyOf(slots, found);
+            Arrays.sort(slots);
+            index.put(rs.getObject(1, UUID.class), rs.getLong(2), slots);
+        }, userId, maxNotesPerUser, userId);
+        return index;
+    }
+
+    // Reads the entry's stale notes back from the database, in one statement, before it is served.
+    private void refresh(String userId, Entry entry) {
+        if (entry.stale.isEmpty()) {
+            return;
+        }
+
+        // One refresh per user at a time, so whoever reads the notes' tags last also applies them last. A note written
+        // again while this runs is marked stale again, and read back by the next lookup.
+        synchronized (refreshLocks[stripe(userId)]) {
+            var noteIds = List.copyOf(entry.stale);
+            if (noteIds.isEmpty()) {
+                return;
+            }
+            entry.stale.removeAll(noteIds);
+            try {
+                var notes = noteTags(userId, noteIds);
+                for (var noteId : noteIds) {
+                    var note = notes.get(noteId);
+                    if (note == null) {
+                        entry.index.remove(noteId);
+                    } else {
+                        entry.index.put(noteId, note.createdAt(), entry.index.slots(note.tags()));
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Partly applied; the next lookup rebuilds it.
+                synchronized (this) {
+                    if (users.get(userId) == entry) {
+                        drop(userId);
+                    }
+                }
+                throw e;
+            }
+        }
+
+        synchronized (this) {
+            if (users.get(userId) == entry) {
+                var size = entry.index.bytes();
+                bytes += size - entry.bytes;
+                entry.bytes = size;
+                trim();
+            }
+        }
+    }
+
+    // The note's tags from the index, or from the database for a note the index does not hold.
+    private int[] tagsOf(UserTagIndex index, String userId, UUID noteId) {
+        var tags = index.tagsOf(noteId);
+        if (tags != null) {
+            return tags;
+        }
+        var note = noteTags(userId, List.of(noteId)).get(noteId);
+        if (note == null) {
+            throw new NoteNotFound(noteId);
+        }
+        return index.slots(note.tags());
+    }
+
+    // The notes' creation times and tags by id. Notes the user does not have are left out.
+    private Map<UUID, NoteTags> noteTags(String userId, Collection<UUID> noteIds) {
+        var notes = new HashMap<UUID, NoteTags>();
+        jdbc.query("""
+                select n.id, %s, t.id, t.name
+                from notes n
+                left join note_tags nt on nt.user_id = ? and nt.note_id = n.id
+                left join tags t on t.user_id = ? and t.id = nt.tag_id
+                where n.user_id = ? and n.id = any(cast(? as uuid[]))
+                """.formatted(micros("n.created_at")), rs -> {
+            long createdAt = rs.getLong(2);
+            var note = notes.computeIfAbsent(rs.getObject(1, UUID.class), id -> new NoteTags(createdAt, new HashMap<>()));
+            var tagId = rs.getObject(3, UUID.class);
+            if (tagId != null) {
+                note.tags().put(tagId, rs.getString(4));
+            }
+        }, userId, userId, userId, noteIds.stream().map(UUID::toString).toArray(String[]::new));
+        return notes;
+    }
+
+    // A timestamp column as microseconds since the epoch, which is all the index needs to order notes by age.
+    private static String micros(String column) {
+        return "(extract(epoch from " + column + ") * 1000000)::bigint";
+    }
+
+    private static UUID[] uuids(Array array) throws SQLException {
+        return array == null ? new UUID[0] : (UUID[]) array.getArray();
+    }
+
+    private Entry drop(String userId) {
+        var entry = users.remove(userId);
+        if (entry != null) {
+            bytes -= entry.bytes;
+        }
+        return entry;
+    }
+
+    // Evicts least recently used users until back under budget.
+    private void trim() {
+        var it = users.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().bytes;
+            it.remove();
+        }
+    }
+}
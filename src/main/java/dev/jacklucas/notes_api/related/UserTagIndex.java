@@ -0,0 +1,355 @@
+package dev.jacklucas.notes_api.related;
+
+import dev.jacklucas.notes_api.related.dto.RelatedNoteResponse;
+import dev.jacklucas.notes_api.related.dto.SuggestedTagResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+ * One user's notes and tags as small ints: each note has a sorted int[] of tag slots and each tag an int[] posting
+ * list of note slots. Scoring walks those arrays and accumulates into reused float[] scratch space, so a lookup
+ * allocates little more than its answer. UUIDs only appear at the edges, to find a slot and to name a result.
+ * Slots of removed notes are reused. Tags are only ever added or renamed; writes that drop tags rebuild the index.
+ * The index holds at most maxNotes notes: a note added to a full index pushes out the oldest.
+ * All methods synchronize on the index, and none of them takes long.
+ */
+final class UserTagIndex {
+
+    private static final int[] NONE = new int[0];
+
+    // Rough heap cost of a slot, UUID and map entry, and of each link as seen from both sides.
+    private static final long SLOT_BYTES = 120;
+    private static final long LINK_BYTES = 8;
+
+    // Notes, by slot. A free slot has a null id.
+    private final int maxNotes;
+    private final Map<UUID, Integer> noteSlots = new HashMap<>();
+    private UUID[] noteIds = new UUID[16];
+    private long[] noteCreated = new long[16];
+    private int[][] noteTags = new int[16][];
+    private int noteSlotsUsed;
+    private int[] freeNoteSlots = new int[4];
+    private int freeNoteCount;
+
+    // Tags, by slot. postings[t] holds postingSizes[t] note slots, in no particular order.
+    private final Map<UUID, Integer> tagSlots = new HashMap<>();
+    private UUID[] tagIds = new UUID[16];
+    private String[] tagNames = new String[16];
+    private int[][] postings = new int[16][];
+    private int[] postingSizes = new int[16];
+    private int tagCount;
+
+    private long links;
+    private long nameChars;
+
+    // Scratch space for scoring, cleared again after every lookup.
+    private float[] noteScores = new float[16];
+    private int[] touchedNotes = new int[16];
+    private float[] tagScores = new float[16];
+    private int[] touchedTags = new int[16];
+
+    UserTagIndex() {
+        this(Integer.MAX_VALUE);
+    }
+
+    UserTagIndex(int maxNotes) {
+        this.maxNotes = maxNotes;
+    }
+
+    synchronized int notes() {
+        return noteSlots.size();
+    }
+
+    // Approximate heap use, for the cache's byte budget.
+    synchronized long bytes() {
+        return (noteSlotsUsed + tagCount) * SLOT_BYTES + links * LINK_BYTES + nameChars * 2;
+    }
+
+    // The tag's slot, adding the tag or taking its new name as needed.
+    synchronized int tag(UUID id, String name) {
+        var slot = tagSlots.get(id);
+        if (slot != null) {
+            nameChars += name.length() - tagNames[slot].length();
+            tagNames[slot] = name;
+            return slot;
+        }
+
+        if (tagCount == tagIds.length) {
+            int capacity = tagCount * 2;
+            tagIds = Arrays.copyOf(tagIds, capacity);
+            tagNames = Arrays.copyOf(tagNames, capacity);
+            postings = Arrays.copyOf(postings, capacity);
+            postingSizes = Arrays.copyOf(postingSizes, capacity);
+            tagScores = Arrays.copyOf(tagScores, capacity);
+            touchedTags = Arrays.copyOf(touchedTags, capacity);
+        }
+        tagIds[tagCount] = id;
+        tagNames[tagCount] = name;
+        postings[tagCount] = NONE;
+        tagSlots.put(id, tagCount);
+        nameChars += name.length();
+        return tagCount++;
+    }
+
+    // Slots for these tags, sorted as related() and suggest() expect, adding or renaming tags as tag() does.
+    synchronized int[] slots(Map<UUID, String> tags) {
+        int[] slots = new int[tags.size()];
+        int i = 0;
+        for (var tag : tags.entrySet()) {
+            slots[i++] = tag(tag.getKey(), tag.getValue());
+        }
+        Arrays.sort(slots);
+        return slots;
+    }
+
+    /*
+     * Sets the note's tags, adding the note if it is new. A new note in a full index takes the place of the oldest,
+     * unless it is older still and is left out. Takes sorted slots without repeats, as slots() returns.
+     */
+    synchronized void put(UUID noteId, long createdAt, int[] tags) {
+        var slot = noteSlots.get(noteId);
+        if (slot == null) {
+            if (noteSlots.size() >= maxNotes) {
+                int oldest = oldestNote();
+                if (createdAt <= noteCreated[oldest]) {
+                    return;
+                }
+                remove(noteIds[oldest]);
+            }
+            slot = newNoteSlot();
+            noteIds[slot] = noteId;
+            noteCreated[slot] = createdAt;
+            noteSlots.put(noteId, slot);
+        } else {
+            unlink(slot);
+        }
+
+        noteTags[slot] = tags.length == 0 ? NONE : tags;
+        for (int t : tags) {
+            if (postingSizes[t] == postings[t].length) {
+                postings[t] = Arrays.copyOf(postings[t], Math.max(4, postingSizes[t] * 2));
+            }
+            postings[t][postingSizes[t]++] = slot;
+        }
+        links += tags.length;
+    }
+
+    synchronized void remove(UUID noteId) {
+        var slot = noteSlots.remove(noteId);
+        if (slot == null) {
+            return;
+        }
+        unlink(slot);
+        noteIds[slot] = null;
+        noteTags[slot] = null;
+        if (freeNoteCount == freeNoteSlots.length) {
+            freeNoteSlots = Arrays.copyOf(freeNoteSlots, freeNoteCount * 2);
+        }
+        freeNoteSlots[freeNoteCount++] = slot;
+    }
+
+    // The note's sorted tag slots, or null when the note is not in the index.
+    synchronized int[] tagsOf(UUID noteId) {
+        var slot = noteSlots.get(noteId);
+        return slot == null ? null : noteTags[slot];
+    }
+
+    /*
+     * Other notes sharing tags with these, best first, leaving out the note itself. Each shared tag adds
+     * ln(1 + notes / notes with the tag), so a rare tag in common counts for more than one most notes carry.
+     * Ties go to the newer note.
+     */
+    synchronized List<RelatedNoteResponse> related(UUID noteId, int[] tags, int limit) {
+        var self = noteSlots.get(noteId);
+        double total = noteSlots.size();
+
+        int touched = 0;
+        for (int t : tags) {
+            float weight = (float) Math.log1p(total / Math.max(1, postingSizes[t]));
+            int[] posting = postings[t];
+            for (int i = 0, n = postingSizes[t]; i < n; i++) {
+                int s = posting[i];
+                if (self != null && s == self) {
+                    continue;
+                }
+                if (noteScores[s] == 0) {
+                    touchedNotes[touched++] = s;
+                }
+                noteScores[s] += weight;
+            }
+        }
+
+        int[] best = new int[Math.min(limit, touched)];
+        int found = 0;
+        for (int i = 0; i < touched; i++) {
+            int s = touchedNotes[i];
+            found = offer(best, found, s, this::betterNote);
+        }
+
+        var results = new ArrayList<RelatedNoteResponse>(found);
+        for (int i = 0; i < found; i++) {
+            int s = best[i];
+            results.add(new RelatedNoteResponse(noteIds[s], round(noteScores[s]), shared(tags, noteTags[s])));
+        }
+        for (int i = 0; i < touched; i++) {
+            noteScores[touchedNotes[i]] = 0;
+        }
+        return results;
+    }
+
+    /*
+     * Tags seen together with these, best first. A candidate scores the mean over the given tags of the share of notes
+     * with that tag that also carry the candidate. With no tags to go on, the user's most used tags come back, scored
+     * by the share of notes carrying them. Ties go to the more used tag, then by name.
+     */
+    synchronized List<SuggestedTagResponse> suggest(int[] tags, int limit) {
+        int touched = 0;
+        if (tags.length == 0) {
+            for (int t = 0; t < tagCount; t++) {
+                if (postingSizes[t] > 0) {
+                    tagScores[t] = postingSizes[t];
+                    touchedTags[touched++] = t;
+                }
+            }
+        } else {
+            for (int t : tags) {
+                float weight = 1f / (tags.length * Math.max(1, postingSizes[t]));
+                int[] posting = postings[t];
+                for (int i = 0, n = postingSizes[t]; i < n; i++) {
+                    for (int u : noteTags[posting[i]]) {
+                        if (Arrays.binarySearch(tags, u) >= 0) {
+                            continue;
+                        }
+                        if (tagScores[u] == 0) {
+                            touchedTags[touched++] = u;
+                        }
+                        tagScores[u] += weight;
+                    }
+                }
+            }
+        }
+
+        int[] best = new int[Math.min(limit, touched)];
+        int found = 0;
+        for (int i = 0; i < touched; i++) {
+            found = offer(best, found, touchedTags[i], this::betterTag);
+        }
+
+        var results = new ArrayList<SuggestedTagResponse>(found);
+        for (int i = 0; i < found; i++) {
+            int t = best[i];
+            // Most used tags score by the share of all notes carrying them.
+            float score = tags.length == 0 ? (float) postingSizes[t] / noteSlots.size() : tagScores[t];
+            results.add(new SuggestedTagResponse(tagIds[t], tagNames[t], round(score)));
+        }
+        for (int i = 0; i < touched; i++) {
+            tagScores[touchedTags[i]] = 0;
+        }
+        return results;
+    }
+
+    /* HELPERS */
+
+    private int newNoteSlot() {
+        if (freeNoteCount > 0) {
+            return freeNoteSlots[--freeNoteCount];
+        }
+        if (noteSlotsUsed == noteIds.length) {
+            int capacity = noteSlotsUsed * 2;
+            noteIds = Arrays.copyOf(noteIds, capacity);
+            noteCreated = Arrays.copyOf(noteCreated, capacity);
+            noteTags = Arrays.copyOf(noteTags, capacity);
+            noteScores = Arrays.copyOf(noteScores, capacity);
+            touchedNotes = Arrays.copyOf(touchedNotes, capacity);
+        }
+        return noteSlotsUsed++;
+    }
+
+    // A full scan, but only a full index pays it, once per note added.
+    private int oldestNote() {
+        int oldest = -1;
+        for (int s = 0; s < noteSlotsUsed; s++) {
+            if (noteIds[s] != null && (oldest < 0 || noteCreated[s] < noteCreated[oldest])) {
+                oldest = s;
+            }
+        }
+        return oldest;
+    }
+
+    // Takes the note out of the posting lists of its current tags.
+    private void unlink(int slot) {
+        for (int t : noteTags[slot]) {
+            int[] posting = postings[t];
+            int last = --postingSizes[t];
+            for (int i = 0; i <= last; i++) {
+                if (posting[i] == slot) {
+                    posting[i] = posting[last];
+                    break;
+                }
+            }
+        }
+        links -= noteTags[slot].length;
+    }
+
+    private interface Better {
+        boolean test(int a, int b);
+    }
+
+    // Inserts the candidate into best[0, found), kept best first, if it makes the cut. Returns the new count.
+    private static int offer(int[] best, int found, int candidate, Better better) {
+        if (found == best.length && (found == 0 || !better.test(candidate, best[found - 1]))) {
+            return found;
+        }
+        int i = found == best.length ? found - 1 : found++;
+        while (i > 0 && better.test(candidate, best[i - 1])) {
+            best[i] = best[i - 1];
+            i--;
+        }
+        best[i] = candidate;
+        return found;
+    }
+
+    private boolean betterNote(int a, int b) {
+        if (noteScores[a] != noteScores[b]) {
+            return noteScores[a] > noteScores[b];
+        }
+        return noteIds[a].compareTo(noteIds[b]) > 0;
+    }
+
+    private boolean betterTag(int a, int b) {
+        if (tagScores[a] != tagScores[b]) {
+            return tagScores[a] > tagScores[b];
+        }
+        if (postingSizes[a] != postingSizes[b]) {
+            return postingSizes[a] > postingSizes[b];
+        }
+        return tagNames[a].compareTo(tagNames[b]) < 0;
+    }
+
+    // Names of the tags both sorted slot arrays hold, by name.
+    private List<String> shared(int[] a, int[] b) {
+        var names = new ArrayList<String>();
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                names.add(tagNames[a[i]]);
+                i++;
+                j++;
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    private static double round(float score) {
+        return Math.round(score * 1000) / 1000.0;
+    }
+}
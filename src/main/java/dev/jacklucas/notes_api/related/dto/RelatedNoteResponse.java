@@ -0,0 +1,12 @@
+package dev.jacklucas.notes_api.related.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+// score: the summed weight of the shared tags, rarer tags weighing more. sharedTags: their names, sorted.
+public record RelatedNoteResponse(
+        UUID id,
+        double score,
+        List<String> sharedTags
+) {
+}
@@ -0,0 +1,11 @@
+package dev.jacklucas.notes_api.related.dto;
+
+import java.util.UUID;
+
+// score: between 0 and 1, how often the tag goes with the note's tags.
+public record SuggestedTagResponse(
+        UUID id,
+        String name,
+        double score
+) {
+}
@@ -0,0 +1,69 @@
+package dev.jacklucas.notes_api.revision;
+
+import dev.jacklucas.notes_api.id.UuidV7;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/*
+ * One recorded state of a note: a full snapshot, or a delta against the revision before it.
+ */
+@Entity
+@Table(name = "note_revisions")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NoteRevision {
+
+    @Id
+    @GeneratedValue
+    @UuidGenerator(algorithm = UuidV7.class)
+    private UUID id;
+
+    @Column(nullable = false)
+    private String userId;
+
+    @Column(nullable = false)
+    private UUID noteId;
+
+    @Column(nullable = false)
+    private int revision;
+
+    @Column(nullable = false)
+    private boolean snapshot;
+
+    @Column(nullable = false)
+    private String title;
+
+    private boolean archived;
+
+    // Set on snapshots only.
+    @Column(columnDefinition = "text")
+    private String content;
+
+    // Set on deltas only.
+    private Integer deltaPrefix;
+    private Integer deltaSuffix;
+    @Column(columnDefinition = "text")
+    private String deltaInsert;
+
+    @Column(nullable = false)
+    private int contentLength;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @PrePersist
+    void onCreate() {
+        createdAt = Instant.now();
+    }
+
+    public TextDelta delta() {
+        return new TextDelta(deltaPrefix, deltaSuffix, deltaInsert);
+    }
+}
@@ -0,0 +1,82 @@
+package dev.jacklucas.notes_api.revision;
+
+import dev.jacklucas.notes_api.note.NoteNotFound;
+import dev.jacklucas.notes_api.note.NoteRepository;
+import dev.jacklucas.notes_api.revision.dto.ReadRevisionResponse;
+import dev.jacklucas.notes_api.revision.dto.RevisionSummaryResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/notes/{noteId}/revisions")
+public class NoteRevisionController {
+
+    private final NoteRevisionRepository revisionRepository;
+    private final NoteRepository noteRepository;
+
+    public NoteRevisionController(NoteRevisionRepository revisionRepository, NoteRepository noteRepository) {
+        this.revisionRepository = revisionRepository;
+        this.noteRepository = noteRepository;
+    }
+
+    // Route handles listing a note's revisions, newest first.
+    @Transactional(readOnly = true)
+    @GetMapping
+    public Page<RevisionSummaryResponse> listRevisions(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID noteId,
+            @PageableDefault(sort = "revision", direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        final String userId = jwt.getSubject();
+
+        var page = revisionRepository.findByUserIdAndNoteId(userId, noteId, pageable);
+
+        // Only check the note itself when there is nothing to show.
+        if (page.isEmpty() && !noteRepository.existsByIdAndUserId(noteId, userId)) {
+            throw new NoteNotFound(noteId);
+        }
+
+        return page;
+    }
+
+    // Route handles getting a note as it was at a revision.
+    @Transactional(readOnly = true)
+    @GetMapping("/{revision}")
+    public ReadRevisionResponse getRevision(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID noteId,
+            @PathVariable int revision
+    ) {
+        final String userId = jwt.getSubject();
+
+        var chain = revisionRepository.findChain(userId, noteId, revision);
+        if (chain.isEmpty() || chain.getLast().getRevision() != revision) {
+            if (!noteRepository.existsByIdAndUserId(noteId, userId)) {
+                throw new NoteNotFound(noteId);
+            }
+            throw new RevisionNotFound(noteId, revision);
+        }
+
+        return ReadRevisionResponse.from(chain.getLast(), replay(chain));
+    }
+
+    /* HELPERS */
+
+    // Applies each delta in turn to the snapshot at the head of the chain.
+    private String replay(List<NoteRevision> chain) {
+        String content = chain.getFirst().getContent();
+        for (NoteRevision r : chain.subList(1, chain.size())) {
+            content = r.delta().applyTo(content == null ? "" : content);
+        }
+        return content;
+    }
+}
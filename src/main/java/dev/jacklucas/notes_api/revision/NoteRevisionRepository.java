@@ -0,0 +1,29 @@
+package dev.jacklucas.notes_api.revision;
+
+import dev.jacklucas.notes_api.revision.dto.RevisionSummaryResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface NoteRevisionRepository extends JpaRepository<NoteRevision, UUID> {
+
+    // Projects to the summary so listing never loads snapshot content.
+    Page<RevisionSummaryResponse> findByUserIdAndNoteId(String userId, UUID noteId, Pageable pageable);
+
+    // The latest snapshot at or before the revision, followed by the deltas up to it.
+    @Query("""
+            select r from NoteRevision r
+            where r.userId = :userId and r.noteId = :noteId and r.revision <= :revision
+              and r.revision >= (select max(s.revision) from NoteRevision s
+                                 where s.userId = :userId and s.noteId = :noteId
+                                   and s.snapshot = true and s.revision <= :revision)
+            order by r.revision
+            """)
+    List<NoteRevision> findChain(@Param("userId") String userId, @Param("noteId") UUID noteId,
+                                 @Param("revision") int revision);
+}
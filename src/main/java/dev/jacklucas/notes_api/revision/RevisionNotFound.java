@@ -0,0 +1,13 @@
+package dev.jacklucas.notes_api.revision;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class RevisionNotFound extends RuntimeException {
+    public RevisionNotFound(UUID noteId, int revision) {
+        super("Revision (%s) of note (%s) not found.".formatted(revision, noteId));
+    }
+}
@@ -0,0 +1,150 @@
+package dev.jacklucas.notes_api.revision;
+
+import dev.jacklucas.notes_api.note.Note;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Records note writes as revisions, inside the caller's transaction.
+ * Most revisions are deltas. A snapshot is stored every `snapshotEvery` revisions, and also when a delta would be
+ * nearly as large as the content, so rebuilding any revision replays a bounded chain.
+ */
+@Component
+public class RevisionRecorder {
+
+    // The tracked fields of a note, captured before a write.
+    public record State(String title, String content, boolean archived) {
+        public static State of(Note note) {
+            return new State(note.getTitle(), note.getContent(), note.isArchived());
+        }
+    }
+
+    private final NoteRevisionRepository revisionRepository;
+    private final JdbcTemplate jdbc;
+    private final Timer timer;
+    private final int snapshotEvery;
+
+    public RevisionRecorder(
+            NoteRevisionRepository revisionRepository,
+            JdbcTemplate jdbc,
+            MeterRegistry meterRegistry,
+            @Value("${notes.revisions.snapshot-every:20}") int snapshotEvery
+    ) {
+        this.revisionRepository = revisionRepository;
+        this.jdbc = jdbc;
+        this.timer = Timer.builder("notes.revisions.record")
+                .description("Time spent diffing and queueing revisions on note writes")
+                .register(meterRegistry);
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+    }
+
+    // Records a newly created note as its first revision.
+    public void recordCreated(Note note) {
+        timer.record(() -> revisionRepository.save(snapshot(note, note.getRevision(), State.of(note))));
+    }
+
+    // Records the change from `before` to the note's current state, and bumps the note's revision.
+    public void recordChange(State before, Note note) {
+        var after = State.of(note);
+        if (after.equals(before)) {
+            return;
+        }
+
+        timer.record(() -> {
+            List<NoteRevision> revisions = new ArrayList<>(2);
+
+            // History for notes from before revisions existed starts with the state they had.
+            if (note.getRevision() == 0) {
+                revisions.add(snapshot(note, 1, before));
+                note.setRevision(1);
+            }
+
+            int revision = note.getRevision() + 1;
+            revisions.add(revision(note, revision, before, after));
+            note.setRevision(revision);
+
+            revisionRepository.saveAll(revisions);
+        });
+    }
+
+    /*
+     * Records an in-place edit that has already been written to the notes row, without reading the content into
+     * memory. Everything outside the `prefix` leading and `suffix` trailing code points changed. The delta is cut
+     * from the stored content and converted to the UTF-16 offsets deltas use, all in the database.
+     * Notes from before revisions existed must go through `recordLegacySnapshot` before the edit is written.
+     */
+    public void recordEdit(String userId, UUID noteId, int revision, int prefix, int suffix) {
+        boolean periodic = (revision - 1) % snapshotEvery == 0;
+        timer.record(() -> jdbc.update("""
+                insert into note_revisions (user_id, note_id, revision, snapshot, title, archived, content,
+                                            delta_prefix, delta_suffix, delta_insert, content_length)
+                select e.user_id, e.id, ?, e.snapshot, e.title, e.archived,
+                       case when e.snapshot then e.content end,
+                       case when e.snapshot then null else e.prefix end,
+                       case when e.snapshot then null else e.suffix end,
+                       case when e.snapshot then null else e.ins end,
+                       coalesce(e.length, 0)
+                from (select d.*, (? or d.content is null or utf16_length(d.ins) * 2 >= d.length) as snapshot
+                      from (select n.user_id, n.id, n.title, n.archived, n.content,
+                                   utf16_length(left(n.content, ?)) as prefix,
+                                   utf16_length(right(n.content, ?)) as suffix,
+                                   substr(n.content, ? + 1, char_length(n.content) - ? - ?) as ins,
+                                   utf16_length(n.content) as length
+                            from notes n
+                            where n.user_id = ? and n.id = ?) d) e
+                """, revision, periodic, prefix, suffix, prefix, prefix, suffix, userId, noteId));
+    }
+
+    // Records a revision-0 note's current state as revision 1, the base its history starts from.
+    public void recordLegacySnapshot(String userId, UUID noteId) {
+        timer.record(() -> jdbc.update("""
+                insert into note_revisions (user_id, note_id, revision, snapshot, title, archived, content, content_length)
+                select n.user_id, n.id, 1, true, n.title, n.archived, n.content, coalesce(utf16_length(n.content), 0)
+                from notes n
+                where n.user_id = ? and n.id = ?
+                """, userId, noteId));
+    }
+
+    /* HELPERS */
+
+    private NoteRevision revision(Note note, int revision, State before, State after) {
+        if ((revision - 1) % snapshotEvery == 0 || before.content() == null || after.content() == null) {
+            return snapshot(note, revision, after);
+        }
+
+        var delta = TextDelta.between(before.content(), after.content());
+        if (delta.insert().length() * 2 >= after.content().length()) {
+            return snapshot(note, revision, after);
+        }
+
+        return base(note, revision, after)
+                .deltaPrefix(delta.prefix())
+                .deltaSuffix(delta.suffix())
+                .deltaInsert(delta.insert())
+                .build();
+    }
+
+    private NoteRevision snapshot(Note note, int revision, State state) {
+        return base(note, revision, state)
+                .snapshot(true)
+                .content(state.content())
+                .build();
+    }
+
+    private NoteRevision.NoteRevisionBuilder base(Note note, int revision, State state) {
+        return NoteRevision.builder()
+                .userId(note.getUserId())
+                .noteId(note.getId())
+                .revision(revision)
+                .title(state.title())
+                .archived(state.archived())
+                .contentLength(state.content() == null ? 0 : state.content().length());
+    }
+}
@@ -0,0 +1,37 @@
+package dev.jacklucas.notes_api.revision;
+
+/*
+ * The change between two strings: keep `prefix` chars from the front and `suffix` chars from the back, and put
+ * `insert` between them. Edits are usually local, so this stays small even for very large notes.
+ * Offsets never split a surrogate pair, so `insert` is always valid text.
+ */
+public record TextDelta(int prefix, int suffix, String insert) {
+
+    public static TextDelta between(String before, String after) {
+        int shorter = Math.min(before.length(), after.length());
+
+        int prefix = 0;
+        while (prefix < shorter && before.charAt(prefix) == after.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix > 0 && Character.isHighSurrogate(before.charAt(prefix - 1))) {
+            prefix--;
+        }
+
+        // The suffix may not overlap the prefix in either string.
+        int suffix = 0;
+        while (suffix < shorter - prefix
+                && before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(after.charAt(after.length() - suffix))) {
+            suffix--;
+        }
+
+        return new TextDelta(prefix, suffix, after.substring(prefix, after.length() - suffix));
+    }
+
+    public String applyTo(String before) {
+        return before.substring(0, prefix) + insert + before.substring(before.length() - suffix);
+    }
+}
@@ -0,0 +1,23 @@
+package dev.jacklucas.notes_api.revision.dto;
+
+import dev.jacklucas.notes_api.revision.NoteRevision;
+
+public record ReadRevisionResponse(
+        String noteId,
+        int revision,
+        String title,
+        String content,
+        String createdAt,
+        boolean archived
+) {
+    public static ReadRevisionResponse from(NoteRevision r, String content) {
+        return new ReadRevisionResponse(
+                r.getNoteId().toString(),
+                r.getRevision(),
+                r.getTitle(),
+                content,
+                r.getCreatedAt().toString(),
+                r.isArchived()
+        );
+    }
+}
@@ -0,0 +1,12 @@
+package dev.jacklucas.notes_api.revision.dto;
+
+import java.time.Instant;
+
+public record RevisionSummaryResponse(
+        int revision,
+        String title,
+        boolean archived,
+        int contentLength,
+        Instant createdAt
+) {
+}
@@ -1,9 +1,12 @@
 package dev.jacklucas.notes_api.tag;
 
+import dev.jacklucas.notes_api.id.UuidV7;
 import dev.jacklucas.notes_api.note.Note;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
+import org.hibernate.annotations.PartitionKey;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.Instant;
 import java.util.HashSet;
@@ -21,9 +24,12 @@ public class Tag {
 
     @Id
     @GeneratedValue
+    @UuidGenerator(algorithm = UuidV7.class)
     private UUID id;
 
+    // Added to every update and delete, so they touch one partition.
     @NotBlank
+    @PartitionKey
     @Column(nullable = false)
     private String userId;
 
@@ -33,6 +39,10 @@ public class Tag {
 
     private Instant createdAt;
 
+    // How many notes carry the tag. Kept by triggers on note_tags (V11), so Hibernate never writes it.
+    @Column(insertable = false, updatable = false)
+    private long uses;
+
     @PrePersist
     void onCreate() {
         createdAt = Instant.now();
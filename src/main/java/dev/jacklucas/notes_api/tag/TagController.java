@@ -1,18 +1,27 @@
 package dev.jacklucas.notes_api.tag;
 
+import dev.jacklucas.notes_api.counter.UserCounters;
+import dev.jacklucas.notes_api.note.NotesChanged;
 import dev.jacklucas.notes_api.tag.dto.CreateTagRequest;
 import dev.jacklucas.notes_api.tag.dto.PutTagRequest;
 import dev.jacklucas.notes_api.tag.dto.ReadTagResponse;
+import dev.jacklucas.notes_api.tag.dto.TagSuggestionResponse;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
 @Slf4j
@@ -21,9 +30,13 @@ import java.util.UUID;
 public class TagController {
 
     private final TagRepository tagRepository;
+    private final UserCounters counters;
+    private final ApplicationEventPublisher events;
 
-    public TagController(TagRepository tagRepository) {
+    public TagController(TagRepository tagRepository, UserCounters counters, ApplicationEventPublisher events) {
         this.tagRepository = tagRepository;
+        this.counters = counters;
+        this.events = events;
     }
 
     @PostMapping
@@ -44,18 +57,43 @@ public class TagController {
 
         // Otherwise, build the tag and save it in the repo.
         var savedTag = tagRepository.save(Tag.builder().userId(userId).name(tagName).build());
+        events.publishEvent(new NotesChanged(userId));
         return ResponseEntity.status(HttpStatus.CREATED).body(ReadTagResponse.from(savedTag));
     }
 
+    @Transactional(readOnly = true)
     @GetMapping
     public Page<ReadTagResponse> listTags(
             @AuthenticationPrincipal Jwt jwt,
             Pageable pageable
     ) {
         String userId = jwt.getSubject();
-        return tagRepository.findByUserId(userId, pageable).map(ReadTagResponse::from);
+
+        // The total is only looked up when the page itself does not tell it.
+        var tags = tagRepository.findByUserId(userId, pageable);
+        return PageableExecutionUtils.getPage(tags, pageable, () -> counters.tags(userId)).map(ReadTagResponse::from);
+    }
+
+    // Route handles autocomplete: the user's tags starting with the prefix, ignoring case, most used first.
+    @Transactional(readOnly = true)
+    @GetMapping("/suggest")
+    public List<TagSuggestionResponse> suggestTags(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        final String userId = jwt.getSubject();
+
+        // Escape LIKE wildcards so the prefix only ever matches literally.
+        var escaped = prefix.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+
+        return tagRepository.suggest(userId, escaped + "%", PageRequest.of(0, Math.clamp(limit, 1, 50)));
     }
 
+    @Transactional(readOnly = true)
     @GetMapping("/{id}")
     public ReadTagResponse getTagById(
             @AuthenticationPrincipal Jwt jwt,
@@ -63,8 +101,7 @@ public class TagController {
     ) {
         final String userId = jwt.getSubject();
 
-        var tag = tagRepository.findById(id)
-                .filter(t -> t.getUserId().equals(userId))
+        var tag = tagRepository.findByIdAndUserId(id, userId)
                 .orElseThrow(() -> new TagNotFound(id));
 
         return ReadTagResponse.from(tag);
@@ -81,8 +118,7 @@ public class TagController {
         final String userId = jwt.getSubject();
 
         // Find the tag that we want to update.
-        var existingTag = tagRepository.findById(id)
-                .filter(t -> t.getUserId().equals(userId))
+        var existingTag = tagRepository.findByIdAndUserId(id, userId)
                 .orElseThrow(() -> new TagNotFound(id));
 
         var trimmedName = request.name().trim();
@@ -98,9 +134,39 @@ public class TagController {
         // Update the tag's name, save it, and return a good response.
         existingTag.setName(trimmedName);
         tagRepository.save(existingTag);
+        events.publishEvent(new NotesChanged(userId));
         return ResponseEntity.status(HttpStatus.OK).body(ReadTagResponse.from(existingTag));
     }
 
+    @Transactional
+    @PostMapping("/{id}/merge-into/{targetId}")
+    public ResponseEntity<ReadTagResponse> mergeTag(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID id,
+            @PathVariable UUID targetId
+    ) {
+        log.info("POST /api/tags/{}/merge-into/{}", id, targetId);
+
+        final String userId = jwt.getSubject();
+
+        // Both tags must belong to the user.
+        tagRepository.findByIdAndUserId(id, userId)
+                .orElseThrow(() -> new TagNotFound(id));
+        var target = tagRepository.findByIdAndUserId(targetId, userId)
+                .orElseThrow(() -> new TagNotFound(targetId));
+
+        // Case that the tag is merged into itself.
+        if (id.equals(targetId))
+            return ResponseEntity.status(HttpStatus.OK).body(ReadTagResponse.from(target));
+
+        // Relink the notes and drop the source tag without loading any notes.
+        var notesTouched = tagRepository.mergeInto(userId, id, targetId);
+        log.info("Merged tag {} into {} across {} notes", id, targetId, notesTouched);
+
+        events.publishEvent(new NotesChanged(userId));
+        return ResponseEntity.status(HttpStatus.OK).body(ReadTagResponse.from(target));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteTagById(
             @AuthenticationPrincipal Jwt jwt,
@@ -110,11 +176,11 @@ public class TagController {
 
         final String userId = jwt.getSubject();
 
-        var tag = tagRepository.findById(id)
-                .filter(t -> t.getUserId().equals(userId))
+        var tag = tagRepository.findByIdAndUserId(id, userId)
                 .orElseThrow(() -> new TagNotFound(id));
 
         tagRepository.delete(tag);
+        events.publishEvent(new NotesChanged(userId));
         return ResponseEntity.noContent().build();
     }
 }
@@ -1,17 +1,58 @@
 package dev.jacklucas.notes_api.tag;
 
+import dev.jacklucas.notes_api.tag.dto.TagSuggestionResponse;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface TagRepository extends JpaRepository<Tag, UUID> {
-    Page<Tag> findByUserId(String userId, Pageable pageable);
+    // One page of the user's tags without a count query; the total comes from UserCounters.
+    List<Tag> findByUserId(String userId, Pageable pageable);
+
+    Optional<Tag> findByIdAndUserId(UUID id, String userId);
 
     Optional<Tag> findByNameAndUserId(String name, String userId);
 
     Optional<Tag> findByNameIgnoreCaseAndUserId(String name, String userId);
 
+    List<Tag> findByUserIdAndNameIn(String userId, Collection<String> names);
+
+    // Tags whose lowercased name matches the LIKE pattern, most used first. Uses idx_tags_owner_lower_name, and reads
+    // the trigger-kept uses column rather than counting note_tags, so a short prefix costs no more than a long one.
+    @Query("""
+            select new dev.jacklucas.notes_api.tag.dto.TagSuggestionResponse(t.id, t.name, t.uses)
+            from Tag t
+            where t.userId = :userId and lower(t.name) like :pattern escape '\\'
+            order by t.uses desc, lower(t.name)
+            """)
+    List<TagSuggestionResponse> suggest(@Param("userId") String userId, @Param("pattern") String pattern, Pageable limit);
+
+    /*
+     * Moves every note from the source tag to the target and deletes the source, in one statement.
+     * Notes that already had both tags keep a single link. Returns how many notes were touched.
+     */
+    @Query(nativeQuery = true, value = """
+            with moved as (
+                delete from note_tags where user_id = :userId and tag_id = :sourceId
+                returning note_id
+            ), linked as (
+                insert into note_tags (user_id, note_id, tag_id)
+                select :userId, note_id, :targetId from moved
+                on conflict do nothing
+            ), touched as (
+                update notes set updated_at = now()
+                where user_id = :userId and id in (select note_id from moved)
+                returning id
+            ), dropped as (
+                delete from tags where user_id = :userId and id = :sourceId
+            )
+            select count(*) from touched
+            """)
+    long mergeInto(@Param("userId") String userId, @Param("sourceId") UUID sourceId, @Param("targetId") UUID targetId);
 }
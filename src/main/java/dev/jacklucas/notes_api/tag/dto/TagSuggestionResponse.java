@@ -0,0 +1,10 @@
+package dev.jacklucas.notes_api.tag.dto;
+
+import java.util.UUID;
+
+public record TagSuggestionResponse(
+        UUID id,
+        String name,
+        long uses
+) {
+}
@@ -0,0 +1,4 @@
+-- Every update and delete of notes, tags and note_tags now filters on user_id (@PartitionKey, and note_tags keyed by
+-- the note's user_id and id), so none of them looks rows up by id alone. The indexes V2 added for that go.
+drop index if exists idx_notes_id;
+drop index if exists idx_tags_id;
@@ -0,0 +1,43 @@
+-- How many notes carry each tag, so autocomplete ranks by a column instead of counting note_tags on every keystroke.
+-- Like user_counters (V7), statement-level triggers keep it current in the same transaction as the write, for every
+-- writer, and UserCounterReconciler repairs any drift.
+alter table tags add column if not exists uses bigint not null default 0;
+
+-- Rows are locked in (user_id, id) order first, so two statements touching the same tags cannot deadlock each other.
+create or replace function count_tag_uses() returns trigger language plpgsql as $$
+begin
+    if tg_op = 'INSERT' then
+        perform 1 from tags t
+        where (t.user_id, t.id) in (select user_id, tag_id from new_rows)
+        order by t.user_id, t.id
+        for update;
+        update tags t
+        set uses = t.uses + d.uses
+        from (select user_id, tag_id, count(*) as uses from new_rows group by user_id, tag_id) d
+        where t.user_id = d.user_id and t.id = d.tag_id;
+    else
+        perform 1 from tags t
+        where (t.user_id, t.id) in (select user_id, tag_id from old_rows)
+        order by t.user_id, t.id
+        for update;
+        update tags t
+        set uses = t.uses - d.uses
+        from (select user_id, tag_id, count(*) as uses from old_rows group by user_id, tag_id) d
+        where t.user_id = d.user_id and t.id = d.tag_id;
+    end if;
+    return null;
+end $$;
+
+drop trigger if exists note_tags_count_insert on note_tags;
+drop trigger if exists note_tags_count_delete on note_tags;
+
+create trigger note_tags_count_insert after insert on note_tags
+    referencing new table as new_rows for each statement execute function count_tag_uses();
+create trigger note_tags_count_delete after delete on note_tags
+    referencing old table as old_rows for each statement execute function count_tag_uses();
+
+-- Creating the triggers blocks writes to note_tags until this migration commits, so the counts below are exact.
+update tags t
+set uses = c.uses
+from (select user_id, tag_id, count(*) as uses from note_tags group by user_id, tag_id) c
+where t.user_id = c.user_id and t.id = c.tag_id;
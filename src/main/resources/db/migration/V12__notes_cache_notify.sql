@@ -0,0 +1,46 @@
+-- Note cache invalidations (NotesChangeFeed) come from the database instead of the application, so writes by any
+-- writer reach every instance's caches: this app, the reactive module, and SQL run by hand.
+-- pg_notify inside the writing transaction is delivered only if it commits, and identical payloads sent by one
+-- transaction are delivered once, so a note written by several statements is invalidated once.
+-- Payload: noteId|userId, with an empty noteId when a statement touched several of the user's notes.
+
+-- Statement-level on notes and note_tags; the argument names the transition table's note id column.
+create or replace function notify_notes_cache() returns trigger language plpgsql as $$
+begin
+    execute format($q$
+        select pg_notify('notes_cache',
+                         case when count(distinct %1$I) = 1 then min(%1$I::text) else '' end || '|' || user_id)
+        from %2$I
+        group by user_id
+        $q$, tg_argv[0], case when tg_op = 'DELETE' then 'old_rows' else 'new_rows' end);
+    return null;
+end $$;
+
+-- A renamed tag changes every note that carries it. Deleted tags are covered by the note_tags rows they cascade to.
+create or replace function notify_notes_cache_tag_renamed() returns trigger language plpgsql as $$
+begin
+    perform pg_notify('notes_cache', '|' || new.user_id);
+    return null;
+end $$;
+
+drop trigger if exists notes_cache_insert on notes;
+drop trigger if exists notes_cache_update on notes;
+drop trigger if exists notes_cache_delete on notes;
+drop trigger if exists note_tags_cache_insert on note_tags;
+drop trigger if exists note_tags_cache_delete on note_tags;
+drop trigger if exists tags_cache_rename on tags;
+
+create trigger notes_cache_insert after insert on notes
+    referencing new table as new_rows for each statement execute function notify_notes_cache('id');
+create trigger notes_cache_update after update on notes
+    referencing new table as new_rows for each statement execute function notify_notes_cache('id');
+create trigger notes_cache_delete after delete on notes
+    referencing old table as old_rows for each statement execute function notify_notes_cache('id');
+create trigger note_tags_cache_insert after insert on note_tags
+    referencing new table as new_rows for each statement execute function notify_notes_cache('note_id');
+create trigger note_tags_cache_delete after delete on note_tags
+    referencing old table as old_rows for each statement execute function notify_notes_cache('note_id');
+
+-- Row-level so it can skip updates that keep the name, like the uses count kept by V11.
+create trigger tags_cache_rename after update of name on tags
+    for each row when (old.name is distinct from new.name) execute function notify_notes_cache_tag_renamed();
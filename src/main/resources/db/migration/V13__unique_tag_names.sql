@@ -0,0 +1,24 @@
+-- One tag per name per user. Two writers creating the same new tag at once (bulk tagging, note writes) used to get
+-- a row each; now the second insert conflicts and it reads back the first writer's row instead.
+-- Names compare exactly, as every writer looks them up: "Work" and "work" stay two tags.
+
+-- Fold duplicates already there into the oldest tag of each name. Links move by insert and delete rather than
+-- update, so the note_tags and tags triggers keep tags.uses and user_counters right.
+create temporary table tag_duplicates on commit drop as
+select user_id, id, keep_id
+from (select user_id, id, first_value(id) over (partition by user_id, name order by created_at, id) as keep_id
+      from tags) t
+where id <> keep_id;
+
+insert into note_tags (user_id, note_id, tag_id)
+select nt.user_id, nt.note_id, d.keep_id
+from note_tags nt
+join tag_duplicates d on d.user_id = nt.user_id and d.id = nt.tag_id
+on conflict do nothing;
+
+delete from note_tags nt using tag_duplicates d where nt.user_id = d.user_id and nt.tag_id = d.id;
+delete from tags t using tag_duplicates d where t.user_id = d.user_id and t.id = d.id;
+
+-- Replaces the plain index on the same columns; the partition key user_id leads, as a unique index here requires.
+drop index if exists idx_tags_owner_name;
+create unique index idx_tags_owner_name on tags (user_id, name);
@@ -0,0 +1,112 @@
+-- Hash partitioning on user_id, step 1 of 2.
+-- Creates partitioned copies of notes, tags, and note_tags, and keeps them in sync with triggers on the live tables.
+-- Existing rows are copied either by the batched backfill (PartitionBackfillApplication) or by V3 itself.
+-- On a large database, run the backfill application, which migrates to this version first, then deploy.
+
+-- NOTES
+create table if not exists notes_p (
+    id         uuid        not null default gen_random_uuid(),
+    user_id    text        not null,
+    title      text        not null,
+    content    text,
+    archived   boolean     not null default false,
+    created_at timestamptz not null default now(),
+    updated_at timestamptz not null default now(),
+    primary key (user_id, id)
+    ) partition by hash (user_id);
+
+-- TAGS
+create table if not exists tags_p (
+    id         uuid        not null default gen_random_uuid(),
+    user_id    text        not null,
+    name       text        not null,
+    created_at timestamptz not null default now(),
+    primary key (user_id, id)
+    ) partition by hash (user_id);
+
+-- NOTE_TAGS (carries user_id so it partitions the same way as its parents)
+create table if not exists note_tags_p (
+    user_id text not null,
+    note_id uuid not null,
+    tag_id  uuid not null,
+    primary key (user_id, note_id, tag_id),
+    foreign key (user_id, note_id) references notes_p (user_id, id) on delete cascade,
+    foreign key (user_id, tag_id) references tags_p (user_id, id) on delete cascade
+    ) partition by hash (user_id);
+
+do $$
+begin
+    for i in 0..15 loop
+        execute format('create table if not exists notes_p_%s partition of notes_p for values with (modulus 16, remainder %s)', lpad(i::text, 2, '0'), i);
+        execute format('create table if not exists tags_p_%s partition of tags_p for values with (modulus 16, remainder %s)', lpad(i::text, 2, '0'), i);
+        execute format('create table if not exists note_tags_p_%s partition of note_tags_p for values with (modulus 16, remainder %s)', lpad(i::text, 2, '0'), i);
+    end loop;
+end $$;
+
+-- Hibernate updates and deletes rows by id alone, which cannot prune; these keep that to one index probe per partition.
+create index if not exists idx_notes_p_id on notes_p(id);
+create index if not exists idx_tags_p_id on tags_p(id);
+create index if not exists idx_notes_p_owner_created on notes_p(user_id, created_at desc);
+create index if not exists idx_tags_p_owner_name on tags_p(user_id, name);
+create index if not exists idx_note_tags_p_tag on note_tags_p(user_id, tag_id);
+
+-- Tracks the batched backfill so V3 knows whether it still has to copy everything itself.
+create table if not exists partition_backfill (
+    table_name   text primary key,
+    completed_at timestamptz
+    );
+
+-- MIRRORING
+create or replace function mirror_notes() returns trigger language plpgsql as $$
+begin
+    if tg_op = 'DELETE' then
+        delete from notes_p where user_id = old.user_id and id = old.id;
+        return old;
+    end if;
+    insert into notes_p (id, user_id, title, content, archived, created_at, updated_at)
+    values (new.id, new.user_id, new.title, new.content, new.archived, new.created_at, new.updated_at)
+    on conflict (user_id, id) do update
+        set title = excluded.title, content = excluded.content, archived = excluded.archived,
+            created_at = excluded.created_at, updated_at = excluded.updated_at;
+    return new;
+end $$;
+
+create or replace function mirror_tags() returns trigger language plpgsql as $$
+begin
+    if tg_op = 'DELETE' then
+        delete from tags_p where user_id = old.user_id and id = old.id;
+        return old;
+    end if;
+    insert into tags_p (id, user_id, name, created_at)
+    values (new.id, new.user_id, new.name, new.created_at)
+    on conflict (user_id, id) do update set name = excluded.name, created_at = excluded.created_at;
+    return new;
+end $$;
+
+-- Links whose note or tag has not been backfilled yet are skipped; the note_tags backfill picks them up later.
+create or replace function mirror_note_tags() returns trigger language plpgsql as $$
+begin
+    if tg_op = 'DELETE' then
+        delete from note_tags_p where note_id = old.note_id and tag_id = old.tag_id;
+        return old;
+    end if;
+    insert into note_tags_p (user_id, note_id, tag_id)
+    select n.user_id, n.id, t.id
+    from notes_p n
+    join tags_p t on t.user_id = n.user_id and t.id = new.tag_id
+    where n.id = new.note_id
+    on conflict do nothing;
+    return new;
+end $$;
+
+drop trigger if exists mirror_notes on notes;
+create trigger mirror_notes after insert or update or delete on notes
+    for each row execute function mirror_notes();
+
+drop trigger if exists mirror_tags on tags;
+create trigger mirror_tags after insert or update or delete on tags
+    for each row execute function mirror_tags();
+
+drop trigger if exists mirror_note_tags on note_tags;
+create trigger mirror_note_tags after insert or delete on note_tags
+    for each row execute function mirror_note_tags();
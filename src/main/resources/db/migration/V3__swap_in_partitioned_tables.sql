@@ -0,0 +1,60 @@
+-- Hash partitioning on user_id, step 2 of 2.
+-- Swaps the partitioned tables in for the originals under a short exclusive lock.
+-- If the backfill did not finish (or never ran, as on a fresh database), the remaining rows are copied here.
+
+lock table note_tags, notes, tags in access exclusive mode;
+
+do $$
+begin
+    if not exists (select 1 from partition_backfill where table_name = 'tags' and completed_at is not null) then
+        insert into tags_p (id, user_id, name, created_at)
+        select id, user_id, name, created_at from tags
+        on conflict do nothing;
+    end if;
+
+    if not exists (select 1 from partition_backfill where table_name = 'notes' and completed_at is not null) then
+        insert into notes_p (id, user_id, title, content, archived, created_at, updated_at)
+        select id, user_id, title, content, archived, created_at, updated_at from notes
+        on conflict do nothing;
+    end if;
+
+    if not exists (select 1 from partition_backfill where table_name = 'note_tags' and completed_at is not null) then
+        insert into note_tags_p (user_id, note_id, tag_id)
+        select n.user_id, nt.note_id, nt.tag_id from note_tags nt join notes n on n.id = nt.note_id
+        on conflict do nothing;
+    end if;
+end $$;
+
+-- Dropping the originals also drops the mirroring triggers.
+drop table note_tags;
+drop table notes;
+drop table tags;
+drop function mirror_note_tags();
+drop function mirror_notes();
+drop function mirror_tags();
+drop table partition_backfill;
+
+alter table notes_p rename to notes;
+alter table tags_p rename to tags;
+alter table note_tags_p rename to note_tags;
+
+alter table notes rename constraint notes_p_pkey to notes_pkey;
+alter table tags rename constraint tags_p_pkey to tags_pkey;
+alter table note_tags rename constraint note_tags_p_pkey to note_tags_pkey;
+alter table note_tags rename constraint note_tags_p_user_id_note_id_fkey to note_tags_user_id_note_id_fkey;
+alter table note_tags rename constraint note_tags_p_user_id_tag_id_fkey to note_tags_user_id_tag_id_fkey;
+
+alter index idx_notes_p_id rename to idx_notes_id;
+alter index idx_tags_p_id rename to idx_tags_id;
+alter index idx_notes_p_owner_created rename to idx_notes_owner_created;
+alter index idx_tags_p_owner_name rename to idx_tags_owner_name;
+alter index idx_note_tags_p_tag rename to idx_note_tags_tag;
+
+do $$
+begin
+    for i in 0..15 loop
+        execute format('alter table notes_p_%1$s rename to notes_%1$s', lpad(i::text, 2, '0'));
+        execute format('alter table tags_p_%1$s rename to tags_%1$s', lpad(i::text, 2, '0'));
+        execute format('alter table note_tags_p_%1$s rename to note_tags_%1$s', lpad(i::text, 2, '0'));
+    end loop;
+end $$;
@@ -0,0 +1,32 @@
+-- Revision history for notes.
+-- Each row is either a full snapshot or a delta against the revision before it:
+-- keep delta_prefix chars from the front, delta_suffix chars from the back, and put delta_insert between them.
+-- A snapshot is written every few revisions so rebuilding one never replays a long chain.
+create table if not exists note_revisions (
+    id             uuid        not null default gen_random_uuid(),
+    user_id        text        not null,
+    note_id        uuid        not null,
+    revision       integer     not null,
+    snapshot       boolean     not null,
+    title          text        not null,
+    archived       boolean     not null,
+    content        text,
+    delta_prefix   integer,
+    delta_suffix   integer,
+    delta_insert   text,
+    content_length integer     not null,
+    created_at     timestamptz not null default now(),
+    primary key (user_id, id),
+    unique (user_id, note_id, revision),
+    foreign key (user_id, note_id) references notes (user_id, id) on delete cascade
+    ) partition by hash (user_id);
+
+do $$
+begin
+    for i in 0..15 loop
+        execute format('create table if not exists note_revisions_%s partition of note_revisions for values with (modulus 16, remainder %s)', lpad(i::text, 2, '0'), i);
+    end loop;
+end $$;
+
+-- Latest revision number of each note; 0 for notes written before revisions existed.
+alter table notes add column if not exists revision integer not null default 0;
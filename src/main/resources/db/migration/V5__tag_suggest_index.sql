@@ -0,0 +1,2 @@
+-- Case-insensitive prefix lookups for tag autocomplete: lower(name) like 'abc%' becomes an index range scan.
+create index if not exists idx_tags_owner_lower_name on tags (user_id, lower(name) text_pattern_ops);
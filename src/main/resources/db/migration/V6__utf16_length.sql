@@ -0,0 +1,7 @@
+-- Length of a string in UTF-16 code units, the unit Java strings and revision deltas count in.
+-- Characters outside the Basic Multilingual Plane take two.
+create or replace function utf16_length(s text) returns integer
+    language sql immutable strict parallel safe
+as $$
+    select char_length(s) + char_length(regexp_replace(s, '[^\U00010000-\U0010FFFF]', '', 'g'))
+$$;
@@ -0,0 +1,78 @@
+-- Per-user row counts, so listings fill in totalElements without counting the user's rows.
+-- Triggers keep them current in the same transaction as the write; UserCounterReconciler repairs any drift.
+-- One row per user holds every count, so a write only ever locks one counter row.
+create table if not exists user_counters (
+    user_id        text   primary key,
+    notes          bigint not null default 0,
+    archived_notes bigint not null default 0,
+    tags           bigint not null default 0
+    );
+
+-- Statement-level, so bulk writes (tag merges, shard moves) update each user's row once rather than once per row.
+create or replace function count_notes() returns trigger language plpgsql as $$
+begin
+    if tg_op = 'INSERT' then
+        insert into user_counters as c (user_id, notes, archived_notes)
+        select user_id, count(*), count(*) filter (where archived) from new_rows group by user_id
+        on conflict (user_id) do update
+            set notes = c.notes + excluded.notes, archived_notes = c.archived_notes + excluded.archived_notes;
+    else
+        update user_counters c
+        set notes = c.notes - d.notes, archived_notes = c.archived_notes - d.archived_notes
+        from (select user_id, count(*) as notes, count(*) filter (where archived) as archived_notes
+              from old_rows group by user_id) d
+        where c.user_id = d.user_id;
+    end if;
+    return null;
+end $$;
+
+create or replace function count_tags() returns trigger language plpgsql as $$
+begin
+    if tg_op = 'INSERT' then
+        insert into user_counters as c (user_id, tags)
+        select user_id, count(*) from new_rows group by user_id
+        on conflict (user_id) do update set tags = c.tags + excluded.tags;
+    else
+        update user_counters c
+        set tags = c.tags - d.tags
+        from (select user_id, count(*) as tags from old_rows group by user_id) d
+        where c.user_id = d.user_id;
+    end if;
+    return null;
+end $$;
+
+-- Row-level and filtered, so the content and title saves that make up most updates never touch the counters.
+create or replace function count_archived() returns trigger language plpgsql as $$
+begin
+    update user_counters
+    set archived_notes = archived_notes + case when new.archived then 1 else -1 end
+    where user_id = new.user_id;
+    return null;
+end $$;
+
+drop trigger if exists notes_count_insert on notes;
+drop trigger if exists notes_count_delete on notes;
+drop trigger if exists notes_count_archived on notes;
+drop trigger if exists tags_count_insert on tags;
+drop trigger if exists tags_count_delete on tags;
+
+create trigger notes_count_insert after insert on notes
+    referencing new table as new_rows for each statement execute function count_notes();
+create trigger notes_count_delete after delete on notes
+    referencing old table as old_rows for each statement execute function count_notes();
+create trigger notes_count_archived after update of archived on notes
+    for each row when (old.archived is distinct from new.archived) execute function count_archived();
+create trigger tags_count_insert after insert on tags
+    referencing new table as new_rows for each statement execute function count_tags();
+create trigger tags_count_delete after delete on tags
+    referencing old table as old_rows for each statement execute function count_tags();
+
+-- Creating the triggers blocks writes to notes and tags until this migration commits, so the counts below are exact.
+insert into user_counters (user_id, notes, archived_notes, tags)
+select user_id, sum(notes), sum(archived_notes), sum(tags)
+from (select user_id, count(*) as notes, count(*) filter (where archived) as archived_notes, 0 as tags
+      from notes group by user_id
+      union all
+      select user_id, 0, 0, count(*) from tags group by user_id) c
+group by user_id
+on conflict (user_id) do nothing;
@@ -0,0 +1,25 @@
+-- Time-ordered (version 7) UUIDs for rows inserted by SQL, matching what the application generates (UuidV7).
+-- Random v4 ids put every insert on a random leaf of the id indexes; v7 ids start with the time, so inserts append.
+-- Existing ids are left alone: they are in clients' URLs and in note_tags and note_revisions. Only new rows get v7 ids.
+-- The indexes stay as they are until rebuilt. REINDEX INDEX CONCURRENTLY on a partition compacts it without blocking writes.
+
+-- A random v4 UUID with the first 48 bits replaced by Unix milliseconds and the version nibble changed from 4 to 7.
+-- Postgres 18 has uuidv7(); this is the same layout without its sub-millisecond ordering.
+create or replace function uuid_generate_v7() returns uuid
+    language sql volatile parallel safe
+as $$
+    select encode(
+        set_bit(
+            set_bit(
+                overlay(uuid_send(gen_random_uuid())
+                        placing substring(int8send(floor(extract(epoch from clock_timestamp()) * 1000)::bigint) from 3)
+                        from 1 for 6),
+                52, 1),
+            53, 1),
+        'hex')::uuid
+$$;
+
+-- On a partitioned table this also changes every partition's default.
+alter table notes alter column id set default uuid_generate_v7();
+alter table tags alter column id set default uuid_generate_v7();
+alter table note_revisions alter column id set default uuid_generate_v7();
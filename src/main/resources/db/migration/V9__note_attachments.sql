@@ -0,0 +1,25 @@
+-- Files attached to notes. The bytes live in the content-addressed store on disk (ContentStore), named by their
+-- SHA-256; rows here only point at them, so the same file attached twice is stored once.
+create table if not exists note_attachments (
+    id           uuid        not null default uuid_generate_v7(),
+    user_id      text        not null,
+    note_id      uuid        not null,
+    filename     text        not null,
+    content_type text        not null,
+    size         bigint      not null,
+    sha256       text        not null,
+    created_at   timestamptz not null default now(),
+    primary key (user_id, id),
+    foreign key (user_id, note_id) references notes (user_id, id) on delete cascade
+    ) partition by hash (user_id);
+
+do $$
+begin
+    for i in 0..15 loop
+        execute format('create table if not exists note_attachments_%s partition of note_attachments for values with (modulus 16, remainder %s)', lpad(i::text, 2, '0'), i);
+    end loop;
+end $$;
+
+create index if not exists idx_note_attachments_note on note_attachments (user_id, note_id, created_at);
+-- For AttachmentSweeper, which asks whether anyone still points at a file. Searches every partition.
+create index if not exists idx_note_attachments_sha256 on note_attachments (sha256);
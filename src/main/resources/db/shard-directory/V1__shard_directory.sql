@@ -0,0 +1,7 @@
+-- SHARD DIRECTORY (users pinned to a shard, and users mid-move)
+create table if not exists shard_directory (
+    user_id    text        primary key,
+    shard      text        not null,
+    moving     boolean     not null default false,
+    updated_at timestamptz not null default now()
+    );
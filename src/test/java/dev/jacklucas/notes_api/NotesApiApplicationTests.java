@@ -1,9 +1,12 @@
 package dev.jacklucas.notes_api;
 
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 
 @SpringBootTest
+@Import(EmbeddedPostgresTestConfig.class)
 class NotesApiApplicationTests {
 
 	@Test
@@ -0,0 +1,316 @@
+package dev.jacklucas.notes_api.attachment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class AttachmentIT {
+
+    static final Path DIRECTORY = temporaryDirectory();
+
+    @DynamicPropertySource
+    static void attachmentProperties(DynamicPropertyRegistry registry) {
+        registry.add("notes.attachments.directory", DIRECTORY::toString);
+        registry.add("notes.attachments.max-size", () -> "1MB");
+        registry.add("notes.attachments.sweep.grace", () -> "0s");
+    }
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    ContentStore store;
+    @Autowired
+    AttachmentSweeper sweeper;
+
+    private String user;
+    private UUID noteId;
+
+    @BeforeEach
+    void newUserAndNote() throws Exception {
+        // Every test gets its own user, so the shared database never needs cleaning.
+        user = "attach-" + UUID.randomUUID();
+        noteId = createNote();
+    }
+
+    private static Path temporaryDirectory() {
+        try {
+            return Files.createTempDirectory("notes-attachments");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private UUID createNote() throws Exception {
+        return ApiFixtures.createNote(mvc, user, "Note", "Content", List.of());
+    }
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    // Uploads and returns the attachment's id and hash.
+    private String[] upload(String filename, String contentType, byte[] content) throws Exception {
+        var response = mvc.perform(post("/api/notes/{noteId}/attachments", noteId).with(as(user))
+                        .param("filename", filename)
+                        .contentType(contentType)
+                        .content(content))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        var json = om.readTree(response);
+        return new String[]{json.get("id").asText(), json.get("sha256").asText()};
+    }
+
+    @Test
+    @DisplayName("Uploads stream into the store; the same bytes twice are stored once")
+    void upload() throws Exception {
+        var content = randomBytes(10_000);
+
+        mvc.perform(post("/api/notes/{noteId}/attachments", noteId).with(as(user))
+                        .param("filename", "C:\\Users\\me\\photo.png")
+                        .contentType(MediaType.IMAGE_PNG)
+                        .content(content))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.filename").value("photo.png"))
+                .andExpect(jsonPath("$.contentType").value("image/png"))
+                .andExpect(jsonPath("$.size").value(10_000))
+                .andExpect(jsonPath("$.noteId").value(noteId.toString()));
+        var copy = upload("copy.png", "image/png", content);
+
+        assertThat(Files.readAllBytes(store.path(copy[1]))).isEqualTo(content);
+        mvc.perform(get("/api/notes/{noteId}/attachments", noteId).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].filename").value("photo.png"))
+                .andExpect(jsonPath("$[1].filename").value("copy.png"))
+                .andExpect(jsonPath("$[0].sha256").value(copy[1]));
+    }
+
+    @Test
+    @DisplayName("Uploads over the limit get 413 and leave nothing behind")
+    void tooLarge() throws Exception {
+        mvc.perform(post("/api/notes/{noteId}/attachments", noteId).with(as(user))
+                        .param("filename", "big.bin")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(randomBytes(1024 * 1024 + 1)))
+                .andExpect(status().isPayloadTooLarge());
+
+        mvc.perform(get("/api/notes/{noteId}/attachments", noteId).with(as(user)))
+                .andExpect(jsonPath("$", hasSize(0)));
+        try (var partials = Files.list(DIRECTORY.resolve("tmp"))) {
+            assertThat(partials).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("Downloads the whole file with its type, name, and ETag")
+    void download() throws Exception {
+        var content = randomBytes(5_000);
+        var attachment = upload("report.pdf", "application/pdf", content);
+
+        var response = mvc.perform(get("/api/notes/{noteId}/attachments/{id}", noteId, attachment[0]).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/pdf"))
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "5000"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + attachment[1] + "\""))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"report.pdf\""))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+                .andReturn().getResponse();
+
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    @DisplayName("Types that could run script in the browser are always downloaded")
+    void scriptableTypesDownload() throws Exception {
+        var svg = upload("logo.svg", "image/svg+xml", randomBytes(100));
+        var html = upload("page.html", "text/html", randomBytes(100));
+        var png = upload("photo.png", "image/png", randomBytes(100));
+
+        mvc.perform(get("/api/notes/{noteId}/attachments/{id}", noteId, svg[0]).with(as(user)))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"logo.svg\""))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"));
+        mvc.perform(get("/api/notes/{noteId}/attachments/{id}", noteId, html[0]).with(as(user)))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"page.html\""));
+        mvc.perform(get("/api/notes/{noteId}/attachments/{id}", noteId, png[0]).with(as(user)))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"photo.png\""));
+    }
+
+    @Test
+    @DisplayName("If-None-Match with the current ETag gets 304 and no body")
+    void notModified() throws Exception {
+        var attachment = upload("notes.txt", "text/plain", randomBytes(100));
+
+        var response = mvc.perform(get("/api/notes/{noteId}/attachments/{id}", noteId, attachment[0]).with(as(user))
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"" + attachment[1] + "\""))
+                .andExpect(status().isNotModified())
+                .andReturn().getResponse();
+
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Single ranges get 206 with just those bytes")
+    void ranges() throws Exception {
+        var content = randomBytes(1_000);
+        var attachment = upload("data.bin", "application/octet-stream", content);
+        var url = "/api/notes/%s/attachments/%s".formatted(noteId, attachment[0]);
+
+        var middle = mvc.perform(get(url).with(as(user)).header(HttpHeaders.RANGE, "bytes=100-199"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 100-199/1000"))
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "100"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"data.bin\""))
+                .andReturn().getResponse();
+        assertThat(middle.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 100, 200));
+
+        var suffix = mvc.perform(get(url).with(as(user)).header(HttpHeaders.RANGE, "bytes=-10"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 990-999/1000"))
+                .andReturn().getResponse();
+        assertThat(suffix.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 990, 1000));
+
+        // Resuming with a matching If-Range.
+        var rest = mvc.perform(get(url).with(as(user)).header(HttpHeaders.RANGE, "bytes=900-")
+                        .header(HttpHeaders.IF_RANGE, "\"" + attachment[1] + "\""))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 900-999/1000"))
+                .andReturn().getResponse();
+        assertThat(rest.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 900, 1000));
+    }
+
+    @Test
+    @DisplayName("Ranges that cannot be served get 416, or the whole file")
+    void rangeFallbacks() throws Exception {
+        var attachment = upload("data.bin", "application/octet-stream", randomBytes(1_000));
+        var url = "/api/notes/%s/attachments/%s".formatted(noteId, attachment[0]);
+
+        mvc.perform(get(url).with(as(user)).header(HttpHeaders.RANGE, "bytes=1000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */1000"));
+
+        // Several ranges, a stale If-Range, and a header that does not parse are all answered with everything.
+        mvc.perform(get(url).with(as(user)).header(HttpHeaders.RANGE, "bytes=0-9,20-29"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "1000"));
+        mvc.perform(get(url).with(as(user)).header(HttpHeaders.RANGE, "bytes=0-9")
+                        .header(HttpHeaders.IF_RANGE, "\"something-else\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "1000"));
+        mvc.perform(get(url).with(as(user)).header(HttpHeaders.RANGE, "pages=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "1000"));
+    }
+
+    @Test
+    @DisplayName("Under Tomcat, large files are handed to sendfile instead of written")
+    void sendfile() throws Exception {
+        var attachment = upload("photo.jpg", "image/jpeg", randomBytes(100_000));
+        var url = "/api/notes/%s/attachments/%s".formatted(noteId, attachment[0]);
+        var file = store.path(attachment[1]).toAbsolutePath().toString();
+
+        var whole = mvc.perform(get(url).with(as(user)).requestAttr(AttachmentController.SENDFILE_SUPPORTED, true))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "100000"))
+                .andExpect(request().attribute(AttachmentController.SENDFILE_FILENAME, file))
+                .andExpect(request().attribute(AttachmentController.SENDFILE_START, 0L))
+                .andExpect(request().attribute(AttachmentController.SENDFILE_END, 100_000L))
+                .andReturn().getResponse();
+        assertThat(whole.getContentAsByteArray()).isEmpty();
+
+        mvc.perform(get(url).with(as(user)).requestAttr(AttachmentController.SENDFILE_SUPPORTED, true)
+                        .header(HttpHeaders.RANGE, "bytes=50000-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(request().attribute(AttachmentController.SENDFILE_START, 50_000L))
+                .andExpect(request().attribute(AttachmentController.SENDFILE_END, 100_000L));
+    }
+
+    @Test
+    @DisplayName("Other users' notes and attachments read as 404")
+    void notOwned() throws Exception {
+        var attachment = upload("secret.txt", "text/plain", randomBytes(10));
+        var owner = user;
+        user = "attach-" + UUID.randomUUID();
+
+        mvc.perform(get("/api/notes/{noteId}/attachments/{id}", noteId, attachment[0]).with(as(user)))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/api/notes/{noteId}/attachments", noteId).with(as(user)))
+                .andExpect(status().isNotFound());
+        mvc.perform(post("/api/notes/{noteId}/attachments", noteId).with(as(user))
+                        .param("filename", "mine.txt")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content("mine"))
+                .andExpect(status().isNotFound());
+        mvc.perform(delete("/api/notes/{noteId}/attachments/{id}", noteId, attachment[0]).with(as(user)))
+                .andExpect(status().isNotFound());
+
+        user = owner;
+        mvc.perform(get("/api/notes/{noteId}/attachments/{id}", noteId, attachment[0]).with(as(user)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Files go once no attachment points at them, including after their note is deleted")
+    void sweep() throws Exception {
+        var firstNote = noteId;
+        var shared = randomBytes(2_000);
+        var kept = upload("a.bin", "application/octet-stream", shared);
+        var dropped = upload("b.bin", "application/octet-stream", shared);
+        var own = upload("c.bin", "application/octet-stream", randomBytes(3_000));
+        noteId = createNote();
+        var onDeletedNote = upload("d.bin", "application/octet-stream", randomBytes(4_000));
+
+        mvc.perform(delete("/api/notes/{noteId}/attachments/{id}", firstNote, dropped[0]).with(as(user)))
+                .andExpect(status().isNoContent());
+        mvc.perform(delete("/api/notes/{noteId}/attachments/{id}", firstNote, own[0]).with(as(user)))
+                .andExpect(status().isNoContent());
+        mvc.perform(delete("/api/notes/{id}", noteId).with(as(user)))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/api/notes/{noteId}/attachments/{id}", firstNote, own[0]).with(as(user)))
+                .andExpect(status().isNotFound());
+
+        // The grace period is zero here; let the clock move past the last write.
+        Thread.sleep(10);
+        sweeper.sweep();
+
+        assertThat(store.path(kept[1])).exists();
+        assertThat(store.path(own[1])).doesNotExist();
+        assertThat(store.path(onDeletedNote[1])).doesNotExist();
+        mvc.perform(get("/api/notes/{noteId}/attachments/{id}", firstNote, kept[0]).with(as(user)))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,101 @@
+package dev.jacklucas.notes_api.attachment;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private ContentStore store() {
+        return new ContentStore(directory);
+    }
+
+    private static ByteArrayInputStream bytes(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long filesUnder(String sub) throws Exception {
+        var dir = directory.resolve(sub);
+        if (!Files.exists(dir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    @DisplayName("Stores a file under its SHA-256, once however often it is written")
+    void write() throws Exception {
+        var store = store();
+
+        var first = store.write(bytes("hello"), 100);
+        var second = store.write(bytes("hello"), 100);
+
+        assertThat(first.sha256()).isEqualTo("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824");
+        assertThat(first).isEqualTo(second);
+        assertThat(first.size()).isEqualTo(5);
+        assertThat(Files.readString(store.path(first.sha256()))).isEqualTo("hello");
+        assertThat(filesUnder("blobs")).isEqualTo(1);
+        assertThat(filesUnder("tmp")).isZero();
+    }
+
+    @Test
+    @DisplayName("Keeps nothing when the content passes the limit")
+    void tooLarge() throws Exception {
+        var store = store();
+
+        assertThatThrownBy(() -> store.write(bytes("x".repeat(101)), 100)).isInstanceOf(AttachmentTooLarge.class);
+
+        assertThat(filesUnder("blobs")).isZero();
+        assertThat(filesUnder("tmp")).isZero();
+    }
+
+    @Test
+    @DisplayName("Only deletes files not written since the cutoff")
+    void deleteIfWrittenBefore() throws Exception {
+        var store = store();
+        var old = store.write(bytes("old"), 100).sha256();
+        var fresh = store.write(bytes("fresh"), 100).sha256();
+        var hourAgo = FileTime.from(Instant.now().minus(Duration.ofHours(1)));
+        Files.setLastModifiedTime(store.path(old), hourAgo);
+        Files.setLastModifiedTime(store.path(fresh), hourAgo);
+        var cutoff = Instant.now().minus(Duration.ofMinutes(1));
+
+        // Writing the same content again counts as a new write.
+        store.write(bytes("fresh"), 100);
+
+        assertThat(store.writtenBefore(cutoff)).containsExactly(old);
+        assertThat(store.deleteIfWrittenBefore(fresh, cutoff)).isFalse();
+        assertThat(store.deleteIfWrittenBefore(old, cutoff)).isTrue();
+        assertThat(store.path(old)).doesNotExist();
+        assertThat(store.path(fresh)).exists();
+    }
+
+    @Test
+    @DisplayName("Cleans up partial files left by unfinished writes")
+    void deletePartialsBefore() throws Exception {
+        var store = store();
+        Files.createDirectories(directory.resolve("tmp"));
+        var partial = Files.writeString(directory.resolve("tmp").resolve("abandoned"), "half");
+        Files.setLastModifiedTime(partial, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+        assertThat(store.deletePartialsBefore(Instant.now().minus(Duration.ofHours(1)))).isEqualTo(1);
+        assertThat(partial).doesNotExist();
+    }
+}
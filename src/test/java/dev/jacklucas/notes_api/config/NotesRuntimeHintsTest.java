@@ -0,0 +1,68 @@
+package dev.jacklucas.notes_api.config;
+
+import dev.jacklucas.notes_api.attachment.NoteAttachment;
+import dev.jacklucas.notes_api.id.UuidV7;
+import dev.jacklucas.notes_api.note.Note;
+import dev.jacklucas.notes_api.note.NoteTag;
+import dev.jacklucas.notes_api.note.NoteTagName;
+import dev.jacklucas.notes_api.note.dto.BatchGetNotesResponse;
+import dev.jacklucas.notes_api.note.dto.ContentEdit;
+import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+import dev.jacklucas.notes_api.related.dto.RelatedNoteResponse;
+import dev.jacklucas.notes_api.tag.dto.TagSuggestionResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotesRuntimeHintsTest {
+
+    private RuntimeHints hints;
+
+    @BeforeEach
+    void register() {
+        hints = new RuntimeHints();
+        new NotesRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    @DisplayName("Entities, their builders, the IdClass and the id generator are reflectable")
+    void entities() throws Exception {
+        assertThat(RuntimeHintsPredicates.reflection().onType(Note.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(Note.NoteBuilder.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(NoteAttachment.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(NoteAttachment.NoteAttachmentBuilder.class))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onConstructor(NoteTag.Key.class.getDeclaredConstructor()))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onConstructor(UuidV7.class.getConstructor())).accepts(hints);
+    }
+
+    @Test
+    @DisplayName("DTOs bind with Jackson, including ones only nested in other DTOs")
+    void dtos() throws Exception {
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(ReadNoteResponse.class.getMethod("revision")))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(ContentEdit.class.getMethod("insert")))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(BatchGetNotesResponse.Result.class.getMethod("note")))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(RelatedNoteResponse.class.getMethod("sharedTags")))
+                .accepts(hints);
+    }
+
+    @Test
+    @DisplayName("Constructor-expression results can be instantiated, and migrations are bundled")
+    void queryResultsAndMigrations() throws Exception {
+        var constructor = TagSuggestionResponse.class.getDeclaredConstructor(UUID.class, String.class, long.class);
+        assertThat(RuntimeHintsPredicates.reflection().onConstructor(constructor)).accepts(hints);
+        var tagName = NoteTagName.class.getDeclaredConstructor(UUID.class, String.class);
+        assertThat(RuntimeHintsPredicates.reflection().onConstructor(tagName)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("db/migration/V1__init.sql")).accepts(hints);
+    }
+}
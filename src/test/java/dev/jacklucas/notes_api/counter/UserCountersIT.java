@@ -0,0 +1,141 @@
+package dev.jacklucas.notes_api.counter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class UserCountersIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    QueryCounter queries;
+    @Autowired
+    UserCounterReconciler reconciler;
+
+    private String user;
+
+    @BeforeEach
+    void newUser() {
+        user = "counters-" + UUID.randomUUID();
+    }
+
+    private UUID createNote(List<String> tags) throws Exception {
+        return ApiFixtures.createNote(mvc, user, "Note", "Content", tags);
+    }
+
+    private void setArchived(UUID id, boolean archived) throws Exception {
+        mvc.perform(patch("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("archived", archived))))
+                .andExpect(status().isOk());
+    }
+
+    private UUID tagId(String name) {
+        return jdbc.queryForObject("select id from tags where user_id = ? and name = ?", UUID.class, user, name);
+    }
+
+    // notes, archived_notes, tags
+    private List<Long> stored() {
+        return jdbc.queryForObject("select notes, archived_notes, tags from user_counters where user_id = ?",
+                (rs, i) -> List.of(rs.getLong(1), rs.getLong(2), rs.getLong(3)), user);
+    }
+
+    @Test
+    @DisplayName("Creates, deletes, archive toggles, and tag merges keep the counters exact")
+    void maintained() throws Exception {
+        var first = createNote(List.of("work", "ideas"));
+        var second = createNote(List.of("work"));
+        createNote(List.of());
+        assertThat(stored()).containsExactly(3L, 0L, 2L);
+
+        setArchived(first, true);
+        setArchived(second, true);
+        // Saving an unchanged flag must not count it twice.
+        setArchived(second, true);
+        assertThat(stored()).containsExactly(3L, 2L, 2L);
+
+        setArchived(second, false);
+        mvc.perform(delete("/api/notes/{id}", first).with(as(user))).andExpect(status().isNoContent());
+        assertThat(stored()).containsExactly(2L, 0L, 2L);
+
+        mvc.perform(post("/api/tags/{id}/merge-into/{targetId}", tagId("ideas"), tagId("work")).with(as(user)))
+                .andExpect(status().isOk());
+        assertThat(stored()).containsExactly(2L, 0L, 1L);
+    }
+
+    @Test
+    @DisplayName("A full page takes its total from the counter row instead of counting")
+    void listingsReadCounters() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            createNote(List.of("tag-" + i));
+        }
+
+        queries.reset();
+        mvc.perform(get("/api/notes").param("size", "2").with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(3));
+        mvc.perform(get("/api/tags").param("size", "2").with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(3));
+
+        assertThat(queries.statements()).noneMatch(s -> s.sql().contains("count("));
+    }
+
+    @Test
+    @DisplayName("Drift shows in totals until the reconciler repairs it")
+    void reconciles() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            createNote(List.of());
+        }
+        jdbc.update("update user_counters set notes = 40, archived_notes = 7 where user_id = ?", user);
+
+        mvc.perform(get("/api/notes").param("size", "1").with(as(user)))
+                .andExpect(jsonPath("$.totalElements").value(40));
+
+        assertThat(reconciler.reconcile()).isPositive();
+
+        assertThat(stored()).containsExactly(3L, 0L, 0L);
+        mvc.perform(get("/api/notes").param("size", "1").with(as(user)))
+                .andExpect(jsonPath("$.totalElements").value(3));
+    }
+
+    @Test
+    @DisplayName("Without a counter row the total is counted")
+    void missingRow() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            createNote(List.of());
+        }
+        jdbc.update("delete from user_counters where user_id = ?", user);
+
+        mvc.perform(get("/api/notes").param("size", "1").with(as(user)))
+                .andExpect(jsonPath("$.totalElements").value(3));
+    }
+}
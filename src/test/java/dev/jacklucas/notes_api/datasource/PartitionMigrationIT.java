@@ -0,0 +1,134 @@
+package dev.jacklucas.notes_api.datasource;
+
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Walks a database through the staged partitioning migration while it keeps taking writes.
+ */
+class PartitionMigrationIT {
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void freshDatabase() {
+        var postgres = EmbeddedPostgresTestConfig.postgres();
+        var admin = new JdbcTemplate(postgres.getPostgresDatabase());
+        admin.execute("drop database if exists partition_migration");
+        admin.execute("create database partition_migration");
+        dataSource = postgres.getDatabase("postgres", "partition_migration");
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    private void migrateTo(String target) {
+        var flyway = Flyway.configure().dataSource(dataSource);
+        if (target != null) {
+            flyway.target(target);
+        }
+        flyway.load().migrate();
+    }
+
+    private UUID insertNote(String user, String title, UUID... tags) {
+        var id = jdbc.queryForObject("insert into notes (user_id, title, content) values (?, ?, 'body') returning id",
+                UUID.class, user, title);
+        for (UUID tag : tags) {
+            jdbc.update("insert into note_tags (note_id, tag_id) values (?, ?)", id, tag);
+        }
+        return id;
+    }
+
+    private UUID insertTag(String user, String name) {
+        return jdbc.queryForObject("insert into tags (user_id, name) values (?, ?) returning id", UUID.class, user, name);
+    }
+
+    private List<Map<String, Object>> snapshot() {
+        return jdbc.queryForList("""
+                select n.user_id, n.title, n.content, n.archived, string_agg(t.name, ',' order by t.name) tags
+                from notes n
+                left join note_tags nt on nt.note_id = n.id
+                left join tags t on t.id = nt.tag_id
+                group by n.user_id, n.id order by n.user_id, n.title
+                """);
+    }
+
+    @Test
+    @DisplayName("Rows written before, during, and after the backfill all survive the swap")
+    void stagedMigration() {
+        migrateTo("1");
+        var work = insertTag("alice", "work");
+        var home = insertTag("bob", "home");
+        var old1 = insertNote("alice", "old-1", work);
+        var old2 = insertNote("alice", "old-2");
+        insertNote("bob", "old-3", home);
+
+        migrateTo("2");
+
+        // Writes between V2 and the backfill are mirrored by the triggers, including links to not-yet-copied rows.
+        var fresh = insertTag("alice", "fresh");
+        insertNote("alice", "new-1", fresh, work);
+        jdbc.update("update notes set content = 'edited' where id = ?", old1);
+        jdbc.update("insert into note_tags (note_id, tag_id) values (?, ?)", old2, fresh);
+        jdbc.update("delete from notes where title = 'old-3'");
+
+        new PartitionBackfill(dataSource, 2).run();
+
+        // Writes after the backfill are still mirrored.
+        insertNote("bob", "new-2", home);
+        var expected = snapshot();
+
+        migrateTo(null);
+
+        assertThat(snapshot()).isEqualTo(expected);
+        assertThat(jdbc.queryForObject("select count(*) from pg_inherits where inhparent = 'notes'::regclass", Integer.class))
+                .isEqualTo(16);
+        assertThat(jdbc.queryForObject("select to_regclass('notes_p')", String.class)).isNull();
+    }
+
+    @Test
+    @DisplayName("The backfill application migrates to V2 and copies without starting JPA")
+    void backfillApplication() {
+        migrateTo("1");
+        var work = insertTag("alice", "work");
+        insertNote("alice", "one", work);
+        insertNote("alice", "two");
+        insertNote("bob", "three");
+        var expected = snapshot();
+
+        var url = EmbeddedPostgresTestConfig.postgres().getJdbcUrl("postgres", "partition_migration");
+        PartitionBackfillApplication.run("--spring.datasource.url=" + url, "--spring.datasource.username=postgres",
+                "--notes.partitioning.batch-size=2").close();
+
+        assertThat(jdbc.queryForObject("select max(version) from flyway_schema_history", String.class)).isEqualTo("2");
+        assertThat(jdbc.queryForObject("select count(*) from notes_p", Integer.class)).isEqualTo(3);
+        assertThat(jdbc.queryForObject("select count(*) from note_tags_p", Integer.class)).isEqualTo(1);
+
+        migrateTo(null);
+        assertThat(snapshot()).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("Without a backfill, V3 copies everything itself")
+    void migrationWithoutBackfill() {
+        migrateTo("1");
+        var work = insertTag("alice", "work");
+        insertNote("alice", "one", work);
+        insertNote("alice", "two");
+        var expected = snapshot();
+
+        migrateTo(null);
+
+        assertThat(snapshot()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,150 @@
+package dev.jacklucas.notes_api.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replica1Connection = mock(Connection.class);
+    private final Connection replica2Connection = mock(Connection.class);
+
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica1 = mock(DataSource.class);
+    private final DataSource replica2 = mock(DataSource.class);
+
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica1.getConnection()).thenReturn(replica1Connection);
+        when(replica2.getConnection()).thenReturn(replica2Connection);
+        when(replica1Connection.isValid(anyInt())).thenReturn(true);
+        when(replica2Connection.isValid(anyInt())).thenReturn(true);
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", replica1);
+        replicas.put("replica-1", replica2);
+        routing = new ReplicaRoutingDataSource(primary, replicas, new ReadYourWritesTracker(Duration.ofMinutes(1)));
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user-123", null));
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clear();
+        SecurityContextHolder.clearContext();
+    }
+
+    private void readOnly(boolean readOnly) {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+    }
+
+    private void commit() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @Test
+    @DisplayName("Read-only transactions round-robin over the replicas")
+    void readOnly_usesReplicas() throws SQLException {
+        readOnly(true);
+
+        assertThat(routing.getConnection()).isSameAs(replica1Connection);
+        assertThat(routing.getConnection()).isSameAs(replica2Connection);
+        assertThat(routing.getConnection()).isSameAs(replica1Connection);
+    }
+
+    @Test
+    @DisplayName("Read-write transactions use the primary")
+    void readWrite_usesPrimary() throws SQLException {
+        readOnly(false);
+
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    @DisplayName("A user's reads stick to the primary after they commit a write")
+    void readYourWrites() throws SQLException {
+        readOnly(false);
+        routing.getConnection();
+        readOnly(true);
+
+        // Nothing is sticky until the write commits.
+        assertThat(routing.getConnection()).isSameAs(replica1Connection);
+
+        commit();
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+
+        // Other users still read from the replicas.
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("someone-else", null));
+        assertThat(routing.getConnection()).isIn(replica1Connection, replica2Connection);
+    }
+
+    @Test
+    @DisplayName("Stickiness is off when the window is zero")
+    void readYourWrites_disabled() throws SQLException {
+        routing = new ReplicaRoutingDataSource(primary, Map.of("replica-0", replica1), new ReadYourWritesTracker(Duration.ZERO));
+        readOnly(false);
+        routing.getConnection();
+        commit();
+
+        readOnly(true);
+        assertThat(routing.getConnection()).isSameAs(replica1Connection);
+    }
+
+    @Test
+    @DisplayName("A replica that fails a connection is skipped until it passes a health check")
+    void failedReplica_fallsBack() throws SQLException {
+        when(replica1.getConnection()).thenThrow(new SQLException("down"));
+        when(replica2.getConnection()).thenThrow(new SQLException("down"));
+        readOnly(true);
+
+        // Both fail over to the primary and are marked down.
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+        verify(replica1, times(1)).getConnection();
+        verify(replica2, times(1)).getConnection();
+
+        // Once replica-1 recovers, the health check puts it back into rotation.
+        doReturn(replica2Connection).when(replica2).getConnection();
+        routing.checkReplicas();
+
+        assertThat(routing.getConnection()).isSameAs(replica2Connection);
+        assertThat(routing.getConnection()).isSameAs(replica2Connection);
+    }
+
+    @Test
+    @DisplayName("Connections with explicit credentials come from the primary, and writes on them still stick")
+    void explicitCredentials_usePrimary() throws SQLException {
+        when(primary.getConnection("admin", "secret")).thenReturn(primaryConnection);
+        readOnly(false);
+
+        assertThat(routing.getConnection("admin", "secret")).isSameAs(primaryConnection);
+        commit();
+
+        readOnly(true);
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    }
+}
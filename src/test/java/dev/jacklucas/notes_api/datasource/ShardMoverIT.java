@@ -0,0 +1,217 @@
+package dev.jacklucas.notes_api.datasource;
+
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/*
+ * Two databases on the embedded server stand in for two shards.
+ */
+class ShardMoverIT {
+
+    private static final Map<String, DataSource> SHARDS = new LinkedHashMap<>();
+
+    private static ShardDirectory directory;
+    private static ShardResolver resolver;
+    private static DataSource routed;
+
+    @BeforeAll
+    static void createShards() {
+        var postgres = EmbeddedPostgresTestConfig.postgres();
+        var admin = new JdbcTemplate(postgres.getPostgresDatabase());
+        for (String name : new String[]{"shard_a", "shard_b"}) {
+            admin.execute("drop database if exists " + name);
+            admin.execute("create database " + name);
+            SHARDS.put(name, postgres.getDatabase("postgres", name));
+        }
+
+        var template = Flyway.configure().dataSource(SHARDS.get("shard_a")).load();
+        new ShardMigrationStrategy(SHARDS, SHARDS.get("shard_a")).migrate(template);
+
+        directory = new ShardDirectory(SHARDS.get("shard_a"), Duration.ZERO);
+        resolver = new ShardResolver(SHARDS.keySet().stream().toList(), directory);
+
+        // The proxy reads connection defaults on first use; do that outside any user, as the app's startup does.
+        routed = new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(SHARDS, "shard_a", resolver));
+        new JdbcTemplate(routed).execute("select 1");
+    }
+
+    @AfterEach
+    void clearTransactionState() {
+        TransactionSynchronizationManager.clear();
+    }
+
+    private JdbcTemplate jdbc(String shard) {
+        return new JdbcTemplate(SHARDS.get(shard));
+    }
+
+    private void seed(String shard, String userId, int notes) {
+        var jdbc = jdbc(shard);
+        var tagId = UUID.randomUUID();
+        jdbc.update("insert into tags (id, user_id, name) values (?, ?, 'work')", tagId, userId);
+        for (int i = 0; i < notes; i++) {
+            var noteId = UUID.randomUUID();
+            jdbc.update("insert into notes (id, user_id, title, content) values (?, ?, ?, 'body')", noteId, userId, "Note " + i);
+            jdbc.update("insert into note_tags (user_id, note_id, tag_id) values (?, ?, ?)", userId, noteId, tagId);
+        }
+    }
+
+    // Writes as the app does: through routing, in a transaction.
+    private static void writeAs(String userId, Runnable beforeCommit) {
+        var tx = new TransactionTemplate(new DataSourceTransactionManager(routed));
+        CurrentUser.runAs(userId, () -> tx.executeWithoutResult(status -> {
+            new JdbcTemplate(routed).update("insert into notes (id, user_id, title, content) values (?, ?, 'Late', '')",
+                    UUID.randomUUID(), userId);
+            beforeCommit.run();
+        }));
+    }
+
+    private int count(String shard, String table, String userId) {
+        var sql = "select count(*) from %s where %s".formatted(table,
+                ShardMover.TABLES.stream().filter(t -> t.name().equals(table)).findFirst().orElseThrow().ownedBy());
+        return jdbc(shard).queryForObject(sql, Integer.class, userId);
+    }
+
+    @Test
+    @DisplayName("Hashing is stable and spreads users over every shard")
+    void hashing() {
+        assertThat(resolver.hashed("user-123")).isEqualTo(resolver.hashed("user-123"));
+
+        var used = new HashSet<String>();
+        for (int i = 0; i < 100; i++) {
+            used.add(resolver.hashed("user-" + i));
+        }
+        assertThat(used).containsExactlyInAnyOrderElementsOf(SHARDS.keySet());
+    }
+
+    @Test
+    @DisplayName("Moving a user copies their rows, repoints the directory, and cleans up the source")
+    void moveUser() throws Exception {
+        var user = "move-" + UUID.randomUUID();
+        var bystander = "stay-" + UUID.randomUUID();
+        directory.assign(user, "shard_a", false);
+        directory.assign(bystander, "shard_a", false);
+        seed("shard_a", user, 25);
+        seed("shard_a", bystander, 3);
+
+        new ShardMover(SHARDS, resolver, directory, Duration.ZERO).moveUser(user, "shard_b");
+
+        assertThat(resolver.resolve(user)).isEqualTo(new ShardDirectory.Entry("shard_b", false));
+        assertThat(count("shard_b", "notes", user)).isEqualTo(25);
+        assertThat(count("shard_b", "tags", user)).isEqualTo(1);
+        assertThat(count("shard_b", "note_tags", user)).isEqualTo(25);
+        // Rebuilt by the note_tags triggers as the links are copied, not copied and then counted again.
+        assertThat(jdbc("shard_b").queryForObject("select uses from tags where user_id = ?", Long.class, user))
+                .isEqualTo(25);
+        assertThat(count("shard_a", "notes", user)).isZero();
+        assertThat(count("shard_a", "tags", user)).isZero();
+
+        // Nobody else moves.
+        assertThat(count("shard_a", "notes", bystander)).isEqualTo(3);
+        assertThat(count("shard_b", "notes", bystander)).isZero();
+    }
+
+    @Test
+    @DisplayName("A user mid-move can read from the source shard but not write")
+    void routing_duringMove() {
+        var user = "moving-" + UUID.randomUUID();
+        directory.assign(user, "shard_b", true);
+        var routing = new ShardRoutingDataSource(SHARDS, "shard_a", resolver);
+
+        CurrentUser.runAs(user, () -> {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            assertThat(routing.determineCurrentLookupKey()).isEqualTo("shard_b");
+
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            assertThatThrownBy(routing::determineCurrentLookupKey).isInstanceOf(UserMoving.class);
+        });
+
+        // Without a user, work lands on the default shard.
+        assertThat(routing.determineCurrentLookupKey()).isNull();
+    }
+
+    @Test
+    @DisplayName("A move waits for writes already running on the source, so they are copied")
+    void move_waitsForRunningWrites() throws Exception {
+        var user = "inflight-" + UUID.randomUUID();
+        directory.assign(user, "shard_a", false);
+        seed("shard_a", user, 2);
+
+        var written = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var writer = CompletableFuture.runAsync(() -> writeAs(user, () -> {
+            written.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+
+        var mover = CompletableFuture.runAsync(() -> {
+            try {
+                new ShardMover(SHARDS, resolver, directory, Duration.ZERO).moveUser(user, "shard_b");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(300);
+        assertThat(mover).isNotDone();
+        assertThat(count("shard_b", "notes", user)).isZero();
+
+        release.countDown();
+        writer.get(5, TimeUnit.SECONDS);
+        mover.get(5, TimeUnit.SECONDS);
+
+        assertThat(count("shard_b", "notes", user)).isEqualTo(3);
+        assertThat(count("shard_a", "notes", user)).isZero();
+    }
+
+    @Test
+    @DisplayName("Writes routed to the source while a move holds the user's lock are refused")
+    void routing_refusedWhileLocked() throws Exception {
+        var user = "locked-" + UUID.randomUUID();
+        directory.assign(user, "shard_a", false);
+
+        try (var lock = SHARDS.get("shard_a").getConnection()) {
+            try (var ps = lock.prepareStatement("select pg_advisory_lock(" + ShardMover.LOCK_KEY + ")")) {
+                ps.setString(1, user);
+                ps.execute();
+            }
+            // A node whose cached entry missed the move still routes here; the lock turns it away.
+            assertThatThrownBy(() -> writeAs(user, () -> {
+            })).isInstanceOf(UserMoving.class);
+
+            try (var ps = lock.prepareStatement("select pg_advisory_unlock(" + ShardMover.LOCK_KEY + ")")) {
+                ps.setString(1, user);
+                ps.execute();
+            }
+        }
+
+        writeAs(user, () -> {
+        });
+        assertThat(count("shard_a", "notes", user)).isEqualTo(1);
+    }
+}
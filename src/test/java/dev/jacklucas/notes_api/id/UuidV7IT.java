@@ -0,0 +1,67 @@
+package dev.jacklucas.notes_api.id;
+
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class UuidV7IT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private final String user = "uuid-" + UUID.randomUUID();
+
+    private UUID createNote(String title) throws Exception {
+        return ApiFixtures.createNote(mvc, user, title, "Content", List.of("work"));
+    }
+
+    @Test
+    @DisplayName("Notes, their tags and revisions get version 7 ids, in the order they were created")
+    void entities() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(createNote("Note " + i));
+        }
+
+        assertThat(ids).allSatisfy(id -> assertThat(id.version()).isEqualTo(7));
+        // Postgres compares uuids byte by byte, so its order is creation order.
+        assertThat(jdbc.queryForList("select id from notes where user_id = ? order by id", UUID.class, user))
+                .containsExactlyElementsOf(ids);
+        assertThat(jdbc.queryForObject("select id from tags where user_id = ?", UUID.class, user).version())
+                .isEqualTo(7);
+        assertThat(jdbc.queryForList("select id from note_revisions where user_id = ?", UUID.class, user))
+                .allSatisfy(id -> assertThat(id.version()).isEqualTo(7));
+    }
+
+    @Test
+    @DisplayName("Rows inserted by SQL get version 7 ids from the column default")
+    void sqlDefault() {
+        long before = System.currentTimeMillis();
+        var id = jdbc.queryForObject("""
+                insert into tags (user_id, name) values (?, 'from-sql') returning id
+                """, UUID.class, user);
+        long after = System.currentTimeMillis();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(UuidV7.millis(id)).isBetween(before - 1000, after + 1000);
+    }
+}
@@ -0,0 +1,57 @@
+package dev.jacklucas.notes_api.id;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7Test {
+
+    @Test
+    @DisplayName("Carries version 7, the RFC variant, and the current time")
+    void layout() {
+        long before = System.currentTimeMillis();
+        var id = UuidV7.next();
+        long after = System.currentTimeMillis();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(UuidV7.millis(id)).isBetween(before, after + 1);
+    }
+
+    @Test
+    @DisplayName("Ids from one JVM are strictly increasing, even many per millisecond")
+    void monotonic() {
+        var previous = UuidV7.next();
+        for (int i = 0; i < 200_000; i++) {
+            var next = UuidV7.next();
+            assertThat(next.getMostSignificantBits()).isGreaterThan(previous.getMostSignificantBits());
+            previous = next;
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent callers never get the same id")
+    void unique() throws Exception {
+        var ids = new ConcurrentLinkedQueue<UUID>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    ids.add(UuidV7.next());
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        assertThat(new HashSet<>(ids)).hasSize(ids.size());
+    }
+}
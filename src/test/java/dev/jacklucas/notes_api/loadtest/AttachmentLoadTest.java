@@ -0,0 +1,112 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Uploads one attachment to the app on a real port and downloads it over and over, whole and in ranges, so the bytes
+ * go through Tomcat's sendfile rather than MockMvc. Checks every byte and reports throughput.
+ * Only runs with the load-test profile: mvn test -Pload-test -Dtest=AttachmentLoadTest [-Dload.attachment-mb=64]
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(NotesApiLoadTest.LoadTestConfig.class)
+class AttachmentLoadTest {
+
+    static final int SIZE = Integer.getInteger("load.attachment-mb", 16) * 1024 * 1024;
+    static final int DOWNLOADS = Integer.getInteger("load.attachment-downloads", 50);
+
+    @DynamicPropertySource
+    static void attachmentProperties(DynamicPropertyRegistry registry) throws Exception {
+        var directory = Files.createTempDirectory("notes-attachments-load");
+        registry.add("notes.attachments.directory", directory::toString);
+        registry.add("notes.attachments.max-size", () -> (SIZE + 1) + "B");
+    }
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ObjectMapper om;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final String token = NotesApiLoadTest.ISSUER.mint("attach-load-" + UUID.randomUUID(), Duration.ofHours(1));
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    @Test
+    void downloads() throws Exception {
+        var content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+
+        var note = http.send(request("/api/notes")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Load\",\"content\":\"\",\"tags\":[]}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        var noteId = om.readTree(note.body()).get("id").asText();
+
+        long uploadStart = System.nanoTime();
+        var upload = http.send(request("/api/notes/%s/attachments?filename=load.bin".formatted(noteId))
+                        .header("Content-Type", "application/octet-stream")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(content))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        double uploadSeconds = (System.nanoTime() - uploadStart) / 1e9;
+        assertThat(upload.statusCode()).isEqualTo(201);
+        var url = "/api/notes/%s/attachments/%s".formatted(noteId, om.readTree(upload.body()).get("id").asText());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < DOWNLOADS; i++) {
+            var whole = http.send(request(url).build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertThat(whole.statusCode()).isEqualTo(200);
+            assertThat(Arrays.equals(whole.body(), content)).as("download %d", i).isTrue();
+        }
+        double downloadSeconds = (System.nanoTime() - start) / 1e9;
+
+        // The second half, as a resumed download would ask for it.
+        var half = http.send(request(url).header("Range", "bytes=" + SIZE / 2 + "-").build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(half.statusCode()).isEqualTo(206);
+        assertThat(Arrays.equals(half.body(), Arrays.copyOfRange(content, SIZE / 2, SIZE))).isTrue();
+
+        double mib = SIZE / 1048576.0;
+        var report = new StringBuilder()
+                .append("## Attachments %s%n%n".formatted(Instant.now()))
+                .append(String.format(Locale.ROOT, "size=%.0f MiB, downloads=%d%n%n", mib, DOWNLOADS))
+                .append("| Operation | MiB/s |%n|---|---:|%n".formatted())
+                .append(String.format(Locale.ROOT, "| Upload | %.0f |%n", mib / uploadSeconds))
+                .append(String.format(Locale.ROOT, "| Download | %.0f |%n", mib * DOWNLOADS / downloadSeconds))
+                .toString();
+        var dir = Files.createDirectories(Path.of("target", "load-test"));
+        Files.writeString(dir.resolve("attachments.md"), report);
+        log.info("\n{}", report);
+    }
+}
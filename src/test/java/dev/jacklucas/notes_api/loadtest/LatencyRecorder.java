@@ -0,0 +1,49 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import java.util.Arrays;
+
+/*
+ * Collects raw latencies for one endpoint on one worker thread; merged once the run is over.
+ * Raw samples keep p999 exact, and a few million longs is a small price for a load run.
+ */
+public class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int count;
+    private int errors;
+
+    public void record(long nanos, boolean error) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        if (error) {
+            errors++;
+        }
+    }
+
+    public void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.samples[i], false);
+        }
+        errors += other.errors;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int errors() {
+        return errors;
+    }
+
+    // Nearest-rank percentile in milliseconds. Sorts in place, so call it after recording is done.
+    public double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(samples, 0, count);
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return samples[Math.max(rank - 1, 0)] / 1_000_000.0;
+    }
+}
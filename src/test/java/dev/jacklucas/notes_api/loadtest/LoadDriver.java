@@ -0,0 +1,176 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Drives a closed-loop mixed workload: every worker sends its next request as soon as the last one returns.
+ * The mix leans on reads the way our production traffic does.
+ */
+public class LoadDriver {
+
+    enum Operation {
+        LIST_NOTES("GET /api/notes", 35),
+        LIST_NOTES_BY_TAG("GET /api/notes?tag=", 10),
+        GET_NOTE("GET /api/notes/{id}", 20),
+        LIST_TAGS("GET /api/tags", 4),
+        SUGGEST_TAGS("GET /api/tags/suggest", 6),
+        CREATE_NOTE("POST /api/notes", 5),
+        PUT_NOTE("PUT /api/notes/{id}", 5),
+        PATCH_NOTE("PATCH /api/notes/{id}", 13),
+        CREATE_TAG("POST /api/tags", 2);
+
+        final String label;
+        final int weight;
+
+        Operation(String label, int weight) {
+            this.label = label;
+            this.weight = weight;
+        }
+    }
+
+    private static final Operation[] MIX = buildMix();
+
+    private final URI baseUri;
+    private final LoadTestSettings settings;
+    private final Map<String, String> tokens;
+    private final Map<String, List<UUID>> noteIds;
+    private final ObjectMapper om = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final AtomicLong uniqueNames = new AtomicLong();
+
+    public LoadDriver(URI baseUri, LoadTestSettings settings, Map<String, String> tokens, Map<String, List<UUID>> noteIds) {
+        this.baseUri = baseUri;
+        this.settings = settings;
+        this.tokens = tokens;
+        this.noteIds = noteIds;
+    }
+
+    private static Operation[] buildMix() {
+        List<Operation> mix = new ArrayList<>();
+        for (Operation op : Operation.values()) {
+            for (int i = 0; i < op.weight; i++) {
+                mix.add(op);
+            }
+        }
+        return mix.toArray(Operation[]::new);
+    }
+
+    // Runs the warmup, then the measured window, and returns the merged latencies per endpoint.
+    public Map<String, LatencyRecorder> run() throws InterruptedException {
+        long warmupEnds = System.nanoTime() + settings.warmup().toNanos();
+        long runEnds = warmupEnds + settings.duration().toNanos();
+
+        List<Map<Operation, LatencyRecorder>> perWorker = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int w = 0; w < settings.concurrency(); w++) {
+            var recorders = new EnumMap<Operation, LatencyRecorder>(Operation.class);
+            perWorker.add(recorders);
+            var random = new Random(settings.seed() + w);
+            workers.add(Thread.ofPlatform().name("load-" + w).start(() -> work(random, recorders, warmupEnds, runEnds)));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Map<String, LatencyRecorder> merged = new LinkedHashMap<>();
+        for (Operation op : Operation.values()) {
+            var total = new LatencyRecorder();
+            for (var recorders : perWorker) {
+                var recorder = recorders.get(op);
+                if (recorder != null) {
+                    total.merge(recorder);
+                }
+            }
+            merged.put(op.label, total);
+        }
+        return merged;
+    }
+
+    private void work(Random random, Map<Operation, LatencyRecorder> recorders, long warmupEnds, long runEnds) {
+        long now;
+        while ((now = System.nanoTime()) < runEnds) {
+            var op = MIX[random.nextInt(MIX.length)];
+            var user = SyntheticDataset.userId(random.nextInt(settings.users()));
+            var request = request(op, user, random);
+            if (request == null) {
+                continue;
+            }
+
+            boolean error;
+            long started = System.nanoTime();
+            try {
+                error = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() >= 400;
+            } catch (IOException e) {
+                error = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long elapsed = System.nanoTime() - started;
+
+            if (now >= warmupEnds) {
+                recorders.computeIfAbsent(op, k -> new LatencyRecorder()).record(elapsed, error);
+            }
+        }
+    }
+
+    private HttpRequest request(Operation op, String user, Random random) {
+        var tag = SyntheticDataset.tagName((int) (settings.tagsPerUser() * Math.pow(random.nextDouble(), 3)));
+        var ids = noteIds.getOrDefault(user, List.of());
+        var noteId = ids.isEmpty() ? null : ids.get(random.nextInt(ids.size()));
+
+        return switch (op) {
+            case LIST_NOTES -> get(user, "/api/notes");
+            case LIST_NOTES_BY_TAG -> get(user, "/api/notes?tag=" + tag);
+            case LIST_TAGS -> get(user, "/api/tags");
+            case SUGGEST_TAGS -> get(user, "/api/tags/suggest?prefix=" + tag.substring(0, 1 + random.nextInt(tag.length())));
+            case GET_NOTE -> noteId == null ? null : get(user, "/api/notes/" + noteId);
+            case CREATE_NOTE -> send(user, "POST", "/api/notes", Map.of(
+                    "title", "Load note " + uniqueNames.incrementAndGet(),
+                    "content", "Written during a load run.",
+                    "tags", List.of(tag)));
+            case PUT_NOTE -> noteId == null ? null : send(user, "PUT", "/api/notes/" + noteId, Map.of(
+                    "title", "Rewritten",
+                    "content", "Rewritten during a load run.",
+                    "archived", false,
+                    "tags", List.of(tag)));
+            case PATCH_NOTE -> noteId == null ? null : send(user, "PATCH", "/api/notes/" + noteId, Map.of(
+                    "title", "Autosaved",
+                    "content", "Autosaved at " + System.nanoTime(),
+                    "archived", false));
+            case CREATE_TAG -> send(user, "POST", "/api/tags", Map.of(
+                    "name", "load-tag-" + uniqueNames.incrementAndGet()));
+        };
+    }
+
+    private HttpRequest get(String user, String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Authorization", "Bearer " + tokens.get(user))
+                .GET()
+                .build();
+    }
+
+    private HttpRequest send(String user, String method, String path, Map<String, Object> body) {
+        try {
+            return HttpRequest.newBuilder(baseUri.resolve(path))
+                    .header("Authorization", "Bearer " + tokens.get(user))
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(om.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * Renders a run as a Markdown table for reading and a CSV for diffing against earlier runs.
+ */
+public class LoadReport {
+
+    private static final DateTimeFormatter FILE_STAMP =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final LoadTestSettings settings;
+    private final Map<String, LatencyRecorder> results;
+
+    public LoadReport(LoadTestSettings settings, Map<String, LatencyRecorder> results) {
+        this.settings = settings;
+        this.results = results;
+    }
+
+    public String markdown() {
+        double seconds = settings.duration().toMillis() / 1000.0;
+        var out = new StringBuilder();
+        out.append("## Load run %s%n%n".formatted(Instant.now()));
+        out.append("users=%d, notes=%d, tags/user=%d, concurrency=%d, warmup=%s, duration=%s, db=%s%n%n".formatted(
+                settings.users(), settings.notes(), settings.tagsPerUser(), settings.concurrency(),
+                settings.warmup(), settings.duration(), settings.embedded() ? "embedded" : settings.jdbcUrl()));
+        out.append("| Endpoint | Requests | Errors | req/s | p50 ms | p99 ms | p999 ms |%n".formatted());
+        out.append("|---|---:|---:|---:|---:|---:|---:|%n".formatted());
+
+        int total = 0;
+        for (var entry : results.entrySet()) {
+            var r = entry.getValue();
+            total += r.count();
+            out.append(String.format(Locale.ROOT, "| %s | %d | %d | %.1f | %.2f | %.2f | %.2f |%n",
+                    entry.getKey(), r.count(), r.errors(), r.count() / seconds,
+                    r.percentileMillis(50), r.percentileMillis(99), r.percentileMillis(99.9)));
+        }
+        out.append(String.format(Locale.ROOT, "%nTotal throughput: %.1f req/s%n", total / seconds));
+        return out.toString();
+    }
+
+    public String csv() {
+        double seconds = settings.duration().toMillis() / 1000.0;
+        var out = new StringBuilder("endpoint,requests,errors,rps,p50_ms,p99_ms,p999_ms\n");
+        for (var entry : results.entrySet()) {
+            var r = entry.getValue();
+            out.append(String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.3f,%.3f,%.3f%n",
+                    entry.getKey(), r.count(), r.errors(), r.count() / seconds,
+                    r.percentileMillis(50), r.percentileMillis(99), r.percentileMillis(99.9)));
+        }
+        return out.toString();
+    }
+
+    // Writes both renderings under target/load-test and returns the Markdown path.
+    public Path write() throws IOException {
+        var dir = Files.createDirectories(Path.of("target", "load-test"));
+        var stamp = FILE_STAMP.format(Instant.now());
+        Files.writeString(dir.resolve("load-" + stamp + ".csv"), csv());
+        return Files.writeString(dir.resolve("load-" + stamp + ".md"), markdown());
+    }
+}
@@ -0,0 +1,44 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import java.time.Duration;
+
+/*
+ * Knobs for a load run, read from system properties so runs are reproducible from the command line.
+ * e.g. mvn verify -Pload-test -Dload.users=100 -Dload.notes=50000 -Dload.duration=60s
+ */
+public record LoadTestSettings(
+        String jdbcUrl,
+        String jdbcUsername,
+        String jdbcPassword,
+        int users,
+        int notes,
+        int tagsPerUser,
+        int concurrency,
+        Duration warmup,
+        Duration duration,
+        long seed
+) {
+    public static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                System.getProperty("load.jdbc-url"),
+                System.getProperty("load.jdbc-username", "notes_user"),
+                System.getProperty("load.jdbc-password", "notes_pass"),
+                Integer.getInteger("load.users", 1_000),
+                Integer.getInteger("load.notes", 1_000_000),
+                Integer.getInteger("load.tags-per-user", 40),
+                Integer.getInteger("load.concurrency", 32),
+                duration("load.warmup", "30s"),
+                duration("load.duration", "120s"),
+                Long.getLong("load.seed", 42L)
+        );
+    }
+
+    // Uses an embedded Postgres unless a local database is given.
+    public boolean embedded() {
+        return jdbcUrl == null || jdbcUrl.isBlank();
+    }
+
+    private static Duration duration(String property, String fallback) {
+        return Duration.parse("PT" + System.getProperty(property, fallback).toUpperCase());
+    }
+}
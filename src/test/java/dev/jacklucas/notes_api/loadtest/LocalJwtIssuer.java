@@ -0,0 +1,65 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.*;
+
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/*
+ * Stands in for Clerk during load runs.
+ * Mints RS256 tokens with a throwaway key and hands out a decoder that trusts only that key.
+ */
+public class LocalJwtIssuer {
+
+    static final String ISSUER = "http://localhost/load-test";
+
+    private final RSAPublicKey publicKey;
+    private final JwtEncoder encoder;
+
+    public LocalJwtIssuer() {
+        try {
+            var generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            var keyPair = generator.generateKeyPair();
+
+            publicKey = (RSAPublicKey) keyPair.getPublic();
+            var jwk = new RSAKey.Builder(publicKey).privateKey((RSAPrivateKey) keyPair.getPrivate()).build();
+            encoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(jwk)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("RSA is not available.", e);
+        }
+    }
+
+    public String mint(String subject, Duration ttl) {
+        var now = Instant.now();
+        var claims = JwtClaimsSet.builder()
+                .issuer(ISSUER)
+                .subject(subject)
+                .issuedAt(now)
+                .expiresAt(now.plus(ttl))
+                .build();
+        var header = JwsHeader.with(SignatureAlgorithm.RS256).build();
+        return encoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
+    }
+
+    public JwtDecoder decoder() {
+        var decoder = NimbusJwtDecoder.withPublicKey(publicKey).build();
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(ISSUER));
+        return decoder;
+    }
+
+    // The public key as PEM, for apps started in their own process (public-key-location) to verify tokens with.
+    public String publicKeyPem() {
+        var base64 = Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(publicKey.getEncoded());
+        return "-----BEGIN PUBLIC KEY-----\n" + base64 + "\n-----END PUBLIC KEY-----\n";
+    }
+}
@@ -0,0 +1,145 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.counter.UserCounters;
+import dev.jacklucas.notes_api.datasource.CurrentUser;
+import dev.jacklucas.notes_api.note.NoteListFastPath;
+import dev.jacklucas.notes_api.note.NoteRepository;
+import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Compares the JPA listing with the JDBC fast path on the synthetic dataset, in-process so HTTP overhead is left out.
+ * The two paths alternate call by call so both see the same cache and JIT conditions.
+ * Only runs with the load-test profile: mvn test -Pload-test -Dtest=NoteListPathsLoadTest
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(properties = "notes.list-fast-path.enabled=true")
+@Import(NotesApiLoadTest.LoadTestConfig.class)
+class NoteListPathsLoadTest {
+
+    static final LoadTestSettings SETTINGS = NotesApiLoadTest.SETTINGS;
+
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    NoteRepository noteRepository;
+    @Autowired
+    NoteListFastPath fastPath;
+    @Autowired
+    UserCounters counters;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    // Allocation and latency for one path.
+    static class PathStats {
+        final LatencyRecorder latency = new LatencyRecorder();
+        long allocatedBytes;
+        long calls;
+    }
+
+    @Test
+    void jpaVersusFastPath() throws Exception {
+        new SyntheticDataset(jdbc, SETTINGS).seedIfEmpty();
+
+        var tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        var pageable = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"));
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        var jpa = new PathStats();
+        var fast = new PathStats();
+        var rnd = new SplittableRandom(SETTINGS.seed());
+
+        long warmupEnd = System.nanoTime() + SETTINGS.warmup().toNanos();
+        long end = warmupEnd + SETTINGS.duration().toNanos();
+        while (System.nanoTime() < end) {
+            var user = SyntheticDataset.userId(rnd.nextInt(SETTINGS.users()));
+            boolean measuring = System.nanoTime() >= warmupEnd;
+
+            measure(measuring ? jpa : null, threads, () -> CurrentUser.runAs(user, () -> {
+                var page = tx.execute(status -> PageableExecutionUtils.getPage(noteRepository.findByUserId(user, pageable),
+                        pageable, () -> counters.notes(user)).map(ReadNoteResponse::from));
+                try {
+                    om.writeValue(OutputStream.nullOutputStream(), page);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            measure(measuring ? fast : null, threads, () -> CurrentUser.runAs(user, () ->
+                    tx.executeWithoutResult(status -> write(user, pageable))));
+        }
+
+        var report = report(jpa, fast);
+        var dir = Files.createDirectories(Path.of("target", "load-test"));
+        Files.writeString(dir.resolve("list-paths.md"), report);
+        log.info("\n{}", report);
+
+        assertThat(fast.allocatedBytes / fast.calls).isLessThan(jpa.allocatedBytes / jpa.calls);
+    }
+
+    private void write(String user, Pageable pageable) {
+        try {
+            fastPath.write(user, null, pageable, MediaType.APPLICATION_JSON, OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void measure(PathStats stats, com.sun.management.ThreadMXBean threads, Runnable call) {
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        call.run();
+        long nanos = System.nanoTime() - start;
+        if (stats != null) {
+            stats.latency.record(nanos, false);
+            stats.allocatedBytes += threads.getCurrentThreadAllocatedBytes() - allocated;
+            stats.calls++;
+        }
+    }
+
+    private static String report(PathStats jpa, PathStats fast) {
+        var out = new StringBuilder();
+        out.append("## GET /api/notes paths %s%n%n".formatted(Instant.now()));
+        out.append("users=%d, notes=%d, page size=20, warmup=%s, duration=%s, db=%s%n%n".formatted(
+                SETTINGS.users(), SETTINGS.notes(), SETTINGS.warmup(), SETTINGS.duration(),
+                SETTINGS.embedded() ? "embedded" : SETTINGS.jdbcUrl()));
+        out.append("| Path | Calls | p50 ms | p99 ms | KiB allocated/call |%n".formatted());
+        out.append("|---|---:|---:|---:|---:|%n".formatted());
+        for (var row : new Object[][]{{"JPA + Jackson", jpa}, {"JDBC + JsonGenerator", fast}}) {
+            var stats = (PathStats) row[1];
+            out.append(String.format(Locale.ROOT, "| %s | %d | %.3f | %.3f | %.1f |%n",
+                    row[0], stats.calls, stats.latency.percentileMillis(50), stats.latency.percentileMillis(99),
+                    stats.allocatedBytes / 1024.0 / stats.calls));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * End-to-end load run: boots the app on a real port, seeds a synthetic dataset, and drives a mixed workload.
+ * Only runs with the load-test profile: mvn test -Pload-test [-Dload.jdbc-url=jdbc:postgresql://localhost:5432/notes]
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(NotesApiLoadTest.LoadTestConfig.class)
+class NotesApiLoadTest {
+
+    static final LoadTestSettings SETTINGS = LoadTestSettings.fromSystemProperties();
+    static final LocalJwtIssuer ISSUER = new LocalJwtIssuer();
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class LoadTestConfig {
+
+        @Bean
+        DataSource dataSource() {
+            var pool = new HikariDataSource();
+            if (SETTINGS.embedded()) {
+                pool.setDataSource(EmbeddedPostgresTestConfig.postgres().getPostgresDatabase());
+            } else {
+                pool.setJdbcUrl(SETTINGS.jdbcUrl());
+                pool.setUsername(SETTINGS.jdbcUsername());
+                pool.setPassword(SETTINGS.jdbcPassword());
+            }
+            pool.setMaximumPoolSize(20);
+            return pool;
+        }
+
+        @Bean
+        JwtDecoder jwtDecoder() {
+            return ISSUER.decoder();
+        }
+    }
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Test
+    void mixedWorkload() throws Exception {
+        var dataset = new SyntheticDataset(jdbc, SETTINGS);
+        dataset.seedIfEmpty();
+        var noteIds = dataset.sampleNoteIds(50);
+
+        // One token per user, valid well past the end of the run.
+        Map<String, String> tokens = new HashMap<>();
+        var ttl = SETTINGS.warmup().plus(SETTINGS.duration()).plus(Duration.ofHours(1));
+        for (int u = 0; u < SETTINGS.users(); u++) {
+            var user = SyntheticDataset.userId(u);
+            tokens.put(user, ISSUER.mint(user, ttl));
+        }
+
+        var driver = new LoadDriver(URI.create("http://localhost:" + port), SETTINGS, tokens, noteIds);
+        var results = driver.run();
+
+        var report = new LoadReport(SETTINGS, results);
+        log.info("\n{}", report.markdown());
+        log.info("Report written to {}", report.write().toAbsolutePath());
+
+        assertThat(results.values()).anyMatch(r -> r.count() > 0);
+    }
+}
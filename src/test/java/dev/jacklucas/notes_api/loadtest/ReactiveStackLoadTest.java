@@ -0,0 +1,334 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/*
+ * The servlet app against the WebFlux + R2DBC variant in reactive/, both started from their packaged jars on the same
+ * database and driven by the same mixed workload. Each stack runs it twice: alone, and next to `load.slow-clients`
+ * connections that trickle their request bodies a byte at a time. Those pin one Tomcat thread each while Netty waits
+ * for them without a thread, so the second run shows what each stack does when its clients are slow.
+ * Build both jars first:
+ *   mvn package -DskipTests && mvn -f reactive/pom.xml package -DskipTests
+ * Only runs with the load-test profile: mvn test -Pload-test -Dtest=ReactiveStackLoadTest [-Dload.slow-clients=300]
+ */
+@Slf4j
+@Tag("load")
+class ReactiveStackLoadTest {
+
+    static final LoadTestSettings SETTINGS = NotesApiLoadTest.SETTINGS;
+    static final LocalJwtIssuer ISSUER = NotesApiLoadTest.ISSUER;
+    // More than Tomcat's 200 worker threads.
+    static final int SLOW_CLIENTS = Integer.getInteger("load.slow-clients", 300);
+    static final Duration SLOW_BYTE_EVERY = Duration.ofMillis(Long.getLong("load.slow-byte-millis", 200));
+    static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    static final Path TARGET = Path.of("target");
+    static final Path SERVLET_JAR = TARGET.resolve("notes-api-0.0.1-SNAPSHOT.jar");
+    static final Path REACTIVE_JAR = Path.of("reactive", "target", "notes-api-reactive-0.0.1-SNAPSHOT.jar");
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    record Stack(String name, Path jar) {
+    }
+
+    // Every endpoint of one run merged, plus the server process at the end of it.
+    record Result(Stack stack, String scenario, int requests, int errors, double p50, double p99, double p999,
+                  long rssKib, int threads) {
+    }
+
+    @Test
+    void servletAgainstReactive() throws Exception {
+        assumeTrue(Files.exists(SERVLET_JAR) && Files.exists(REACTIVE_JAR),
+                "Build both jars first: mvn package -DskipTests && mvn -f reactive/pom.xml package -DskipTests");
+
+        var stacks = List.of(new Stack("Servlet + JDBC", SERVLET_JAR), new Stack("WebFlux + R2DBC", REACTIVE_JAR));
+        var publicKey = Files.createDirectories(TARGET.resolve("load-test")).resolve("jwt-public.pem");
+        Files.writeString(publicKey, ISSUER.publicKeyPem());
+
+        // One token per user, valid well past the end of every run.
+        Map<String, String> tokens = new HashMap<>();
+        var ttl = SETTINGS.warmup().plus(SETTINGS.duration()).multipliedBy(4).plus(Duration.ofHours(1));
+        for (int u = 0; u < SETTINGS.users(); u++) {
+            var user = SyntheticDataset.userId(u);
+            tokens.put(user, ISSUER.mint(user, ttl));
+        }
+
+        // The first start migrates the database, so the dataset can be seeded.
+        start(stacks.getFirst(), publicKey).destroy();
+        var pool = dataSource();
+        var jdbc = new JdbcTemplate(pool);
+        var dataset = new SyntheticDataset(jdbc, SETTINGS);
+        dataset.seedIfEmpty();
+        var noteIds = dataset.sampleNoteIds(50);
+
+        // Both stacks answer with the same shape.
+        var user = SyntheticDataset.userId(0);
+        List<Set<String>> shapes = new ArrayList<>();
+        for (var stack : stacks) {
+            var app = start(stack, publicKey);
+            try {
+                shapes.add(shape(app.port(), tokens.get(user)));
+            } finally {
+                app.destroy();
+            }
+        }
+        assertThat(shapes.get(1)).isEqualTo(shapes.get(0));
+
+        var results = new ArrayList<Result>();
+        try (pool) {
+            for (var stack : stacks) {
+                for (int slowClients : new int[]{0, SLOW_CLIENTS}) {
+                    // Every driver numbers the tags it creates from 1, so the tags of earlier runs would conflict.
+                    jdbc.update("delete from tags where user_id like ? and name like 'load-tag-%'",
+                            SyntheticDataset.USER_PREFIX + "%");
+                    var scenario = slowClients == 0 ? "mixed" : "mixed + %d slow clients".formatted(slowClients);
+                    results.add(run(stack, publicKey, scenario, slowClients, tokens, noteIds));
+                }
+            }
+        }
+
+        var report = report(results);
+        Files.writeString(TARGET.resolve("load-test").resolve("reactive-vs-servlet.md"), report);
+        log.info("\n{}", report);
+
+        assertThat(results).allSatisfy(r -> assertThat(r.requests()).isPositive());
+    }
+
+    private Result run(Stack stack, Path publicKey, String scenario, int slowClients, Map<String, String> tokens,
+                       Map<String, List<UUID>> noteIds) throws Exception {
+        var app = start(stack, publicKey);
+        var slow = new SlowClients(app.port(), tokens.get(SyntheticDataset.userId(0)), slowClients);
+        try {
+            slow.start();
+            var driver = new LoadDriver(URI.create("http://localhost:" + app.port()), SETTINGS, tokens, noteIds);
+            var merged = new LatencyRecorder();
+            driver.run().values().forEach(merged::merge);
+            log.info("{}, {}: {} slow requests completed", stack.name(), scenario, slow.completed());
+            return new Result(stack, scenario, merged.count(), merged.errors(), merged.percentileMillis(50),
+                    merged.percentileMillis(99), merged.percentileMillis(99.9),
+                    procStatus(app.process().pid(), "VmRSS:"), (int) procStatus(app.process().pid(), "Threads:"));
+        } finally {
+            slow.stop();
+            app.destroy();
+        }
+    }
+
+    // The field names of a page of notes and of a note in it.
+    private Set<String> shape(int port, String token) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/notes?size=1"))
+                .header("Authorization", "Bearer " + token)
+                .build();
+        var response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        var page = om.readTree(response.body());
+        var shape = new TreeSet<String>();
+        page.fieldNames().forEachRemaining(shape::add);
+        for (JsonNode note : page.get("content")) {
+            note.fieldNames().forEachRemaining(name -> shape.add("content[]." + name));
+        }
+        return shape;
+    }
+
+    /*
+     * Connections that each send a note's headers at once and its body one byte per SLOW_BYTE_EVERY, then start
+     * over, for as long as the run lasts. Only the first byte of each response is waited for.
+     */
+    static class SlowClients {
+
+        private final int port;
+        private final String token;
+        private final int count;
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final AtomicLong completed = new AtomicLong();
+        private final List<Thread> threads = new ArrayList<>();
+
+        SlowClients(int port, String token, int count) {
+            this.port = port;
+            this.token = token;
+            this.count = count;
+        }
+
+        void start() {
+            for (int i = 0; i < count; i++) {
+                threads.add(Thread.ofVirtual().name("slow-" + i).start(this::trickle));
+            }
+        }
+
+        void stop() throws InterruptedException {
+            running.set(false);
+            for (var thread : threads) {
+                thread.interrupt();
+                thread.join();
+            }
+        }
+
+        long completed() {
+            return completed.get();
+        }
+
+        private void trickle() {
+            var body = "{\"title\": \"Slow note\", \"content\": \"Typed on a very slow connection.\", \"tags\": []}"
+                    .getBytes(StandardCharsets.UTF_8);
+            var head = ("POST /api/notes HTTP/1.1\r\nHost: localhost\r\nAuthorization: Bearer " + token
+                    + "\r\nContent-Type: application/json\r\nContent-Length: " + body.length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            while (running.get()) {
+                try (var socket = new Socket("localhost", port)) {
+                    OutputStream out = socket.getOutputStream();
+                    out.write(head);
+                    for (byte b : body) {
+                        out.flush();
+                        Thread.sleep(SLOW_BYTE_EVERY);
+                        out.write(b);
+                    }
+                    out.flush();
+                    socket.getInputStream().read();
+                    completed.incrementAndGet();
+                } catch (IOException e) {
+                    // The server went away at the end of the run; start over or stop.
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // A running app on its own port.
+    record Started(Process process, int port) {
+        void destroy() throws InterruptedException {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static Started start(Stack stack, Path publicKey) throws Exception {
+        int port;
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var builder = new ProcessBuilder(java, "-jar", stack.jar().toAbsolutePath().toString())
+                .redirectErrorStream(true)
+                .redirectOutput(TARGET.resolve("load-test-reactive.log").toFile());
+        var env = builder.environment();
+        env.put("SERVER_PORT", Integer.toString(port));
+        env.put("SPRING_SECURITY_OAUTH2_RESOURCESERVER_JWT_PUBLIC_KEY_LOCATION", publicKey.toUri().toString());
+        String url, username, password;
+        if (SETTINGS.embedded()) {
+            url = EmbeddedPostgresTestConfig.postgres().getJdbcUrl("postgres", "postgres");
+            username = "postgres";
+            password = "postgres";
+        } else {
+            url = SETTINGS.jdbcUrl();
+            username = SETTINGS.jdbcUsername();
+            password = SETTINGS.jdbcPassword();
+        }
+        // The servlet app reads the datasource; the reactive one R2DBC, and Flyway over JDBC.
+        env.put("SPRING_DATASOURCE_URL", url);
+        env.put("SPRING_DATASOURCE_USERNAME", username);
+        env.put("SPRING_DATASOURCE_PASSWORD", password);
+        // R2DBC URLs take the credentials as properties only, so any in the query string are dropped.
+        env.put("SPRING_R2DBC_URL", "r2dbc:" + url.substring("jdbc:".length()).replaceFirst("\\?.*", ""));
+        env.put("SPRING_R2DBC_USERNAME", username);
+        env.put("SPRING_R2DBC_PASSWORD", password);
+        env.put("SPRING_FLYWAY_URL", url);
+        env.put("SPRING_FLYWAY_USER", username);
+        env.put("SPRING_FLYWAY_PASSWORD", password);
+
+        var client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        var health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health")).build();
+
+        var process = builder.start();
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("%s exited with %d; see target/load-test-reactive.log"
+                        .formatted(stack.name(), process.exitValue()));
+            }
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return new Started(process, port);
+                }
+            } catch (ConnectException ignored) {
+                // Not listening yet.
+            }
+            Thread.sleep(20);
+        }
+        process.destroyForcibly();
+        throw new IllegalStateException("%s did not answer within %s".formatted(stack.name(), TIMEOUT));
+    }
+
+    private static HikariDataSource dataSource() {
+        var pool = new HikariDataSource();
+        if (SETTINGS.embedded()) {
+            pool.setDataSource(EmbeddedPostgresTestConfig.postgres().getPostgresDatabase());
+        } else {
+            pool.setJdbcUrl(SETTINGS.jdbcUrl());
+            pool.setUsername(SETTINGS.jdbcUsername());
+            pool.setPassword(SETTINGS.jdbcPassword());
+        }
+        return pool;
+    }
+
+    // A number from /proc/<pid>/status (kB for memory), or -1 where there is none.
+    private static long procStatus(long pid, String field) throws IOException {
+        var status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith(field))
+                .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(-1L);
+    }
+
+    private static String report(List<Result> results) {
+        double seconds = SETTINGS.duration().toMillis() / 1000.0;
+        var out = new StringBuilder();
+        out.append("## Servlet against reactive %s%n%n".formatted(Instant.now()));
+        out.append("users=%d, notes=%d, concurrency=%d, warmup=%s, duration=%s, slow byte every %s, java=%s, db=%s%n%n"
+                .formatted(SETTINGS.users(), SETTINGS.notes(), SETTINGS.concurrency(), SETTINGS.warmup(),
+                        SETTINGS.duration(), SLOW_BYTE_EVERY, System.getProperty("java.version"),
+                        SETTINGS.embedded() ? "embedded" : SETTINGS.jdbcUrl()));
+        out.append("| Stack | Load | Requests | Errors | req/s | p50 ms | p99 ms | p999 ms | RSS MiB | Threads |%n".formatted());
+        out.append("|---|---|---:|---:|---:|---:|---:|---:|---:|---:|%n".formatted());
+        for (var r : results) {
+            out.append(String.format(Locale.ROOT, "| %s | %s | %d | %d | %.1f | %.2f | %.2f | %.2f | %s | %d |%n",
+                    r.stack().name(), r.scenario(), r.requests(), r.errors(), r.requests() / seconds,
+                    r.p50(), r.p99(), r.p999(),
+                    r.rssKib() < 0 ? "n/a" : String.format(Locale.ROOT, "%.0f", r.rssKib() / 1024.0), r.threads()));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,132 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import dev.jacklucas.notes_api.datasource.CurrentUser;
+import dev.jacklucas.notes_api.note.NotesChanged;
+import dev.jacklucas.notes_api.related.RelatedIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Times GET /api/notes/{id}/related three ways on the synthetic dataset, in-process so HTTP overhead is left out:
+ * the same ranking as one SQL statement over note_tags, a cold index (built for the lookup), and a warm index.
+ * Only runs with the load-test profile: mvn test -Pload-test -Dtest=RelatedIndexLoadTest
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(properties = "notes.related.max-size=1GB")
+@Import(NotesApiLoadTest.LoadTestConfig.class)
+class RelatedIndexLoadTest {
+
+    static final LoadTestSettings SETTINGS = NotesApiLoadTest.SETTINGS;
+
+    // What the index computes, as a join per request.
+    static final String SQL = """
+            with mine as (
+                select tag_id from note_tags where user_id = ? and note_id = ?
+            ), df as (
+                select tag_id, count(*) as uses from note_tags
+                where user_id = ? and tag_id in (select tag_id from mine)
+                group by tag_id
+            ), total as (
+                select count(*) as notes from notes where user_id = ?
+            )
+            select nt.note_id, sum(ln(1 + total.notes::float8 / df.uses)) as score
+            from note_tags nt join df on df.tag_id = nt.tag_id cross join total
+            where nt.user_id = ? and nt.note_id <> ?
+            group by nt.note_id
+            order by score desc, nt.note_id desc
+            limit 10
+            """;
+
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    RelatedIndex relatedIndex;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void sqlVersusIndex() throws Exception {
+        var dataset = new SyntheticDataset(jdbc, SETTINGS);
+        dataset.seedIfEmpty();
+        var noteIds = dataset.sampleNoteIds(20);
+
+        var sql = new LatencyRecorder();
+        var cold = new LatencyRecorder();
+        var warm = new LatencyRecorder();
+        var rnd = new SplittableRandom(SETTINGS.seed());
+
+        // Every user starts warm; cold lookups are made on purpose below.
+        noteIds.forEach((user, ids) -> CurrentUser.runAs(user, () -> relatedIndex.related(user, ids.getFirst(), 10)));
+
+        long warmupEnd = System.nanoTime() + SETTINGS.warmup().toNanos();
+        long end = warmupEnd + SETTINGS.duration().toNanos();
+        while (System.nanoTime() < end) {
+            var user = SyntheticDataset.userId(rnd.nextInt(SETTINGS.users()));
+            var ids = noteIds.get(user);
+            var note = ids.get(rnd.nextInt(ids.size()));
+            boolean measuring = System.nanoTime() >= warmupEnd;
+
+            // Now and then, drop the user's index as a tag write would, so the lookup pays for the build.
+            if (rnd.nextInt(20) == 0) {
+                relatedIndex.onNotesChanged(new NotesChanged(user));
+                measure(measuring ? cold : null, () -> CurrentUser.runAs(user, () ->
+                        relatedIndex.related(user, note, 10)));
+            }
+            measure(measuring ? sql : null, () -> CurrentUser.runAs(user, () ->
+                    jdbc.queryForList(SQL, user, note, user, user, user, note)));
+            measure(measuring ? warm : null, () -> CurrentUser.runAs(user, () ->
+                    relatedIndex.related(user, note, 10)));
+        }
+
+        var lookups = meterRegistry.get("notes.related.lookup").timer();
+        var report = report(sql, cold, warm, lookups.mean(TimeUnit.MICROSECONDS));
+        var dir = Files.createDirectories(Path.of("target", "load-test"));
+        Files.writeString(dir.resolve("related-index.md"), report);
+        log.info("\n{}", report);
+
+        assertThat(warm.percentileMillis(50)).isLessThan(sql.percentileMillis(50));
+    }
+
+    private static void measure(LatencyRecorder recorder, Runnable call) {
+        long start = System.nanoTime();
+        call.run();
+        if (recorder != null) {
+            recorder.record(System.nanoTime() - start, false);
+        }
+    }
+
+    private String report(LatencyRecorder sql, LatencyRecorder cold, LatencyRecorder warm, double scoringMicros) {
+        var out = new StringBuilder();
+        out.append("## Related notes %s%n%n".formatted(Instant.now()));
+        out.append("users=%d, notes=%d, tags/user=%d, warmup=%s, duration=%s, db=%s, index bytes=%d%n%n".formatted(
+                SETTINGS.users(), SETTINGS.notes(), SETTINGS.tagsPerUser(), SETTINGS.warmup(), SETTINGS.duration(),
+                SETTINGS.embedded() ? "embedded" : SETTINGS.jdbcUrl(), relatedIndex.bytes()));
+        out.append("| Path | Calls | p50 µs | p99 µs |%n".formatted());
+        out.append("|---|---:|---:|---:|%n".formatted());
+        for (var row : List.of(List.of("SQL over note_tags", sql), List.of("Index, cold (builds)", cold),
+                List.of("Index, warm", warm))) {
+            var recorder = (LatencyRecorder) row.get(1);
+            out.append(String.format(Locale.ROOT, "| %s | %d | %.1f | %.1f |%n", row.get(0), recorder.count(),
+                    recorder.percentileMillis(50) * 1000, recorder.percentileMillis(99) * 1000));
+        }
+        out.append(String.format(Locale.ROOT, "%nMean scoring time in notes.related.lookup: %.1f µs%n", scoringMicros));
+        return out.toString();
+    }
+}
@@ -0,0 +1,214 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * JSON against CBOR and Smile for one page of notes: bytes on the wire with and without gzip, and what encoding and
+ * decoding a page costs. The page is fetched once per format from the app on a real port, so Tomcat's compression is
+ * in the picture; encode and decode are then timed in-process on the same page with the converters' own mappers.
+ * Only runs with the load-test profile: mvn test -Pload-test -Dtest=ResponseEncodingLoadTest [-Dload.encoding-notes=100]
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(NotesApiLoadTest.LoadTestConfig.class)
+class ResponseEncodingLoadTest {
+
+    static final int NOTES = Integer.getInteger("load.encoding-notes", 100);
+    static final int ITERATIONS = Integer.getInteger("load.encoding-iterations", 20_000);
+    static final String[] WORDS = ("the a meeting notes project idea todo follow up with about design review draft "
+            + "release plan budget call customer feedback bug fix deploy friday monday week team sync agenda").split(" ");
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    MappingJackson2CborHttpMessageConverter cbor;
+    @Autowired
+    MappingJackson2SmileHttpMessageConverter smile;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final String token = NotesApiLoadTest.ISSUER.mint("encoding-load-" + UUID.randomUUID(), Duration.ofHours(1));
+
+    record Format(String name, String mediaType, ObjectMapper mapper) {
+    }
+
+    record Result(Format format, int raw, int gzip, int wire, double encodeMicros, double gzipMicros,
+                  double decodeMicros) {
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    @Test
+    void encodings() throws Exception {
+        seed();
+
+        var formats = List.of(
+                new Format("JSON", "application/json", om),
+                new Format("CBOR", "application/cbor", cbor.getObjectMapper()),
+                new Format("Smile", "application/x-jackson-smile", smile.getObjectMapper()));
+
+        JsonNode reference = null;
+        var results = new ArrayList<Result>();
+        for (var format : formats) {
+            var path = "/api/notes?size=" + NOTES;
+            var plain = http.send(request(path).header("Accept", format.mediaType()).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            var gzipped = http.send(request(path).header("Accept", format.mediaType())
+                    .header("Accept-Encoding", "gzip").build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertThat(plain.statusCode()).isEqualTo(200);
+            assertThat(gzipped.headers().firstValue("Content-Encoding")).hasValue("gzip");
+
+            // Every format and encoding carries the same page.
+            var page = normalized(format.mapper().readTree(plain.body()));
+            assertThat(normalized(format.mapper().readTree(
+                    new GZIPInputStream(new ByteArrayInputStream(gzipped.body()))))).isEqualTo(page);
+            if (reference == null) {
+                reference = page;
+            }
+            assertThat(page).isEqualTo(reference);
+
+            // The page's DTOs, so encoding goes through the same serializers as a request does.
+            var notes = om.convertValue(page.get("content"), new TypeReference<List<ReadNoteResponse>>() {
+            });
+            results.add(new Result(format, plain.body().length, gzip(plain.body()).length, gzipped.body().length,
+                    encodeMicros(format.mapper(), notes), gzipMicros(plain.body()),
+                    decodeMicros(format.mapper(), plain.body())));
+        }
+
+        var report = new StringBuilder()
+                .append("## Response encodings %s%n%n".formatted(Instant.now()))
+                .append("one page of %d notes, %d iterations each%n%n".formatted(NOTES, ITERATIONS))
+                .append("| Format | Bytes | gzip bytes | On the wire, gzip | Encode µs/page | gzip µs/page | Decode µs/page |%n".formatted())
+                .append("|---|---:|---:|---:|---:|---:|---:|%n".formatted());
+        for (var r : results) {
+            report.append(String.format(Locale.ROOT, "| %s | %d | %d | %d | %.1f | %.1f | %.1f |%n",
+                    r.format().name(), r.raw(), r.gzip(), r.wire(), r.encodeMicros(), r.gzipMicros(), r.decodeMicros()));
+        }
+        var dir = Files.createDirectories(Path.of("target", "load-test"));
+        Files.writeString(dir.resolve("encodings.md"), report);
+        log.info("\n{}", report);
+
+        // The binary formats exist to be smaller than JSON.
+        assertThat(results.get(1).raw()).isLessThan(results.get(0).raw());
+        assertThat(results.get(2).raw()).isLessThan(results.get(0).raw());
+    }
+
+    // Notes made of words, so they compress like real text and not like random bytes.
+    private void seed() throws Exception {
+        var rnd = new SplittableRandom(42);
+        for (int i = 0; i < NOTES; i++) {
+            var content = new StringBuilder();
+            for (int w = 0, n = 40 + rnd.nextInt(200); w < n; w++) {
+                content.append(WORDS[rnd.nextInt(WORDS.length)]).append(w % 12 == 11 ? ".\n" : " ");
+            }
+            var body = Map.of("title", "Note " + i, "content", content.toString(),
+                    "tags", List.of("tag" + rnd.nextInt(5), "tag" + (5 + rnd.nextInt(5))));
+            var response = http.send(request("/api/notes")
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(om.writeValueAsString(body)))
+                            .build(),
+                    HttpResponse.BodyHandlers.discarding());
+            assertThat(response.statusCode()).isEqualTo(201);
+        }
+    }
+
+    // Tag order comes from a HashSet, so compare tags as sets.
+    private static JsonNode normalized(JsonNode page) {
+        for (JsonNode note : page.get("content")) {
+            var tags = new ArrayList<String>();
+            note.get("tags").forEach(t -> tags.add(t.asText()));
+            Collections.sort(tags);
+            var sorted = ((ObjectNode) note).putArray("tags");
+            tags.forEach(sorted::add);
+        }
+        return page;
+    }
+
+    private static double encodeMicros(ObjectMapper mapper, Object value) throws IOException {
+        var writer = mapper.writer();
+        for (int i = 0; i < ITERATIONS / 4; i++) {
+            writer.writeValue(OutputStream.nullOutputStream(), value);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            writer.writeValue(OutputStream.nullOutputStream(), value);
+        }
+        return (System.nanoTime() - start) / 1e3 / ITERATIONS;
+    }
+
+    // What compressing the encoded page adds, at the JDK's default level like Tomcat's.
+    private static double gzipMicros(byte[] body) throws IOException {
+        int iterations = Math.max(1, ITERATIONS / 10);
+        for (int i = 0; i < iterations / 4; i++) {
+            gzip(body);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            gzip(body);
+        }
+        return (System.nanoTime() - start) / 1e3 / iterations;
+    }
+
+    private static double decodeMicros(ObjectMapper mapper, byte[] body) throws IOException {
+        var reader = mapper.readerFor(JsonNode.class);
+        for (int i = 0; i < ITERATIONS / 4; i++) {
+            reader.readValue(body);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            reader.readValue(body);
+        }
+        return (System.nanoTime() - start) / 1e3 / ITERATIONS;
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
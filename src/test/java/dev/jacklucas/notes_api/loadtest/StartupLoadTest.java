@@ -0,0 +1,184 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/*
+ * Starts the packaged app once per mode and run, and reports time until /actuator/health first answers 200 and the
+ * process's resident memory at that moment. The modes use the build outputs of the cds and native profiles:
+ *   mvn -Pcds package -DskipTests                  target/cds/*.jar and target/cds/application.jsa
+ *   mvn -Pnative native:compile -DskipTests        target/notes-api (optional, skipped when missing)
+ * Only runs with the load-test profile: mvn test -Pload-test -Dtest=StartupLoadTest [-Dstartup.runs=5]
+ */
+@Slf4j
+@Tag("load")
+class StartupLoadTest {
+
+    static final LoadTestSettings SETTINGS = NotesApiLoadTest.SETTINGS;
+    static final int RUNS = Integer.getInteger("startup.runs", 5);
+    static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    static final Path TARGET = Path.of("target");
+    static final String JAR = "notes-api-0.0.1-SNAPSHOT.jar";
+
+    // One way of starting the app; the command runs from `dir`.
+    record Mode(String name, Path dir, List<String> command) {
+    }
+
+    // Medians over the measured runs of one mode.
+    record Result(Mode mode, double firstRequestMillis, long rssKib) {
+    }
+
+    @Test
+    void startup() throws Exception {
+        var cds = TARGET.resolve("cds");
+        assumeTrue(Files.exists(cds.resolve(JAR)) && Files.exists(cds.resolve("application.jsa")),
+                "Build the cds profile first: mvn -Pcds package -DskipTests");
+
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var modes = new ArrayList<>(List.of(
+                new Mode("JVM", cds, List.of(java, "-jar", JAR)),
+                new Mode("JVM + AOT", cds, List.of(java, "-Dspring.aot.enabled=true", "-jar", JAR)),
+                new Mode("JVM + AOT + CDS", cds, List.of(java, "-XX:SharedArchiveFile=application.jsa",
+                        "-Dspring.aot.enabled=true", "-jar", JAR))
+        ));
+        var nativeImage = TARGET.resolve("notes-api");
+        if (Files.isExecutable(nativeImage)) {
+            modes.add(new Mode("Native", TARGET, List.of(nativeImage.toAbsolutePath().toString())));
+        }
+
+        // The first start migrates the database; it is not measured.
+        start(modes.getFirst()).destroy();
+
+        var results = new ArrayList<Result>();
+        for (var mode : modes) {
+            var millis = new double[RUNS];
+            var rss = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                var started = start(mode);
+                millis[run] = started.firstRequestMillis();
+                rss[run] = started.rssKib();
+                started.destroy();
+            }
+            results.add(new Result(mode, median(millis), (long) median(Arrays.stream(rss).asDoubleStream().toArray())));
+        }
+
+        var report = report(results);
+        var dir = Files.createDirectories(TARGET.resolve("load-test"));
+        Files.writeString(dir.resolve("startup.md"), report);
+        log.info("\n{}", report);
+
+        assertThat(results).allSatisfy(r -> assertThat(r.firstRequestMillis()).isPositive());
+    }
+
+    // A running app, timed from process start until its first successful request.
+    record Started(Process process, double firstRequestMillis, long rssKib) {
+        void destroy() throws InterruptedException {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static Started start(Mode mode) throws Exception {
+        int port;
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        var builder = new ProcessBuilder(mode.command())
+                .directory(mode.dir().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(TARGET.resolve("load-test-startup.log").toFile());
+        var env = builder.environment();
+        env.put("SERVER_PORT", Integer.toString(port));
+        env.put("SPRING_SECURITY_OAUTH2_RESOURCESERVER_JWT_ISSUER_URI", "http://localhost/unused");
+        if (SETTINGS.embedded()) {
+            env.put("SPRING_DATASOURCE_URL", EmbeddedPostgresTestConfig.postgres().getJdbcUrl("postgres", "postgres"));
+            env.put("SPRING_DATASOURCE_USERNAME", "postgres");
+            env.put("SPRING_DATASOURCE_PASSWORD", "");
+        } else {
+            env.put("SPRING_DATASOURCE_URL", SETTINGS.jdbcUrl());
+            env.put("SPRING_DATASOURCE_USERNAME", SETTINGS.jdbcUsername());
+            env.put("SPRING_DATASOURCE_PASSWORD", SETTINGS.jdbcPassword());
+        }
+
+        var client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        var health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health")).build();
+
+        long start = System.nanoTime();
+        var process = builder.start();
+        long deadline = start + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("%s exited with %d; see target/load-test-startup.log"
+                        .formatted(mode.name(), process.exitValue()));
+            }
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    double millis = (System.nanoTime() - start) / 1_000_000.0;
+                    return new Started(process, millis, rssKib(process.pid()));
+                }
+            } catch (ConnectException ignored) {
+                // Not listening yet.
+            }
+            Thread.sleep(5);
+        }
+        process.destroyForcibly();
+        throw new IllegalStateException("%s did not answer within %s".formatted(mode.name(), TIMEOUT));
+    }
+
+    // Resident set size from /proc, or -1 where there is none.
+    private static long rssKib(long pid) throws IOException {
+        var status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(-1L);
+    }
+
+    private static double median(double[] values) {
+        var sorted = values.clone();
+        Arrays.sort(sorted);
+        int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+    }
+
+    private static String report(List<Result> results) {
+        var out = new StringBuilder();
+        out.append("## Startup %s%n%n".formatted(Instant.now()));
+        out.append("runs=%d per mode (median), java=%s, db=%s%n%n".formatted(
+                RUNS, System.getProperty("java.version"), SETTINGS.embedded() ? "embedded" : SETTINGS.jdbcUrl()));
+        out.append("| Mode | Time to first request ms | RSS MiB |%n".formatted());
+        out.append("|---|---:|---:|%n".formatted());
+        for (var r : results) {
+            out.append(String.format(Locale.ROOT, "| %s | %.0f | %s |%n", r.mode().name(), r.firstRequestMillis(),
+                    r.rssKib() < 0 ? "n/a" : String.format(Locale.ROOT, "%.0f", r.rssKib() / 1024.0)));
+        }
+        return out.toString();
+    }
+}
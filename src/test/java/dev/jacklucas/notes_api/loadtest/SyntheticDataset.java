@@ -0,0 +1,98 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+/*
+ * Seeds users, tags, and notes with set-based inserts so even a million notes load in seconds.
+ * Tag popularity is skewed: a few tags per user are on most notes, the long tail on very few.
+ */
+@Slf4j
+public class SyntheticDataset {
+
+    static final String USER_PREFIX = "load-user-";
+
+    private final JdbcTemplate jdbc;
+    private final LoadTestSettings settings;
+
+    public SyntheticDataset(JdbcTemplate jdbc, LoadTestSettings settings) {
+        this.jdbc = jdbc;
+        this.settings = settings;
+    }
+
+    public static String userId(int index) {
+        return USER_PREFIX + index;
+    }
+
+    public static String tagName(int index) {
+        return "tag-" + index;
+    }
+
+    // Seeds the dataset unless a previous run against the same database already did.
+    public void seedIfEmpty() {
+        Integer existing = jdbc.queryForObject(
+                "select count(*) from notes where user_id like ?", Integer.class, USER_PREFIX + "%");
+        if (existing != null && existing > 0) {
+            log.info("Reusing {} seeded notes.", existing);
+            return;
+        }
+
+        long started = System.nanoTime();
+
+        jdbc.update("""
+                insert into tags (user_id, name)
+                select ? || u, 'tag-' || t
+                from generate_series(0, ? - 1) u, generate_series(0, ? - 1) t
+                """, USER_PREFIX, settings.users(), settings.tagsPerUser());
+
+        // Bodies range from a sentence to a few kilobytes; one note in ten is archived.
+        jdbc.update("""
+                insert into notes (user_id, title, content, archived, created_at, updated_at)
+                select ? || (n % ?),
+                       'Note ' || n,
+                       repeat('Lorem ipsum dolor sit amet. ', 1 + (n * 7919) % 150),
+                       n % 10 = 0,
+                       now() - make_interval(secs => n),
+                       now() - make_interval(secs => n)
+                from generate_series(0, ? - 1) n
+                """, USER_PREFIX, settings.users(), settings.notes());
+
+        // Zero to three tags per note, drawn from a cubic skew towards the low-numbered tags.
+        // Picks hash the note title rather than calling random(), so every run gets the same dataset.
+        jdbc.update("""
+                insert into note_tags (user_id, note_id, tag_id)
+                select n.user_id, n.id, t.id
+                from notes n
+                cross join lateral generate_series(1, hashtext(n.title) & 3) k
+                join tags t on t.user_id = n.user_id
+                           and t.name = 'tag-' || floor(? * power((hashtext(n.title || ':' || k) & 65535) / 65536.0, 3))::int
+                where n.user_id like ?
+                on conflict do nothing
+                """, settings.tagsPerUser(), USER_PREFIX + "%");
+
+        jdbc.execute("analyze notes");
+        jdbc.execute("analyze tags");
+        jdbc.execute("analyze note_tags");
+
+        log.info("Seeded {} users, {} notes in {} ms.", settings.users(), settings.notes(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // A sample of note ids per user, for the routes that address a single note.
+    public Map<String, List<UUID>> sampleNoteIds(int perUser) {
+        Map<String, List<UUID>> ids = new HashMap<>();
+        jdbc.query("""
+                        select user_id, id from (
+                            select user_id, id, row_number() over (partition by user_id order by created_at desc) r
+                            from notes where user_id like ?
+                        ) s where r <= ?
+                        """,
+                rs -> {
+                    ids.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(rs.getObject(2, UUID.class));
+                },
+                USER_PREFIX + "%", perUser);
+        return ids;
+    }
+}
@@ -0,0 +1,139 @@
+package dev.jacklucas.notes_api.loadtest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.jacklucas.notes_api.id.UuidV7;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Inserts the same rows into two copies of the notes table, one keyed by random (v4) and one by time-ordered (v7)
+ * UUIDs, and compares insert throughput and the size of the primary key and id indexes afterwards.
+ * The copies have the same partitioning and indexes as notes; rows go to random users as they do in production.
+ * Only runs with the load-test profile: mvn test -Pload-test -Dtest=UuidKeyLoadTest [-Dload.uuid-rows=2000000]
+ */
+@Slf4j
+@Tag("load")
+class UuidKeyLoadTest {
+
+    static final LoadTestSettings SETTINGS = NotesApiLoadTest.SETTINGS;
+    static final int ROWS = Integer.getInteger("load.uuid-rows", 1_000_000);
+    static final int BATCH_SIZE = 1_000;
+
+    // Throughput over the whole run and over its last tenth, when the indexes are largest; sizes in bytes.
+    record Result(String name, double rowsPerSecond, double lastTenthRowsPerSecond, long primaryKey, long idIndex) {
+    }
+
+    @Test
+    void v4VersusV7() throws Exception {
+        try (var pool = new HikariDataSource()) {
+            if (SETTINGS.embedded()) {
+                pool.setDataSource(EmbeddedPostgresTestConfig.postgres().getPostgresDatabase());
+            } else {
+                pool.setJdbcUrl(SETTINGS.jdbcUrl());
+                pool.setUsername(SETTINGS.jdbcUsername());
+                pool.setPassword(SETTINGS.jdbcPassword());
+            }
+            var jdbc = new JdbcTemplate(pool);
+
+            var v4 = run(jdbc, "uuid_bench_v4", UUID::randomUUID);
+            var v7 = run(jdbc, "uuid_bench_v7", UuidV7::next);
+
+            var report = report(List.of(v4, v7), jdbc.queryForObject("show shared_buffers", String.class));
+            var dir = Files.createDirectories(Path.of("target", "load-test"));
+            Files.writeString(dir.resolve("uuid-keys.md"), report);
+            log.info("\n{}", report);
+
+            assertThat(v7.idIndex()).isLessThan(v4.idIndex());
+        }
+    }
+
+    private Result run(JdbcTemplate jdbc, String table, Supplier<UUID> ids) {
+        createTable(jdbc, table);
+
+        // Same users and content for both runs; only the ids differ.
+        var rnd = new SplittableRandom(SETTINGS.seed());
+        var content = "x".repeat(200);
+        long start = System.nanoTime();
+        long lastTenthStart = start;
+        for (int done = 0; done < ROWS; done += BATCH_SIZE) {
+            if (done == ROWS - ROWS / 10) {
+                lastTenthStart = System.nanoTime();
+            }
+            int n = Math.min(BATCH_SIZE, ROWS - done);
+            var batchIds = new UUID[n];
+            var users = new String[n];
+            for (int i = 0; i < n; i++) {
+                batchIds[i] = ids.get();
+                users[i] = SyntheticDataset.userId(rnd.nextInt(SETTINGS.users()));
+            }
+            jdbc.update("""
+                    insert into %s (id, user_id, title, content)
+                    select id, user_id, 'Note', ? from unnest(?::uuid[], ?::text[]) as r(id, user_id)
+                    """.formatted(table), content, batchIds, users);
+        }
+        long end = System.nanoTime();
+
+        double seconds = (end - start) / 1e9;
+        double lastTenthSeconds = (end - lastTenthStart) / 1e9;
+        var result = new Result(table, ROWS / seconds, (ROWS / 10) / lastTenthSeconds,
+                indexSize(jdbc, table + "_pkey"), indexSize(jdbc, table + "_id"));
+        jdbc.execute("drop table " + table);
+        return result;
+    }
+
+    private static void createTable(JdbcTemplate jdbc, String table) {
+        jdbc.execute("drop table if exists " + table);
+        jdbc.execute("""
+                create table %1$s (
+                    id         uuid        not null,
+                    user_id    text        not null,
+                    title      text        not null,
+                    content    text,
+                    archived   boolean     not null default false,
+                    created_at timestamptz not null default now(),
+                    updated_at timestamptz not null default now(),
+                    primary key (user_id, id)
+                ) partition by hash (user_id)
+                """.formatted(table));
+        for (int i = 0; i < 16; i++) {
+            jdbc.execute("create table %1$s_%2$02d partition of %1$s for values with (modulus 16, remainder %2$d)"
+                    .formatted(table, i));
+        }
+        jdbc.execute("create index %1$s_id on %1$s (id)".formatted(table));
+        jdbc.execute("create index %1$s_owner_created on %1$s (user_id, created_at desc)".formatted(table));
+    }
+
+    // A partitioned index has no storage of its own; add up its partitions.
+    private static long indexSize(JdbcTemplate jdbc, String index) {
+        return jdbc.queryForObject("select sum(pg_relation_size(relid)) from pg_partition_tree(?::regclass)",
+                Long.class, index);
+    }
+
+    private static String report(List<Result> results, String sharedBuffers) {
+        var out = new StringBuilder();
+        out.append("## UUID keys %s%n%n".formatted(Instant.now()));
+        out.append("rows=%d, users=%d, batch=%d, shared_buffers=%s, db=%s%n%n".formatted(ROWS, SETTINGS.users(),
+                BATCH_SIZE, sharedBuffers, SETTINGS.embedded() ? "embedded" : SETTINGS.jdbcUrl()));
+        out.append("| Ids | Rows/s | Rows/s, last 10%% | Primary key MiB | id index MiB |%n".formatted());
+        out.append("|---|---:|---:|---:|---:|%n".formatted());
+        for (var r : results) {
+            out.append(String.format(Locale.ROOT, "| %s | %.0f | %.0f | %.1f | %.1f |%n", r.name(), r.rowsPerSecond(),
+                    r.lastTenthRowsPerSecond(), r.primaryKey() / 1048576.0, r.idIndex() / 1048576.0));
+        }
+        return out.toString();
+    }
+}
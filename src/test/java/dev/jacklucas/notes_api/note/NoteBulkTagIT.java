@@ -0,0 +1,212 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class NoteBulkTagIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    QueryCounter queries;
+
+    private String user;
+
+    @BeforeEach
+    void newUser() {
+        user = "bulk-" + UUID.randomUUID();
+    }
+
+    private UUID createNote(String subject, String title, List<String> tags) throws Exception {
+        return ApiFixtures.createNote(mvc, subject, title, "", tags);
+    }
+
+    private JsonNode bulk(String route, Map<String, Object> body) throws Exception {
+        var response = mvc.perform(post("/api/notes/" + route).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(body)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return om.readTree(response);
+    }
+
+    private TreeSet<String> tagsOf(String subject, UUID id) throws Exception {
+        var response = mvc.perform(get("/api/notes/{id}", id).with(as(subject)))
+                .andReturn().getResponse().getContentAsString();
+        var tags = new TreeSet<String>();
+        om.readTree(response).get("tags").forEach(t -> tags.add(t.asText()));
+        return tags;
+    }
+
+    @Test
+    @DisplayName("Tags the notes picked by id in two statements, creating missing tags once")
+    void tagByIds() throws Exception {
+        var notes = new ArrayList<UUID>();
+        for (int i = 0; i < 300; i++) {
+            notes.add(createNote(user, "Note " + i, i == 0 ? List.of("work") : List.of()));
+        }
+        var untouched = createNote(user, "Untouched", List.of());
+
+        queries.reset();
+        var response = bulk("bulk-tag", Map.of("ids", notes, "tags", List.of("work", " urgent ", "urgent")));
+
+        // Creating the missing tags, then linking them.
+        assertThat(queries.total()).isEqualTo(2);
+        assertThat(response.get("matched").asLong()).isEqualTo(300);
+        assertThat(response.get("updated").asLong()).isEqualTo(300);
+        assertThat(tagsOf(user, notes.get(0))).containsExactly("urgent", "work");
+        assertThat(tagsOf(user, notes.get(299))).containsExactly("urgent", "work");
+        assertThat(tagsOf(user, untouched)).isEmpty();
+        assertThat(jdbc.queryForObject("select count(*) from tags where user_id = ? and name = 'urgent'",
+                Integer.class, user)).isEqualTo(1);
+
+        // Tagging again changes nothing.
+        var again = bulk("bulk-tag", Map.of("ids", notes, "tags", List.of("work")));
+        assertThat(again.get("updated").asLong()).isZero();
+    }
+
+    @Test
+    @DisplayName("Picks notes by tag and archived filters")
+    void tagByFilter() throws Exception {
+        var workOpen = createNote(user, "Work open", List.of("work"));
+        var workArchived = createNote(user, "Work archived", List.of("work"));
+        var other = createNote(user, "Other", List.of("home"));
+        mvc.perform(patch("/api/notes/{id}", workArchived).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"archived\": true}"))
+                .andExpect(status().isOk());
+
+        var filter = new HashMap<String, Object>();
+        filter.put("tag", "work");
+        filter.put("archived", false);
+        var response = bulk("bulk-tag", Map.of("filter", filter, "tags", List.of("review")));
+
+        assertThat(response.get("matched").asLong()).isEqualTo(1);
+        assertThat(tagsOf(user, workOpen)).containsExactly("review", "work");
+        assertThat(tagsOf(user, workArchived)).containsExactly("work");
+        assertThat(tagsOf(user, other)).containsExactly("home");
+
+        // An empty filter picks every note.
+        var all = bulk("bulk-tag", Map.of("filter", Map.of(), "tags", List.of("all")));
+        assertThat(all.get("matched").asLong()).isEqualTo(3);
+        assertThat(all.get("updated").asLong()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Untags in one statement and keeps the tags themselves")
+    void untag() throws Exception {
+        var both = createNote(user, "Both", List.of("work", "urgent"));
+        var one = createNote(user, "One", List.of("urgent"));
+        var none = createNote(user, "None", List.of());
+
+        queries.reset();
+        var response = bulk("bulk-untag", Map.of("ids", List.of(both, one, none), "tags", List.of("urgent", "missing")));
+
+        assertThat(queries.total()).isEqualTo(1);
+        assertThat(response.get("matched").asLong()).isEqualTo(3);
+        assertThat(response.get("updated").asLong()).isEqualTo(2);
+        assertThat(tagsOf(user, both)).containsExactly("work");
+        assertThat(tagsOf(user, one)).isEmpty();
+        assertThat(jdbc.queryForObject("select count(*) from tags where user_id = ? and name = 'urgent'",
+                Integer.class, user)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Bumps updatedAt of changed notes only")
+    void updatedAt() throws Exception {
+        var changed = createNote(user, "Changed", List.of());
+        var same = createNote(user, "Same", List.of("work"));
+        jdbc.update("update notes set updated_at = now() - interval '1 day' where user_id = ?", user);
+
+        bulk("bulk-tag", Map.of("ids", List.of(changed, same), "tags", List.of("work")));
+
+        var stale = jdbc.queryForList("select id from notes where user_id = ? and updated_at < now() - interval '1 hour'",
+                UUID.class, user);
+        assertThat(stale).containsExactly(same);
+    }
+
+    @Test
+    @DisplayName("Never touches another user's notes or creates tags for nothing")
+    void otherUsers() throws Exception {
+        var other = "bulk-other-" + UUID.randomUUID();
+        var theirs = createNote(other, "Theirs", List.of("work"));
+
+        var tagged = bulk("bulk-tag", Map.of("ids", List.of(theirs), "tags", List.of("mine")));
+        var untagged = bulk("bulk-untag", Map.of("ids", List.of(theirs), "tags", List.of("work")));
+
+        assertThat(tagged.get("matched").asLong()).isZero();
+        assertThat(untagged.get("updated").asLong()).isZero();
+        assertThat(tagsOf(other, theirs)).containsExactly("work");
+        assertThat(jdbc.queryForObject("select count(*) from tags where name = 'mine' and user_id in (?, ?)",
+                Integer.class, user, other)).isZero();
+    }
+
+    @Test
+    @DisplayName("A tag created concurrently by another writer is linked, not created twice")
+    void concurrentTagCreation() throws Exception {
+        var id = createNote(user, "Note", List.of());
+
+        try (var other = dataSource.getConnection()) {
+            other.setAutoCommit(false);
+            try (var ps = other.prepareStatement("insert into tags (user_id, name) values (?, 'race')")) {
+                ps.setString(1, user);
+                ps.executeUpdate();
+            }
+
+            // Waits on the other writer's uncommitted row in the unique index.
+            var call = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return bulk("bulk-tag", Map.of("ids", List.of(id), "tags", List.of("race")));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(300);
+            assertThat(call).isNotDone();
+
+            other.commit();
+            assertThat(call.get(5, TimeUnit.SECONDS).get("updated").asLong()).isEqualTo(1);
+        }
+
+        assertThat(tagsOf(user, id)).containsExactly("race");
+        assertThat(jdbc.queryForObject("select count(*) from tags where user_id = ? and name = 'race'",
+                Integer.class, user)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,245 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.NotesApiApplication;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static dev.jacklucas.notes_api.support.Eventually.eventually;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * Two instances of the app against one Postgres: this test's context, and a peer started next to it.
+ * Each has its own note cache; only LISTEN/NOTIFY connects them.
+ */
+@SpringBootTest(properties = "notes.note-cache.enabled=true")
+@AutoConfigureMockMvc
+@Import({EmbeddedPostgresTestConfig.class, NoteCacheIT.AfterCommit.class})
+class NoteCacheIT {
+
+    // Runs a task on this instance after a write commits and before the note cache's write-through.
+    static class AfterCommit {
+
+        static volatile Consumer<NoteSaved> next;
+
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        @TransactionalEventListener(fallbackExecution = true)
+        public void onNoteSaved(NoteSaved event) {
+            var task = next;
+            next = null;
+            if (task != null) {
+                task.accept(event);
+            }
+        }
+    }
+
+    static ConfigurableApplicationContext peerContext;
+    static MockMvc peer;
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    QueryCounter queries;
+    @Autowired
+    NoteCache cache;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private String user;
+
+    @BeforeAll
+    static void startPeer() {
+        peerContext = new SpringApplicationBuilder(NotesApiApplication.class, EmbeddedPostgresTestConfig.class)
+                .properties("notes.note-cache.enabled=true", "server.port=0", "spring.jmx.enabled=false")
+                .run();
+        peer = MockMvcBuilders.webAppContextSetup((WebApplicationContext) peerContext).apply(springSecurity()).build();
+    }
+
+    @AfterAll
+    static void stopPeer() {
+        peerContext.close();
+    }
+
+    @BeforeEach
+    void newUser() {
+        user = "note-cache-" + UUID.randomUUID();
+    }
+
+    private UUID createNote(String title, List<String> tags) throws Exception {
+        return ApiFixtures.createNote(mvc, user, title, "Content", tags);
+    }
+
+    private void putNote(MockMvc on, UUID id, String title) throws Exception {
+        on.perform(put("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(
+                                Map.of("title", title, "content", "Content", "archived", false, "tags", List.of()))))
+                .andExpect(status().isOk());
+    }
+
+    // The note as GET /api/notes/{id} returns it, or null when not found.
+    private JsonNode read(MockMvc on, UUID id) throws Exception {
+        var response = on.perform(get("/api/notes/{id}", id).with(as(user))).andReturn().getResponse();
+        return response.getStatus() == 404 ? null : om.readTree(response.getContentAsString());
+    }
+
+    private long statementsToRead(UUID id) throws Exception {
+        queries.reset();
+        read(mvc, id);
+        return queries.total();
+    }
+
+    @Test
+    @DisplayName("A repeated read is served from memory, and this instance's writes replace the cached note")
+    void localHitsAndWriteThrough() throws Exception {
+        var id = createNote("One", List.of("work"));
+
+        // Each write-through is served once the write's own notification has come back.
+        assertThat(eventually(() -> statementsToRead(id), n -> n == 0)).isZero();
+        queries.reset();
+        assertThat(read(mvc, id).get("title").asText()).isEqualTo("One");
+        assertThat(read(mvc, id).get("tags").get(0).asText()).isEqualTo("work");
+        assertThat(queries.total()).isZero();
+
+        putNote(mvc, id, "Two");
+        assertThat(eventually(() -> statementsToRead(id), n -> n == 0)).isZero();
+        var read = read(mvc, id);
+        assertThat(read.get("title").asText()).isEqualTo("Two");
+        assertThat(read.get("tags")).isEmpty();
+        assertThat(read.get("updatedAt").asText()).isEqualTo(read(peer, id).get("updatedAt").asText());
+    }
+
+    @Test
+    @DisplayName("A write on the peer invalidates the note cached here")
+    void peerWrite() throws Exception {
+        var id = createNote("One", List.of());
+        assertThat(read(mvc, id).get("title").asText()).isEqualTo("One");
+        assertThat(read(peer, id).get("title").asText()).isEqualTo("One");
+
+        putNote(peer, id, "Two");
+
+        var read = eventually(() -> read(mvc, id), n -> n.get("title").asText().equals("Two"));
+        assertThat(read.get("title").asText()).isEqualTo("Two");
+    }
+
+    @Test
+    @DisplayName("A write-through that lands after a newer write by the peer is not served")
+    void peerWriteBeforeWriteThrough() throws Exception {
+        var id = createNote("One", List.of());
+
+        // The peer's write commits, and is heard here, between this instance's commit and its write-through.
+        AfterCommit.next = saved -> {
+            var peerWrite = Thread.ofPlatform().start(() -> {
+                try {
+                    putNote(peer, id, "Peer");
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            try {
+                peerWrite.join();
+                // This write's own notification and the peer's.
+                var heard = saved.stamp().noteGeneration() + 2;
+                eventually(() -> cache.stamp(user, id).noteGeneration(), g -> g >= heard);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        putNote(mvc, id, "Mine");
+
+        assertThat(read(mvc, id).get("title").asText()).isEqualTo("Peer");
+    }
+
+    @Test
+    @DisplayName("A write here that changes nothing does not outlive a later write by the peer")
+    void noOpWriteThenPeerWrite() throws Exception {
+        var id = createNote("One", List.of());
+        mvc.perform(patch("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isOk());
+
+        putNote(peer, id, "Peer");
+
+        assertThat(eventually(() -> read(mvc, id).get("title").asText(), "Peer"::equals)).isEqualTo("Peer");
+    }
+
+    @Test
+    @DisplayName("A tag rename on the peer invalidates all of the owner's notes cached here")
+    void peerTagRename() throws Exception {
+        var first = createNote("One", List.of("wrok"));
+        var second = createNote("Two", List.of("wrok"));
+        read(mvc, first);
+        read(mvc, second);
+
+        var tags = om.readTree(peer.perform(get("/api/tags").with(as(user)))
+                .andReturn().getResponse().getContentAsString()).get("content");
+        peer.perform(put("/api/tags/{id}", tags.get(0).get("id").asText()).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("name", "work"))))
+                .andExpect(status().isOk());
+
+        for (var id : List.of(first, second)) {
+            var read = eventually(() -> read(mvc, id), n -> n.get("tags").get(0).asText().equals("work"));
+            assertThat(read.get("tags").get(0).asText()).isEqualTo("work");
+        }
+    }
+
+    @Test
+    @DisplayName("A write made outside the app, straight in SQL, invalidates the note cached here")
+    void sqlWrite() throws Exception {
+        var id = createNote("One", List.of("work"));
+        assertThat(read(mvc, id).get("title").asText()).isEqualTo("One");
+
+        jdbc.update("update notes set title = 'Two' where user_id = ? and id = ?", user, id);
+        var read = eventually(() -> read(mvc, id), n -> n.get("title").asText().equals("Two"));
+        assertThat(read.get("title").asText()).isEqualTo("Two");
+
+        jdbc.update("delete from note_tags where user_id = ? and note_id = ?", user, id);
+        read = eventually(() -> read(mvc, id), n -> n.get("tags").isEmpty());
+        assertThat(read.get("tags")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A delete on the peer makes the note cached here not found")
+    void peerDelete() throws Exception {
+        var id = createNote("One", List.of());
+        assertThat(read(mvc, id)).isNotNull();
+
+        peer.perform(delete("/api/notes/{id}", id).with(as(user))).andExpect(status().isNoContent());
+
+        assertThat(eventually(() -> read(mvc, id), n -> n == null)).isNull();
+    }
+}
@@ -0,0 +1,121 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NoteCacheTest {
+
+    private final NoteCache cache = new NoteCache(4096, new SimpleMeterRegistry());
+    private final UUID id = UUID.randomUUID();
+
+    @BeforeEach
+    void listening() {
+        cache.resume();
+    }
+
+    private ReadNoteResponse note(String title, Instant updatedAt) {
+        return new ReadNoteResponse(id.toString(), title, "", updatedAt.toString(), updatedAt.toString(), false,
+                List.of("work"), 1);
+    }
+
+    @Test
+    @DisplayName("A read is served until the note or its owner is invalidated")
+    void invalidation() {
+        cache.put(cache.stamp("alice", id), note("One", Instant.now()));
+        assertThat(cache.get(cache.stamp("alice", id)).title()).isEqualTo("One");
+        assertThat(cache.get(cache.stamp("bob", id))).isNull();
+
+        cache.invalidate("alice", id);
+        assertThat(cache.get(cache.stamp("alice", id))).isNull();
+
+        cache.put(cache.stamp("alice", id), note("One", Instant.now()));
+        cache.invalidate("alice", null);
+        assertThat(cache.get(cache.stamp("alice", id))).isNull();
+    }
+
+    @Test
+    @DisplayName("A read that raced a write is not stored")
+    void racingRead() {
+        var stamp = cache.stamp("alice", id);
+        cache.invalidate("alice", id);
+        cache.put(stamp, note("Stale", Instant.now()));
+
+        assertThat(cache.get(cache.stamp("alice", id))).isNull();
+    }
+
+    @Test
+    @DisplayName("Writes replace the entry after commit, unless a newer write already did")
+    void writeThrough() {
+        var now = Instant.now();
+        var first = cache.stamp("alice", id);
+        cache.onNotesChanged(new NotesChanged("alice", id));
+        cache.onNoteSaved(new NoteSaved("alice", note("Newer", now), first));
+
+        // Served once the write's own notification has arrived.
+        assertThat(cache.get(cache.stamp("alice", id))).isNull();
+        cache.invalidate("alice", id);
+        assertThat(cache.get(cache.stamp("alice", id)).title()).isEqualTo("Newer");
+
+        var second = cache.stamp("alice", id);
+        cache.onNotesChanged(new NotesChanged("alice", id));
+        cache.onNoteSaved(new NoteSaved("alice", note("Older", now.minusMillis(5)), second));
+        cache.invalidate("alice", id);
+
+        assertThat(cache.get(cache.stamp("alice", id))).isNull();
+        cache.onNoteSaved(new NoteSaved("alice", note("Newest", now.plusMillis(5)), second));
+        assertThat(cache.get(cache.stamp("alice", id)).title()).isEqualTo("Newest");
+    }
+
+    @Test
+    @DisplayName("A write-through is dropped when a peer's write was heard after the write's stamp")
+    void peerWriteBeforeWriteThrough() {
+        var stamp = cache.stamp("alice", id);
+        // The write's own notification, then the peer's, which committed later.
+        cache.invalidate("alice", id);
+        cache.invalidate("alice", id);
+        cache.onNotesChanged(new NotesChanged("alice", id));
+        cache.onNoteSaved(new NoteSaved("alice", note("Stale", Instant.now()), stamp));
+
+        assertThat(cache.get(cache.stamp("alice", id))).isNull();
+        cache.invalidate("alice", id);
+        assertThat(cache.get(cache.stamp("alice", id))).isNull();
+    }
+
+    @Test
+    @DisplayName("Nothing is served or stored while suspended")
+    void suspended() {
+        cache.put(cache.stamp("alice", id), note("One", Instant.now()));
+        cache.suspend();
+
+        assertThat(cache.get(cache.stamp("alice", id))).isNull();
+        cache.put(cache.stamp("alice", id), note("One", Instant.now()));
+        assertThat(cache.bytes()).isZero();
+
+        var stamp = cache.stamp("alice", id);
+        cache.resume();
+        cache.put(stamp, note("One", Instant.now()));
+        assertThat(cache.get(cache.stamp("alice", id))).isNull();
+    }
+
+    @Test
+    @DisplayName("Least recently used notes are evicted to stay within the byte budget")
+    void eviction() {
+        var first = UUID.randomUUID();
+        cache.put(cache.stamp("alice", first), note("x".repeat(300), Instant.now()));
+        for (int i = 0; i < 4; i++) {
+            cache.put(cache.stamp("alice", UUID.randomUUID()), note("x".repeat(300), Instant.now()));
+        }
+
+        assertThat(cache.bytes()).isLessThanOrEqualTo(4096);
+        assertThat(cache.get(cache.stamp("alice", first))).isNull();
+    }
+}
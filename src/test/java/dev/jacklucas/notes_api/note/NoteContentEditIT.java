@@ -0,0 +1,179 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "notes.revisions.snapshot-every=100")
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class NoteContentEditIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    QueryCounter queries;
+
+    private String user;
+
+    @BeforeEach
+    void newUser() {
+        user = "edit-" + UUID.randomUUID();
+    }
+
+    private UUID createNote(String content) throws Exception {
+        return ApiFixtures.createNote(mvc, user, "Note", content, List.of());
+    }
+
+    private static Map<String, Object> edit(int offset, int delete, String insert) {
+        return Map.of("offset", offset, "delete", delete, "insert", insert);
+    }
+
+    private ResultActions edit(UUID id, int baseRevision, List<Map<String, Object>> edits) throws Exception {
+        return mvc.perform(patch("/api/notes/{id}/content", id).with(as(user))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(om.writeValueAsString(Map.of("baseRevision", baseRevision, "edits", edits))));
+    }
+
+    private String storedContent(UUID id) {
+        return jdbc.queryForObject("select content from notes where id = ?", String.class, id);
+    }
+
+    private String revisionContent(UUID id, int revision) throws Exception {
+        var response = mvc.perform(get("/api/notes/{id}/revisions/{revision}", id, revision).with(as(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return om.readTree(response).get("content").asText();
+    }
+
+    @Test
+    @DisplayName("Edits apply in order at code point offsets and bump the revision")
+    void applies() throws Exception {
+        var id = createNote("Hello world");
+
+        edit(id, 1, List.of(edit(5, 0, ","), edit(12, 0, "!"), edit(0, 5, "Goodbye")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.revision").value(2))
+                .andExpect(jsonPath("$.contentLength").value(15));
+
+        assertThat(storedContent(id)).isEqualTo("Goodbye, world!");
+        mvc.perform(get("/api/notes/{id}", id).with(as(user)))
+                .andExpect(jsonPath("$.revision").value(2));
+    }
+
+    @Test
+    @DisplayName("Revisions recorded from edits rebuild exactly, including characters outside the BMP")
+    void revisions() throws Exception {
+        var base = "😀 emoji first. " + "Lorem ipsum dolor sit amet. ".repeat(20) + "🎉 and last.";
+        var id = createNote(base);
+
+        var expected2 = "😀 emoji first. Ipsum 🙂 ipsum dolor sit amet. " + "Lorem ipsum dolor sit amet. ".repeat(19)
+                + "🎉 and last.";
+
+        // The emoji before the edit count as one code point here but two chars in the stored delta.
+        edit(id, 1, List.of(edit(15, 5, "Ipsum 🙂"))).andExpect(status().isOk());
+        edit(id, 2, List.of(edit(expected2.codePointCount(0, expected2.length()) - 1, 1, "!"))).andExpect(status().isOk());
+        edit(id, 3, List.of(edit(0, 0, "🔥"))).andExpect(status().isOk());
+
+        var expected3 = expected2.substring(0, expected2.length() - 1) + "!";
+        var expected4 = "🔥" + expected3;
+
+        assertThat(storedContent(id)).isEqualTo(expected4);
+        assertThat(revisionContent(id, 1)).isEqualTo(base);
+        assertThat(revisionContent(id, 2)).isEqualTo(expected2);
+        assertThat(revisionContent(id, 3)).isEqualTo(expected3);
+        assertThat(revisionContent(id, 4)).isEqualTo(expected4);
+
+        // Small edits to a large note are stored as deltas, not copies.
+        assertThat(jdbc.queryForList("""
+                select snapshot from note_revisions where note_id = ? order by revision
+                """, Boolean.class, id)).containsExactly(true, false, false, false);
+    }
+
+    @Test
+    @DisplayName("One locked read, one UPDATE and one revision insert, whatever the note's size")
+    void statements() throws Exception {
+        var id = createNote("x".repeat(200_000));
+
+        queries.reset();
+        edit(id, 1, List.of(edit(100_000, 1, "y"))).andExpect(status().isOk());
+
+        assertThat(queries.toString()).isEqualTo("select=1, insert=1, update=1, delete=0, total=3");
+    }
+
+    @Test
+    @DisplayName("An edit against an old revision is refused and changes nothing")
+    void staleBase() throws Exception {
+        var id = createNote("Hello");
+        edit(id, 1, List.of(edit(5, 0, "!"))).andExpect(status().isOk());
+
+        edit(id, 1, List.of(edit(0, 1, "J")))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Note (%s) is at revision 2, not 1.".formatted(id)));
+
+        assertThat(storedContent(id)).isEqualTo("Hello!");
+    }
+
+    @Test
+    @DisplayName("An edit past the end of the content is a 400, checked against the content each edit sees")
+    void outOfRange() throws Exception {
+        var id = createNote("abc");
+
+        edit(id, 1, List.of(edit(2, 2, ""))).andExpect(status().isBadRequest());
+        edit(id, 1, List.of(edit(0, 1, ""), edit(2, 1, ""))).andExpect(status().isBadRequest());
+        edit(id, 1, List.of()).andExpect(status().isBadRequest());
+
+        assertThat(storedContent(id)).isEqualTo("abc");
+    }
+
+    @Test
+    @DisplayName("Another user's note is a 404")
+    void otherUser() throws Exception {
+        var id = createNote("mine");
+
+        user = "edit-" + UUID.randomUUID();
+        edit(id, 1, List.of(edit(0, 0, "x"))).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Notes from before revisions existed get a base snapshot first")
+    void legacyNote() throws Exception {
+        var id = createNote("old");
+        jdbc.update("delete from note_revisions where note_id = ?", id);
+        jdbc.update("update notes set revision = 0, content = null where id = ?", id);
+
+        edit(id, 0, List.of(edit(0, 0, "new")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.revision").value(2));
+
+        assertThat(storedContent(id)).isEqualTo("new");
+        assertThat(jdbc.queryForList("select revision from note_revisions where note_id = ? order by revision",
+                Integer.class, id)).containsExactly(1, 2);
+        assertThat(revisionContent(id, 2)).isEqualTo("new");
+    }
+}
@@ -0,0 +1,260 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/*
+ * Pins the number of statements each note route sends to Postgres.
+ * Counts must not grow with the page size or the number of tags; if one of these fails, something went N+1.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class NoteControllerQueryCountIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    QueryCounter queries;
+
+    private String user;
+
+    @BeforeEach
+    void newUser() {
+        // Every test gets its own user, so the shared database never needs cleaning.
+        user = "qc-" + UUID.randomUUID();
+    }
+
+    private List<String> tagNames(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "tag-" + i).toList();
+    }
+
+    private UUID createNote(String title, List<String> tags) throws Exception {
+        return ApiFixtures.createNote(mvc, user, title, "Content of " + title, tags);
+    }
+
+    @ParameterizedTest(name = "{0} tags")
+    @ValueSource(ints = {0, 1, 5, 20})
+    @DisplayName("POST /api/notes with new tags")
+    void createNote_newTags(int tagCount) throws Exception {
+        queries.reset();
+        createNote("Note", tagNames(tagCount));
+
+        // Tag lookup, then batched inserts for the new tags, the note, its first revision, and the join rows.
+        if (tagCount == 0) {
+            assertThat(queries.toString()).isEqualTo("select=0, insert=2, update=0, delete=0, total=2");
+        } else {
+            assertThat(queries.toString()).isEqualTo("select=1, insert=4, update=0, delete=0, total=5");
+        }
+    }
+
+    @ParameterizedTest(name = "{0} tags")
+    @ValueSource(ints = {1, 5, 20})
+    @DisplayName("POST /api/notes with existing tags")
+    void createNote_existingTags(int tagCount) throws Exception {
+        createNote("Seed", tagNames(tagCount));
+
+        queries.reset();
+        createNote("Note", tagNames(tagCount));
+
+        assertThat(queries.toString()).isEqualTo("select=1, insert=3, update=0, delete=0, total=4");
+    }
+
+    @ParameterizedTest(name = "page size {0}")
+    @ValueSource(ints = {1, 10, 50})
+    @DisplayName("GET /api/notes")
+    void listNotes(int pageSize) throws Exception {
+        for (int i = 0; i < 60; i++) {
+            createNote("Note " + i, tagNames(3));
+        }
+
+        queries.reset();
+        mvc.perform(get("/api/notes").param("size", String.valueOf(pageSize)).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(pageSize)));
+
+        // Page, count, and one batched fetch of the page's tags.
+        assertThat(queries.toString()).isEqualTo("select=3, insert=0, update=0, delete=0, total=3");
+    }
+
+    @ParameterizedTest(name = "page size {0}")
+    @ValueSource(ints = {1, 10, 50})
+    @DisplayName("GET /api/notes?tag=")
+    void listNotes_byTag(int pageSize) throws Exception {
+        for (int i = 0; i < 60; i++) {
+            createNote("Note " + i, tagNames(3));
+        }
+
+        queries.reset();
+        mvc.perform(get("/api/notes").param("tag", "tag-1").param("size", String.valueOf(pageSize)).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(pageSize)));
+
+        assertThat(queries.toString()).isEqualTo("select=3, insert=0, update=0, delete=0, total=3");
+    }
+
+    @ParameterizedTest(name = "{0} tags")
+    @ValueSource(ints = {0, 5, 20})
+    @DisplayName("GET /api/notes/{id}")
+    void getNoteById(int tagCount) throws Exception {
+        var id = createNote("Note", tagNames(tagCount));
+
+        queries.reset();
+        mvc.perform(get("/api/notes/{id}", id).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags", hasSize(tagCount)));
+
+        assertThat(queries.toString()).isEqualTo("select=2, insert=0, update=0, delete=0, total=2");
+    }
+
+    @ParameterizedTest(name = "{0} tags")
+    @ValueSource(ints = {1, 5, 20})
+    @DisplayName("PUT /api/notes/{id}")
+    void updateNote(int tagCount) throws Exception {
+        var id = createNote("Note", tagNames(tagCount));
+
+        // Keep the existing tags and add as many new ones.
+        var tags = new ArrayList<>(tagNames(tagCount));
+        tags.addAll(IntStream.range(0, tagCount).mapToObj(i -> "new-" + i).toList());
+        var body = Map.of("title", "Updated", "content", "Updated", "archived", true, "tags", tags);
+
+        queries.reset();
+        mvc.perform(put("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(body)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags", hasSize(tagCount * 2)));
+
+        // Note and tag lookups; the tag set is replaced wholesale, so its old rows are never loaded.
+        // One insert is the revision.
+        assertThat(queries.toString()).isEqualTo("select=2, insert=3, update=1, delete=1, total=7");
+    }
+
+    @ParameterizedTest(name = "{0} tags")
+    @ValueSource(ints = {0, 5, 20})
+    @DisplayName("PATCH /api/notes/{id} without tags")
+    void patchNote(int tagCount) throws Exception {
+        var id = createNote("Note", tagNames(tagCount));
+        var body = Map.of("title", "Note", "content", "Edited", "archived", false);
+
+        queries.reset();
+        mvc.perform(patch("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(body)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("Edited"));
+
+        // The insert is the revision.
+        assertThat(queries.toString()).isEqualTo("select=2, insert=1, update=1, delete=0, total=4");
+    }
+
+    @ParameterizedTest(name = "{0} tags")
+    @ValueSource(ints = {0, 5, 20})
+    @DisplayName("DELETE /api/notes/{id}")
+    void deleteNote(int tagCount) throws Exception {
+        var id = createNote("Note", tagNames(tagCount));
+
+        queries.reset();
+        mvc.perform(delete("/api/notes/{id}", id).with(as(user)))
+                .andExpect(status().isNoContent());
+
+        assertThat(queries.toString()).isEqualTo("select=1, insert=0, update=0, delete=2, total=3");
+    }
+
+    @Test
+    @DisplayName("GET /api/notes/{id} for another user's note")
+    void getNoteById_notOwned() throws Exception {
+        var id = createNote("Note", tagNames(2));
+        user = "qc-" + UUID.randomUUID();
+
+        queries.reset();
+        mvc.perform(get("/api/notes/{id}", id).with(as(user)))
+                .andExpect(status().isNotFound());
+
+        assertThat(queries.toString()).isEqualTo("select=1, insert=0, update=0, delete=0, total=1");
+    }
+
+    @ParameterizedTest(name = "{0} notes")
+    @ValueSource(ints = {1, 50, 200})
+    @DisplayName("POST /api/notes/batch-get")
+    void batchGetNotes(int noteCount) throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < noteCount; i++) {
+            ids.add(createNote("Note " + i, tagNames(3)));
+        }
+        Collections.reverse(ids);
+
+        queries.reset();
+        var response = mvc.perform(post("/api/notes/batch-get").with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("ids", ids))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results", hasSize(noteCount)))
+                .andReturn().getResponse().getContentAsString();
+
+        // The notes, then all of their tags.
+        assertThat(queries.toString()).isEqualTo("select=2, insert=0, update=0, delete=0, total=2");
+        var results = om.readTree(response).get("results");
+        for (int i = 0; i < noteCount; i++) {
+            assertThat(results.get(i).get("id").asText()).isEqualTo(ids.get(i).toString());
+            assertThat(results.get(i).get("note").get("tags")).hasSize(3);
+        }
+    }
+
+    @Test
+    @DisplayName("POST /api/notes/batch-get with missing and another user's notes")
+    void batchGetNotes_notFound() throws Exception {
+        var theirs = createNote("Theirs", tagNames(1));
+        user = "qc-" + UUID.randomUUID();
+        var mine = createNote("Mine", tagNames(1));
+        var missing = UUID.randomUUID();
+
+        queries.reset();
+        mvc.perform(post("/api/notes/batch-get").with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("ids", List.of(theirs, mine, missing)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("not_found"))
+                .andExpect(jsonPath("$.results[1].status").value("found"))
+                .andExpect(jsonPath("$.results[1].note.title").value("Mine"))
+                .andExpect(jsonPath("$.results[2].status").value("not_found"));
+
+        assertThat(queries.toString()).isEqualTo("select=2, insert=0, update=0, delete=0, total=2");
+
+        // Nothing owned: the tag query is skipped.
+        queries.reset();
+        mvc.perform(post("/api/notes/batch-get").with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("ids", List.of(theirs, missing)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[*].status").value(everyItem(is("not_found"))));
+
+        assertThat(queries.toString()).isEqualTo("select=1, insert=0, update=0, delete=0, total=1");
+    }
+}
@@ -1,6 +1,11 @@
 package dev.jacklucas.notes_api.note;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.counter.UserCounters;
+import dev.jacklucas.notes_api.note.dto.ContentEdit;
+import dev.jacklucas.notes_api.note.dto.EditNoteContentRequest;
+import dev.jacklucas.notes_api.note.dto.EditNoteContentResponse;
+import dev.jacklucas.notes_api.revision.RevisionRecorder;
 import dev.jacklucas.notes_api.tag.Tag;
 import dev.jacklucas.notes_api.tag.TagRepository;
 import org.junit.jupiter.api.DisplayName;
@@ -8,8 +13,6 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -40,6 +43,18 @@ class NoteControllerTest {
     @MockitoBean
     TagRepository tagRepository;
 
+    @MockitoBean
+    RevisionRecorder revisionRecorder;
+
+    @MockitoBean
+    NoteContentEditor contentEditor;
+
+    @MockitoBean
+    NoteTagger tagger;
+
+    @MockitoBean
+    UserCounters counters;
+
     private static final String USER = "user-123";
 
     private SecurityMockMvcRequestPostProcessors.JwtRequestPostProcessor withJwt() {
@@ -68,26 +83,105 @@ class NoteControllerTest {
     void getNoteById_found() throws Exception {
         var id = UUID.randomUUID();
         var n = note(id, "Test Note", "Test Content", false, Set.of());
-        when(noteRepository.findById(id)).thenReturn(Optional.of(n));
+        when(noteRepository.findByIdAndUserId(id, USER)).thenReturn(Optional.of(n));
 
         mvc.perform(get("/api/notes/{id}", id).with(withJwt()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.title").value("Test Note"))
                 .andExpect(jsonPath("$.content").value("Test Content"));
 
-        verify(noteRepository).findById(id);
+        verify(noteRepository).findByIdAndUserId(id, USER);
+    }
+
+    @Test
+    @DisplayName("POST /api/notes/batch-get answers every id in request order")
+    void batchGetNotes() throws Exception {
+        var first = UUID.randomUUID();
+        var missing = UUID.randomUUID();
+        var second = UUID.randomUUID();
+        when(noteRepository.findByUserIdAndIdIn(eq(USER), any())).thenReturn(List.of(
+                note(second, "Second", "2", false, Set.of()),
+                note(first, "First", "1", false, Set.of())));
+        when(noteRepository.findTagNames(eq(USER), any())).thenReturn(List.of(
+                new NoteTagName(first, "work"), new NoteTagName(first, "idea")));
+
+        mvc.perform(post("/api/notes/batch-get").with(withJwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("ids", List.of(first, missing, second)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results", hasSize(3)))
+                .andExpect(jsonPath("$.results[0].status").value("found"))
+                .andExpect(jsonPath("$.results[0].note.title").value("First"))
+                .andExpect(jsonPath("$.results[0].note.tags", hasSize(2)))
+                .andExpect(jsonPath("$.results[1].id").value(missing.toString()))
+                .andExpect(jsonPath("$.results[1].status").value("not_found"))
+                .andExpect(jsonPath("$.results[1].note").doesNotExist())
+                .andExpect(jsonPath("$.results[2].note.title").value("Second"))
+                .andExpect(jsonPath("$.results[2].note.tags", hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("POST /api/notes/batch-get -> 400 without ids or with more than 200")
+    void batchGetNotes_invalid() throws Exception {
+        var tooMany = Collections.nCopies(201, UUID.randomUUID());
+
+        for (var ids : List.of(List.of(), tooMany)) {
+            mvc.perform(post("/api/notes/batch-get").with(withJwt())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(om.writeValueAsString(Map.of("ids", ids))))
+                    .andExpect(status().isBadRequest());
+        }
+
+        verify(noteRepository, never()).findByUserIdAndIdIn(any(), any());
+    }
+
+    @Test
+    @DisplayName("POST /api/notes/bulk-tag -> 400 unless exactly one of ids and filter is given, with tags")
+    void bulkTagNotes_invalid() throws Exception {
+        var id = UUID.randomUUID();
+        List<Map<String, Object>> bodies = List.of(
+                Map.of("tags", List.of("work")),
+                Map.of("ids", List.of(id), "filter", Map.of(), "tags", List.of("work")),
+                Map.of("ids", List.of(id), "tags", List.of()),
+                Map.of("ids", List.of(id), "tags", List.of(" ")),
+                Map.of("ids", Collections.nCopies(1001, id), "tags", List.of("work")));
+
+        for (var body : bodies) {
+            mvc.perform(post("/api/notes/bulk-tag").with(withJwt())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(om.writeValueAsString(body)))
+                    .andExpect(status().isBadRequest());
+        }
+
+        verifyNoInteractions(tagger);
     }
 
     @Test
     @DisplayName("GET /api/notes returns paged list for user")
     void listNotes() throws Exception {
         var n = note(UUID.randomUUID(), "A", "B", false, Set.of());
-        when(noteRepository.findByUserId(eq(USER), any()))
-                .thenReturn(new PageImpl<>(List.of(n), PageRequest.of(0, 20), 1));
+        when(noteRepository.findByUserId(eq(USER), any())).thenReturn(List.of(n));
 
         mvc.perform(get("/api/notes").with(withJwt()))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.content", hasSize(1)));
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.totalElements").value(1));
+
+        // A short first page is the whole list, so nothing is counted.
+        verifyNoInteractions(counters);
+    }
+
+    @Test
+    @DisplayName("GET /api/notes takes totalElements from the user's counter when the page is full")
+    void listNotes_fullPage() throws Exception {
+        var n = note(UUID.randomUUID(), "A", "B", false, Set.of());
+        when(noteRepository.findByUserId(eq(USER), any())).thenReturn(List.of(n));
+        when(counters.notes(USER)).thenReturn(42L);
+
+        mvc.perform(get("/api/notes").param("size", "1").with(withJwt()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(42))
+                .andExpect(jsonPath("$.totalPages").value(42));
     }
 
     @Test
@@ -99,13 +193,14 @@ class NoteControllerTest {
                 "tags", List.of("work", "ideas")
         );
 
-        when(tagRepository.findByNameAndUserId("work", USER)).thenReturn(Optional.empty());
-        when(tagRepository.findByNameAndUserId("ideas", USER)).thenReturn(Optional.empty());
-        when(tagRepository.save(any(Tag.class))).thenAnswer(inv -> {
-            var t = (Tag) inv.getArgument(0);
-            if (t.getId() == null) t.setId(UUID.randomUUID());
-            t.setCreatedAt(Instant.now());
-            return t;
+        when(tagRepository.findByUserIdAndNameIn(eq(USER), anyCollection())).thenReturn(List.of());
+        when(tagRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Tag> tags = inv.getArgument(0);
+            for (var t : tags) {
+                if (t.getId() == null) t.setId(UUID.randomUUID());
+                t.setCreatedAt(Instant.now());
+            }
+            return tags;
         });
 
         var saved = note(UUID.randomUUID(), "Created", "Content", false, Set.of(tag("work"), tag("ideas")));
@@ -120,6 +215,8 @@ class NoteControllerTest {
         var captor = ArgumentCaptor.forClass(Note.class);
         verify(noteRepository).save(captor.capture());
         assertThat(captor.getValue().getUserId()).isEqualTo(USER);
+        assertThat(captor.getValue().getTags()).extracting(Tag::getName).containsExactlyInAnyOrder("work", "ideas");
+        verify(revisionRecorder).recordCreated(saved);
     }
 
     @Test
@@ -127,13 +224,15 @@ class NoteControllerTest {
     void updateNote_put() throws Exception {
         var id = UUID.randomUUID();
         var existing = note(id, "Old", "Old", false, Set.of());
-        when(noteRepository.findById(id)).thenReturn(Optional.of(existing));
-
-        when(tagRepository.findByNameAndUserId("x", USER)).thenReturn(Optional.empty());
-        when(tagRepository.save(any(Tag.class))).thenAnswer(inv -> {
-            var t = (Tag) inv.getArgument(0);
-            if (t.getId() == null) t.setId(UUID.randomUUID());
-            return t;
+        when(noteRepository.findForUpdateByIdAndUserId(id, USER)).thenReturn(Optional.of(existing));
+
+        when(tagRepository.findByUserIdAndNameIn(eq(USER), anyCollection())).thenReturn(List.of());
+        when(tagRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Tag> tags = inv.getArgument(0);
+            for (var t : tags) {
+                if (t.getId() == null) t.setId(UUID.randomUUID());
+            }
+            return tags;
         });
 
         var updated = note(id, "New Title", "New Content", true, Set.of(tag("x")));
@@ -152,6 +251,10 @@ class NoteControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.title").value("New Title"))
                 .andExpect(jsonPath("$.archived").value(true));
+
+        var before = ArgumentCaptor.forClass(RevisionRecorder.State.class);
+        verify(revisionRecorder).recordChange(before.capture(), same(existing));
+        assertThat(before.getValue()).isEqualTo(new RevisionRecorder.State("Old", "Old", false));
     }
 
     @Test
@@ -159,7 +262,7 @@ class NoteControllerTest {
     void patchNote() throws Exception {
         var id = UUID.randomUUID();
         var existing = note(id, "Before", "Body", false, Set.of());
-        when(noteRepository.findById(id)).thenReturn(Optional.of(existing));
+        when(noteRepository.findForUpdateByIdAndUserId(id, USER)).thenReturn(Optional.of(existing));
 
         var saved = note(id, "Before", "Body", true, Set.of());
         when(noteRepository.save(any(Note.class))).thenReturn(saved);
@@ -177,16 +280,80 @@ class NoteControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.archived").value(true));
 
-        verify(noteRepository).findById(id);
+        verify(noteRepository).findForUpdateByIdAndUserId(id, USER);
         verify(noteRepository).save(any(Note.class));
     }
 
+    @Test
+    @DisplayName("PATCH /api/notes/{id} with only content leaves the other fields alone")
+    void patchNote_contentOnly() throws Exception {
+        var id = UUID.randomUUID();
+        var existing = note(id, "Title", "Old", true, Set.of());
+        when(noteRepository.findForUpdateByIdAndUserId(id, USER)).thenReturn(Optional.of(existing));
+        when(noteRepository.save(any(Note.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        mvc.perform(patch("/api/notes/{id}", id).with(withJwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("content", "New"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Title"))
+                .andExpect(jsonPath("$.content").value("New"))
+                .andExpect(jsonPath("$.archived").value(true));
+    }
+
+    @Test
+    @DisplayName("PATCH /api/notes/{id} -> 400 when a title is sent blank")
+    void patchNote_blankTitle() throws Exception {
+        var id = UUID.randomUUID();
+
+        mvc.perform(patch("/api/notes/{id}", id).with(withJwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("title", "  "))))
+                .andExpect(status().isBadRequest());
+
+        verify(noteRepository, never()).findForUpdateByIdAndUserId(any(), any());
+    }
+
+    @Test
+    @DisplayName("PATCH /api/notes/{id}/content hands the edits to the editor")
+    void editNoteContent() throws Exception {
+        var id = UUID.randomUUID();
+        when(contentEditor.apply(eq(USER), eq(id), any()))
+                .thenReturn(new EditNoteContentResponse(id.toString(), 4, 12, Instant.now().toString()));
+
+        var body = Map.of("baseRevision", 3, "edits", List.of(Map.of("offset", 5, "delete", 1, "insert", "!")));
+        mvc.perform(patch("/api/notes/{id}/content", id).with(withJwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(body)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.revision").value(4))
+                .andExpect(jsonPath("$.contentLength").value(12));
+
+        var request = ArgumentCaptor.forClass(EditNoteContentRequest.class);
+        verify(contentEditor).apply(eq(USER), eq(id), request.capture());
+        assertThat(request.getValue().edits()).containsExactly(new ContentEdit(5, 1, "!"));
+    }
+
+    @Test
+    @DisplayName("PATCH /api/notes/{id}/content -> 400 without a base revision or edits")
+    void editNoteContent_invalid() throws Exception {
+        var id = UUID.randomUUID();
+
+        mvc.perform(patch("/api/notes/{id}/content", id).with(withJwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("edits", List.of()))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.fieldErrors", hasSize(2)));
+
+        verify(contentEditor, never()).apply(any(), any(), any());
+    }
+
     @Test
     @DisplayName("DELETE /api/notes/{id} deletes when owned")
     void deleteNote() throws Exception {
         var id = UUID.randomUUID();
         var existing = note(id, "T", "C", false, Set.of());
-        when(noteRepository.findById(id)).thenReturn(Optional.of(existing));
+        when(noteRepository.findByIdAndUserId(id, USER)).thenReturn(Optional.of(existing));
 
         mvc.perform(delete("/api/notes/{id}", id).with(withJwt()))
                 .andExpect(status().isNoContent());
@@ -199,7 +366,7 @@ class NoteControllerTest {
     @DisplayName("GET /api/notes/{id} -> 404 when missing or not owned")
     void getNoteById_notFound() throws Exception {
         var id = UUID.randomUUID();
-        when(noteRepository.findById(id)).thenReturn(Optional.empty());
+        when(noteRepository.findByIdAndUserId(id, USER)).thenReturn(Optional.empty());
 
         mvc.perform(get("/api/notes/{id}", id).with(withJwt()))
                 .andExpect(status().isNotFound());
@@ -209,7 +376,7 @@ class NoteControllerTest {
     @DisplayName("PUT /api/notes/{id} -> 404 when missing")
     void putNote_notFound() throws Exception {
         var id = UUID.randomUUID();
-        when(noteRepository.findById(id)).thenReturn(Optional.empty());
+        when(noteRepository.findForUpdateByIdAndUserId(id, USER)).thenReturn(Optional.empty());
 
         var body = Map.of(
                 "title", "X",
@@ -223,7 +390,7 @@ class NoteControllerTest {
                         .content(om.writeValueAsString(body)))
                 .andExpect(status().isNotFound());
 
-        verify(noteRepository).findById(id);
+        verify(noteRepository).findForUpdateByIdAndUserId(id, USER);
         verify(noteRepository, never()).save(any());
     }
 
@@ -231,7 +398,7 @@ class NoteControllerTest {
     @DisplayName("PATCH /api/notes/{id} -> 404 when missing")
     void patchNote_notFound() throws Exception {
         var id = UUID.randomUUID();
-        when(noteRepository.findById(id)).thenReturn(Optional.empty());
+        when(noteRepository.findForUpdateByIdAndUserId(id, USER)).thenReturn(Optional.empty());
 
         // Include required fields so validation passes and we reach the 404 path
         var body = Map.of(
@@ -245,7 +412,7 @@ class NoteControllerTest {
                         .content(om.writeValueAsString(body)))
                 .andExpect(status().isNotFound());
 
-        verify(noteRepository).findById(id);
+        verify(noteRepository).findForUpdateByIdAndUserId(id, USER);
         verify(noteRepository, never()).save(any());
     }
 
@@ -253,12 +420,12 @@ class NoteControllerTest {
     @DisplayName("DELETE /api/notes/{id} -> 404 when missing")
     void deleteNote_notFound() throws Exception {
         var id = UUID.randomUUID();
-        when(noteRepository.findById(id)).thenReturn(Optional.empty());
+        when(noteRepository.findByIdAndUserId(id, USER)).thenReturn(Optional.empty());
 
         mvc.perform(delete("/api/notes/{id}", id).with(withJwt()))
                 .andExpect(status().isNotFound());
 
-        verify(noteRepository).findById(id);
+        verify(noteRepository).findByIdAndUserId(id, USER);
         verify(noteRepository, never()).delete(any());
     }
 }
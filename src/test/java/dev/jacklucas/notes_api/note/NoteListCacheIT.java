@@ -0,0 +1,149 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static dev.jacklucas.notes_api.support.Eventually.eventually;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "notes.list-cache.enabled=true")
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class NoteListCacheIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    QueryCounter queries;
+
+    private String user;
+
+    @BeforeEach
+    void newUser() {
+        user = "cache-" + UUID.randomUUID();
+    }
+
+    private UUID createNote(String title, List<String> tags) throws Exception {
+        return ApiFixtures.createNote(mvc, user, title, "Content", tags);
+    }
+
+    private String list(String subject) throws Exception {
+        return mvc.perform(get("/api/notes").with(as(subject)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    // Statements sent to list. The write that came before also comes back through the change feed and bumps the
+    // user's generation once more, so callers poll until a list is served from the entry made after that.
+    private int statementsToList(String subject) throws Exception {
+        queries.reset();
+        list(subject);
+        return queries.total();
+    }
+
+    @Test
+    @DisplayName("A repeated list is served without touching the database")
+    void hit() throws Exception {
+        createNote("One", List.of("work"));
+        var first = list(user);
+
+        assertThat(eventually(() -> statementsToList(user), n -> n == 0)).isZero();
+        assertThat(list(user)).isEqualTo(first);
+    }
+
+    @Test
+    @DisplayName("Different query parameters are cached separately")
+    void perQuery() throws Exception {
+        createNote("One", List.of("work"));
+        createNote("Two", List.of());
+        list(user);
+
+        var filtered = mvc.perform(get("/api/notes").param("tag", "work").with(as(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(om.readTree(filtered).get("totalElements").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Each response format is cached separately")
+    void perFormat() throws Exception {
+        createNote("One", List.of("work"));
+        list(user);
+
+        Callable<Integer> cbor = () -> {
+            queries.reset();
+            mvc.perform(get("/api/notes").accept(MediaType.APPLICATION_CBOR).with(as(user)))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+            return queries.total();
+        };
+        cbor.call();
+        assertThat(eventually(cbor, n -> n == 0)).isZero();
+
+        assertThat(om.readTree(list(user)).get("totalElements").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A note write invalidates the user's cached lists")
+    void noteWrite() throws Exception {
+        var id = createNote("Before", List.of());
+        list(user);
+
+        var body = Map.of("title", "After", "content", "Content", "archived", false);
+        mvc.perform(put("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(body)))
+                .andExpect(status().isOk());
+
+        assertThat(om.readTree(list(user)).get("content").get(0).get("title").asText()).isEqualTo("After");
+    }
+
+    @Test
+    @DisplayName("A tag rename invalidates the user's cached lists")
+    void tagWrite() throws Exception {
+        createNote("One", List.of("old"));
+        list(user);
+
+        var tagId = om.readTree(mvc.perform(get("/api/tags").with(as(user)))
+                .andReturn().getResponse().getContentAsString()).get("content").get(0).get("id").asText();
+        mvc.perform(put("/api/tags/{id}", tagId).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("name", "new"))))
+                .andExpect(status().isOk());
+
+        assertThat(om.readTree(list(user)).get("content").get(0).get("tags").get(0).asText()).isEqualTo("new");
+    }
+
+    @Test
+    @DisplayName("Users never see each other's cached lists")
+    void perUser() throws Exception {
+        createNote("Mine", List.of());
+        list(user);
+
+        var other = "cache-" + UUID.randomUUID();
+        assertThat(om.readTree(list(other)).get("totalElements").asInt()).isZero();
+    }
+}
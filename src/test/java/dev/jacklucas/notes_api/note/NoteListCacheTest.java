@@ -0,0 +1,96 @@
+package dev.jacklucas.notes_api.note;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NoteListCacheTest {
+
+    private final NoteListCache cache = new NoteListCache(100, new SimpleMeterRegistry());
+
+    @BeforeEach
+    void listening() {
+        cache.resume();
+    }
+
+    private NoteListCache.Entry entry(int size) {
+        return new NoteListCache.Entry(new byte[size], "application/json");
+    }
+
+    @Test
+    @DisplayName("A write by the user hides their older entries")
+    void generationBump() {
+        var key = cache.key("alice", "page=0");
+        cache.put(key, entry(10));
+
+        cache.onNotesChanged(new NotesChanged("alice"));
+
+        assertThat(cache.get(cache.key("alice", "page=0"))).isNull();
+        assertThat(cache.get(key)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("A write by one user leaves other users' entries alone")
+    void otherUsers() {
+        cache.put(cache.key("bob", "page=0"), entry(10));
+
+        cache.onNotesChanged(new NotesChanged("alice"));
+
+        assertThat(cache.get(cache.key("bob", "page=0"))).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Least recently used entries are evicted to stay within the byte budget")
+    void eviction() {
+        var a = cache.key("u", "a");
+        var b = cache.key("u", "b");
+        var c = cache.key("u", "c");
+        cache.put(a, entry(25));
+        cache.put(b, entry(25));
+        cache.put(c, entry(25));
+        cache.get(a);
+
+        cache.put(cache.key("u", "d"), entry(25));
+        cache.put(cache.key("u", "e"), entry(25));
+
+        assertThat(cache.bytes()).isLessThanOrEqualTo(100);
+        assertThat(cache.get(a)).isNotNull();
+        assertThat(cache.get(b)).isNull();
+    }
+
+    @Test
+    @DisplayName("Entries larger than a quarter of the budget are not kept")
+    void oversized() {
+        var key = cache.key("u", "big");
+        cache.put(key, entry(26));
+
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.bytes()).isZero();
+    }
+
+    @Test
+    @DisplayName("Nothing is served or stored while the change feed is down")
+    void feedDown() {
+        var before = cache.key("alice", "page=0");
+        cache.put(before, entry(10));
+
+        cache.onFeedStatus(new NotesFeedStatus(false));
+        assertThat(cache.get(before)).isNull();
+        assertThat(cache.bytes()).isZero();
+        cache.put(cache.key("alice", "page=0"), entry(10));
+        assertThat(cache.bytes()).isZero();
+
+        // A read that began before the feed went down is not stored once it is back.
+        var during = cache.key("alice", "page=0");
+        cache.onFeedStatus(new NotesFeedStatus(true));
+        cache.put(during, entry(10));
+        assertThat(cache.get(during)).isNull();
+
+        var after = cache.key("alice", "page=0");
+        cache.put(after, entry(10));
+        assertThat(cache.get(after)).isNotNull();
+    }
+}
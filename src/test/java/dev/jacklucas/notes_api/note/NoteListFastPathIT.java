@@ -0,0 +1,176 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import dev.jacklucas.notes_api.counter.UserCounters;
+import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * The fast path must be indistinguishable from the JPA listing it replaces.
+ * Each case compares it with what Jackson writes for the same Page<ReadNoteResponse>.
+ */
+@SpringBootTest(properties = "notes.list-fast-path.enabled=true")
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class NoteListFastPathIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    QueryCounter queries;
+    @Autowired
+    NoteRepository noteRepository;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    UserCounters counters;
+
+    private String user;
+
+    @BeforeEach
+    void seed() throws Exception {
+        user = "fast-" + UUID.randomUUID();
+        for (int i = 0; i < 25; i++) {
+            var tags = i % 3 == 0 ? List.of("work", "ideas") : i % 3 == 1 ? List.of("work") : List.<String>of();
+            // Content with characters JSON must escape.
+            var body = Map.of("title", "Note " + (char) ('a' + i), "content", "Line \"" + i + "\"\n\tü😀", "tags", tags);
+            mvc.perform(post("/api/notes").with(as(user))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(om.writeValueAsString(body)))
+                    .andExpect(status().isCreated());
+        }
+        // The API requires content, but older rows may not have any.
+        jdbc.update("update notes set content = null where user_id = ? and title in ('Note a', 'Note f')", user);
+    }
+
+    private JsonNode jpa(String tag, PageRequest pageable) throws Exception {
+        var page = tx.execute(status -> (tag == null
+                ? PageableExecutionUtils.getPage(noteRepository.findByUserId(user, pageable), pageable,
+                        () -> counters.notes(user))
+                : noteRepository.findByUserIdAndTags_Name(user, tag, pageable)).map(ReadNoteResponse::from));
+        return normalized(om.writeValueAsString(page));
+    }
+
+    // Tag order comes from a HashSet on the JPA side, so compare tags as sets.
+    private JsonNode normalized(String json) throws Exception {
+        var tree = om.readTree(json);
+        for (JsonNode note : tree.get("content")) {
+            var tags = new ArrayList<String>();
+            note.get("tags").forEach(t -> tags.add(t.asText()));
+            Collections.sort(tags);
+            var sorted = om.createArrayNode();
+            tags.forEach(sorted::add);
+            ((ObjectNode) note).set("tags", sorted);
+        }
+        return tree;
+    }
+
+    @ParameterizedTest(name = "page={0} size={1} sort={2} tag={3}")
+    @CsvSource(value = {
+            "0|20|createdAt,desc|",
+            "1|20|createdAt,desc|",
+            "0|5|title,asc|",
+            "2|10|title,desc|",
+            "9|10|createdAt,desc|",
+            "0|20|createdAt,desc|work",
+            "1|5|title,asc|ideas",
+            "0|20|createdAt,desc|missing",
+            "3|5|title,asc|work",
+    }, delimiter = '|')
+    @DisplayName("Matches the JPA listing")
+    void matchesJpa(int page, int size, String sort, String tag) throws Exception {
+        var sortParts = sort.split(",");
+        var pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.fromString(sortParts[1]), sortParts[0]));
+
+        var request = get("/api/notes").with(as(user))
+                .param("page", String.valueOf(page))
+                .param("size", String.valueOf(size))
+                .param("sort", sort);
+        if (tag != null) {
+            request.param("tag", tag);
+        }
+        var fast = mvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+        assertThat(normalized(fast)).isEqualTo(jpa(tag, pageable));
+    }
+
+    @Test
+    @DisplayName("A page is one statement, plus a counter lookup when the page alone does not tell the total")
+    void oneStatement() throws Exception {
+        queries.reset();
+        mvc.perform(get("/api/notes").param("size", "30").with(as(user))).andExpect(status().isOk());
+        assertThat(queries.toString()).isEqualTo("select=1, insert=0, update=0, delete=0, total=1");
+
+        queries.reset();
+        mvc.perform(get("/api/notes").param("size", "20").with(as(user))).andExpect(status().isOk());
+        assertThat(queries.toString()).isEqualTo("select=2, insert=0, update=0, delete=0, total=2");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({"application/cbor", "application/x-jackson-smile"})
+    @DisplayName("Writes CBOR and Smile with the same content as the JPA listing")
+    void binaryFormats(String type) throws Exception {
+        var format = MediaType.parseMediaType(type);
+        var response = mvc.perform(get("/api/notes").param("size", "10").param("sort", "title,asc")
+                        .accept(format).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(format))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        var mapper = new ObjectMapper(type.endsWith("cbor") ? new CBORFactory() : new SmileFactory());
+        var pageable = PageRequest.of(0, 10, Sort.by("title").ascending());
+        assertThat(normalized(om.writeValueAsString(mapper.readTree(response)))).isEqualTo(jpa(null, pageable));
+    }
+
+    @Test
+    @DisplayName("Leaves formats it cannot write to the converters")
+    void notAcceptable() throws Exception {
+        mvc.perform(get("/api/notes").accept(MediaType.APPLICATION_XML).with(as(user)))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    @DisplayName("Sorts it cannot express in SQL fall back to JPA")
+    void unsupportedSort() throws Exception {
+        var response = mvc.perform(get("/api/notes").param("sort", "title,asc").param("sort", "userId").with(as(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        var pageable = PageRequest.of(0, 10, Sort.by("title").ascending().and(Sort.by("userId")));
+        assertThat(normalized(response)).isEqualTo(jpa(null, pageable));
+    }
+}
@@ -0,0 +1,195 @@
+package dev.jacklucas.notes_api.note;
+
+import dev.jacklucas.notes_api.note.dto.BulkTagRequest;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import dev.jacklucas.notes_api.tag.Tag;
+import dev.jacklucas.notes_api.tag.TagRepository;
+import net.ttddyy.dsproxy.QueryType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Runs EXPLAIN on the exact SQL the repositories and Hibernate send, reads and writes alike, and checks that each
+ * partitioned table is touched in one partition.
+ */
+@SpringBootTest
+@Import(EmbeddedPostgresTestConfig.class)
+class NoteRepositoryPartitionPruningIT {
+
+    private static final Pattern PARTITION = Pattern.compile("\\b(notes|tags|note_tags)_(\\d{2})\\b");
+
+    @Autowired
+    NoteRepository noteRepository;
+    @Autowired
+    TagRepository tagRepository;
+    @Autowired
+    NoteTagger tagger;
+    @Autowired
+    QueryCounter queries;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    TransactionTemplate tx;
+
+    private final String user = "pruning-" + UUID.randomUUID();
+    private UUID noteId;
+    private UUID tagId;
+
+    @BeforeEach
+    void seed() {
+        tx.executeWithoutResult(status -> {
+            var tag = tagRepository.save(Tag.builder().userId(user).name("work").build());
+            var note = Note.builder().userId(user).title("Note").content("Body").tags(new HashSet<>(Set.of(tag))).build();
+            noteId = noteRepository.save(note).getId();
+            tagId = tag.getId();
+        });
+        jdbc.execute("analyze notes");
+    }
+
+    // Partitions each table was touched in, across every statement sent while running the work.
+    // Inserts route rows at run time, so their plans name no partition unless they read one.
+    private Map<String, Set<String>> partitionsRead(Runnable work) {
+        queries.reset();
+        tx.executeWithoutResult(status -> work.run());
+
+        Map<String, Set<String>> partitions = new HashMap<>();
+        for (var statement : queries.statements()) {
+            if (statement.type() == QueryType.OTHER && !statement.sql().startsWith("with ")) {
+                continue;
+            }
+            var plan = String.join("\n", jdbc.queryForList("explain " + statement.sql(), String.class,
+                    statement.parameters().toArray()));
+            var matcher = PARTITION.matcher(plan);
+            while (matcher.find()) {
+                partitions.computeIfAbsent(matcher.group(1), k -> new TreeSet<>()).add(matcher.group());
+            }
+        }
+        return partitions;
+    }
+
+    private void assertSinglePartitionPerTable(Map<String, Set<String>> partitions, String... tables) {
+        assertThat(partitions).containsOnlyKeys(tables);
+        partitions.forEach((table, read) -> assertThat(read).as(table).hasSize(1));
+    }
+
+    @Test
+    @DisplayName("findByUserId prunes notes")
+    void findByUserId() {
+        var partitions = partitionsRead(() -> noteRepository.findByUserId(user,
+                PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"))));
+
+        assertSinglePartitionPerTable(partitions, "notes");
+    }
+
+    @Test
+    @DisplayName("findByUserIdAndTags_Name prunes notes, tags, and note_tags")
+    void findByUserIdAndTagName() {
+        var partitions = partitionsRead(() -> noteRepository.findByUserIdAndTags_Name(user, "work",
+                PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"))));
+
+        assertSinglePartitionPerTable(partitions, "notes", "tags", "note_tags");
+    }
+
+    @Test
+    @DisplayName("findByIdAndUserId prunes notes")
+    void findByIdAndUserId() {
+        var partitions = partitionsRead(() -> noteRepository.findByIdAndUserId(noteId, user));
+
+        assertSinglePartitionPerTable(partitions, "notes");
+    }
+
+    @Test
+    @DisplayName("Batch get prunes notes, tags, and note_tags")
+    void batchGet() {
+        var partitions = partitionsRead(() -> {
+            noteRepository.findByUserIdAndIdIn(user, List.of(noteId, UUID.randomUUID()));
+            noteRepository.findTagNames(user, List.of(noteId));
+        });
+
+        assertSinglePartitionPerTable(partitions, "notes", "tags", "note_tags");
+    }
+
+    @Test
+    @DisplayName("Tag lookups prune tags")
+    void tagLookups() {
+        var partitions = partitionsRead(() -> {
+            tagRepository.findByIdAndUserId(tagId, user);
+            tagRepository.findByUserId(user, PageRequest.of(0, 20));
+            tagRepository.findByUserIdAndNameIn(user, List.of("work", "ideas"));
+        });
+
+        assertSinglePartitionPerTable(partitions, "tags");
+    }
+
+    @Test
+    @DisplayName("Bulk tag and untag prune notes, tags, and note_tags")
+    void bulkTag() {
+        var partitions = partitionsRead(() -> {
+            tagger.tag(user, new BulkTagRequest(List.of(noteId), null, List.of("work", "new")));
+            tagger.untag(user, new BulkTagRequest(null, new BulkTagRequest.Filter("work", false), List.of("new")));
+        });
+
+        assertSinglePartitionPerTable(partitions, "notes", "tags", "note_tags");
+    }
+
+    @Test
+    @DisplayName("Saving a new note and its tags reads no partition")
+    void saveNote() {
+        var partitions = partitionsRead(() -> {
+            var tag = tagRepository.findByIdAndUserId(tagId, user).orElseThrow();
+            noteRepository.save(Note.builder().userId(user).title("New").content("Body")
+                    .tags(new HashSet<>(Set.of(tag))).build());
+        });
+
+        assertSinglePartitionPerTable(partitions, "tags");
+    }
+
+    @Test
+    @DisplayName("Updating a note and changing its tags prune notes and note_tags")
+    void updateNote() {
+        var partitions = partitionsRead(() -> {
+            var note = noteRepository.findByIdAndUserId(noteId, user).orElseThrow();
+            note.setTitle("Renamed");
+            note.setTags(new HashSet<>(Set.of(tagRepository.save(Tag.builder().userId(user).name("new").build()))));
+            noteRepository.flush();
+        });
+
+        assertSinglePartitionPerTable(partitions, "notes", "note_tags");
+    }
+
+    @Test
+    @DisplayName("Deleting a note prunes notes and note_tags")
+    void deleteNote() {
+        var partitions = partitionsRead(() ->
+                noteRepository.delete(noteRepository.findByIdAndUserId(noteId, user).orElseThrow()));
+
+        assertSinglePartitionPerTable(partitions, "notes", "note_tags");
+    }
+
+    @Test
+    @DisplayName("Renaming and deleting a tag prune tags")
+    void updateAndDeleteTag() {
+        var partitions = partitionsRead(() -> {
+            var tag = tagRepository.findByIdAndUserId(tagId, user).orElseThrow();
+            tag.setName("renamed");
+            tagRepository.flush();
+            tagRepository.delete(tag);
+        });
+
+        assertSinglePartitionPerTable(partitions, "tags");
+    }
+}
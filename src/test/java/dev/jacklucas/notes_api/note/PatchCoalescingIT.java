@@ -0,0 +1,332 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.NotesApiApplication;
+import dev.jacklucas.notes_api.note.dto.ReadNoteResponse;
+import dev.jacklucas.notes_api.revision.RevisionRecorder;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// The windows are long enough that nothing is flushed on a timer unless a test builds its own coalescer.
+// A peer instance on the same Postgres stands in for writes made on another node.
+@SpringBootTest(properties = {
+        "notes.patch-coalescing.enabled=true",
+        "notes.patch-coalescing.debounce=1h",
+        "notes.patch-coalescing.max-delay=1h"
+})
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class PatchCoalescingIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    QueryCounter queries;
+    @Autowired
+    PatchCoalescer coalescer;
+
+    @Autowired
+    NoteRepository noteRepository;
+    @Autowired
+    RevisionRecorder revisionRecorder;
+    @Autowired
+    ApplicationEventPublisher events;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    static ConfigurableApplicationContext peerContext;
+    static MockMvc peer;
+
+    private String user;
+
+    @BeforeAll
+    static void startPeer() {
+        peerContext = new SpringApplicationBuilder(NotesApiApplication.class, EmbeddedPostgresTestConfig.class)
+                .properties("server.port=0", "spring.jmx.enabled=false")
+                .run();
+        peer = MockMvcBuilders.webAppContextSetup((WebApplicationContext) peerContext).apply(springSecurity()).build();
+    }
+
+    @AfterAll
+    static void stopPeer() {
+        peerContext.close();
+    }
+
+    @BeforeEach
+    void newUser() {
+        user = "coalesce-" + UUID.randomUUID();
+    }
+
+    private UUID createNote(String content) throws Exception {
+        return ApiFixtures.createNote(mvc, user, "Note", content, List.of("work"));
+    }
+
+    private void patchNote(UUID id, Map<String, ?> body) throws Exception {
+        patchNote(id, body, status().isOk());
+    }
+
+    private void patchNote(UUID id, Map<String, ?> body, ResultMatcher expected) throws Exception {
+        mvc.perform(patch("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(body)))
+                .andExpect(expected);
+    }
+
+    private void putOnPeer(UUID id, String content) throws Exception {
+        var body = Map.of("title", "Note", "content", content, "archived", false, "tags", List.of("work"));
+        peer.perform(put("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(body)))
+                .andExpect(status().isOk());
+    }
+
+    private double conflicts() {
+        return meterRegistry.counter("notes.patch-coalescing.flushes", "result", "conflict").count();
+    }
+
+    private String storedContent(UUID id) {
+        return jdbc.queryForObject("select content from notes where id = ?", String.class, id);
+    }
+
+    private int revisions(UUID id) {
+        return jdbc.queryForObject("select count(*) from note_revisions where note_id = ?", Integer.class, id);
+    }
+
+    @Test
+    @DisplayName("A burst of content PATCHes is acknowledged from memory and written once")
+    void burst() throws Exception {
+        var id = createNote("v0");
+
+        queries.reset();
+        for (int i = 1; i <= 10; i++) {
+            mvc.perform(patch("/api/notes/{id}", id).with(as(user))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(om.writeValueAsString(Map.of("content", "v" + i))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content").value("v" + i))
+                    .andExpect(jsonPath("$.title").value("Note"))
+                    .andExpect(jsonPath("$.tags[0]").value("work"));
+        }
+
+        // Only the first PATCH reads the note (and its tags); nothing is written yet.
+        assertThat(queries.toString()).isEqualTo("select=2, insert=0, update=0, delete=0, total=2");
+        assertThat(storedContent(id)).isEqualTo("v0");
+
+        // Reads on this instance already see the buffered content.
+        mvc.perform(get("/api/notes/{id}", id).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("v10"));
+
+        queries.reset();
+        coalescer.flushAll();
+
+        assertThat(queries.toString()).isEqualTo("select=1, insert=1, update=1, delete=0, total=3");
+        assertThat(storedContent(id)).isEqualTo("v10");
+        assertThat(revisions(id)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Other writes fold buffered content in, under the row lock")
+    void otherWritesTakeBufferedContent() throws Exception {
+        var id = createNote("v0");
+        patchNote(id, Map.of("content", "buffered"));
+
+        patchNote(id, Map.of("title", "Renamed"));
+
+        assertThat(storedContent(id)).isEqualTo("buffered");
+        assertThat(jdbc.queryForObject("select title from notes where id = ?", String.class, id)).isEqualTo("Renamed");
+        assertThat(revisions(id)).isEqualTo(2);
+
+        // Nothing left to replay on top.
+        coalescer.flushAll();
+        assertThat(revisions(id)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deleting a note drops its buffered content")
+    void deleteDiscards() throws Exception {
+        var id = createNote("v0");
+        patchNote(id, Map.of("content", "buffered"));
+
+        mvc.perform(delete("/api/notes/{id}", id).with(as(user)))
+                .andExpect(status().isNoContent());
+        coalescer.flushAll();
+
+        assertThat(jdbc.queryForObject("select count(*) from notes where id = ?", Integer.class, id)).isZero();
+    }
+
+    @Test
+    @DisplayName("Another user's note is still a 404, and their reads never see the buffer")
+    void otherUsers() throws Exception {
+        var id = createNote("v0");
+        patchNote(id, Map.of("content", "mine"));
+
+        var owner = user;
+        user = "coalesce-" + UUID.randomUUID();
+        mvc.perform(patch("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("content", "theirs"))))
+                .andExpect(status().isNotFound());
+
+        user = owner;
+        mvc.perform(get("/api/notes/{id}", id).with(as(user)))
+                .andExpect(jsonPath("$.content").value("mine"));
+        coalescer.flushAll();
+        assertThat(storedContent(id)).isEqualTo("mine");
+    }
+
+    @Test
+    @DisplayName("A content edit writes buffered content first, so an edit based on the old revision is refused")
+    void contentEditAfterBufferedPatch() throws Exception {
+        var id = createNote("v0");
+        patchNote(id, Map.of("content", "buffered"));
+
+        mvc.perform(patch("/api/notes/{id}/content", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("baseRevision", 1,
+                                "edits", List.of(Map.of("offset", 0, "delete", 0, "insert", "x"))))))
+                .andExpect(status().isConflict());
+
+        assertThat(storedContent(id)).isEqualTo("buffered");
+        assertThat(revisions(id)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Content another instance has overtaken is dropped, not flushed, and the next write is refused once")
+    void peerWriteBeforeFlush() throws Exception {
+        var id = createNote("v0");
+        patchNote(id, Map.of("content", "buffered"));
+        putOnPeer(id, "peer");
+        double before = conflicts();
+
+        coalescer.flushAll();
+
+        assertThat(storedContent(id)).isEqualTo("peer");
+        assertThat(revisions(id)).isEqualTo(2);
+        assertThat(conflicts()).isEqualTo(before + 1);
+        mvc.perform(get("/api/notes/{id}", id).with(as(user)))
+                .andExpect(jsonPath("$.content").value("peer"));
+
+        // The acknowledged PATCH was lost, so the client hears of it before writing again.
+        patchNote(id, Map.of("content", "next"), status().isConflict());
+        patchNote(id, Map.of("content", "next"));
+        coalescer.flushAll();
+        assertThat(storedContent(id)).isEqualTo("next");
+    }
+
+    @Test
+    @DisplayName("A write here that finds buffered content overtaken by another instance's write is refused")
+    void peerWriteBeforeOtherWrite() throws Exception {
+        var id = createNote("v0");
+        patchNote(id, Map.of("content", "buffered"));
+        putOnPeer(id, "peer");
+        double before = conflicts();
+
+        patchNote(id, Map.of("title", "Renamed"), status().isConflict());
+
+        assertThat(storedContent(id)).isEqualTo("peer");
+        assertThat(jdbc.queryForObject("select title from notes where id = ?", String.class, id)).isEqualTo("Note");
+        assertThat(revisions(id)).isEqualTo(2);
+        assertThat(conflicts()).isEqualTo(before + 1);
+
+        // The buffered content is gone, so a retry goes through.
+        patchNote(id, Map.of("title", "Renamed"));
+        assertThat(jdbc.queryForObject("select title from notes where id = ?", String.class, id)).isEqualTo("Renamed");
+        assertThat(revisions(id)).isEqualTo(3);
+    }
+
+    private PatchCoalescer coalescer(Duration debounce, long maxBytes) {
+        return new PatchCoalescer(noteRepository, revisionRecorder, events, transactionManager,
+                new SimpleMeterRegistry(), debounce, Duration.ofHours(1), maxBytes);
+    }
+
+    @Test
+    @DisplayName("A quiet note is written once the debounce window passes")
+    void debounce() throws Exception {
+        var id = createNote("v0");
+        var own = coalescer(Duration.ofMillis(100), Long.MAX_VALUE);
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(s -> own.patchContent(user, id, "quiet"));
+
+            var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (!"quiet".equals(storedContent(id)) && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(storedContent(id)).isEqualTo("quiet");
+        } finally {
+            own.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Shutdown writes everything still buffered, and later PATCHes are written through")
+    void shutdown() throws Exception {
+        var id = createNote("v0");
+        var own = coalescer(Duration.ofHours(1), Long.MAX_VALUE);
+        new TransactionTemplate(transactionManager).executeWithoutResult(s -> own.patchContent(user, id, "pending"));
+        assertThat(storedContent(id)).isEqualTo("v0");
+
+        own.destroy();
+
+        assertThat(storedContent(id)).isEqualTo("pending");
+        assertThat(own.patchContent(user, id, "late")).isNull();
+    }
+
+    @Test
+    @DisplayName("Past the size budget PATCHes are written through")
+    void sizeBudget() throws Exception {
+        var id = createNote("v0");
+        var tx = new TransactionTemplate(transactionManager);
+
+        var own = coalescer(Duration.ofHours(1), 8);
+        try {
+            ReadNoteResponse first = tx.execute(s -> own.patchContent(user, id, "12345"));
+            ReadNoteResponse second = tx.execute(s -> own.patchContent(user, id, "123456"));
+
+            assertThat(first).isNotNull();
+            assertThat(second).isNull();
+        } finally {
+            own.destroy();
+        }
+    }
+}
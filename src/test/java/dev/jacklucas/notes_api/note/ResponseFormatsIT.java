@@ -0,0 +1,115 @@
+package dev.jacklucas.notes_api.note;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * CBOR and Smile carry exactly what JSON does: each case decodes the binary response and compares it with the JSON one.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class ResponseFormatsIT {
+
+    static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+
+    private final ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+    private final ObjectMapper smile = new ObjectMapper(new SmileFactory());
+
+    private String user;
+    private UUID noteId;
+
+    @BeforeEach
+    void seed() throws Exception {
+        user = "formats-" + UUID.randomUUID();
+        for (int i = 0; i < 3; i++) {
+            var body = Map.of("title", "Note " + i, "content", "Line \"" + i + "\"\n\tü😀", "tags", List.of("work"));
+            var response = mvc.perform(post("/api/notes").with(as(user))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(om.writeValueAsString(body)))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            noteId = UUID.fromString(om.readTree(response).get("id").asText());
+        }
+    }
+
+    private JsonNode fetch(MockHttpServletRequestBuilder request, MediaType format) throws Exception {
+        var body = mvc.perform(request.with(as(user)).accept(format))
+                .andExpect(content().contentTypeCompatibleWith(format))
+                .andReturn().getResponse().getContentAsByteArray();
+        return (format.equals(MediaType.APPLICATION_CBOR) ? cbor : format.equals(SMILE) ? smile : om).readTree(body);
+    }
+
+    private void assertSameAsJson(MockHttpServletRequestBuilder request, MediaType format) throws Exception {
+        var binary = fetch(request, format);
+        assertThat(binary).isEqualTo(fetch(request, MediaType.APPLICATION_JSON));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @ValueSource(strings = {"application/cbor", "application/x-jackson-smile"})
+    @DisplayName("Get, list and batch get match their JSON")
+    void matchesJson(String type) throws Exception {
+        var format = MediaType.parseMediaType(type);
+
+        assertSameAsJson(get("/api/notes/{id}", noteId), format);
+        assertSameAsJson(get("/api/notes").param("sort", "title,asc"), format);
+        assertSameAsJson(post("/api/notes/batch-get")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(om.writeValueAsString(Map.of("ids", List.of(noteId, UUID.randomUUID())))), format);
+    }
+
+    @Test
+    @DisplayName("Errors come in the requested format too")
+    void errors() throws Exception {
+        var request = get("/api/notes/{id}", UUID.randomUUID()).with(as(user)).accept(MediaType.APPLICATION_CBOR);
+        var body = mvc.perform(request)
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(cbor.readTree(body).get("status").asInt()).isEqualTo(404);
+    }
+
+    @Test
+    @DisplayName("JSON unless asked otherwise")
+    void jsonByDefault() throws Exception {
+        mvc.perform(get("/api/notes/{id}", noteId).with(as(user)))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        mvc.perform(get("/api/notes/{id}", noteId).with(as(user)).accept(MediaType.ALL))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        // Quality values decide between formats the client takes.
+        mvc.perform(get("/api/notes/{id}", noteId).with(as(user))
+                        .header("Accept", "application/json;q=0.5, application/cbor"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR));
+    }
+}
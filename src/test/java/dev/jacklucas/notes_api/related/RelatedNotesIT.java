@@ -0,0 +1,232 @@
+package dev.jacklucas.notes_api.related;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.note.NotesChanged;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static dev.jacklucas.notes_api.support.Eventually.eventually;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "notes.related.max-notes-per-user=3")
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class RelatedNotesIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    QueryCounter queries;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    RelatedIndex index;
+
+    private String user;
+
+    @BeforeEach
+    void newUser() {
+        user = "related-" + UUID.randomUUID();
+    }
+
+    private UUID createNote(List<String> tags) throws Exception {
+        return ApiFixtures.createNote(mvc, user, "Note", "", tags);
+    }
+
+    private void patchTags(UUID id, List<String> tags) throws Exception {
+        mvc.perform(patch("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("tags", tags))))
+                .andExpect(status().isOk());
+    }
+
+    // Statements sent while looking up. This instance's own writes come back through the change feed, and the next
+    // lookup reads the notes they marked stale back, so callers poll until a lookup runs without one in the way.
+    private int statements(Callable<?>... lookups) throws Exception {
+        queries.reset();
+        for (var lookup : lookups) {
+            lookup.call();
+        }
+        return queries.total();
+    }
+
+    private List<UUID> related(UUID id) throws Exception {
+        var response = mvc.perform(get("/api/notes/{id}/related", id).with(as(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        var ids = new ArrayList<UUID>();
+        om.readTree(response).forEach(r -> ids.add(UUID.fromString(r.get("id").asText())));
+        return ids;
+    }
+
+    private List<String> suggestFor(UUID id) throws Exception {
+        var response = mvc.perform(get("/api/tags/suggest-for").with(as(user)).param("noteId", id.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        var names = new ArrayList<String>();
+        om.readTree(response).forEach(s -> names.add(s.get("name").asText()));
+        return names;
+    }
+
+    @Test
+    @DisplayName("Ranks by shared tags, rarer ones first, and answers repeat lookups from memory")
+    void ranking() throws Exception {
+        var a = createNote(List.of("work", "q3"));
+        var b = createNote(List.of("work"));
+        var c = createNote(List.of("work", "q3"));
+
+        assertThat(related(a)).containsExactly(c, b);
+        assertThat(suggestFor(b)).containsExactly("q3");
+
+        assertThat(related(c)).containsExactly(a, b);
+        assertThat(eventually(() -> statements(() -> related(c), () -> suggestFor(b)), n -> n == 0)).isZero();
+    }
+
+    @Test
+    @DisplayName("Creates, tag changes and deletes are applied to a built index")
+    void incremental() throws Exception {
+        var a = createNote(List.of("work"));
+        var b = createNote(List.of("home"));
+        assertThat(related(a)).isEmpty();
+
+        var c = createNote(List.of("work", "urgent"));
+        assertThat(related(a)).containsExactly(c);
+        assertThat(suggestFor(a)).containsExactly("urgent");
+
+        patchTags(b, List.of("work"));
+        assertThat(related(a)).containsExactly(c, b);
+
+        mvc.perform(delete("/api/notes/{id}", c).with(as(user))).andExpect(status().isNoContent());
+        assertThat(related(a)).containsExactly(b);
+
+        assertThat(related(b)).containsExactly(a);
+        assertThat(eventually(() -> statements(() -> related(b)), n -> n == 0)).isZero();
+    }
+
+    @Test
+    @DisplayName("A write only marks the index; the next lookup reads the note back once, however often it was heard")
+    void lazyRefresh() throws Exception {
+        var a = createNote(List.of("work"));
+        var b = createNote(List.of("work"));
+        assertThat(related(a)).containsExactly(b);
+        assertThat(eventually(() -> statements(() -> related(a)), n -> n == 0)).isZero();
+
+        // As for a write made here: heard once as it commits, and once more through the change feed.
+        queries.reset();
+        index.onNotesChanged(new NotesChanged(user, b));
+        index.onNotesChanged(new NotesChanged(user, b));
+        assertThat(queries.total()).isZero();
+
+        assertThat(statements(() -> related(a))).isEqualTo(1);
+        assertThat(statements(() -> related(a))).isZero();
+    }
+
+    @Test
+    @DisplayName("Bulk tagging and tag deletes rebuild the index")
+    void rebuilds() throws Exception {
+        var a = createNote(List.of("work"));
+        var b = createNote(List.of("home"));
+        assertThat(related(a)).isEmpty();
+
+        mvc.perform(post("/api/notes/bulk-tag").with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("ids", List.of(a, b), "tags", List.of("shared")))))
+                .andExpect(status().isOk());
+        assertThat(related(a)).containsExactly(b);
+
+        var tags = om.readTree(mvc.perform(get("/api/tags").with(as(user)))
+                .andReturn().getResponse().getContentAsString()).get("content");
+        for (var tag : tags) {
+            if (tag.get("name").asText().equals("shared")) {
+                mvc.perform(delete("/api/tags/{id}", tag.get("id").asText()).with(as(user)))
+                        .andExpect(status().isNoContent());
+            }
+        }
+        assertThat(related(a)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Notes beyond the per-user cap are still answered for, with their tags read from the database")
+    void overCap() throws Exception {
+        var oldest = createNote(List.of("work", "q3"));
+        createNote(List.of("home"));
+        createNote(List.of("home"));
+        var newest = createNote(List.of("work"));
+
+        assertThat(related(oldest)).containsExactly(newest);
+        assertThat(suggestFor(newest)).isEmpty();
+        assertThat(suggestFor(oldest)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Notes created after the build push the oldest out of a full index")
+    void capKept() throws Exception {
+        var a = createNote(List.of("work"));
+        var b = createNote(List.of("work"));
+        var c = createNote(List.of("work"));
+        assertThat(related(c)).containsExactly(b, a);
+
+        var d = createNote(List.of("work"));
+        assertThat(related(d)).containsExactly(c, b);
+        assertThat(related(a)).containsExactly(d, c, b);
+    }
+
+    @Test
+    @DisplayName("Writes made outside this instance reach a built index through the change feed")
+    void outsideWrites() throws Exception {
+        var a = createNote(List.of("work"));
+        var b = createNote(List.of("home"));
+        assertThat(related(a)).isEmpty();
+
+        // Retag b in SQL, as another instance or the reactive app would.
+        jdbc.update("""
+                insert into note_tags (user_id, note_id, tag_id)
+                select user_id, ?, id from tags where user_id = ? and name = 'work'
+                """, b, user);
+        assertThat(eventually(() -> related(a), ids -> ids.contains(b))).containsExactly(b);
+
+        jdbc.update("update tags set name = 'office' where user_id = ? and name = 'work'", user);
+        Callable<String> shared = () -> om.readTree(mvc.perform(get("/api/notes/{id}/related", a).with(as(user)))
+                .andReturn().getResponse().getContentAsString()).get(0).get("sharedTags").get(0).asText();
+        assertThat(eventually(shared, "office"::equals)).isEqualTo("office");
+    }
+
+    @Test
+    @DisplayName("Other users' notes and missing notes are not found")
+    void notFound() throws Exception {
+        var mine = createNote(List.of("work"));
+
+        user = "related-" + UUID.randomUUID();
+        createNote(List.of("work"));
+
+        mvc.perform(get("/api/notes/{id}/related", mine).with(as(user))).andExpect(status().isNotFound());
+        mvc.perform(get("/api/tags/suggest-for").with(as(user)).param("noteId", mine.toString()))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/api/notes/{id}/related", UUID.randomUUID()).with(as(user)))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,126 @@
+package dev.jacklucas.notes_api.related;
+
+import dev.jacklucas.notes_api.related.dto.RelatedNoteResponse;
+import dev.jacklucas.notes_api.related.dto.SuggestedTagResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserTagIndexTest {
+
+    private final UserTagIndex index = new UserTagIndex();
+    private final Map<String, UUID> tagIds = new LinkedHashMap<>();
+
+    private int[] slots(String... names) {
+        var tags = new LinkedHashMap<UUID, String>();
+        for (String name : names) {
+            tags.put(tagIds.computeIfAbsent(name, k -> UUID.randomUUID()), name);
+        }
+        return index.slots(tags);
+    }
+
+    // Ids increase, so later notes count as newer.
+    private UUID note(int n, String... tags) {
+        var id = new UUID(1, n);
+        index.put(id, n, slots(tags));
+        return id;
+    }
+
+    private List<UUID> related(UUID id) {
+        return index.related(id, index.tagsOf(id), 10).stream().map(RelatedNoteResponse::id).toList();
+    }
+
+    private List<String> suggested(String... tags) {
+        return index.suggest(slots(tags), 10).stream().map(SuggestedTagResponse::name).toList();
+    }
+
+    @Test
+    @DisplayName("Notes sharing rarer tags rank first, ties go to the newer note, and the note itself is left out")
+    void related() {
+        var a = note(1, "work", "q3", "budget");
+        var b = note(2, "work", "budget");
+        var c = note(3, "work");
+        var d = note(4, "work", "q3");
+        note(5, "home");
+
+        assertThat(related(a)).containsExactly(d, b, c);
+        assertThat(index.related(a, index.tagsOf(a), 1).getFirst().sharedTags()).containsExactly("q3", "work");
+        assertThat(related(c)).containsExactly(d, b, a);
+    }
+
+    @Test
+    @DisplayName("Suggests the tags seen most with the given ones, or the most used tags when there are none")
+    void suggest() {
+        note(1, "work", "q3");
+        note(2, "work", "q3");
+        note(3, "work", "budget");
+        note(4, "home", "garden");
+        note(5, "home");
+
+        assertThat(suggested("work")).containsExactly("q3", "budget");
+        assertThat(index.suggest(slots("work"), 1).getFirst().score()).isEqualTo(0.667);
+        assertThat(suggested()).containsExactly("work", "home", "q3", "budget", "garden");
+    }
+
+    @Test
+    @DisplayName("Retagging and removing notes update the postings, and freed slots are reused")
+    void updates() {
+        var a = note(1, "work");
+        var b = note(2, "work");
+        var c = note(3, "home");
+
+        index.put(b, 2, slots("home"));
+        assertThat(related(a)).isEmpty();
+        assertThat(related(c)).containsExactly(b);
+
+        index.remove(c);
+        assertThat(index.tagsOf(c)).isNull();
+        assertThat(related(b)).isEmpty();
+
+        var bytes = index.bytes();
+        var d = note(4, "home");
+        assertThat(index.bytes()).isEqualTo(bytes + 8);
+        assertThat(related(b)).containsExactly(d);
+        assertThat(index.notes()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("A full index keeps its newest notes: a newer note pushes out the oldest, an older one stays out")
+    void full() {
+        var small = new UserTagIndex(2);
+        var work = small.slots(Map.of(UUID.randomUUID(), "work"));
+        var first = new UUID(1, 1);
+        var second = new UUID(1, 2);
+        var third = new UUID(1, 3);
+        small.put(second, 2, work);
+        small.put(first, 1, work);
+        small.put(third, 3, work);
+
+        assertThat(small.notes()).isEqualTo(2);
+        assertThat(small.tagsOf(first)).isNull();
+        assertThat(small.related(third, work, 10)).extracting(RelatedNoteResponse::id).containsExactly(second);
+
+        small.put(first, 1, work);
+        assertThat(small.tagsOf(first)).isNull();
+        small.put(second, 2, new int[0]);
+        assertThat(small.notes()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Renaming a tag shows in later answers")
+    void rename() {
+        var a = note(1, "wrok");
+        var b = note(2, "wrok");
+
+        index.tag(tagIds.get("wrok"), "work");
+
+        assertThat(index.related(a, index.tagsOf(a), 10).getFirst().sharedTags()).containsExactly("work");
+        assertThat(related(b)).containsExactly(a);
+    }
+}
@@ -0,0 +1,113 @@
+package dev.jacklucas.notes_api.revision;
+
+import dev.jacklucas.notes_api.note.NoteRepository;
+import dev.jacklucas.notes_api.revision.dto.RevisionSummaryResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(NoteRevisionController.class)
+class NoteRevisionControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockitoBean
+    NoteRevisionRepository revisionRepository;
+
+    @MockitoBean
+    NoteRepository noteRepository;
+
+    private static final String USER = "user-123";
+
+    private NoteRevision snapshot(UUID noteId, int revision, String content) {
+        return NoteRevision.builder()
+                .userId(USER).noteId(noteId).revision(revision).snapshot(true)
+                .title("Title").content(content).contentLength(content.length())
+                .createdAt(Instant.now())
+                .build();
+    }
+
+    private NoteRevision delta(UUID noteId, int revision, int prefix, int suffix, String insert) {
+        return NoteRevision.builder()
+                .userId(USER).noteId(noteId).revision(revision)
+                .title("Title").deltaPrefix(prefix).deltaSuffix(suffix).deltaInsert(insert)
+                .createdAt(Instant.now())
+                .build();
+    }
+
+    @Test
+    @DisplayName("GET /api/notes/{id}/revisions returns summaries")
+    void listRevisions() throws Exception {
+        var noteId = UUID.randomUUID();
+        Page<RevisionSummaryResponse> page = new PageImpl<>(List.of(
+                new RevisionSummaryResponse(2, "Title", false, 10, Instant.now()),
+                new RevisionSummaryResponse(1, "Title", false, 5, Instant.now())
+        ), PageRequest.of(0, 20), 2);
+        when(revisionRepository.findByUserIdAndNoteId(eq(USER), eq(noteId), any())).thenReturn(page);
+
+        mvc.perform(get("/api/notes/{id}/revisions", noteId).with(as(USER)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].revision").value(2));
+
+        verify(noteRepository, never()).existsByIdAndUserId(any(), any());
+    }
+
+    @Test
+    @DisplayName("GET /api/notes/{id}/revisions -> 404 when the note is missing or not owned")
+    void listRevisions_notFound() throws Exception {
+        var noteId = UUID.randomUUID();
+        when(revisionRepository.findByUserIdAndNoteId(eq(USER), eq(noteId), any())).thenReturn(Page.empty());
+        when(noteRepository.existsByIdAndUserId(noteId, USER)).thenReturn(false);
+
+        mvc.perform(get("/api/notes/{id}/revisions", noteId).with(as(USER)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("GET /api/notes/{id}/revisions/{rev} replays deltas onto the snapshot")
+    void getRevision() throws Exception {
+        var noteId = UUID.randomUUID();
+        when(revisionRepository.findChain(USER, noteId, 3)).thenReturn(List.of(
+                snapshot(noteId, 1, "hello world"),
+                delta(noteId, 2, 6, 0, "there"),
+                delta(noteId, 3, 0, 5, "hi ")
+        ));
+
+        mvc.perform(get("/api/notes/{id}/revisions/{rev}", noteId, 3).with(as(USER)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.revision").value(3))
+                .andExpect(jsonPath("$.content").value("hi there"));
+    }
+
+    @Test
+    @DisplayName("GET /api/notes/{id}/revisions/{rev} -> 404 when the revision is missing")
+    void getRevision_notFound() throws Exception {
+        var noteId = UUID.randomUUID();
+        when(revisionRepository.findChain(USER, noteId, 9)).thenReturn(List.of(snapshot(noteId, 1, "a")));
+        when(noteRepository.existsByIdAndUserId(noteId, USER)).thenReturn(true);
+
+        mvc.perform(get("/api/notes/{id}/revisions/{rev}", noteId, 9).with(as(USER)))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Revision (9) of note (%s) not found.".formatted(noteId)));
+    }
+}
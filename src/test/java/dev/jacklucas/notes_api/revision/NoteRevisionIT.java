@@ -0,0 +1,178 @@
+package dev.jacklucas.notes_api.revision;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.*;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "notes.revisions.snapshot-every=5")
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class NoteRevisionIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    QueryCounter queries;
+
+    private String user;
+
+    @BeforeEach
+    void newUser() {
+        user = "rev-" + UUID.randomUUID();
+    }
+
+    private UUID createNote(String content) throws Exception {
+        return ApiFixtures.createNote(mvc, user, "Note", content, List.of());
+    }
+
+    private void putContent(UUID id, String content) throws Exception {
+        var body = Map.of("title", "Note", "content", content, "archived", false);
+        mvc.perform(put("/api/notes/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(body)))
+                .andExpect(status().isOk());
+    }
+
+    private String revisionContent(UUID id, int revision) throws Exception {
+        var response = mvc.perform(get("/api/notes/{id}/revisions/{rev}", id, revision).with(as(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return om.readTree(response).get("content").asText();
+    }
+
+    @Test
+    @DisplayName("Every revision reads back exactly as it was written, across snapshots")
+    void everyRevisionReadsBack() throws Exception {
+        var rnd = new Random(7);
+        var written = new ArrayList<String>();
+        var content = new StringBuilder("The quick brown fox jumps over the lazy dog. ".repeat(40) + "The end.");
+
+        written.add(content.toString());
+        var id = createNote(content.toString());
+        for (int i = 0; i < 12; i++) {
+            // Small edits at random places: inserts, deletes, and replacements.
+            int at = rnd.nextInt(content.length() - 10);
+            switch (i % 3) {
+                case 0 -> content.insert(at, "edit " + i + " ");
+                case 1 -> content.delete(at, at + 7);
+                default -> content.replace(at, at + 3, "ñ😀" + i);
+            }
+            putContent(id, content.toString());
+            written.add(content.toString());
+        }
+
+        for (int rev = 1; rev <= written.size(); rev++) {
+            assertThat(revisionContent(id, rev)).as("revision %d", rev).isEqualTo(written.get(rev - 1));
+        }
+
+        // Snapshots at 1, 6, and 11; everything else is a delta.
+        var snapshots = jdbc.queryForList(
+                "select revision from note_revisions where user_id = ? and note_id = ? and snapshot order by revision",
+                Integer.class, user, id);
+        assertThat(snapshots).containsExactly(1, 6, 11);
+    }
+
+    @Test
+    @DisplayName("Small edits to a large note store only the edits")
+    void largeNoteEdits() throws Exception {
+        var content = "x".repeat(1_000_000);
+        var id = createNote(content);
+        for (int i = 0; i < 3; i++) {
+            content = content.substring(0, 1000 * i) + "edit" + content.substring(1000 * i);
+            putContent(id, content);
+        }
+
+        var deltaChars = jdbc.queryForObject(
+                "select sum(length(delta_insert)) from note_revisions where user_id = ? and note_id = ? and not snapshot",
+                Integer.class, user, id);
+        assertThat(deltaChars).isEqualTo(12);
+        assertThat(revisionContent(id, 4)).isEqualTo(content);
+    }
+
+    @Test
+    @DisplayName("GET /api/notes/{id}/revisions lists newest first without loading content")
+    void listRevisions() throws Exception {
+        var id = createNote("one");
+        putContent(id, "one two");
+        putContent(id, "one two three");
+
+        queries.reset();
+        mvc.perform(get("/api/notes/{id}/revisions", id).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(3)))
+                .andExpect(jsonPath("$.content[0].revision").value(3))
+                .andExpect(jsonPath("$.content[0].contentLength").value(13));
+
+        assertThat(queries.toString()).isEqualTo("select=1, insert=0, update=0, delete=0, total=1");
+    }
+
+    @Test
+    @DisplayName("Unchanged writes record nothing")
+    void unchangedWrite() throws Exception {
+        var id = createNote("same");
+        putContent(id, "same");
+
+        var revisions = jdbc.queryForObject("select count(*) from note_revisions where note_id = ?", Integer.class, id);
+        assertThat(revisions).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Notes from before revisions existed start their history with their old state")
+    void legacyNote() throws Exception {
+        var id = jdbc.queryForObject(
+                "insert into notes (user_id, title, content) values (?, 'Note', 'old') returning id", UUID.class, user);
+
+        putContent(id, "new");
+
+        assertThat(revisionContent(id, 1)).isEqualTo("old");
+        assertThat(revisionContent(id, 2)).isEqualTo("new");
+    }
+
+    @Test
+    @DisplayName("Revisions of another user's note are not found")
+    void notOwned() throws Exception {
+        var id = createNote("mine");
+        user = "rev-" + UUID.randomUUID();
+
+        mvc.perform(get("/api/notes/{id}/revisions", id).with(as(user)))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/api/notes/{id}/revisions/{rev}", id, 1).with(as(user)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Deleting a note deletes its revisions")
+    void deleteCascades() throws Exception {
+        var id = createNote("gone");
+        putContent(id, "gone soon");
+
+        mvc.perform(delete("/api/notes/{id}", id).with(as(user)))
+                .andExpect(status().isNoContent());
+
+        var revisions = jdbc.queryForObject("select count(*) from note_revisions where note_id = ?", Integer.class, id);
+        assertThat(revisions).isZero();
+    }
+}
@@ -0,0 +1,54 @@
+package dev.jacklucas.notes_api.revision;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextDeltaTest {
+
+    @ParameterizedTest(name = "''{0}'' -> ''{1}''")
+    @CsvSource(value = {
+            "hello world|hello there world",
+            "hello world|hello",
+            "hello world|world",
+            "''|abc",
+            "abc|''",
+            "aaaa|aaaaaa",
+            "abcabc|abc",
+            "same|same",
+            "😀😁|😀😂",
+            "x😀y|x😁y",
+            "a😀|😀",
+    }, delimiter = '|')
+    @DisplayName("Applying the delta to the old text gives the new text")
+    void roundTrip(String before, String after) {
+        var delta = TextDelta.between(before, after);
+
+        assertThat(delta.applyTo(before)).isEqualTo(after);
+        assertThat(delta.prefix() + delta.suffix()).isLessThanOrEqualTo(Math.min(before.length(), after.length()));
+    }
+
+    @ParameterizedTest(name = "''{0}'' -> ''{1}''")
+    @CsvSource(value = {"😀😁|😀😂", "😁😀|😂😀"}, delimiter = '|')
+    @DisplayName("Never splits a surrogate pair")
+    void keepsSurrogatePairsWhole(String before, String after) {
+        var delta = TextDelta.between(before, after);
+
+        assertThat(delta.insert()).isEqualTo("😂");
+    }
+
+    @ParameterizedTest(name = "edit at {0}")
+    @CsvSource({"0", "500000", "999999"})
+    @DisplayName("A local edit to a large text stores only the edit")
+    void localEdit(int at) {
+        var before = "x".repeat(1_000_000);
+        var after = before.substring(0, at) + "edit" + before.substring(at);
+
+        var delta = TextDelta.between(before, after);
+
+        assertThat(delta.insert()).hasSize(4);
+        assertThat(delta.applyTo(before)).isEqualTo(after);
+    }
+}
@@ -0,0 +1,42 @@
+package dev.jacklucas.notes_api.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * Requests the web tests share: a JWT for a user, and notes created through the API as a client would, so every
+ * write runs the same listeners and triggers as in production.
+ */
+public final class ApiFixtures {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private ApiFixtures() {
+    }
+
+    public static SecurityMockMvcRequestPostProcessors.JwtRequestPostProcessor as(String subject) {
+        return jwt().jwt(j -> j.subject(subject));
+    }
+
+    // POSTs a note as the subject and returns its id.
+    public static UUID createNote(MockMvc mvc, String subject, String title, String content, List<String> tags)
+            throws Exception {
+        var body = Map.of("title", title, "content", content, "tags", tags);
+        var response = mvc.perform(post("/api/notes").with(as(subject))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(JSON.writeValueAsString(body)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return UUID.fromString(JSON.readTree(response).get("id").asText());
+    }
+}
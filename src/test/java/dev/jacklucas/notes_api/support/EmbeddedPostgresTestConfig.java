@@ -0,0 +1,66 @@
+package dev.jacklucas.notes_api.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+ * Backs a full application context with an embedded Postgres.
+ * The server is started once per JVM and shared by every context, so tests isolate their data by user.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class EmbeddedPostgresTestConfig {
+
+    private static EmbeddedPostgres postgres;
+
+    public static synchronized EmbeddedPostgres postgres() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to start embedded Postgres.", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException ignored) {
+                }
+            }));
+        }
+        return postgres;
+    }
+
+    @Bean
+    public QueryCounter queryCounter() {
+        return new QueryCounter();
+    }
+
+    @Bean
+    public DataSource dataSource(QueryCounter queryCounter) {
+        var pool = new HikariDataSource();
+        pool.setDataSource(postgres().getPostgresDatabase());
+        pool.setMaximumPoolSize(10);
+
+        // Every statement goes through the proxy so tests can assert on exact counts.
+        return ProxyDataSourceBuilder.create(pool)
+                .name("embedded-postgres")
+                .listener(queryCounter)
+                .build();
+    }
+
+    // Requests authenticate with the jwt() post-processor, so real tokens are never decoded.
+    @Bean
+    public JwtDecoder jwtDecoder() {
+        return token -> {
+            throw new BadJwtException("Tokens are not decoded in tests.");
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package dev.jacklucas.notes_api.support;
+
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+
+/*
+ * Polls for what arrives after a write commits rather than within its request: what the change feed delivers, to this
+ * instance or a peer. Gives up after ten seconds and returns the last value read, for the caller to assert on.
+ */
+public final class Eventually {
+
+    private Eventually() {
+    }
+
+    public static <T> T eventually(Callable<T> read, Predicate<T> done) throws Exception {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        T value = read.call();
+        while (!done.test(value) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            value = read.call();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,95 @@
+package dev.jacklucas.notes_api.support;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Counts the statements sent to the database, grouped by type, and keeps them for inspection.
+ * A JDBC batch counts as a single statement since it is a single round trip.
+ */
+public class QueryCounter implements QueryExecutionListener {
+
+    // A statement as executed, with the parameters of its first (or only) binding.
+    public record Statement(QueryType type, String sql, List<Object> parameters) {
+    }
+
+    private final Map<QueryType, AtomicInteger> counts = new EnumMap<>(QueryType.class);
+    private final List<Statement> statements = new CopyOnWriteArrayList<>();
+
+    public QueryCounter() {
+        for (QueryType type : QueryType.values()) {
+            counts.put(type, new AtomicInteger());
+        }
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        for (QueryInfo queryInfo : queryInfoList) {
+            var type = QueryUtils.getQueryType(queryInfo.getQuery());
+            counts.get(type).incrementAndGet();
+            statements.add(new Statement(type, queryInfo.getQuery(), parameters(queryInfo)));
+        }
+    }
+
+    private static List<Object> parameters(QueryInfo queryInfo) {
+        if (queryInfo.getParametersList().isEmpty()) {
+            return List.of();
+        }
+        // Each operation is a setXxx(index, value) call; order them by index.
+        var byIndex = new TreeMap<Integer, Object>();
+        for (ParameterSetOperation op : queryInfo.getParametersList().get(0)) {
+            var args = op.getArgs();
+            if (args.length >= 2 && args[0] instanceof Integer index) {
+                byIndex.put(index, args[1]);
+            }
+        }
+        return new ArrayList<>(byIndex.values());
+    }
+
+    public void reset() {
+        counts.values().forEach(c -> c.set(0));
+        statements.clear();
+    }
+
+    public List<Statement> statements() {
+        return List.copyOf(statements);
+    }
+
+    public int selects() {
+        return counts.get(QueryType.SELECT).get();
+    }
+
+    public int inserts() {
+        return counts.get(QueryType.INSERT).get();
+    }
+
+    public int updates() {
+        return counts.get(QueryType.UPDATE).get();
+    }
+
+    public int deletes() {
+        return counts.get(QueryType.DELETE).get();
+    }
+
+    public int total() {
+        return counts.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    @Override
+    public String toString() {
+        return "select=%d, insert=%d, update=%d, delete=%d, total=%d"
+                .formatted(selects(), inserts(), updates(), deletes(), total());
+    }
+}
@@ -0,0 +1,169 @@
+package dev.jacklucas.notes_api.tag;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import dev.jacklucas.notes_api.support.QueryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/*
+ * Pins the number of statements each tag route sends to Postgres.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class TagControllerQueryCountIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    QueryCounter queries;
+
+    private String user;
+
+    @BeforeEach
+    void newUser() {
+        user = "qc-" + UUID.randomUUID();
+    }
+
+    private UUID createTag(String name) throws Exception {
+        var response = mvc.perform(post("/api/tags").with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("name", name))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        return UUID.fromString(om.readTree(response).get("id").asText());
+    }
+
+    private void tagNote(List<String> tags) throws Exception {
+        mvc.perform(post("/api/notes").with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("title", "Note", "content", "", "tags", tags))))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    @DisplayName("POST /api/tags")
+    void createTag() throws Exception {
+        queries.reset();
+        createTag("work");
+
+        assertThat(queries.toString()).isEqualTo("select=1, insert=1, update=0, delete=0, total=2");
+    }
+
+    @ParameterizedTest(name = "page size {0}")
+    @ValueSource(ints = {1, 10, 50})
+    @DisplayName("GET /api/tags")
+    void listTags(int pageSize) throws Exception {
+        for (int i = 0; i < 60; i++) {
+            createTag("tag-" + i);
+        }
+
+        queries.reset();
+        mvc.perform(get("/api/tags").param("size", String.valueOf(pageSize)).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(pageSize)));
+
+        assertThat(queries.toString()).isEqualTo("select=2, insert=0, update=0, delete=0, total=2");
+    }
+
+    @ParameterizedTest(name = "limit {0}")
+    @ValueSource(ints = {1, 10, 50})
+    @DisplayName("GET /api/tags/suggest")
+    void suggestTags(int limit) throws Exception {
+        for (int i = 0; i < 60; i++) {
+            createTag("tag-" + i);
+        }
+        tagNote(List.of("tag-1", "tag-2"));
+
+        queries.reset();
+        mvc.perform(get("/api/tags/suggest").param("prefix", "TAG-").param("limit", String.valueOf(limit)).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(limit)));
+
+        // Counting uses is a join in the same statement, never a query per tag.
+        assertThat(queries.toString()).isEqualTo("select=1, insert=0, update=0, delete=0, total=1");
+    }
+
+    @Test
+    @DisplayName("GET /api/tags/{id}")
+    void getTagById() throws Exception {
+        var id = createTag("work");
+
+        queries.reset();
+        mvc.perform(get("/api/tags/{id}", id).with(as(user)))
+                .andExpect(status().isOk());
+
+        assertThat(queries.toString()).isEqualTo("select=1, insert=0, update=0, delete=0, total=1");
+    }
+
+    @Test
+    @DisplayName("PUT /api/tags/{id}")
+    void updateTag() throws Exception {
+        var id = createTag("work");
+
+        queries.reset();
+        mvc.perform(put("/api/tags/{id}", id).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("name", "renamed"))))
+                .andExpect(status().isOk());
+
+        assertThat(queries.toString()).isEqualTo("select=2, insert=0, update=1, delete=0, total=3");
+    }
+
+    @ParameterizedTest(name = "{0} tagged notes")
+    @ValueSource(ints = {0, 5, 20})
+    @DisplayName("DELETE /api/tags/{id}")
+    void deleteTag(int noteCount) throws Exception {
+        var id = createTag("work");
+        for (int i = 0; i < noteCount; i++) {
+            tagNote(List.of("work"));
+        }
+
+        queries.reset();
+        mvc.perform(delete("/api/tags/{id}", id).with(as(user)))
+                .andExpect(status().isNoContent());
+
+        assertThat(queries.toString()).isEqualTo("select=1, insert=0, update=0, delete=1, total=2");
+    }
+
+    @ParameterizedTest(name = "{0} tagged notes")
+    @ValueSource(ints = {0, 5, 20})
+    @DisplayName("POST /api/tags/{id}/merge-into/{targetId}")
+    void mergeTag(int noteCount) throws Exception {
+        var source = createTag("draft");
+        var target = createTag("drafts");
+        for (int i = 0; i < noteCount; i++) {
+            tagNote(i % 2 == 0 ? List.of("draft") : List.of("draft", "drafts"));
+        }
+
+        queries.reset();
+        mvc.perform(post("/api/tags/{id}/merge-into/{targetId}", source, target).with(as(user)))
+                .andExpect(status().isOk());
+
+        // Both tag lookups, then one statement for the whole merge (a WITH, which only shows up in the total).
+        assertThat(queries.toString()).isEqualTo("select=2, insert=0, update=0, delete=0, total=3");
+    }
+}
@@ -1,11 +1,12 @@
 package dev.jacklucas.notes_api.tag;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.counter.UserCounters;
+import dev.jacklucas.notes_api.tag.dto.TagSuggestionResponse;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
@@ -17,6 +18,7 @@ import java.util.*;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
@@ -34,6 +36,9 @@ class TagControllerTest {
     @MockitoBean
     TagRepository tagRepository;
 
+    @MockitoBean
+    UserCounters counters;
+
     private static final String USER = "user-123";
 
     private SecurityMockMvcRequestPostProcessors.JwtRequestPostProcessor withJwt() {
@@ -74,19 +79,20 @@ class TagControllerTest {
     @Test
     @DisplayName("GET /api/tags returns paged list for user")
     void listTags() throws Exception {
-        when(tagRepository.findByUserId(eq(USER), any()))
-                .thenReturn(new PageImpl<>(List.of(tag("a")), PageRequest.of(0, 20), 1));
+        when(tagRepository.findByUserId(eq(USER), any())).thenReturn(List.of(tag("a")));
+        when(counters.tags(USER)).thenReturn(7L);
 
-        mvc.perform(get("/api/tags").with(withJwt()))
+        mvc.perform(get("/api/tags").param("size", "1").with(withJwt()))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.content", hasSize(1)));
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.totalElements").value(7));
     }
 
     @Test
     @DisplayName("GET /api/tags/{id} returns tag when owned")
     void getTagById() throws Exception {
         var t = tag("Ideas");
-        when(tagRepository.findById(t.getId())).thenReturn(Optional.of(t));
+        when(tagRepository.findByIdAndUserId(t.getId(), USER)).thenReturn(Optional.of(t));
 
         mvc.perform(get("/api/tags/{id}", t.getId()).with(withJwt()))
                 .andExpect(status().isOk())
@@ -99,7 +105,7 @@ class TagControllerTest {
         var id = UUID.randomUUID();
         var existing = Tag.builder().id(id).userId(USER).name("alpha").createdAt(Instant.now()).build();
 
-        when(tagRepository.findById(id)).thenReturn(Optional.of(existing));
+        when(tagRepository.findByIdAndUserId(id, USER)).thenReturn(Optional.of(existing));
 
         // no-op (same name)
         mvc.perform(put("/api/tags/{id}", id).with(withJwt())
@@ -128,11 +134,71 @@ class TagControllerTest {
     @DisplayName("DELETE /api/tags/{id} deletes when owned")
     void deleteTag() throws Exception {
         var t = tag("Old");
-        when(tagRepository.findById(t.getId())).thenReturn(Optional.of(t));
+        when(tagRepository.findByIdAndUserId(t.getId(), USER)).thenReturn(Optional.of(t));
 
         mvc.perform(delete("/api/tags/{id}", t.getId()).with(withJwt()))
                 .andExpect(status().isNoContent());
 
         verify(tagRepository).delete(t);
     }
+
+    @Test
+    @DisplayName("POST /api/tags/{id}/merge-into/{targetId} merges into the target")
+    void mergeTag() throws Exception {
+        var source = tag("draft");
+        var target = tag("drafts");
+        when(tagRepository.findByIdAndUserId(source.getId(), USER)).thenReturn(Optional.of(source));
+        when(tagRepository.findByIdAndUserId(target.getId(), USER)).thenReturn(Optional.of(target));
+        when(tagRepository.mergeInto(USER, source.getId(), target.getId())).thenReturn(3L);
+
+        mvc.perform(post("/api/tags/{id}/merge-into/{targetId}", source.getId(), target.getId()).with(withJwt()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("drafts"));
+
+        verify(tagRepository).mergeInto(USER, source.getId(), target.getId());
+    }
+
+    @Test
+    @DisplayName("POST /api/tags/{id}/merge-into/{targetId} -> 404 when either tag is missing or not owned")
+    void mergeTag_notFound() throws Exception {
+        var source = tag("draft");
+        var missing = UUID.randomUUID();
+        when(tagRepository.findByIdAndUserId(source.getId(), USER)).thenReturn(Optional.of(source));
+        when(tagRepository.findByIdAndUserId(missing, USER)).thenReturn(Optional.empty());
+
+        mvc.perform(post("/api/tags/{id}/merge-into/{targetId}", source.getId(), missing).with(withJwt()))
+                .andExpect(status().isNotFound());
+        mvc.perform(post("/api/tags/{id}/merge-into/{targetId}", missing, source.getId()).with(withJwt()))
+                .andExpect(status().isNotFound());
+
+        verify(tagRepository, never()).mergeInto(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("POST /api/tags/{id}/merge-into/{id} is a no-op")
+    void mergeTag_self() throws Exception {
+        var t = tag("same");
+        when(tagRepository.findByIdAndUserId(t.getId(), USER)).thenReturn(Optional.of(t));
+
+        mvc.perform(post("/api/tags/{id}/merge-into/{targetId}", t.getId(), t.getId()).with(withJwt()))
+                .andExpect(status().isOk());
+
+        verify(tagRepository, never()).mergeInto(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("GET /api/tags/suggest escapes wildcards, lowercases the prefix and clamps the limit")
+    void suggestTags() throws Exception {
+        var t = tag("Work_Items");
+        when(tagRepository.suggest(eq(USER), eq("work\\_%"), eq(PageRequest.of(0, 50))))
+                .thenReturn(List.of(new TagSuggestionResponse(t.getId(), t.getName(), 4)));
+
+        mvc.perform(get("/api/tags/suggest").param("prefix", " Work_ ").param("limit", "500").with(withJwt()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name").value("Work_Items"))
+                .andExpect(jsonPath("$[0].uses").value(4));
+
+        verify(tagRepository).suggest(USER, "work\\_%", PageRequest.of(0, 50));
+    }
 }
@@ -0,0 +1,102 @@
+package dev.jacklucas.notes_api.tag;
+
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class TagMergeIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private String user;
+
+    @BeforeEach
+    void newUser() {
+        user = "merge-" + UUID.randomUUID();
+    }
+
+    private UUID createNote(String title, List<String> tags) throws Exception {
+        return ApiFixtures.createNote(mvc, user, title, "", tags);
+    }
+
+    private UUID tagId(String name) {
+        return jdbc.queryForObject("select id from tags where user_id = ? and name = ?", UUID.class, user, name);
+    }
+
+    private List<String> tagsOf(UUID noteId) {
+        return jdbc.queryForList("""
+                select t.name from note_tags nt join tags t on t.id = nt.tag_id
+                where nt.user_id = ? and nt.note_id = ? order by t.name
+                """, String.class, user, noteId);
+    }
+
+    private Timestamp updatedAt(UUID noteId) {
+        return jdbc.queryForObject("select updated_at from notes where id = ?", Timestamp.class, noteId);
+    }
+
+    @Test
+    @DisplayName("Notes move to the target, duplicates collapse, and the source is gone")
+    void merge() throws Exception {
+        var onlySource = createNote("only source", List.of("draft", "misc"));
+        var both = createNote("both", List.of("draft", "drafts"));
+        var onlyTarget = createNote("only target", List.of("drafts"));
+        var untouchedBefore = updatedAt(onlyTarget);
+        var bothBefore = updatedAt(both);
+
+        mvc.perform(post("/api/tags/{id}/merge-into/{targetId}", tagId("draft"), tagId("drafts")).with(as(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("drafts"));
+
+        assertThat(tagsOf(onlySource)).containsExactly("drafts", "misc");
+        assertThat(tagsOf(both)).containsExactly("drafts");
+        assertThat(tagsOf(onlyTarget)).containsExactly("drafts");
+        assertThat(jdbc.queryForObject("select count(*) from tags where user_id = ? and name = 'draft'",
+                Integer.class, user)).isZero();
+
+        assertThat(updatedAt(both)).isAfter(bothBefore);
+        assertThat(updatedAt(onlyTarget)).isEqualTo(untouchedBefore);
+    }
+
+    @Test
+    @DisplayName("Another user's tag cannot be a source or a target")
+    void otherUsersTags() throws Exception {
+        createNote("mine", List.of("mine"));
+        var mine = tagId("mine");
+
+        var owner = user;
+        user = "merge-" + UUID.randomUUID();
+        createNote("theirs", List.of("theirs"));
+        var theirs = tagId("theirs");
+
+        mvc.perform(post("/api/tags/{id}/merge-into/{targetId}", theirs, mine).with(as(user)))
+                .andExpect(status().isNotFound());
+        mvc.perform(post("/api/tags/{id}/merge-into/{targetId}", mine, theirs).with(as(user)))
+                .andExpect(status().isNotFound());
+
+        user = owner;
+        assertThat(tagId("mine")).isEqualTo(mine);
+    }
+}
@@ -0,0 +1,181 @@
+package dev.jacklucas.notes_api.tag;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jacklucas.notes_api.counter.UserCounterReconciler;
+import dev.jacklucas.notes_api.support.ApiFixtures;
+import dev.jacklucas.notes_api.support.EmbeddedPostgresTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static dev.jacklucas.notes_api.support.ApiFixtures.as;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(EmbeddedPostgresTestConfig.class)
+class TagSuggestIT {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    ObjectMapper om;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    UserCounterReconciler reconciler;
+
+    private String user;
+
+    @BeforeEach
+    void newUser() {
+        user = "suggest-" + UUID.randomUUID();
+    }
+
+    private UUID createNote(List<String> tags) throws Exception {
+        return ApiFixtures.createNote(mvc, user, "Note", "", tags);
+    }
+
+    private UUID tagId(String name) {
+        return jdbc.queryForObject("select id from tags where user_id = ? and name = ?", UUID.class, user, name);
+    }
+
+    private void createTag(String name) throws Exception {
+        mvc.perform(post("/api/tags").with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("name", name))))
+                .andExpect(status().isCreated());
+    }
+
+    private List<String> suggest(String prefix, int limit) throws Exception {
+        var response = mvc.perform(get("/api/tags/suggest").with(as(user))
+                        .param("prefix", prefix)
+                        .param("limit", String.valueOf(limit)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        var names = new ArrayList<String>();
+        om.readTree(response).forEach(s -> names.add(s.get("name").asText() + ":" + s.get("uses").asLong()));
+        return names;
+    }
+
+    @Test
+    @DisplayName("Matches the prefix ignoring case, most used first, ties by name")
+    void ranking() throws Exception {
+        createNote(List.of("Work", "workshop"));
+        createNote(List.of("Work", "worry"));
+        createNote(List.of("Work"));
+        createNote(List.of("workshop", "home"));
+        createTag("Workout");
+
+        assertThat(suggest("wOr", 10)).containsExactly("Work:3", "workshop:2", "worry:1", "Workout:0");
+        assertThat(suggest("work", 2)).containsExactly("Work:3", "workshop:2");
+        assertThat(suggest("", 1)).containsExactly("Work:3");
+        assertThat(suggest("nothing", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("LIKE wildcards in the prefix match literally")
+    void wildcards() throws Exception {
+        createTag("to_do");
+        createTag("todo");
+        createTag("100%");
+        createTag("1000");
+        createTag("a\\b");
+        createTag("ab");
+
+        assertThat(suggest("to_", 10)).containsExactly("to_do:0");
+        assertThat(suggest("100%", 10)).containsExactly("100%:0");
+        assertThat(suggest("a\\", 10)).containsExactly("a\\b:0");
+    }
+
+    @Test
+    @DisplayName("Only the caller's tags and notes are considered")
+    void otherUsers() throws Exception {
+        createNote(List.of("shared"));
+        var owner = user;
+
+        user = "suggest-" + UUID.randomUUID();
+        createNote(List.of("shared"));
+        createNote(List.of("shared", "secret"));
+
+        assertThat(suggest("s", 10)).containsExactly("shared:2", "secret:1");
+        user = owner;
+        assertThat(suggest("s", 10)).containsExactly("shared:1");
+    }
+
+    @Test
+    @DisplayName("Uses follow every way notes gain and lose tags, and drift is repaired by the reconciler")
+    void usesMaintained() throws Exception {
+        var first = createNote(List.of("alpha", "beta"));
+        var second = createNote(List.of("alpha", "gamma"));
+        createNote(List.of("beta"));
+        assertThat(suggest("", 10)).containsExactly("alpha:2", "beta:2", "gamma:1");
+
+        mvc.perform(put("/api/notes/{id}", first).with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of(
+                                "title", "Note", "content", "", "tags", List.of("gamma"), "archived", false))))
+                .andExpect(status().isOk());
+        assertThat(suggest("", 10)).containsExactly("gamma:2", "alpha:1", "beta:1");
+
+        mvc.perform(post("/api/notes/bulk-untag").with(as(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(Map.of("ids", List.of(first), "tags", List.of("gamma")))))
+                .andExpect(status().isOk());
+        assertThat(suggest("", 10)).containsExactly("alpha:1", "beta:1", "gamma:1");
+
+        // The note carrying both alpha and gamma keeps one link to the target.
+        mvc.perform(post("/api/tags/{id}/merge-into/{targetId}", tagId("alpha"), tagId("gamma")).with(as(user)))
+                .andExpect(status().isOk());
+        assertThat(suggest("", 10)).containsExactly("beta:1", "gamma:1");
+
+        mvc.perform(delete("/api/notes/{id}", second).with(as(user))).andExpect(status().isNoContent());
+        assertThat(suggest("", 10)).containsExactly("beta:1", "gamma:0");
+
+        jdbc.update("update tags set uses = 9 where user_id = ? and name = 'gamma'", user);
+        assertThat(suggest("", 10)).containsExactly("gamma:9", "beta:1");
+        assertThat(reconciler.reconcile()).isPositive();
+        assertThat(suggest("", 10)).containsExactly("beta:1", "gamma:0");
+    }
+
+    @Test
+    @DisplayName("The prefix lookup is an index range scan on lower(name)")
+    void usesIndex() {
+        // The tables are tiny here, so take sequential scans off the table and check the index can serve the range.
+        // Enough tags for the user that the range beats filtering all of them, which an empty user would tie.
+        jdbc.update("insert into tags (user_id, name) select ?, 'tag' || g from generate_series(1, 500) g", user);
+        var plan = jdbc.execute((ConnectionCallback<String>) conn -> {
+            try (var st = conn.createStatement()) {
+                st.execute("analyze tags");
+                st.execute("set enable_seqscan = off");
+                var rs = st.executeQuery("explain select id from tags where user_id = '" + user
+                        + "' and lower(name) like 'wor%'");
+                var lines = new StringBuilder();
+                while (rs.next()) lines.append(rs.getString(1)).append('\n');
+                st.execute("reset enable_seqscan");
+                return lines.toString();
+            }
+        });
+
+        assertThat(plan).contains("Index Cond").contains("~>=~").contains("~<~");
+    }
+}